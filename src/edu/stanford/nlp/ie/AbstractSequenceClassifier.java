@@ -300,7 +300,11 @@ public abstract class AbstractSequenceClassifier<IN extends CoreMap> implements
     return document;
   }
 
-  private List<IN> preprocessTokens(List<? extends HasWord> tokenSequence) {
+  /**
+   * Copy the tokens into new tokens of this classifier's type, with background answers, and run them
+   * through ObjectBankWrapper, as {@link #classifySentence(List)} does before classifying them.
+   */
+  protected List<IN> preprocessTokens(List<? extends HasWord> tokenSequence) {
     // log.info("knownLCWords.size is " + knownLCWords.size() + "; knownLCWords.maxSize is " + knownLCWords.getMaxSize() +
     //                   ", prior to NER for " + getClass().toString());
     List<IN> document = new ArrayList<>();
@@ -330,6 +334,11 @@ public abstract class AbstractSequenceClassifier<IN extends CoreMap> implements
     return document;
   }
 
+  /** Make a copy of a token, with all its annotations, using this classifier's token factory. */
+  protected IN copyToken(IN token) {
+    return tokenFactory.makeToken(token);
+  }
+
   /**
    * Classify a List of IN using whatever additional information is passed in globalInfo.
    * Used by SUTime (NumberSequenceClassifier), which requires the doc date to resolve relative dates.
@@ -8,15 +8,22 @@ import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ie.crf.CRFModelBundle;
 import edu.stanford.nlp.ie.ner.CMMClassifier;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -27,6 +34,8 @@ import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.ErasureUtils;
 import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.ModelRegistry;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.PropertiesUtils;
 import edu.stanford.nlp.util.logging.Redwood;
@@ -75,6 +84,29 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
   private static final String COMBINATION_MODE_PROPERTY = "ner.combinationMode";
   private final CombinationMode combinationMode;
 
+  /**
+   * If true, the base classifiers label each sentence concurrently, rather than one after another.
+   * The base classifiers are independent until their labels are merged, so this only changes how long it takes.
+   */
+  public static final String PARALLEL_CLASSIFIERS_PROPERTY = "ner.parallelClassifiers";
+  private boolean parallelClassifiers; // = false;
+
+  /**
+   * If true, base CRF classifiers which extract the same features are run as a {@link CRFModelBundle},
+   * so that the features of each sentence are only extracted once for all of them.
+   */
+  public static final String SHARE_FEATURES_PROPERTY = "ner.shareFeatures";
+  /**
+   * The base classifiers, in groups which are run together: each group is the indices in baseClassifiers of
+   * either a single classifier or the classifiers of a bundle.
+   */
+  private List<int[]> groups;
+  /** The bundle of each group, or null for a single classifier. */
+  private List<CRFModelBundle<IN>> groupBundles;
+
+  /** The threads which run base classifiers when {@link #PARALLEL_CLASSIFIERS_PROPERTY} is set, shared by all combiners. */
+  private static ExecutorService parallelExecutor; // = null;
+
   // keep track of properties used to initialize
   private  Properties initProps;
   // keep track of paths used to load CRFs
@@ -125,6 +157,7 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
     }
     this.initLoadPaths = new ArrayList<>(paths);
     this.initProps = p;
+    initClassification(p);
   }
 
   /** Loads a series of base classifiers from the paths specified using the
@@ -142,6 +175,7 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
     loadClassifiers(props, paths);
     this.initLoadPaths = new ArrayList<>(paths);
     this.initProps = props;
+    initClassification(props);
   }
 
   /** Loads a series of base classifiers from the paths specified using the
@@ -171,11 +205,23 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
    */
   @SafeVarargs
   public ClassifierCombiner(AbstractSequenceClassifier<IN>... classifiers) {
-    super(new Properties());
-    this.combinationMode = DEFAULT_COMBINATION_MODE;
+    this(new Properties(), classifiers);
+  }
+
+  /** Combines a series of base classifiers, which are run as the Properties say
+   *  (e.g., {@code ner.combinationMode} or {@link #PARALLEL_CLASSIFIERS_PROPERTY}).
+   *
+   * @param props Properties for the combiner
+   * @param classifiers The base classifiers
+   */
+  @SafeVarargs
+  public ClassifierCombiner(Properties props, AbstractSequenceClassifier<IN>... classifiers) {
+    super(props);
+    this.combinationMode = extractCombinationModeSafe(props);
     baseClassifiers = new ArrayList<>(Arrays.asList(classifiers));
     flags.backgroundSymbol = baseClassifiers.get(0).flags.backgroundSymbol;
-    this.initProps = new Properties();
+    this.initProps = props;
+    initClassification(props);
   }
 
   // constructor for building a ClassifierCombiner from an ObjectInputStream
@@ -228,6 +274,8 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
         }
       }
     }
+    // the serialized properties, with any given ones on top, say how the base classifiers are run
+    initClassification(initProps);
   }
 
   /**
@@ -267,7 +315,22 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
       baseClassifiers.add(presetASC);
     }
     for(String path: paths){
-      AbstractSequenceClassifier<IN> cls = loadClassifierFromPath(props, path);
+      // Share the classifier with other combiners loading the same model with the same properties
+      AbstractSequenceClassifier<IN> cls;
+      try {
+        cls = ModelRegistry.SINGLETON.acquire(this, ModelRegistry.key("ner", path, loadProperties(props)), ModelRegistry.estimateSize(path), () -> {
+          try {
+            return loadClassifierFromPath(props, path);
+          } catch (IOException e) {
+            throw new RuntimeIOException(e);
+          }
+        });
+      } catch (RuntimeIOException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw e;
+      }
       baseClassifiers.add(cls);
       if(DEBUG){
         System.err.printf("Successfully loaded classifier #%d from %s.%n", baseClassifiers.size(), path);
@@ -279,6 +342,21 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
   }
 
 
+  /**
+   * The properties which affect how {@link #loadClassifierFromPath(Properties, String)} loads a classifier:
+   * all but those which only say how this combiner runs the classifiers once they are loaded.
+   */
+  private static Properties loadProperties(Properties props) {
+    Properties loadProps = new Properties();
+    for (String name : props.stringPropertyNames()) {
+      if ( ! name.equals(COMBINATION_MODE_PROPERTY) && ! name.equals(PARALLEL_CLASSIFIERS_PROPERTY) &&
+          ! name.equals(SHARE_FEATURES_PROPERTY) && ! name.equals("ner.usePresetNERTags")) {
+        loadProps.setProperty(name, props.getProperty(name));
+      }
+    }
+    return loadProps;
+  }
+
   public static <INN extends CoreMap & HasWord> AbstractSequenceClassifier<INN> loadClassifierFromPath(Properties props, String path)
       throws IOException {
     //try loading as a CRFClassifier
@@ -448,29 +526,155 @@ public class ClassifierCombiner<IN extends CoreMap & HasWord> extends AbstractSe
     if (baseClassifiers.isEmpty()) {
       return tokens;
     }
-    List<List<IN>> baseOutputs = new ArrayList<>();
-
-    // the first base model works in place, modifying the original tokens
-    List<IN> output = baseClassifiers.get(0).classifySentence(tokens);
+    List<List<IN>> baseOutputs = parallelClassifiers && groups.size() > 1 ? classifyInParallel(tokens) : classifyInSequence(tokens);
     // classify(List<IN>) is supposed to work in place, so add AnswerAnnotation to tokens!
+    // The base classifiers each work on their own copy of the tokens, made by classifySentence.
+    List<IN> output = baseOutputs.get(0);
     for (int i = 0, sz = output.size(); i < sz; i++) {
       tokens.get(i).set(CoreAnnotations.AnswerAnnotation.class, output.get(i).get(CoreAnnotations.AnswerAnnotation.class));
     }
-    baseOutputs.add(tokens);
-
-    for (int i = 1, sz = baseClassifiers.size(); i < sz; i ++) {
-      //List<CoreLabel> copy = deepCopy(tokens);
-      // no need for deep copy: classifySentence creates a copy of the input anyway
-      // List<CoreLabel> copy = tokens;
-      output = baseClassifiers.get(i).classifySentence(tokens);
-      baseOutputs.add(output);
-    }
+    baseOutputs.set(0, tokens);
     assert(baseOutputs.size() == baseClassifiers.size());
     List<IN> finalAnswer = mergeDocuments(baseOutputs);
 
     return finalAnswer;
   }
 
+  /** Whether the base classifiers are run in parallel, as {@link #PARALLEL_CLASSIFIERS_PROPERTY} says. */
+  boolean classifiesInParallel() {
+    return parallelClassifiers;
+  }
+
+  /** The groups of base classifiers which are run together, as indices in the list of base classifiers. */
+  List<int[]> classifierGroups() {
+    return Collections.unmodifiableList(groups);
+  }
+
+  /** Read the options for how the base classifiers are run, and group the base classifiers accordingly. */
+  private void initClassification(Properties props) {
+    parallelClassifiers = PropertiesUtils.getBool(props, PARALLEL_CLASSIFIERS_PROPERTY, false);
+    boolean shareFeatures = PropertiesUtils.getBool(props, SHARE_FEATURES_PROPERTY, false);
+    groups = new ArrayList<>();
+    groupBundles = new ArrayList<>();
+    boolean[] grouped = new boolean[baseClassifiers.size()];
+    for (int i = 0; i < baseClassifiers.size(); i++) {
+      if (grouped[i]) {
+        continue;
+      }
+      List<Integer> group = new ArrayList<>();
+      group.add(i);
+      if (shareFeatures && baseClassifiers.get(i) instanceof CRFClassifier) {
+        CRFClassifier<IN> first = (CRFClassifier<IN>) baseClassifiers.get(i);
+        for (int j = i + 1; j < baseClassifiers.size(); j++) {
+          if ( ! grouped[j] && baseClassifiers.get(j) instanceof CRFClassifier &&
+              CRFModelBundle.canShareFeatures(first, (CRFClassifier<IN>) baseClassifiers.get(j))) {
+            group.add(j);
+          }
+        }
+      }
+      CRFModelBundle<IN> bundle = null;
+      if (group.size() > 1) {
+        List<CRFClassifier<IN>> members = new ArrayList<>();
+        for (int j : group) {
+          members.add((CRFClassifier<IN>) baseClassifiers.get(j));
+        }
+        try {
+          bundle = new CRFModelBundle<>(members);
+          log.info("Base classifiers " + group + " share feature extraction");
+        } catch (IllegalArgumentException e) {
+          log.warn("Can't bundle base classifiers " + group + ": " + e.getMessage());
+          group = group.subList(0, 1);
+        }
+      }
+      for (int j : group) {
+        grouped[j] = true;
+      }
+      groups.add(group.stream().mapToInt(Integer::intValue).toArray());
+      groupBundles.add(bundle);
+    }
+  }
+
+  /** Each base classifier's labeling of the tokens, as made by the given group. */
+  private List<List<IN>> classifyGroup(int group, List<IN> tokens) {
+    CRFModelBundle<IN> bundle = groupBundles.get(group);
+    if (bundle != null) {
+      return bundle.classifySentence(tokens);
+    }
+    return Collections.singletonList(baseClassifiers.get(groups.get(group)[0]).classifySentence(tokens));
+  }
+
+  /** Put the outputs of each group in the order of the base classifiers. */
+  private List<List<IN>> ungroup(List<List<List<IN>>> groupOutputs) {
+    List<List<IN>> baseOutputs = new ArrayList<>(Collections.nCopies(baseClassifiers.size(), null));
+    for (int g = 0; g < groups.size(); g++) {
+      int[] group = groups.get(g);
+      for (int i = 0; i < group.length; i++) {
+        baseOutputs.set(group[i], groupOutputs.get(g).get(i));
+      }
+    }
+    return baseOutputs;
+  }
+
+  private List<List<IN>> classifyInSequence(List<IN> tokens) {
+    List<List<List<IN>>> groupOutputs = new ArrayList<>();
+    for (int g = 0; g < groups.size(); g++) {
+      // no need for deep copy: classifySentence creates a copy of the input anyway
+      groupOutputs.add(classifyGroup(g, tokens));
+    }
+    return ungroup(groupOutputs);
+  }
+
+  /**
+   * The same as {@link #classifyInSequence(List)}, but the groups of base classifiers other than the first are
+   * handed to a thread pool while this thread runs the first.  Any of them which no pool thread has started by
+   * then are run by this thread, so this is never much slower than running them one after another.
+   * Each base classifier labels its own copy of the tokens, so they can share the input.
+   */
+  private List<List<IN>> classifyInParallel(List<IN> tokens) {
+    ExecutorService executor = parallelExecutor();
+    List<FutureTask<List<List<IN>>>> tasks = new ArrayList<>();
+    for (int g = 1; g < groups.size(); g++) {
+      int group = g;
+      FutureTask<List<List<IN>>> task = new FutureTask<>(() -> classifyGroup(group, tokens));
+      tasks.add(task);
+      executor.execute(task);
+    }
+
+    List<List<List<IN>>> groupOutputs = new ArrayList<>();
+    try {
+      groupOutputs.add(classifyGroup(0, tokens));
+      for (FutureTask<List<List<IN>>> task : tasks) {
+        task.run();  // does nothing if a pool thread has already started it
+        groupOutputs.add(task.get());
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      for (FutureTask<List<List<IN>>> task : tasks) {
+        task.cancel(true);  // only has an effect if we gave up early
+      }
+    }
+    return ungroup(groupOutputs);
+  }
+
+  /** The pool which runs base classifiers in parallel; package-private so that tests can keep its threads busy. */
+  static synchronized ExecutorService parallelExecutor() {
+    if (parallelExecutor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      parallelExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "ClassifierCombiner-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return parallelExecutor;
+  }
+
 
   @SuppressWarnings("unchecked")
   @Override
@@ -196,7 +196,8 @@ public class NERClassifierCombiner extends ClassifierCombiner<CoreLabel>  {
 
   public static final Set<String> DEFAULT_PASS_DOWN_PROPERTIES =
           CollectionUtils.asSet("encoding", "inputEncoding", "outputEncoding", "maxAdditionalKnownLCWords","map",
-                  "ner.combinationMode", "ner.usePresetNERTags");
+                  "ner.combinationMode", "ner.usePresetNERTags", ClassifierCombiner.PARALLEL_CLASSIFIERS_PROPERTY,
+                  ClassifierCombiner.SHARE_FEATURES_PROPERTY);
 
   /** This factory method is used to create the NERClassifierCombiner used in NERCombinerAnnotator
    *  (and, thence, in StanfordCoreNLP).
@@ -36,6 +36,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +51,7 @@ import edu.stanford.nlp.process.WordShapeClassifier;
 import edu.stanford.nlp.sequences.Clique;
 import edu.stanford.nlp.sequences.CoNLLDocumentReaderAndWriter;
 import edu.stanford.nlp.sequences.FeatureFactory;
+import edu.stanford.nlp.sequences.FeatureHashTable;
 import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.trees.international.pennchinese.RadicalMap;
 import edu.stanford.nlp.util.Generics;
@@ -398,6 +400,27 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
   @Override
   public Collection<String> getCliqueFeatures(PaddedList<IN> cInfo, int loc, Clique clique) {
     Collection<String> features = Generics.newHashSet();
+    cliqueFeatures(cInfo, loc, clique, (c, suffix) -> addAllInterningAndSuffixing(features, c, suffix));
+    // log.info(StringUtils.join(features,"\n")+"\n");
+    return features;
+  }
+
+  /**
+   * Hashes the features at a certain index, without building the suffixed feature Strings.
+   *
+   * @param cInfo The complete data set as a List of WordInfo
+   * @param loc  The index at which to extract features.
+   */
+  @Override
+  public void addCliqueFeatureHashes(PaddedList<IN> cInfo, int loc, Clique clique, FeatureHashTable.Hashes hashes) {
+    cliqueFeatures(cInfo, loc, clique, (c, suffix) -> addAllSuffixedHashes(hashes, c, suffix));
+  }
+
+  /**
+   * Extracts the base features for a clique, and passes each collection of them to {@code sink}
+   * along with the suffix to add to them.
+   */
+  private void cliqueFeatures(PaddedList<IN> cInfo, int loc, Clique clique, BiConsumer<Collection<String>, String> sink) {
     String domain = cInfo.get(0).get(CoreAnnotations.DomainAnnotation.class);
     final boolean doFE = domain != null;
 
@@ -413,9 +436,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     } else if (clique == cliqueCpC) {
       c = featuresCpC(cInfo, loc);
       suffix = "CpC";
-      addAllInterningAndSuffixing(features, c, suffix);
+      sink.accept(c, suffix);
       if (doFE) {
-        addAllInterningAndSuffixing(features, c, domain + '-' + suffix);
+        sink.accept(c, domain + '-' + suffix);
       }
       c = featuresCnC(cInfo, loc-1);
       suffix = "CnC";
@@ -434,9 +457,9 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     } else if (clique == cliqueCpCp2C) {
       c = featuresCpCp2C(cInfo, loc);
       suffix = "CpCp2C";
-      addAllInterningAndSuffixing(features, c, suffix);
+      sink.accept(c, suffix);
       if (doFE) {
-        addAllInterningAndSuffixing(features, c, domain+ '-' + suffix);
+        sink.accept(c, domain+ '-' + suffix);
       }
       c = featuresCpCnC(cInfo, loc-1);
       suffix = "CpCnC";
@@ -450,13 +473,10 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
       throw new IllegalArgumentException("Unknown clique: " + clique);
     }
 
-    addAllInterningAndSuffixing(features, c, suffix);
+    sink.accept(c, suffix);
     if (doFE) {
-      addAllInterningAndSuffixing(features, c, domain + '-' + suffix);
+      sink.accept(c, domain + '-' + suffix);
     }
-
-    // log.info(StringUtils.join(features,"\n")+"\n");
-    return features;
   }
 
 
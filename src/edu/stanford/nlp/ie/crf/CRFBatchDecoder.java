@@ -0,0 +1,207 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.math.SloppyMath;
+import edu.stanford.nlp.util.Index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the best label sequences of many sentences with Viterbi decoding over flat arrays of clique potentials.
+ *
+ * This gives the same answers as building a calibrated {@link CRFCliqueTree} for each sentence and running
+ * {@link edu.stanford.nlp.sequences.ExactBestSequenceFinder} over a {@link TestSequenceModel}, since the best
+ * sequence under the conditional probabilities of the calibrated tree is the one with the highest total
+ * clique potential.  But it skips the calibration, which is only needed for marginals, and it allocates no
+ * {@link FactorTable}s: the potentials of each sentence are packed into one {@code double[]}, with
+ * {@code numClasses^window} entries per position, and that array and the Viterbi scratch arrays are reused
+ * from one sentence to the next.
+ *
+ * As in the clique tree, labels before the start of a sentence are the background label, and a labeling of
+ * a clique which was never seen in training has a potential of negative infinity.
+ *
+ * A decoder is not threadsafe; {@link CRFClassifier} keeps one for each thread.
+ */
+public class CRFBatchDecoder {
+
+  private final List<Index<CRFLabel>> labelIndices;
+  private final CliquePotentialFunction potentialFunction;
+  private final int numClasses;
+  private final int backgroundIndex;
+  private final int window;
+  /** The number of labelings of a whole clique, numClasses^window. */
+  private final int numTuples;
+  /** The number of Viterbi states, the labelings of the previous window - 1 positions. */
+  private final int numStates;
+  /** The state before the start of a sentence, where every previous label is the background label. */
+  private final int startState;
+  /** For each clique size, the labelings of the clique in labelIndices, encoded as base numClasses numbers, earliest label first. */
+  private final int[][] labelCodes;
+
+  // Scratch space, reused between sentences
+  /** The potential of each labeling at each position. */
+  private double[] potentials = new double[0];
+  /** The potential of each labeling of a clique of each size, at one position. */
+  private final double[][] cliquePotentials;
+  private double[] scores;
+  private double[] nextScores;
+  /** The labeling of the window which gets to each state at each position with the best score. */
+  private int[] backPointers = new int[0];
+
+  public CRFBatchDecoder(List<Index<CRFLabel>> labelIndices, int numClasses, int backgroundIndex,
+                         CliquePotentialFunction potentialFunction) {
+    this.labelIndices = labelIndices;
+    this.potentialFunction = potentialFunction;
+    this.numClasses = numClasses;
+    this.backgroundIndex = backgroundIndex;
+    this.window = labelIndices.size();
+    this.numTuples = SloppyMath.intPow(numClasses, window);
+    this.numStates = numTuples / numClasses;
+    int state = 0;
+    for (int i = 0; i < window - 1; i++) {
+      state = state * numClasses + backgroundIndex;
+    }
+    this.startState = state;
+    labelCodes = new int[window][];
+    cliquePotentials = new double[window][];
+    for (int k = 0; k < window; k++) {
+      Index<CRFLabel> labelIndex = labelIndices.get(k);
+      labelCodes[k] = new int[labelIndex.size()];
+      for (int li = 0; li < labelCodes[k].length; li++) {
+        int code = 0;
+        for (int label : labelIndex.get(li).getLabel()) {
+          code = code * numClasses + label;
+        }
+        labelCodes[k][li] = code;
+      }
+      cliquePotentials[k] = new double[SloppyMath.intPow(numClasses, k + 1)];
+    }
+    scores = new double[numStates];
+    nextScores = new double[numStates];
+  }
+
+  /** Whether this decoder was made with these arguments, so that it can be used in place of a new one made with them. */
+  boolean isFor(List<Index<CRFLabel>> labelIndices, int numClasses, int backgroundIndex,
+                CliquePotentialFunction potentialFunction) {
+    return this.labelIndices == labelIndices && this.numClasses == numClasses &&
+        this.backgroundIndex == backgroundIndex && this.potentialFunction == potentialFunction;
+  }
+
+  /**
+   * Find the best labels of each of a batch of sentences.
+   *
+   * @param data The features of each sentence, as made by {@link CRFClassifier#documentToDataAndLabels(List)}
+   * @param featureVals The feature values of each sentence, or null if there are none
+   * @param allowedLabels The labels allowed at each position of each sentence, or null if all are allowed
+   * @return The best labels of each sentence, or null for a sentence none of whose labelings is possible
+   */
+  public int[][] bestSequences(List<int[][][]> data, List<double[][][]> featureVals, List<int[][]> allowedLabels) {
+    int[][] best = new int[data.size()][];
+    for (int s = 0; s < best.length; s++) {
+      best[s] = bestSequence(data.get(s), featureVals == null ? null : featureVals.get(s),
+          allowedLabels == null ? null : allowedLabels.get(s));
+    }
+    return best;
+  }
+
+  /**
+   * Find the best labels of one sentence.
+   *
+   * @param data The features of the sentence, as made by {@link CRFClassifier#documentToDataAndLabels(List)}
+   * @param featureVals The feature values of the sentence, or null if there are none
+   * @param allowedLabels The labels allowed at each position, or null if all are allowed.
+   *                      An element may also be null if all labels are allowed there.
+   * @return The best labels, or null if no labeling is possible
+   */
+  public int[] bestSequence(int[][][] data, double[][][] featureVals, int[][] allowedLabels) {
+    int length = data.length;
+    if (length == 0) {
+      return new int[0];
+    }
+    fillPotentials(data, featureVals);
+
+    if (backPointers.length < length * numStates) {
+      backPointers = new int[Math.max(length * numStates, 2 * backPointers.length)];
+    }
+    Arrays.fill(scores, Double.NEGATIVE_INFINITY);
+    scores[startState] = 0.0;
+    for (int i = 0; i < length; i++) {
+      Arrays.fill(nextScores, Double.NEGATIVE_INFINITY);
+      int[] allowed = allowedLabels == null ? null : allowedLabels[i];
+      int numAllowed = allowed == null ? numClasses : allowed.length;
+      int base = i * numTuples;
+      int backBase = i * numStates;
+      for (int state = 0; state < numStates; state++) {
+        double score = scores[state];
+        if (score == Double.NEGATIVE_INFINITY) {
+          continue;
+        }
+        for (int a = 0; a < numAllowed; a++) {
+          int label = allowed == null ? a : allowed[a];
+          int tuple = state * numClasses + label;
+          double next = score + potentials[base + tuple];
+          int nextState = tuple % numStates;
+          if (next > nextScores[nextState]) {
+            nextScores[nextState] = next;
+            backPointers[backBase + nextState] = tuple;
+          }
+        }
+      }
+      double[] tmp = scores;
+      scores = nextScores;
+      nextScores = tmp;
+    }
+
+    int bestState = -1;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (int state = 0; state < numStates; state++) {
+      if (scores[state] > bestScore) {
+        bestScore = scores[state];
+        bestState = state;
+      }
+    }
+    if (bestState < 0) {
+      return null;
+    }
+    // A labeling of the window is the previous state followed by the label at i
+    int[] labels = new int[length];
+    int state = bestState;
+    for (int i = length - 1; i >= 0; i--) {
+      int tuple = backPointers[i * numStates + state];
+      labels[i] = tuple % numClasses;
+      state = tuple / numClasses;
+    }
+    return labels;
+  }
+
+  /** Pack the potential of every labeling of the window at every position into potentials. */
+  private void fillPotentials(int[][][] data, double[][][] featureVals) {
+    int length = data.length;
+    if (potentials.length < length * numTuples) {
+      potentials = new double[Math.max(length * numTuples, 2 * potentials.length)];
+    }
+    for (int i = 0; i < length; i++) {
+      for (int k = 0; k < window; k++) {
+        double[] cliquePotential = cliquePotentials[k];
+        Arrays.fill(cliquePotential, Double.NEGATIVE_INFINITY);
+        int[] codes = labelCodes[k];
+        double[] featureVal = featureVals == null || featureVals[i] == null ? null : featureVals[i][k];
+        for (int li = 0; li < codes.length; li++) {
+          cliquePotential[codes[li]] = potentialFunction.computeCliquePotential(k + 1, li, data[i][k], featureVal, i);
+        }
+      }
+      // The potential of a labeling of the window adds up the potentials of the cliques which end at position i
+      int base = i * numTuples;
+      for (int tuple = 0; tuple < numTuples; tuple++) {
+        double potential = 0.0;
+        int size = numClasses;
+        for (int k = 0; k < window; k++) {
+          potential += cliquePotentials[k][tuple % size];
+          size *= numClasses;
+        }
+        potentials[base + tuple] = potential;
+      }
+    }
+  }
+
+}
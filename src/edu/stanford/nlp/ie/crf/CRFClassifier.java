@@ -31,7 +31,9 @@ import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.math.ArrayMath;
+import edu.stanford.nlp.math.CompactWeights;
 import edu.stanford.nlp.objectbank.ObjectBank;
 import edu.stanford.nlp.optimization.*;
 import edu.stanford.nlp.optimization.Function;
@@ -44,6 +46,10 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
@@ -140,11 +146,19 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   /** Parameter weights of the classifier.  weights[featureIndex][labelIndex] */
   double[][] weights;
+  /** The weights, when they are stored compactly for tagging in place of {@link #weights}; see {@link #compactWeights(CompactWeights.Precision)} */
+  CompactWeights compactWeights; // = null;
 
   /** index the features of CRF */
   Index<String> featureIndex;
   /** caches the featureIndex */
   int[] map;
+  /** Looks up features by their hashes when {@link SeqClassifierFlags#hashedFeatures} is set; built from featureIndex when first needed */
+  private transient volatile FeatureHashTable featureHashTable; // = null;
+  /** The featureIndex, and its size then, if some of its features had the same hash, so that they can't be hashed */
+  private transient volatile Pair<Index<String>, Integer> collidingFeatureIndex; // = null;
+  /** Each thread's decoder, so that its scratch arrays are reused from one sentence to the next; see {@link #batchDecoder()} */
+  private final ThreadLocal<CRFBatchDecoder> batchDecoders = new ThreadLocal<>();
   Random random = new Random(2147483647L);
   Index<Integer> nodeFeatureIndicesMap;
   Index<Integer> edgeFeatureIndicesMap;
@@ -155,6 +169,10 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * Name of default serialized classifier resource to look for in a jar file.
    */
   public static final String DEFAULT_CLASSIFIER = "edu/stanford/nlp/models/ner/english.all.3class.distsim.crf.ser.gz";
+
+  /** The first bytes of a classifier written by {@link #serializeMappedClassifier(String)}: "CRFMMAP1". */
+  private static final long MAPPED_MAGIC = 0x4352464d4d415031L;
+  private static final int MAPPED_VERSION = 1;
   private static final boolean VERBOSE = false;
 
   /**
@@ -214,6 +232,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * @return number of weights
    */
   public int getNumWeights() {
+    if (compactWeights != null) return compactWeights.size();
     if (weights == null) return 0;
     int numWeights = 0;
     for (double[] wts : weights) {
@@ -264,6 +283,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    * @param scale The scale to multiply by
    */
   public void scaleWeights(double scale) {
+    expandWeights();
     for (int i = 0; i < weights.length; i++) {
       for (int j = 0; j < weights[i].length; j++) {
         weights[i][j] *= scale;
@@ -349,6 +369,8 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    */
   public void combine(CRFClassifier<IN> crf, double weight) {
     Timing timer = new Timing();
+    expandWeights();
+    crf.expandWeights();
 
     // Check the CRFClassifiers are compatible
     if (!this.pad.equals(crf.pad)) {
@@ -391,6 +413,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void dropFeaturesBelowThreshold(double threshold) {
+    expandWeights();
     Index<String> newFeatureIndex = new HashIndex<>();
     for (int i = 0; i < weights.length; i++) {
       double smallest = weights[i][0];
@@ -447,6 +470,19 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       Collections.reverse(document);
     }
 
+    FeatureHashTable hashTable = flags.hashedFeatures && canHashFeatures() ? featureHashTable() : null;
+    if (hashTable != null) {
+      data = hashedData(document, hashTable);
+      for (int j = 0; j < docSize; j++) {
+        IN wi = document.get(j);
+        labels[j] = classIndex.indexOf(wi.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+      if (flags.useReverse) {
+        Collections.reverse(document);
+      }
+      return new Triple<>(data, labels, featureVals);
+    }
+
     // log.info("docSize:"+docSize);
     for (int j = 0; j < docSize; j++) {
       CRFDatum<List<String>, CRFLabel> d = makeDatum(document, j, featureFactories);
@@ -493,6 +529,131 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     return new Triple<>(data, labels, featureVals);
   }
 
+  /**
+   * Whether features can be looked up by their hashes rather than through {@link #makeDatum(List, int, List)},
+   * as {@link #documentToDataAndLabels(List)} does if {@link SeqClassifierFlags#hashedFeatures} is set.
+   * Subclasses which change how datums are made should return false.
+   */
+  protected boolean canHashFeatures() {
+    return ! flags.useEmbedding && flags.printFeatures == null;
+  }
+
+  /** The hash table of the current featureIndex, or null if it can't be used. */
+  private FeatureHashTable featureHashTable() {
+    FeatureHashTable table = featureHashTable;
+    if (table == null || ! table.isFor(featureIndex)) {
+      Pair<Index<String>, Integer> colliding = collidingFeatureIndex;
+      if (colliding != null && colliding.first() == featureIndex && colliding.second() == featureIndex.size()) {
+        return null;
+      }
+      table = FeatureHashTable.of(featureIndex);
+      if (table == null) {
+        // only this classifier falls back; the flags may be shared, and are saved with the model
+        log.warn("Some features of the classifier have the same hash; looking up features by their Strings instead");
+        collidingFeatureIndex = new Pair<>(featureIndex, featureIndex.size());
+      }
+      featureHashTable = table;
+    }
+    return table;
+  }
+
+  /**
+   * The features at each position of the document, as in {@link #documentToDataAndLabels(List)},
+   * but looked up by their hashes in the given table rather than in the featureIndex.
+   * This is how {@link CRFModelBundle} extracts features once for several classifiers.
+   */
+  int[][][] documentToHashedData(List<IN> document, FeatureHashTable table) {
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+    int[][][] data = hashedData(document, table);
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+    return data;
+  }
+
+  /** For {@link CRFModelBundle}: the tokens as {@link #classifySentence(List)} would classify them. */
+  List<IN> preprocess(List<? extends HasWord> tokens) {
+    return preprocessTokens(tokens);
+  }
+
+  /** For {@link CRFModelBundle}: a copy of a token. */
+  IN copy(IN token) {
+    return copyToken(token);
+  }
+
+  /** For {@link CRFModelBundle}: the lowercase words whose word shapes are treated as known. */
+  Set<String> knownLCWords() {
+    return knownLCWords;
+  }
+
+  /** The features at each position of the document, which is already reversed if need be. */
+  private int[][][] hashedData(List<IN> document, FeatureHashTable table) {
+    int[][][] data = new int[document.size()][windowSize][];
+    PaddedList<IN> pInfo = new PaddedList<>(document, pad);
+    List<List<Clique>> cliques = windowCliques();
+    FeatureHashTable.Hashes hashes = new FeatureHashTable.Hashes();
+    for (int j = 0; j < data.length; j++) {
+      for (int k = 0; k < windowSize; k++) {
+        data[j][k] = hashedFeatures(pInfo, j, cliques.get(k), table, hashes);
+      }
+    }
+    return data;
+  }
+
+  /** The cliques whose features go in each position of the window, as in {@link #makeDatum(List, int, List)}. */
+  private List<List<Clique>> windowCliques() {
+    List<List<Clique>> cliques = new ArrayList<>(windowSize);
+    Collection<Clique> done = Generics.newHashSet();
+    for (int i = 0; i < windowSize; i++) {
+      List<Clique> windowCliques = FeatureFactory.getCliques(i, 0);
+      windowCliques.removeAll(done);
+      done.addAll(windowCliques);
+      cliques.add(windowCliques);
+    }
+    return cliques;
+  }
+
+  /**
+   * The indices of the features of the given cliques at a position, found by hashing the features
+   * rather than building their Strings.  These are the same features as
+   * {@link #makeDatum(List, int, List)} finds, though not necessarily in the same order.
+   */
+  private int[] hashedFeatures(PaddedList<IN> pInfo, int loc, List<Clique> cliques,
+                               FeatureHashTable table, FeatureHashTable.Hashes hashes) {
+    int[] features = new int[32];
+    int n = 0;
+    for (Clique c : cliques) {
+      for (FeatureFactory<IN> featureFactory : featureFactories) {
+        hashes.clear();
+        featureFactory.addCliqueFeatureHashes(pInfo, loc, c, hashes);
+        int start = n;
+        for (int m = 0, size = hashes.size(); m < size; m++) {
+          int index = table.indexOf(hashes.get(m));
+          if (index >= 0) {
+            if (n == features.length) {
+              features = Arrays.copyOf(features, 2 * n);
+            }
+            features[n++] = index;
+          } else {
+            // this is where we end up when we do feature threshold cutoffs
+          }
+        }
+        // getCliqueFeatures returns each feature once, so drop the repeats
+        Arrays.sort(features, start, n);
+        int end = start;
+        for (int m = start; m < n; m++) {
+          if (end == start || features[m] != features[end - 1]) {
+            features[end++] = features[m];
+          }
+        }
+        n = end;
+      }
+    }
+    return Arrays.copyOf(features, n);
+  }
+
   private int[][][] transformDocData(int[][][] docData) {
     int[][][] transData = new int[docData.length][][];
     for (int i = 0; i < docData.length; i++) {
@@ -564,7 +725,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
               double[] values = new double[labelIndices.get(0).size()];
               for (CRFLabel label : labelIndices.get(k)) {
                 int[] l = label.getLabel();
-                double v = weights[index][labelIndices.get(k).indexOf(label)];
+                double v = weight(index, labelIndices.get(k).indexOf(label));
                 values[l[l.length - 1 - p]] += v;
               }
               for (double value : values) {
@@ -1193,11 +1354,58 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   protected CliquePotentialFunction getCliquePotentialFunctionForTest() {
     if (cliquePotentialFunction == null) {
-      cliquePotentialFunction = new LinearCliquePotentialFunction(weights);
+      cliquePotentialFunction = compactWeights != null ? new CompactLinearCliquePotentialFunction(compactWeights) :
+          new LinearCliquePotentialFunction(weights);
     }
     return cliquePotentialFunction;
   }
 
+  /**
+   * Store the weights at the given precision for tagging, in place of the double weights, to save memory.
+   * With less than double precision, the weights are only approximately those that were trained, so the
+   * answers may differ slightly.  Methods which change the weights (such as {@link #combine(CRFClassifier, double)})
+   * first turn them back into doubles, at the stored precision.
+   */
+  public void compactWeights(CompactWeights.Precision precision) {
+    if (precision == CompactWeights.Precision.DOUBLE) {
+      expandWeights();
+      return;
+    }
+    double[][] w = weights();
+    if (w == null || (compactWeights != null && compactWeights.precision() == precision)) {
+      return;
+    }
+    compactWeights = CompactWeights.of(w, precision);
+    weights = null;
+    cliquePotentialFunction = null;
+  }
+
+  /** Store the weights at the precision given by {@link SeqClassifierFlags#weightPrecision}. */
+  private void applyWeightPrecision() {
+    if (flags.weightPrecision != null) {
+      compactWeights(CompactWeights.Precision.fromString(flags.weightPrecision));
+    }
+  }
+
+  /** Turn compactly stored weights back into doubles, so that they can be changed. */
+  void expandWeights() {
+    if (compactWeights != null) {
+      weights = compactWeights.toArrays();
+      compactWeights = null;
+      cliquePotentialFunction = null;
+    }
+  }
+
+  /** The weights as doubles, which is a new copy if they are stored compactly. */
+  double[][] weights() {
+    return compactWeights != null ? compactWeights.toArrays() : weights;
+  }
+
+  /** One weight, however the weights are stored. */
+  double weight(int feature, int labelIndex) {
+    return compactWeights != null ? compactWeights.get(feature, labelIndex) : weights[feature][labelIndex];
+  }
+
   public void updateWeightsForTest(double[] x) {
     cliquePotentialFunction = cliquePotentialFunctionHelper.getCliquePotentialFunction(x);
   }
@@ -1214,19 +1422,94 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     if (document.isEmpty()) {
       return document;
     }
+    if (useBatchDecoder()) {
+      return classifyMaxEnt(document, documentToDataAndLabels(document));
+    }
 
     SequenceModel model = getSequenceModel(document);
     return classifyMaxEnt(document, model);
   }
 
   private List<IN> classifyMaxEnt(List<IN> document, Triple<int[][][], int[], double[][][]> documentDataAndLabels) {
+    return classifyMaxEnt(document, documentDataAndLabels, useBatchDecoder() ? batchDecoder() : null);
+  }
+
+  List<IN> classifyMaxEnt(List<IN> document, Triple<int[][][], int[], double[][][]> documentDataAndLabels,
+                          CRFBatchDecoder decoder) {
     if (document.isEmpty()) {
       return document;
     }
+    if (decoder != null) {
+      int[] bestSequence = decoder.bestSequence(documentDataAndLabels.first(), documentDataAndLabels.third(),
+          allowedLabels(document));
+      if (bestSequence != null) {
+        setAnswers(document, bestSequence, 0);
+        return document;
+      }
+      // no labeling is possible, so let the usual inference decide what to do
+    }
     SequenceModel model = getSequenceModel(documentDataAndLabels, document);
     return classifyMaxEnt(document, model);
   }
 
+  /**
+   * Classify a batch of documents (usually sentences) with Viterbi inference.
+   * This is the same as classifying each of them with {@link #classifyMaxEnt(List)}, which also decodes them
+   * all with this thread's {@link CRFBatchDecoder}.
+   *
+   * @param documents Documents to classify. Classification happens in place.
+   * @return The classified documents
+   */
+  public List<List<IN>> classifyBatch(Collection<List<IN>> documents) {
+    CRFBatchDecoder decoder = useBatchDecoder() ? batchDecoder() : null;
+    List<List<IN>> classified = new ArrayList<>(documents.size());
+    for (List<IN> document : documents) {
+      if (decoder == null) {
+        classified.add(classifyMaxEnt(document));
+      } else {
+        classified.add(classifyMaxEnt(document, documentToDataAndLabels(document), decoder));
+      }
+    }
+    return classified;
+  }
+
+  /**
+   * Whether Viterbi inference can be done by a {@link CRFBatchDecoder} rather than over a calibrated
+   * {@link CRFCliqueTree}.  The answers are the same, but the decoder is faster.
+   */
+  boolean useBatchDecoder() {
+    return flags.inferenceType == null || flags.inferenceType.equalsIgnoreCase("Viterbi");
+  }
+
+  /**
+   * The decoder of the current thread, which reuses its potential, score and backpointer arrays from one sentence
+   * to the next.  A new one is made when the classifier's potential function (and so its weights) or labels change.
+   */
+  CRFBatchDecoder batchDecoder() {
+    CliquePotentialFunction potentials = getCliquePotentialFunctionForTest();
+    int numClasses = classIndex.size();
+    int backgroundIndex = classIndex.indexOf(flags.backgroundSymbol);
+    CRFBatchDecoder decoder = batchDecoders.get();
+    if (decoder == null || ! decoder.isFor(labelIndices, numClasses, backgroundIndex, potentials)) {
+      decoder = new CRFBatchDecoder(labelIndices, numClasses, backgroundIndex, potentials);
+      batchDecoders.set(decoder);
+    }
+    return decoder;
+  }
+
+  /** The labels allowed at each position of the document by the label dictionary, as in {@link TestSequenceModel}. */
+  private int[][] allowedLabels(List<IN> document) {
+    if (labelDictionary == null) {
+      return null;
+    }
+    int[][] allowed = new int[document.size()][];
+    for (int i = 0; i < allowed.length; i++) {
+      String observation = document.get(i).get(CoreAnnotations.TextAnnotation.class);
+      allowed[i] = labelDictionary.isConstrained(observation) ? labelDictionary.getConstrainedSet(observation) : null;
+    }
+    return allowed;
+  }
+
   private List<IN> classifyMaxEnt(List<IN> document, SequenceModel model) {
     if (document.isEmpty()) {
       return document;
@@ -1246,19 +1529,27 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     }
 
     int[] bestSequence = tagInference.bestSequence(model);
+    setAnswers(document, bestSequence, windowSize - 1);
+    return document;
+  }
 
+  /**
+   * Set the answers of a document from the best sequence of labels.
+   *
+   * @param offset Where the labels of the document start in the sequence, after any padding
+   */
+  private void setAnswers(List<IN> document, int[] bestSequence, int offset) {
     if (flags.useReverse) {
       Collections.reverse(document);
     }
     for (int j = 0, docSize = document.size(); j < docSize; j++) {
       IN wi = document.get(j);
-      String guess = classIndex.get(bestSequence[j + windowSize - 1]);
+      String guess = classIndex.get(bestSequence[j + offset]);
       wi.set(CoreAnnotations.AnswerAnnotation.class, guess);
     }
     if (flags.useReverse) {
       Collections.reverse(document);
     }
-    return document;
   }
 
   public List<IN> classifyGibbs(List<IN> document) throws ClassNotFoundException, SecurityException,
@@ -2381,6 +2672,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
     pw.printf("<windowSize> %d </windowSize>%n", windowSize);
 
+    double[][] weights = weights();
     pw.printf("weights.length=\t%d%n", weights.length);
     for (double[] ws : weights) {
       ArrayList<Double> list = new ArrayList<>();
@@ -2444,7 +2736,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     ObjectOutputStream oos = null;
     try {
       oos = IOUtils.writeStreamFromString(serializePath);
-      oos.writeObject(weights);
+      oos.writeObject(weights());
       log.info("Serializing weights to " + serializePath + "... done.");
     } catch (Exception e) {
       log.info("Serializing weights to " + serializePath + "... FAILED.", e);
@@ -2527,6 +2819,14 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    */
   @Override
   public void serializeClassifier(ObjectOutputStream oos) {
+    serializeClassifier(oos, featureIndex, weights());
+  }
+
+  /**
+   * Serialize the classifier, but with the given feature index and weights in place of the classifier's own.
+   * {@link #serializeMappedClassifier(String)} passes nulls here, as it writes these separately.
+   */
+  private void serializeClassifier(ObjectOutputStream oos, Index<String> featureIndex, double[][] weights) {
     try {
       oos.writeObject(labelIndices);
       oos.writeObject(classIndex);
@@ -2618,6 +2918,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
     windowSize = ois.readInt();
     weights = (double[][]) ois.readObject();
+    compactWeights = null;
 
     // WordShapeClassifier.setKnownLowerCaseWords((Set) ois.readObject());
     Set<String> lcWords = (Set<String>) ois.readObject();
@@ -2632,6 +2933,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     if (flags.labelDictionaryCutoff > 0) {
       labelDictionary = (LabelDictionary) ois.readObject();
     }
+    applyWeightPrecision();
 
     if (VERBOSE) {
       log.info("windowSize=" + windowSize);
@@ -2639,6 +2941,143 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     }
   }
 
+  /**
+   * Serialize the classifier in a format which can be memory-mapped rather than deserialized;
+   * see {@link #loadMappedClassifier(File, Properties)}.
+   * The file is not compressed, since it must be mapped directly.
+   * The feature index is written as a {@link MappedStringIndex}, the weights as a flat array of doubles,
+   * and everything else with Java serialization as in {@link #serializeClassifier(ObjectOutputStream)}.
+   *
+   * @param serializePath The file to write the classifier to.
+   * @throws UnsupportedOperationException If this is a subclass of CRFClassifier, which may have other state
+   */
+  public void serializeMappedClassifier(String serializePath) {
+    if (getClass() != CRFClassifier.class) {
+      throw new UnsupportedOperationException("Mapped classifiers are not supported for " + getClass().getSimpleName());
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(serializePath)))) {
+      ByteArrayOutputStream meta = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(meta)) {
+        serializeClassifier(oos, null, null);
+      }
+      out.writeLong(MAPPED_MAGIC);
+      out.writeInt(MAPPED_VERSION);
+      out.writeInt(meta.size());
+      meta.writeTo(out);
+
+      ByteArrayOutputStream index = new ByteArrayOutputStream();
+      DataOutputStream indexOut = new DataOutputStream(index);
+      MappedStringIndex.write(featureIndex, indexOut);
+      indexOut.flush();
+      out.writeLong(index.size());
+      index.writeTo(out);
+
+      double[][] weights = weights();
+      out.writeInt(weights.length);
+      for (double[] row : weights) {
+        out.writeInt(row.length);
+      }
+      for (double[] row : weights) {
+        for (double w : row) {
+          out.writeDouble(w);
+        }
+      }
+      log.info("Serializing mapped classifier to " + serializePath + "... done.");
+    } catch (IOException e) {
+      throw new RuntimeIOException("Serializing mapped classifier to " + serializePath + "... FAILED", e);
+    }
+  }
+
+  /** Whether the given file was written by {@link #serializeMappedClassifier(String)}. */
+  public static boolean isMappedClassifier(File file) {
+    if ( ! file.isFile() || file.length() < 16) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readLong() == MAPPED_MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Load a classifier written by {@link #serializeMappedClassifier(String)}.
+   * The feature index, usually the bulk of a CRF model, stays in the mapped file as a
+   * {@link MappedStringIndex}, so it takes no time to load and its pages are shared by every
+   * process using the same model file.
+   * The weights are copied from the mapping into ordinary arrays in one bulk read, since all of the
+   * inference code indexes them directly; this is still much faster than deserializing them.
+   *
+   * @param file The file to load; this must be on the file system, not in a jar.
+   * @param props Properties which override those of the classifier, as in {@link #loadClassifier(ObjectInputStream, Properties)}
+   */
+  public void loadMappedClassifier(File file, Properties props) throws IOException, ClassCastException, ClassNotFoundException {
+    Timing t = new Timing();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 16);
+      if (header.getLong() != MAPPED_MAGIC) {
+        throw new IOException(file + " is not a mapped classifier");
+      }
+      int version = header.getInt();
+      if (version != MAPPED_VERSION) {
+        throw new IOException("Unsupported mapped classifier version " + version + " in " + file);
+      }
+      int metaLength = header.getInt();
+      byte[] meta = new byte[metaLength];
+      channel.map(FileChannel.MapMode.READ_ONLY, 16, metaLength).get(meta);
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(meta))) {
+        loadClassifier(ois, props);
+      }
+      long position = 16 + metaLength;
+
+      long indexLength = channel.map(FileChannel.MapMode.READ_ONLY, position, 8).getLong();
+      position += 8;
+      featureIndex = new MappedStringIndex(channel.map(FileChannel.MapMode.READ_ONLY, position, indexLength));
+      position += indexLength;
+
+      ByteBuffer weightBuffer = channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+      double[][] w = new double[weightBuffer.getInt()][];
+      for (int i = 0; i < w.length; i++) {
+        w[i] = new double[weightBuffer.getInt()];
+      }
+      DoubleBuffer values = weightBuffer.asDoubleBuffer();
+      for (double[] row : w) {
+        values.get(row);
+      }
+      weights = w;
+    }
+    applyWeightPrecision();
+    t.done(log, "Loading mapped classifier from " + file.getAbsolutePath());
+  }
+
+  /**
+   * {@inheritDoc}
+   * Classifiers written by {@link #serializeMappedClassifier(String)} are recognized and memory-mapped,
+   * as long as they are on the file system.
+   */
+  @Override
+  public void loadClassifier(String loadPath, Properties props) throws ClassCastException, IOException, ClassNotFoundException {
+    File file = new File(loadPath);
+    if (isMappedClassifier(file)) {
+      loadMappedClassifier(file, props);
+    } else {
+      super.loadClassifier(loadPath, props);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * Classifiers written by {@link #serializeMappedClassifier(String)} are recognized and memory-mapped.
+   */
+  @Override
+  public void loadClassifier(File file, Properties props) throws ClassCastException, IOException, ClassNotFoundException {
+    if (isMappedClassifier(file)) {
+      loadMappedClassifier(file, props);
+    } else {
+      super.loadClassifier(file, props);
+    }
+  }
+
   /**
    * This is used to load the default supplied classifier stored within the jar
    * file. THIS FUNCTION WILL ONLY WORK IF THE CODE WAS LOADED FROM A JAR FILE
@@ -2740,6 +3179,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
   }
 
   public void writeWeights(PrintStream p) {
+    double[][] weights = weights();
     for (String feature : featureIndex) {
       int index = featureIndex.indexOf(feature);
       // line.add(feature+"["+(-p)+"]");
@@ -2757,6 +3197,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   public Map<String, Counter<String>> topWeights() {
     Map<String, Counter<String>> w = new HashMap<>();
+    double[][] weights = weights();
     for (String feature : featureIndex) {
       int index = featureIndex.indexOf(feature);
       // line.add(feature+"["+(-p)+"]");
@@ -3013,6 +3454,10 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       crf.serializeTextClassifier(serializeToText);
     }
 
+    if (crf.flags.serializeToMapped != null) {
+      crf.serializeMappedClassifier(crf.flags.serializeToMapped);
+    }
+
     if (testFile != null) {
       // todo: Change testFile to call testFiles with a singleton list
       DocumentReaderAndWriter<CoreLabel> readerAndWriter = crf.defaultReaderAndWriter();
@@ -452,6 +452,21 @@ public class CRFCliqueTree<E> implements ListeningSequenceModel  {
     }
   }
 
+  /**
+   * Gives the log probabilities of several tags at a single position conditioned on the windowSize - 1
+   * previous labels, which are read from {@code sequence} starting at {@code prevStart}.
+   * This is {@link #condLogProbGivenPrevious(int, int, int[])} for each tag, without allocating.
+   *
+   * @param position Index in sequence
+   * @param sequence Holds the previous labels
+   * @param prevStart Where the previous labels start in sequence
+   * @param labels The labels to give probabilities for
+   * @param scores Where to write the conditional log probability of each label
+   */
+  public void condLogProbsGivenPrevious(int position, int[] sequence, int prevStart, int[] labels, double[] scores) {
+    factorTables[position].conditionalLogProbsGivenPrevious(sequence, prevStart, labels, scores);
+  }
+
   public double condLogProbGivenPrevious(int position, E label, E[] prevLabels) {
     return condLogProbGivenPrevious(position, classIndex.indexOf(label), objectArrayToIntArray(prevLabels));
   }
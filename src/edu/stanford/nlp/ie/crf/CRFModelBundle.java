@@ -0,0 +1,163 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.sequences.FeatureFactory;
+import edu.stanford.nlp.sequences.FeatureHashTable;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.Triple;
+
+import java.util.*;
+
+/**
+ * Several {@link CRFClassifier}s which extract the same features, so that the features of a sentence can be
+ * extracted once and then scored by each of the classifiers.  This is useful when several models trained with the
+ * same feature flags but on different data or label sets (e.g., different entity types) label the same text,
+ * as in {@link edu.stanford.nlp.ie.ClassifierCombiner}.
+ *
+ * The feature indices of the classifiers are merged into one {@link FeatureHashTable} of the hashes of all their
+ * features, and each classifier gets a map from the merged features to its own.  The features of a sentence are
+ * extracted by the first classifier and looked up in the merged table, and each classifier then decodes the
+ * sentence from its share of them with its own weights.  The answers are the same as classifying the sentence
+ * with each classifier separately.
+ *
+ * Classifiers can only be bundled if {@link #canShareFeatures(CRFClassifier, CRFClassifier)} says so.
+ * A bundle is threadsafe if its classifiers are.
+ *
+ * @param <IN> The type of the tokens
+ */
+public class CRFModelBundle<IN extends CoreMap> {
+
+  private final List<CRFClassifier<IN>> classifiers;
+  /** The merged features of all the classifiers. */
+  private final FeatureHashTable features;
+  /** For each classifier, the index in its featureIndex of each merged feature, or -1 if it doesn't have it. */
+  private final int[][] classifierFeatures;
+
+  /**
+   * Bundle some classifiers.
+   *
+   * @throws IllegalArgumentException If the classifiers can't share features, or if two different features of
+   *     the classifiers have the same hash
+   */
+  public CRFModelBundle(List<CRFClassifier<IN>> classifiers) {
+    if (classifiers.isEmpty()) {
+      throw new IllegalArgumentException("A bundle needs at least one classifier");
+    }
+    for (CRFClassifier<IN> classifier : classifiers) {
+      if ( ! canShareFeatures(classifiers.get(0), classifier)) {
+        throw new IllegalArgumentException("Classifiers which extract different features can't be bundled");
+      }
+    }
+    this.classifiers = new ArrayList<>(classifiers);
+
+    long[][] hashes = new long[classifiers.size()][];
+    for (int c = 0; c < hashes.length; c++) {
+      Index<String> featureIndex = classifiers.get(c).featureIndex;
+      hashes[c] = new long[featureIndex.size()];
+      for (int f = 0; f < hashes[c].length; f++) {
+        hashes[c][f] = FeatureHashTable.hash(featureIndex.get(f));
+      }
+    }
+    long[] merged = Arrays.stream(hashes).flatMapToLong(Arrays::stream).sorted().distinct().toArray();
+    features = FeatureHashTable.of(merged);
+    classifierFeatures = new int[hashes.length][merged.length];
+    for (int c = 0; c < hashes.length; c++) {
+      Arrays.fill(classifierFeatures[c], -1);
+      for (int f = 0; f < hashes[c].length; f++) {
+        int m = features.indexOf(hashes[c][f]);
+        if (classifierFeatures[c][m] >= 0) {
+          throw new IllegalArgumentException("Two features of a classifier have the same hash: " +
+              classifiers.get(c).featureIndex.get(f) + " and " + classifiers.get(c).featureIndex.get(classifierFeatures[c][m]));
+        }
+        classifierFeatures[c][m] = f;
+      }
+    }
+  }
+
+  /**
+   * Whether two classifiers extract exactly the same features from any sentence, so that they can be bundled.
+   * This is so if they are plain CRFClassifiers doing Viterbi or beam inference with the same feature factories,
+   * the same flags and the same known lowercase words, and they don't learn new lowercase words while tagging.
+   */
+  public static boolean canShareFeatures(CRFClassifier<?> a, CRFClassifier<?> b) {
+    if (a == b) {
+      return a.getClass() == CRFClassifier.class && shareable(a);
+    }
+    if (a.getClass() != CRFClassifier.class || b.getClass() != CRFClassifier.class || ! shareable(a) || ! shareable(b)) {
+      return false;
+    }
+    if (a.featureFactories.size() != b.featureFactories.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.featureFactories.size(); i++) {
+      FeatureFactory<?> fa = a.featureFactories.get(i);
+      FeatureFactory<?> fb = b.featureFactories.get(i);
+      if (fa.getClass() != fb.getClass()) {
+        return false;
+      }
+    }
+    return a.flags.getNotNullTrueStringRep().equals(b.flags.getNotNullTrueStringRep()) &&
+        Objects.equals(a.knownLCWords(), b.knownLCWords());
+  }
+
+  private static boolean shareable(CRFClassifier<?> classifier) {
+    return classifier.canHashFeatures() && ! classifier.flags.doGibbs &&
+        classifier.flags.crfType.equalsIgnoreCase("maxent") && classifier.flags.maxAdditionalKnownLCWords == 0;
+  }
+
+  public List<CRFClassifier<IN>> classifiers() {
+    return Collections.unmodifiableList(classifiers);
+  }
+
+  /**
+   * Label a sentence with each of the classifiers.
+   * Like {@link CRFClassifier#classifySentence(List)}, this does not change the given tokens.
+   *
+   * @return For each classifier, a copy of the tokens with its answers
+   */
+  public List<List<IN>> classifySentence(List<? extends HasWord> tokens) {
+    CRFClassifier<IN> first = classifiers.get(0);
+    List<IN> document = first.preprocess(tokens);
+    int[][][] data = first.documentToHashedData(document, features);
+
+    List<List<IN>> outputs = new ArrayList<>(classifiers.size());
+    for (int c = 0; c < classifiers.size(); c++) {
+      List<IN> output = document;
+      if (c < classifiers.size() - 1) {
+        // all but the last classifier get a copy, so that they don't overwrite each other's answers
+        output = new ArrayList<>(document.size());
+        for (IN token : document) {
+          output.add(first.copy(token));
+        }
+      }
+      CRFClassifier<IN> classifier = classifiers.get(c);
+      Triple<int[][][], int[], double[][][]> classifierData = new Triple<>(classifierData(data, classifierFeatures[c]), null, null);
+      classifier.classifyMaxEnt(output, classifierData, classifier.useBatchDecoder() ? classifier.batchDecoder() : null);
+      outputs.add(output);
+    }
+    return outputs;
+  }
+
+  /** Map the merged features of a sentence to the features of one classifier, dropping those it doesn't have. */
+  private static int[][][] classifierData(int[][][] data, int[] featureMap) {
+    int[][][] classifierData = new int[data.length][][];
+    for (int i = 0; i < data.length; i++) {
+      classifierData[i] = new int[data[i].length][];
+      for (int k = 0; k < data[i].length; k++) {
+        int[] merged = data[i][k];
+        int[] mapped = new int[merged.length];
+        int n = 0;
+        for (int m : merged) {
+          int f = featureMap[m];
+          if (f >= 0) {
+            mapped[n++] = f;
+          }
+        }
+        classifierData[i][k] = n == mapped.length ? mapped : Arrays.copyOf(mapped, n);
+      }
+    }
+    return classifierData;
+  }
+
+}
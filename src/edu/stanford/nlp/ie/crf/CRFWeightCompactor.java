@@ -0,0 +1,107 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.math.CompactWeights;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Triple;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Converts a CRF model to store its weights compactly (see {@link CompactWeights}), and measures what this
+ * does to its memory and accuracy.
+ *
+ * Usage: {@code java edu.stanford.nlp.ie.crf.CRFWeightCompactor -loadClassifier model.ser.gz -weightPrecision byte
+ * [-testFile test.tsv] [-serializeTo compact.ser.gz]}
+ *
+ * This prints the memory of the weights as doubles and at the given precision, and the largest change to a weight.
+ * With a testFile, it tags it with both and prints how many answers differ, and the entity scores of each.
+ * With serializeTo, it saves the model with its weights rounded to the given precision, and with the
+ * {@code weightPrecision} flag set, so that the saved model is loaded compactly.
+ */
+public class CRFWeightCompactor {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(CRFWeightCompactor.class);
+
+  private CRFWeightCompactor() {} // static main
+
+  /** The memory of double[][] weights, with 16 bytes of overhead per array. */
+  private static long bytes(double[][] weights) {
+    long bytes = 16L + 8L * weights.length;
+    for (double[] row : weights) {
+      bytes += 16L + 8L * row.length;
+    }
+    return bytes;
+  }
+
+  public static void main(String[] args) throws Exception {
+    StringUtils.logInvocationString(log, args);
+    Properties props = StringUtils.argsToProperties(args);
+    String loadPath = props.getProperty("loadClassifier");
+    CompactWeights.Precision precision = CompactWeights.Precision.fromString(props.getProperty("weightPrecision"));
+    if (loadPath == null || precision == CompactWeights.Precision.DOUBLE) {
+      log.info("Usage: java " + CRFWeightCompactor.class.getName() +
+          " -loadClassifier model -weightPrecision float|short|byte [-testFile file] [-serializeTo file]");
+      System.exit(-1);
+    }
+    String testFile = props.getProperty("testFile");
+    String serializeTo = props.getProperty("serializeTo");
+    Properties loadProps = new Properties();
+    loadProps.setProperty("weightPrecision", "double");
+
+    CRFClassifier<CoreLabel> exact = CRFClassifier.getClassifier(loadPath, loadProps);
+    CRFClassifier<CoreLabel> compact = CRFClassifier.getClassifier(loadPath, loadProps);
+    compact.compactWeights(precision);
+    compact.flags.weightPrecision = precision.name().toLowerCase(Locale.ROOT);
+
+    double maxError = 0.0;
+    for (int f = 0; f < exact.weights.length; f++) {
+      for (int l = 0; l < exact.weights[f].length; l++) {
+        maxError = Math.max(maxError, Math.abs(exact.weights[f][l] - compact.weight(f, l)));
+      }
+    }
+    log.info(String.format("Weights: %d as doubles take %d bytes; as %s, %d bytes. Largest change to a weight: %g",
+        exact.getNumWeights(), bytes(exact.weights), precision, compact.compactWeights.bytes(), maxError));
+
+    if (testFile != null) {
+      Counter<String> exactTP = new ClassicCounter<>(), exactFP = new ClassicCounter<>(), exactFN = new ClassicCounter<>();
+      Counter<String> compactTP = new ClassicCounter<>(), compactFP = new ClassicCounter<>(), compactFN = new ClassicCounter<>();
+      int tokens = 0;
+      int differences = 0;
+      for (List<CoreLabel> document : exact.makeObjectBankFromFile(testFile, exact.makeReaderAndWriter())) {
+        exact.classify(document);
+        String[] exactAnswers = new String[document.size()];
+        for (int i = 0; i < exactAnswers.length; i++) {
+          exactAnswers[i] = document.get(i).get(CoreAnnotations.AnswerAnnotation.class);
+        }
+        exact.countResults(document, exactTP, exactFP, exactFN);
+        compact.classify(document);
+        compact.countResults(document, compactTP, compactFP, compactFN);
+        for (int i = 0; i < exactAnswers.length; i++) {
+          if ( ! exactAnswers[i].equals(document.get(i).get(CoreAnnotations.AnswerAnnotation.class))) {
+            differences++;
+          }
+        }
+        tokens += exactAnswers.length;
+      }
+      log.info("With double weights:");
+      Triple<Double, Double, Double> exactScores = CRFClassifier.printResults(exactTP, exactFP, exactFN);
+      log.info("With " + precision + " weights:");
+      Triple<Double, Double, Double> compactScores = CRFClassifier.printResults(compactTP, compactFP, compactFN);
+      log.info(String.format("%d of %d answers differ; F1 %.2f -> %.2f (%+.2f)", differences, tokens,
+          exactScores.third(), compactScores.third(), compactScores.third() - exactScores.third()));
+    }
+
+    if (serializeTo != null) {
+      compact.serializeClassifier(serializeTo);
+    }
+  }
+
+}
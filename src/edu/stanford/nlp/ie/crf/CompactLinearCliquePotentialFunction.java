@@ -0,0 +1,30 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.math.CompactWeights;
+
+/**
+ * A {@link LinearCliquePotentialFunction} over weights stored at less than double precision.
+ */
+public class CompactLinearCliquePotentialFunction implements CliquePotentialFunction {
+
+  private final CompactWeights weights;
+
+  CompactLinearCliquePotentialFunction(CompactWeights weights) {
+    this.weights = weights;
+  }
+
+  @Override
+  public double computeCliquePotential(int cliqueSize, int labelIndex,
+      int[] cliqueFeatures, double[] featureVal, int posInSent) {
+    double output = 0.0;
+    for (int m = 0; m < cliqueFeatures.length; m++) {
+      double dotProd = weights.get(cliqueFeatures[m], labelIndex);
+      if (featureVal != null) {
+        dotProd *= featureVal[m];
+      }
+      output += dotProd;
+    }
+    return output;
+  }
+
+}
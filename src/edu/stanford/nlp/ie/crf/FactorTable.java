@@ -246,6 +246,23 @@ public class FactorTable  {
     return table[i] - z;
   }
 
+  /**
+   * Computes {@link #conditionalLogProbGivenPrevious(int[], int)} for each of several labels at once,
+   * reading the previous labels from {@code sequence}, starting at {@code givenStart}, and writing the
+   * results into {@code scores}.  This allocates nothing, and normalizes only once.
+   */
+  public void conditionalLogProbsGivenPrevious(int[] sequence, int givenStart, int[] of, double[] scores) {
+    int startIndex = 0;
+    for (int i = givenStart, end = givenStart + windowSize - 1; i < end; i++) {
+      startIndex = startIndex * numClasses + sequence[i];
+    }
+    startIndex *= numClasses;
+    double z = ArrayMath.logSum(table, startIndex, startIndex + numClasses);
+    for (int i = 0; i < of.length; i++) {
+      scores[i] = table[startIndex + of[i]] - z;
+    }
+  }
+
 //  public double conditionalLogProbGivenPreviousForPartial(int[] given, int of) {
 //    if (given.length != windowSize - 1) {
 //      log.info("error computing conditional log prob");
@@ -95,19 +95,17 @@ public class TestSequenceModel implements SequenceModel {
 
   @Override
   public double[] scoresOf(int[] tags, int pos) {
-    int[] allowedTags = getPossibleValues(pos);
-    int realPos = pos - window + 1;
-    int[] previous = new int[window - 1];
-    for (int i = 0; i < window - 1; i++) {
-      previous[i] = tags[realPos + i];
-    }
-    double[] scores = new double[allowedTags.length];
-    for (int i = 0; i < allowedTags.length; i++) {
-      scores[i] = cliqueTree.condLogProbGivenPrevious(realPos, allowedTags[i], previous);
-    }
+    double[] scores = new double[getPossibleValues(pos).length];
+    scoresOf(tags, pos, scores);
     return scores;
   }
 
+  @Override
+  public void scoresOf(int[] tags, int pos, double[] scores) {
+    int realPos = pos - window + 1;
+    cliqueTree.condLogProbsGivenPrevious(realPos, tags, realPos, getPossibleValues(pos), scores);
+  }
+
   @Override
   public double scoreOf(int[] sequence) {
     throw new UnsupportedOperationException();
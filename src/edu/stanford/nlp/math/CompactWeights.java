@@ -0,0 +1,244 @@
+package edu.stanford.nlp.math;
+
+import java.util.Locale;
+
+/**
+ * Model weights stored at less than double precision, to save memory at test time.
+ * The weights are stored either as floats, or quantized to 16 or 8 bit integers.  Quantized weights are
+ * scaled per row: each row has a scale, which is its largest absolute weight divided by the largest integer,
+ * and a weight is stored as the nearest integer multiple of the scale.  This halves (for floats and 16 bit
+ * integers) or quarters (for 8 bit integers) the memory of the weights, besides saving the object overhead
+ * of one array per row of a {@code double[][]}.
+ *
+ * Weights can be given either as rows, as in a {@code double[][]}, or as one flat array, in which case the
+ * rows (for scaling) are consecutive blocks of {@value #BLOCK_SIZE} weights.
+ *
+ * The weights are immutable and so threadsafe.
+ */
+public abstract class CompactWeights {
+
+  /** How the weights are stored. */
+  public enum Precision {
+    /** Doubles, which is to say not compact. */
+    DOUBLE,
+    /** Floats. */
+    FLOAT,
+    /** 16 bit integers, scaled per row. */
+    SHORT,
+    /** 8 bit integers, scaled per row. */
+    BYTE;
+
+    /**
+     * The precision with the given name, in any case; {@code 16} and {@code 8} are also accepted
+     * for SHORT and BYTE, and null means DOUBLE.
+     */
+    public static Precision fromString(String name) {
+      if (name == null) {
+        return DOUBLE;
+      }
+      switch (name.trim()) {
+        case "16":
+          return SHORT;
+        case "8":
+          return BYTE;
+        default:
+          return valueOf(name.trim().toUpperCase(Locale.ROOT));
+      }
+    }
+  }
+
+  private static final int BLOCK_BITS = 8;
+  public static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+  /** Where each row starts in the stored weights; rowStart[numRows()] is the number of weights. */
+  protected final int[] rowStart;
+
+  private CompactWeights(int[] rowStart) {
+    this.rowStart = rowStart;
+  }
+
+  /**
+   * Store the rows of weights at the given precision.
+   *
+   * @throws IllegalArgumentException If the precision is DOUBLE
+   */
+  public static CompactWeights of(double[][] weights, Precision precision) {
+    int[] rowStart = new int[weights.length + 1];
+    for (int row = 0; row < weights.length; row++) {
+      rowStart[row + 1] = rowStart[row] + weights[row].length;
+    }
+    double[] flat = new double[rowStart[weights.length]];
+    for (int row = 0; row < weights.length; row++) {
+      System.arraycopy(weights[row], 0, flat, rowStart[row], weights[row].length);
+    }
+    return of(flat, rowStart, precision);
+  }
+
+  /**
+   * Store a flat array of weights at the given precision.  They can then be read with {@link #get(int)}.
+   *
+   * @throws IllegalArgumentException If the precision is DOUBLE
+   */
+  public static CompactWeights of(double[] weights, Precision precision) {
+    int numRows = (weights.length + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+    int[] rowStart = new int[numRows + 1];
+    for (int row = 0; row < numRows; row++) {
+      rowStart[row + 1] = Math.min(weights.length, (row + 1) << BLOCK_BITS);
+    }
+    return of(weights, rowStart, precision);
+  }
+
+  private static CompactWeights of(double[] weights, int[] rowStart, Precision precision) {
+    switch (precision) {
+      case FLOAT:
+        return new FloatWeights(rowStart, weights);
+      case SHORT:
+        return new QuantizedWeights(rowStart, weights, Short.MAX_VALUE);
+      case BYTE:
+        return new QuantizedWeights(rowStart, weights, Byte.MAX_VALUE);
+      default:
+        throw new IllegalArgumentException("Weights of precision " + precision + " aren't compact");
+    }
+  }
+
+  public abstract Precision precision();
+
+  /** The weight at the given position of the stored weights, which is in the given row. */
+  protected abstract double weight(int position, int row);
+
+  /** The weight in the given row and column. */
+  public double get(int row, int column) {
+    return weight(rowStart[row] + column, row);
+  }
+
+  /** The weight at the given position of weights stored from a flat array with {@link #of(double[], Precision)}. */
+  public double get(int i) {
+    return weight(i, i >>> BLOCK_BITS);
+  }
+
+  public int numRows() {
+    return rowStart.length - 1;
+  }
+
+  public int rowLength(int row) {
+    return rowStart[row + 1] - rowStart[row];
+  }
+
+  /** The number of weights. */
+  public int size() {
+    return rowStart[rowStart.length - 1];
+  }
+
+  /** The approximate number of bytes used to store the weights. */
+  public abstract long bytes();
+
+  /** The stored weights, as rows of doubles. */
+  public double[][] toArrays() {
+    double[][] weights = new double[numRows()][];
+    for (int row = 0; row < weights.length; row++) {
+      weights[row] = new double[rowLength(row)];
+      for (int column = 0; column < weights[row].length; column++) {
+        weights[row][column] = get(row, column);
+      }
+    }
+    return weights;
+  }
+
+  /** The stored weights, as a flat array of doubles. */
+  public double[] toArray() {
+    double[] weights = new double[size()];
+    for (int row = 0; row < numRows(); row++) {
+      for (int i = rowStart[row]; i < rowStart[row + 1]; i++) {
+        weights[i] = weight(i, row);
+      }
+    }
+    return weights;
+  }
+
+  private static class FloatWeights extends CompactWeights {
+
+    private final float[] values;
+
+    FloatWeights(int[] rowStart, double[] weights) {
+      super(rowStart);
+      values = new float[weights.length];
+      for (int i = 0; i < weights.length; i++) {
+        values[i] = (float) weights[i];
+      }
+    }
+
+    @Override
+    public Precision precision() {
+      return Precision.FLOAT;
+    }
+
+    @Override
+    protected double weight(int position, int row) {
+      return values[position];
+    }
+
+    @Override
+    public long bytes() {
+      return 4L * values.length + 4L * rowStart.length;
+    }
+
+  }
+
+  private static class QuantizedWeights extends CompactWeights {
+
+    private final int maxValue;
+    /** The weight of 1 in each row. */
+    private final float[] scales;
+    /** Exactly one of these is used, depending on maxValue. */
+    private final short[] shorts;
+    private final byte[] bytes;
+
+    QuantizedWeights(int[] rowStart, double[] weights, int maxValue) {
+      super(rowStart);
+      this.maxValue = maxValue;
+      int numRows = rowStart.length - 1;
+      scales = new float[numRows];
+      shorts = maxValue > Byte.MAX_VALUE ? new short[weights.length] : null;
+      bytes = shorts == null ? new byte[weights.length] : null;
+      for (int row = 0; row < numRows; row++) {
+        double max = 0.0;
+        for (int i = rowStart[row]; i < rowStart[row + 1]; i++) {
+          max = Math.max(max, Math.abs(weights[i]));
+        }
+        float scale = (float) (max / maxValue);
+        scales[row] = scale;
+        for (int i = rowStart[row]; i < rowStart[row + 1]; i++) {
+          int value = scale == 0.0 ? 0 : (int) Math.max(-maxValue, Math.min(maxValue, Math.round(weights[i] / (double) scale)));
+          if (shorts != null) {
+            shorts[i] = (short) value;
+          } else {
+            bytes[i] = (byte) value;
+          }
+        }
+      }
+    }
+
+    @Override
+    public Precision precision() {
+      return maxValue > Byte.MAX_VALUE ? Precision.SHORT : Precision.BYTE;
+    }
+
+    @Override
+    protected double weight(int position, int row) {
+      return (shorts != null ? shorts[position] : bytes[position]) * (double) scales[row];
+    }
+
+    @Override
+    public long bytes() {
+      long values = shorts != null ? 2L * shorts.length : bytes.length;
+      return values + 4L * scales.length + 4L * rowStart.length;
+    }
+
+  }
+
+  @Override
+  public String toString() {
+    return "CompactWeights[" + precision() + ", " + size() + " weights in " + numRows() + " rows]";
+  }
+
+}
@@ -31,6 +31,8 @@ public class BinaryGrammar implements Serializable, Iterable<BinaryRule>  {
   private transient Set<BinaryRule>[] ruleSetWithRC;
   private transient BinaryRule[][] splitRulesWithLC;
   private transient BinaryRule[][] splitRulesWithRC;
+  private transient RuleTable splitRuleTableWithLC;
+  private transient RuleTable splitRuleTableWithRC;
   //  private transient BinaryRule[][] splitRulesWithParent = null;
   private transient Map<BinaryRule,BinaryRule> ruleMap;
   // for super speed! (maybe)
@@ -108,6 +110,8 @@ public class BinaryGrammar implements Serializable, Iterable<BinaryRule>  {
       // parent accessor
       //      splitRulesWithParent[state] = toBRArray(rulesWithParent[state]);
     }
+    splitRuleTableWithLC = RuleTable.binary(splitRulesWithLC, true);
+    splitRuleTableWithRC = RuleTable.binary(splitRulesWithRC, false);
   }
 
   public BinaryRule[] splitRulesWithLC(int state) {
@@ -124,6 +128,16 @@ public class BinaryGrammar implements Serializable, Iterable<BinaryRule>  {
     return splitRulesWithRC[state];
   }
 
+  /** The rules of {@link #splitRulesWithLC(int)} for all states, as a table whose other children are right children. */
+  RuleTable splitRuleTableWithLC() {
+    return splitRuleTableWithLC;
+  }
+
+  /** The rules of {@link #splitRulesWithRC(int)} for all states, as a table whose other children are left children. */
+  RuleTable splitRuleTableWithRC() {
+    return splitRuleTableWithRC;
+  }
+
   //  public BinaryRule[] splitRulesWithParent(int state) {
   //    return splitRulesWithParent[state];
   //  }
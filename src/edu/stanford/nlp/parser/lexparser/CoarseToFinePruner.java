@@ -0,0 +1,396 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import edu.stanford.nlp.trees.TreebankLanguagePack;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.Index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/** Prunes the chart of an {@link ExhaustivePCFGParser} by first parsing with a coarse grammar.
+ *  The coarse grammar is the split grammar projected onto basic categories (as by
+ *  {@link BasicCategoryTagProjection}).  The probability of a coarse rule is the average probability of the
+ *  split rules which project onto it, weighted by how often their parent state is expected to occur, which is
+ *  estimated from the split grammar itself by propagating expected counts down from the goal state.
+ *  <p>
+ *  Parsing a sentence with the coarse grammar gives the max-marginal (Viterbi inside plus outside score) of each
+ *  coarse state over each span, and the split parser then only builds states over a span whose projection has a
+ *  max-marginal within {@link TestOptions#coarseToFineThreshold} of the best coarse parse.  The coarse grammar
+ *  is much smaller than the split grammar, so the coarse parse is quick, and the split parser then only builds
+ *  the few categories over each span which might be part of a good parse.
+ *  <p>
+ *  The coarse grammar depends only on the split grammar, and is built once per grammar and shared.
+ *  It is immutable, so the pruner is threadsafe.
+ */
+class CoarseToFinePruner {
+
+  private static final Map<BinaryGrammar, CoarseToFinePruner> pruners = Collections.synchronizedMap(new WeakHashMap<>());
+
+  /** How many times to propagate expected counts down the grammar, at most. */
+  private static final int MAX_COUNT_ITERATIONS = 100;
+  /** The least expected count of a state, as a fraction of the average count of the states of its coarse state. */
+  private static final double MIN_COUNT = 1e-3;
+
+  /** The coarse state of each split state. */
+  private final int[] coarseStates;
+  private final int numCoarseStates;
+  /** For each split state, its expected share of the occurrences of its coarse state. */
+  private final float[] weights;
+
+  /** The binary rules of the coarse grammar, by left child: the rules with left child l are at
+   *  binaryStart[l] up to binaryStart[l + 1] in binaryRight, binaryParent and binaryScore. */
+  private final int[] binaryStart;
+  private final int[] binaryRight;
+  private final int[] binaryParent;
+  private final float[] binaryScore;
+
+  /** The closed unary rules of the coarse grammar, other than those from a state to itself. */
+  private final int[] unaryChild;
+  private final int[] unaryParent;
+  private final float[] unaryScore;
+
+  private CoarseToFinePruner(BinaryGrammar bg, UnaryGrammar ug, Index<String> stateIndex, TreebankLanguagePack tlp) {
+    int numStates = stateIndex.size();
+    coarseStates = new int[numStates];
+    Map<String, Integer> coarseIndex = Generics.newHashMap();
+    for (int state = 0; state < numStates; state++) {
+      String coarse = tlp.basicCategory(stateIndex.get(state));
+      Integer coarseState = coarseIndex.get(coarse);
+      if (coarseState == null) {
+        coarseState = coarseIndex.size();
+        coarseIndex.put(coarse, coarseState);
+      }
+      coarseStates[state] = coarseState;
+    }
+    numCoarseStates = coarseIndex.size();
+
+    weights = stateWeights(bg, ug, stateIndex.indexOf(tlp.startSymbol()), numStates);
+
+    // probability of each coarse binary rule, by left child, then right child and parent
+    List<Map<Long, Double>> binaries = Generics.newArrayList(numCoarseStates);
+    for (int i = 0; i < numCoarseStates; i++) {
+      binaries.add(Generics.newHashMap());
+    }
+    for (BinaryRule rule : bg) {
+      long key = ((long) coarseStates[rule.rightChild] << 32) | coarseStates[rule.parent];
+      binaries.get(coarseStates[rule.leftChild]).merge(key, weights[rule.parent] * Math.exp(rule.score), Double::sum);
+    }
+    int numBinaries = 0;
+    for (Map<Long, Double> rules : binaries) {
+      numBinaries += rules.size();
+    }
+    binaryStart = new int[numCoarseStates + 1];
+    binaryRight = new int[numBinaries];
+    binaryParent = new int[numBinaries];
+    binaryScore = new float[numBinaries];
+    int rule = 0;
+    for (int left = 0; left < numCoarseStates; left++) {
+      for (Map.Entry<Long, Double> entry : binaries.get(left).entrySet()) {
+        binaryRight[rule] = (int) (entry.getKey() >>> 32);
+        binaryParent[rule] = (int) (long) entry.getKey();
+        binaryScore[rule] = (float) Math.log(entry.getValue());
+        rule++;
+      }
+      binaryStart[left + 1] = rule;
+    }
+
+    // probability of each coarse unary rule, then of the best chain of them (the Viterbi closure)
+    double[][] unaries = new double[numCoarseStates][numCoarseStates]; // [parent][child]
+    for (UnaryRule ur : ug) {
+      int child = coarseStates[ur.child];
+      int parent = coarseStates[ur.parent];
+      if (child != parent) {
+        unaries[parent][child] += weights[ur.parent] * Math.exp(ur.score);
+      }
+    }
+    for (int via = 0; via < numCoarseStates; via++) {
+      for (int parent = 0; parent < numCoarseStates; parent++) {
+        if (parent == via || unaries[parent][via] == 0.0) {
+          continue;
+        }
+        for (int child = 0; child < numCoarseStates; child++) {
+          double chain = unaries[parent][via] * unaries[via][child];
+          if (parent != child && chain > unaries[parent][child]) {
+            unaries[parent][child] = chain;
+          }
+        }
+      }
+    }
+    int numUnaries = 0;
+    for (double[] row : unaries) {
+      for (double p : row) {
+        if (p > 0.0) {
+          numUnaries++;
+        }
+      }
+    }
+    unaryChild = new int[numUnaries];
+    unaryParent = new int[numUnaries];
+    unaryScore = new float[numUnaries];
+    rule = 0;
+    for (int parent = 0; parent < numCoarseStates; parent++) {
+      for (int child = 0; child < numCoarseStates; child++) {
+        if (unaries[parent][child] > 0.0) {
+          unaryChild[rule] = child;
+          unaryParent[rule] = parent;
+          unaryScore[rule] = (float) Math.log(unaries[parent][child]);
+          rule++;
+        }
+      }
+    }
+  }
+
+  /** The expected share of each split state among the occurrences of its coarse state.
+   *  The expected number of occurrences of each state in a parse is found by starting with one goal state
+   *  and repeatedly expanding it by the grammar's rules.  The states of a coarse state which isn't
+   *  expected to occur at all share it equally.
+   */
+  private float[] stateWeights(BinaryGrammar bg, UnaryGrammar ug, int goal, int numStates) {
+    double[] counts = new double[numStates];
+    for (int iter = 0; iter < MAX_COUNT_ITERATIONS; iter++) {
+      double[] next = new double[numStates];
+      if (goal >= 0) {
+        next[goal] = 1.0;
+      }
+      for (BinaryRule rule : bg) {
+        double count = counts[rule.parent] * Math.exp(rule.score);
+        next[rule.leftChild] += count;
+        next[rule.rightChild] += count;
+      }
+      for (UnaryRule ur : ug) {
+        if (ur.child != ur.parent) {
+          next[ur.child] += counts[ur.parent] * Math.exp(ur.score);
+        }
+      }
+      boolean converged = true;
+      for (int state = 0; state < numStates && converged; state++) {
+        converged = Math.abs(next[state] - counts[state]) <= 1e-6 * next[state];
+      }
+      counts = next;
+      if (converged) {
+        break;
+      }
+    }
+    double[] totals = new double[numCoarseStates];
+    int[] sizes = new int[numCoarseStates];
+    for (int state = 0; state < numStates; state++) {
+      if (Double.isNaN(counts[state]) || Double.isInfinite(counts[state])) {
+        // the grammar is inconsistent, with infinitely large expected parses
+        counts[state] = 0.0;
+      }
+      totals[coarseStates[state]] += counts[state];
+      sizes[coarseStates[state]]++;
+    }
+    // every state gets some weight, so that every split rule has some coarse rule which can build its parent
+    for (int state = 0; state < numStates; state++) {
+      counts[state] += MIN_COUNT * totals[coarseStates[state]] / sizes[coarseStates[state]];
+    }
+    float[] weights = new float[numStates];
+    for (int state = 0; state < numStates; state++) {
+      int coarse = coarseStates[state];
+      double total = totals[coarse] * (1.0 + MIN_COUNT);
+      weights[state] = total > 0.0 ? (float) (counts[state] / total) : 1.0f / sizes[coarse];
+    }
+    return weights;
+  }
+
+  /** The pruner for a grammar, which is made the first time it is asked for. */
+  static CoarseToFinePruner forGrammar(BinaryGrammar bg, UnaryGrammar ug, Index<String> stateIndex, TreebankLanguagePack tlp) {
+    synchronized (pruners) {
+      CoarseToFinePruner pruner = pruners.get(bg);
+      if (pruner == null || pruner.coarseStates.length != stateIndex.size()) {
+        pruner = new CoarseToFinePruner(bg, ug, stateIndex, tlp);
+        pruners.put(bg, pruner);
+      }
+      return pruner;
+    }
+  }
+
+  /** The coarse state of a split state. */
+  int coarseState(int state) {
+    return coarseStates[state];
+  }
+
+  /** Parses with the coarse grammar, and returns the max-marginal of each coarse state over each span: the
+   *  score of the best coarse parse with that state over that span.
+   *  The coarse chart is seeded with the tags in the split chart's cells over spans of up to maxSpanForTags
+   *  words, which must have been filled in, and covers the same spans as {@link ExhaustivePCFGParser#doInsideScores()}.
+   *
+   *  @param iScore The split chart's inside scores
+   *  @param isTag Which split states are tags
+   *  @param length The length of the sentence, including the boundary symbol
+   *  @param maxSpanForTags The longest span which is initialized with tags
+   *  @param goal The goal state
+   *  @return [start][end][coarseState]: the max-marginal, or negative infinity if there is no coarse parse with
+   *      that state over that span, or null for spans the split parser doesn't fill in; or null if there is
+   *      no coarse parse at all
+   */
+  float[][][] maxMarginals(float[][][] iScore, boolean[] isTag, int length, int maxSpanForTags, int goal) {
+    float[][][] inside = new float[length][length + 1][];
+    float[][][] outside = new float[length][length + 1][];
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        if (isChartCell(start, end, length)) {
+          inside[start][end] = new float[numCoarseStates];
+          outside[start][end] = new float[numCoarseStates];
+          Arrays.fill(inside[start][end], Float.NEGATIVE_INFINITY);
+          Arrays.fill(outside[start][end], Float.NEGATIVE_INFINITY);
+        }
+      }
+    }
+
+    double[] tagProbs = new double[numCoarseStates];
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length && end - start <= Math.max(1, maxSpanForTags); end++) {
+        if (inside[start][end] == null) {
+          continue;
+        }
+        float[] fine = iScore[start][end];
+        Arrays.fill(tagProbs, 0.0);
+        for (int state = 0; state < fine.length; state++) {
+          if (isTag[state] && fine[state] > Float.NEGATIVE_INFINITY) {
+            tagProbs[coarseStates[state]] += weights[state] * Math.exp(fine[state]);
+          }
+        }
+        float[] coarse = inside[start][end];
+        for (int state = 0; state < numCoarseStates; state++) {
+          if (tagProbs[state] > 0.0) {
+            coarse[state] = (float) Math.log(tagProbs[state]);
+          }
+        }
+        if (end - start == 1) {
+          applyUnaries(coarse);
+        }
+      }
+    }
+    doInside(inside, length);
+    int coarseGoal = coarseStates[goal];
+    if (inside[0][length][coarseGoal] == Float.NEGATIVE_INFINITY) {
+      return null;
+    }
+    outside[0][length][coarseGoal] = 0.0f;
+    doOutside(inside, outside, length);
+
+    // reuse the outside chart for the sums
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        float[] in = inside[start][end];
+        float[] out = outside[start][end];
+        if (in == null) {
+          continue;
+        }
+        for (int state = 0; state < numCoarseStates; state++) {
+          out[state] += in[state];
+        }
+      }
+    }
+    return outside;
+  }
+
+  /** Whether the split parser fills in the cell, which it does for all spans but those ending at the
+   *  boundary symbol, other than the whole sentence. */
+  private static boolean isChartCell(int start, int end, int length) {
+    return end < length || start == 0 || end - start == 1;
+  }
+
+  /** Applies the closed unary rules to the states built over a span.  As they are closed, one pass suffices. */
+  private void applyUnaries(float[] scores) {
+    float[] childScores = scores.clone();
+    for (int rule = 0; rule < unaryChild.length; rule++) {
+      float tot = childScores[unaryChild[rule]] + unaryScore[rule];
+      if (tot > scores[unaryParent[rule]]) {
+        scores[unaryParent[rule]] = tot;
+      }
+    }
+  }
+
+  private void doInside(float[][][] inside, int length) {
+    for (int diff = 2; diff <= length; diff++) {
+      for (int start = 0; start < ((diff == length) ? 1 : length - diff); start++) {
+        int end = start + diff;
+        float[] parents = inside[start][end];
+        for (int split = start + 1; split < end; split++) {
+          float[] lefts = inside[start][split];
+          float[] rights = inside[split][end];
+          if (lefts == null || rights == null) {
+            continue;
+          }
+          for (int left = 0; left < numCoarseStates; left++) {
+            float lS = lefts[left];
+            if (lS == Float.NEGATIVE_INFINITY) {
+              continue;
+            }
+            for (int rule = binaryStart[left], ruleEnd = binaryStart[left + 1]; rule < ruleEnd; rule++) {
+              float rS = rights[binaryRight[rule]];
+              if (rS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              float tot = lS + rS + binaryScore[rule];
+              if (tot > parents[binaryParent[rule]]) {
+                parents[binaryParent[rule]] = tot;
+              }
+            }
+          }
+        }
+        applyUnaries(parents);
+      }
+    }
+  }
+
+  private void doOutside(float[][][] inside, float[][][] outside, int length) {
+    for (int diff = length; diff >= 2; diff--) {
+      for (int start = 0; start < ((diff == length) ? 1 : length - diff); start++) {
+        int end = start + diff;
+        float[] parentsIn = inside[start][end];
+        float[] parentsOut = outside[start][end];
+        float[] beforeUnaries = parentsOut.clone();
+        for (int rule = 0; rule < unaryChild.length; rule++) {
+          int child = unaryChild[rule];
+          float tot = beforeUnaries[unaryParent[rule]] + unaryScore[rule];
+          if (tot > parentsOut[child] && parentsIn[child] > Float.NEGATIVE_INFINITY) {
+            parentsOut[child] = tot;
+          }
+        }
+        for (int split = start + 1; split < end; split++) {
+          float[] leftsIn = inside[start][split];
+          float[] rightsIn = inside[split][end];
+          if (leftsIn == null || rightsIn == null) {
+            continue;
+          }
+          float[] leftsOut = outside[start][split];
+          float[] rightsOut = outside[split][end];
+          for (int left = 0; left < numCoarseStates; left++) {
+            float lS = leftsIn[left];
+            if (lS == Float.NEGATIVE_INFINITY) {
+              continue;
+            }
+            for (int rule = binaryStart[left], ruleEnd = binaryStart[left + 1]; rule < ruleEnd; rule++) {
+              float oS = parentsOut[binaryParent[rule]];
+              if (oS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              int right = binaryRight[rule];
+              float rS = rightsIn[right];
+              if (rS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              float pS = binaryScore[rule];
+              float totL = oS + pS + rS;
+              if (totL > leftsOut[left]) {
+                leftsOut[left] = totL;
+              }
+              float totR = oS + pS + lS;
+              if (totR > rightsOut[right]) {
+                rightsOut[right] = totR;
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+}
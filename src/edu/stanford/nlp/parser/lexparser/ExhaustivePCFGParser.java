@@ -31,6 +31,7 @@ import edu.stanford.nlp.ling.HasContext;
 import edu.stanford.nlp.ling.HasOffset;
 import edu.stanford.nlp.ling.HasTag;
 import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.math.ArrayMath;
 import edu.stanford.nlp.math.SloppyMath;
 import edu.stanford.nlp.parser.KBestViterbiParser;
 import edu.stanford.nlp.parser.common.ParserAnnotations;
@@ -44,6 +45,8 @@ import edu.stanford.nlp.util.PriorityQueue;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Matcher;
 
 /** An exhaustive generalized CKY PCFG parser.
@@ -106,6 +109,22 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
   protected final int numStates;
   protected int arraySize = 0;
+  /** The chart whose arrays this parser is using. */
+  private PCFGChart chart;
+
+  /** If doing coarse-to-fine parsing, the pruner, and else null. */
+  private final CoarseToFinePruner pruner;
+  /** [start][end][coarseState]: the coarse max-marginals of the sentence being parsed (see
+   *  {@link CoarseToFinePruner#maxMarginals}), or null if the chart isn't being pruned. */
+  private float[][][] coarseScores;
+  /** States are only built over spans where their coarse max-marginal is at least this. */
+  private float coarseCutoff;
+  /** Set when pruning lost all the parses of the sentence, which is then parsed without it. */
+  protected boolean coarseFailed = false;
+
+  /** The pool the chart cells of long sentences are filled in (see {@link TestOptions#parallelChartLength}),
+   *  or null to fill them on the calling thread. */
+  private ForkJoinPool chartPool;
 
   /**
    * When you want to force the parser to parse a particular
@@ -340,6 +359,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     if (sentence != this.sentence) {
       this.sentence = sentence;
       floodTags = false;
+      coarseFailed = false;
     }
     if (op.testOptions.verbose) {
       Timing.tick("Starting pcfg parse.");
@@ -462,6 +482,18 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     initializeChart(sentence);
     //if (op.testOptions.outsideFilter)
     // buildOFilter();
+    coarseScores = null;
+    if (pruner != null && ! coarseFailed) {
+      if (op.testOptions.verbose) {
+        Timing.tick("done.");
+        log.info("Starting coarse parse...");
+      }
+      coarseScores = pruner.maxMarginals(iScore, isTag, length, op.testOptions.maxSpanForTags, goal);
+      if (coarseScores != null) {
+        coarseCutoff = coarseScores[0][length][pruner.coarseState(goal)] - (float) op.testOptions.coarseToFineThreshold;
+        pruneTags();
+      }
+    }
     if (op.testOptions.verbose) {
       Timing.tick("done.");
       log.info("Starting insides...");
@@ -475,6 +507,13 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     }
     bestScore = iScore[0][length][goal];
     boolean succeeded = hasParse();
+    if ( ! succeeded && coarseScores != null) {
+      coarseFailed = true; // pruning lost all the parses, so parse the sentence again without it
+      if (op.testOptions.verbose) {
+        log.info("No parse within the coarse-to-fine threshold; parsing without pruning...");
+      }
+      return parse(sentence);
+    }
     if (op.testOptions.doRecovery && !succeeded && !floodTags) {
       floodTags = true; // sentence will try to reparse
       // ms: disabled message. this is annoying and it doesn't really provide much information
@@ -603,6 +642,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
     initializeChart(lr);
 
+    coarseScores = null;
     doInsideScores();
     bestScore = iScore[0][length][goal];
 
@@ -833,10 +873,44 @@ oScore[split][end][br.rightChild] = totR;
     }
   }
 
+  /** With coarse-to-fine parsing, removes the tags (and their unary closure) over one word spans whose
+   *  coarse max-marginal is below the cutoff from the extents, so that no rules are tried with them.
+   *  Their scores are kept, since the states which are kept may have been built from them.
+   */
+  private void pruneTags() {
+    for (int start = 0; start < length; start++) {
+      int end = start + 1;
+      float[] iScore_start_end = iScore[start][end];
+      float[] coarseScores_start_end = coarseScores[start][end];
+      for (int state = 0; state < numStates; state++) {
+        if (iScore_start_end[state] == Float.NEGATIVE_INFINITY ||
+            coarseScores_start_end[pruner.coarseState(state)] >= coarseCutoff) {
+          continue;
+        }
+        // the state's extents can only be reset if this is the only span it has been built over
+        if (narrowRExtent[start][state] == end && wideRExtent[start][state] == end) {
+          narrowRExtent[start][state] = length + 1;
+          wideRExtent[start][state] = -1;
+        }
+        if (narrowLExtent[end][state] == start && wideLExtent[end][state] == start) {
+          narrowLExtent[end][state] = -1;
+          wideLExtent[end][state] = length + 1;
+        }
+      }
+    }
+  }
+
   /** Fills in the iScore array of each category over each span
-   *  of length 2 or more.
+   *  of length 2 or more.  The cells of each span length only read the
+   *  cells of shorter spans, and only write their own cell and the extents
+   *  at their own start and end, so for long enough sentences (see
+   *  {@link TestOptions#parallelChartLength}) they are filled in parallel
+   *  in the chart pool, if the parser has been given one.
    */
   void doInsideScores() {
+    final ForkJoinPool chartPool = this.chartPool;
+    final int parallelChartLength = op.testOptions.parallelChartLength;
+    final boolean parallel = chartPool != null && parallelChartLength > 0 && length - 1 >= parallelChartLength; // length includes the boundary
     for (int diff = 2; diff <= length; diff++) {
       if (Thread.interrupted()) {
         throw new RuntimeInterruptedException();
@@ -845,9 +919,33 @@ oScore[split][end][br.rightChild] = totR;
       // usually stop one short because boundary symbol only combines
       // with whole sentence span. So for 3 word sentence + boundary = 4,
       // length == 4, and do [0,2], [1,3]; [0,3]; [0,4]
-      for (int start = 0; start < ((diff == length) ? 1: length - diff); start++) {
-        doInsideChartCell(diff, start);
-      } // for start
+      int numStarts = (diff == length) ? 1: length - diff;
+      if (parallel && numStarts > 1) {
+        final int span = diff;
+        List<ForkJoinTask<?>> cells = new ArrayList<>(numStarts);
+        for (int start = 0; start < numStarts; start++) {
+          final int cellStart = start;
+          cells.add(chartPool.submit(() -> doInsideChartCell(span, cellStart)));
+        }
+        // wait for every cell, even if one fails, so that none is still writing to the chart afterwards
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> cell : cells) {
+          try {
+            cell.join();
+          } catch (RuntimeException e) {
+            if (failure == null) {
+              failure = e;
+            }
+          }
+        }
+        if (failure != null) {
+          throw failure;
+        }
+      } else {
+        for (int start = 0; start < numStarts; start++) {
+          doInsideChartCell(diff, start);
+        } // for start
+      }
     } // for diff (i.e., span)
   } // end doInsideScores()
 
@@ -868,6 +966,13 @@ oScore[split][end][br.rightChild] = totR;
       }
     }
 
+    // with coarse-to-fine parsing, the coarse max-marginals of this span, which states must reach the cutoff to be built
+    final float[] coarseScores_start_end = (coarseScores == null) ? null : coarseScores[start][end];
+    final float coarseCutoff = this.coarseCutoff;
+    if (coarseScores_start_end != null && ArrayMath.max(coarseScores_start_end) < coarseCutoff) {
+      return;
+    }
+
     // 2011-11-26 jdk1.6: caching/hoisting a bunch of variables gives you about 15% speed up!
     // caching this saves a bit of time in the inner loop, maybe 1.8%
     int[] narrowRExtent_start = narrowRExtent[start];
@@ -878,15 +983,24 @@ oScore[split][end][br.rightChild] = totR;
     float[][] iScore_start = iScore[start];
     float[] iScore_start_end = iScore_start[end];
 
+    // the rules are read from flat arrays rather than rule objects; see RuleTable
+    RuleTable leftRules = bg.splitRuleTableWithLC();
+    int[] leftRulesStart = leftRules.start;
+    int[] leftRulesChild = leftRules.child;
+    int[] leftRulesParent = leftRules.parent;
+    float[] leftRulesScore = leftRules.score;
+
     for (int leftState = 0; leftState < numStates; leftState++) {
       int narrowR = narrowRExtent_start[leftState];
       if (narrowR >= end) {  // can this left constituent leave space for a right constituent?
         continue;
       }
-      BinaryRule[] leftRules = bg.splitRulesWithLC(leftState);
-      //      if (spillGuts) System.out.println("Found " + leftRules.length + " left rules for state " + stateIndex.get(leftState));
-      for (BinaryRule rule : leftRules) {
-        int rightChild = rule.rightChild;
+      for (int r = leftRulesStart[leftState], rEnd = leftRulesStart[leftState + 1]; r < rEnd; r++) {
+        int parentState = leftRulesParent[r];
+        if (coarseScores_start_end != null && coarseScores_start_end[pruner.coarseState(parentState)] < coarseCutoff) {
+          continue;
+        }
+        int rightChild = leftRulesChild[r];
         int narrowL = narrowLExtent_end[rightChild];
         if (narrowL < narrowR) { // can this right constituent fit next to the left constituent?
           continue;
@@ -902,8 +1016,7 @@ oScore[split][end][br.rightChild] = totR;
         if (min > max) { // can this left constituent stretch far enough to reach the right constituent?
           continue;
         }
-        float pS = rule.score;
-        int parentState = rule.parent;
+        float pS = leftRulesScore[r];
         float oldIScore = iScore_start_end[parentState];
         float bestIScore = oldIScore;
         boolean foundBetter;  // always set below for this rule
@@ -951,7 +1064,7 @@ oScore[split][end][br.rightChild] = totR;
               continue;
             }
             float tot = pS + lS + rS;
-            if (spillGuts) { log.info("Rule " + rule + " over [" + start + "," + end + ") has log score " + tot + " from L[" + stateIndex.get(leftState) + "=" + leftState + "] = "+ lS  + " R[" + stateIndex.get(rightChild) + "=" + rightChild + "] =  " + rS); }
+            if (spillGuts) { log.info("Rule " + stateIndex.get(parentState) + " -> " + stateIndex.get(leftState) + ' ' + stateIndex.get(rightChild) + ' ' + pS + " over [" + start + "," + end + ") has log score " + tot + " from L[" + stateIndex.get(leftState) + "=" + leftState + "] = "+ lS  + " R[" + stateIndex.get(rightChild) + "=" + rightChild + "] =  " + rS); }
             if (tot > bestIScore) {
               bestIScore = tot;
             }
@@ -1003,20 +1116,26 @@ oScore[split][end][br.rightChild] = totR;
             }
           }
         } // end if foundBetter
-      } // end for leftRules
+      } // end for left rules
     } // end for leftState
     // do right restricted rules
+    RuleTable rightRules = bg.splitRuleTableWithRC();
+    int[] rightRulesStart = rightRules.start;
+    int[] rightRulesChild = rightRules.child;
+    int[] rightRulesParent = rightRules.parent;
+    float[] rightRulesScore = rightRules.score;
     for (int rightState = 0; rightState < numStates; rightState++) {
       int narrowL = narrowLExtent_end[rightState];
       if (narrowL <= start) {
         continue;
       }
-      BinaryRule[] rightRules = bg.splitRulesWithRC(rightState);
-      //      if (spillGuts) System.out.println("Found " + rightRules.length + " right rules for state " + stateIndex.get(rightState));
-      for (BinaryRule rule : rightRules) {
-        //      if (spillGuts) System.out.println("Considering rule for " + start + " to " + end + ": " + rightRules[i]);
+      for (int r = rightRulesStart[rightState], rEnd = rightRulesStart[rightState + 1]; r < rEnd; r++) {
+        int parentState = rightRulesParent[r];
+        if (coarseScores_start_end != null && coarseScores_start_end[pruner.coarseState(parentState)] < coarseCutoff) {
+          continue;
+        }
 
-        int leftChild = rule.leftChild;
+        int leftChild = rightRulesChild[r];
         int narrowR = narrowRExtent_start[leftChild];
         if (narrowR > narrowL) {
           continue;
@@ -1032,8 +1151,7 @@ oScore[split][end][br.rightChild] = totR;
         if (min > max) {
           continue;
         }
-        float pS = rule.score;
-        int parentState = rule.parent;
+        float pS = rightRulesScore[r];
         float oldIScore = iScore_start_end[parentState];
         float bestIScore = oldIScore;
         boolean foundBetter; // always initialized below
@@ -1133,26 +1251,33 @@ oScore[split][end][br.rightChild] = totR;
             }
           }
         } // end if foundBetter
-      } // for rightRules
+      } // for right rules
     } // for rightState
     if (spillGuts) {
       tick("Unaries for span " + diff + "...");
     }
     // do unary rules -- one could promote this loop and put start inside
+    RuleTable unaries = ug.closedRuleTableByChild();
+    int[] unariesStart = unaries.start;
+    int[] unariesParent = unaries.parent;
+    float[] unariesScore = unaries.score;
     for (int state = 0; state < numStates; state++) {
       float iS = iScore_start_end[state];
       if (iS == Float.NEGATIVE_INFINITY) {
         continue;
       }
 
-      UnaryRule[] unaries = ug.closedRulesByChild(state);
-      for (UnaryRule ur : unaries) {
+      for (int r = unariesStart[state], rEnd = unariesStart[state + 1]; r < rEnd; r++) {
+        int parentState = unariesParent[r];
+        if (coarseScores_start_end != null && coarseScores_start_end[pruner.coarseState(parentState)] < coarseCutoff) {
+          continue;
+        }
 
         if (constraints != null) {
           boolean skip = false;
           for (ParserConstraint c : constraints) {
             if ((start == c.start && end == c.end)) {
-              String tag = stateIndex.get(ur.parent);
+              String tag = stateIndex.get(parentState);
               Matcher m = c.state.matcher(tag);
               if (!m.matches()) {
                 //if (!tag.startsWith(c.state+"^")) {
@@ -1166,8 +1291,7 @@ oScore[split][end][br.rightChild] = totR;
           }
         }
 
-        int parentState = ur.parent;
-        float pS = ur.score;
+        float pS = unariesScore[r];
         float tot = iS + pS;
         float cur = iScore_start_end[parentState];
         boolean foundBetter;  // always set below
@@ -1199,7 +1323,7 @@ oScore[split][end][br.rightChild] = totR;
             }
           }
         } // end if foundBetter
-      } // for UnaryRule r
+      } // for unary rule r
     } // for unary rules
   }
 
@@ -2169,6 +2293,11 @@ oScore[split][end][br.rightChild] = totR;
       }
       isTag[state] = true;
     }
+    if (op.testOptions.coarseToFineThreshold > 0.0 && ! op.testOptions.iterativeCKY && ! op.testOptions.lengthNormalization) {
+      pruner = CoarseToFinePruner.forGrammar(bg, ug, stateIndex, tlp);
+    } else {
+      pruner = null;
+    }
   }
 
 
@@ -2199,7 +2328,7 @@ oScore[split][end][br.rightChild] = totR;
         }
         throw e;
       }
-      arraySize = length + 1;
+      arraySize = chart.size;
       if (op.testOptions.verbose) {
         log.info("Created PCFG parser arrays of size " + arraySize);
       }
@@ -2210,48 +2339,50 @@ oScore[split][end][br.rightChild] = totR;
     // zero out some stuff first in case we recently ran out of memory and are reallocating
     clearArrays();
 
+    boolean outside = op.doDep && !op.testOptions.useFastFactored;
     int numTags = tagIndex.size();
-    // allocate just the parts of iScore and oScore used (end > start, etc.)
-    // todo: with some modifications to doInsideScores, we wouldn't need to allocate iScore[i,length] for i != 0 and i != length
-    //    System.out.println("initializing iScore arrays with length " + length + " and numStates " + numStates);
-    iScore = new float[length][length + 1][];
-    for (int start = 0; start < length; start++) {
-      for (int end = start + 1; end <= length; end++) {
-        iScore[start][end] = new float[numStates];
-      }
+    if (op.testOptions.poolCharts && length >= arraySize) { // when shrinking the chart, don't reuse a larger one
+      // each thread gets an equal share of the memory for its chart
+      long maxBytes = Runtime.getRuntime().maxMemory() / Math.max(1, op.testOptions.testingThreads);
+      chart = PCFGChart.borrow(length, op.testOptions.maxLength + 2, maxBytes,
+                               numStates, numTags, outside, op.testOptions.lengthNormalization);
+    } else {
+      chart = new PCFGChart(length, numStates, numTags, outside, op.testOptions.lengthNormalization);
+    }
+    iScore = chart.iScore;
+    oScore = chart.oScore;
+    wordsInSpan = chart.wordsInSpan;
+    narrowRExtent = chart.narrowRExtent;
+    wideRExtent = chart.wideRExtent;
+    narrowLExtent = chart.narrowLExtent;
+    wideLExtent = chart.wideLExtent;
+    iPossibleByL = chart.iPossibleByL;
+    iPossibleByR = chart.iPossibleByR;
+    oPossibleByL = chart.oPossibleByL;
+    oPossibleByR = chart.oPossibleByR;
+    tags = chart.tags;
+    if (op.testOptions.verbose) {
+      log.info("PCFG chart of size " + chart.size + " takes about " + (chart.bytes() >> 20) + " MB");
     }
-    //    System.out.println("finished initializing iScore arrays");
-    if (op.doDep && !op.testOptions.useFastFactored) {
-      //      System.out.println("initializing oScore arrays with length " + length + " and numStates " + numStates);
-      oScore = new float[length][length + 1][];
-      for (int start = 0; start < length; start++) {
-        for (int end = start + 1; end <= length; end++) {
-          oScore[start][end] = new float[numStates];
-        }
-      }
-      // System.out.println("finished initializing oScore arrays");
-    }
-    narrowRExtent = new int[length][numStates];
-    wideRExtent = new int[length][numStates];
-    narrowLExtent = new int[length + 1][numStates];
-    wideLExtent = new int[length + 1][numStates];
-    if (op.doDep && !op.testOptions.useFastFactored) {
-      iPossibleByL = new boolean[length][numStates];
-      iPossibleByR = new boolean[length + 1][numStates];
-      oPossibleByL = new boolean[length][numStates];
-      oPossibleByR = new boolean[length + 1][numStates];
-    }
-    tags = new boolean[length][numTags];
-
-    if (op.testOptions.lengthNormalization) {
-      wordsInSpan = new int[length][length + 1][];
-      for (int start = 0; start < length; start++) {
-        for (int end = start + 1; end <= length; end++) {
-          wordsInSpan[start][end] = new int[numStates];
-        }
-      }
+  }
+
+  /** Sets the pool in which the chart cells of sentences of at least {@link TestOptions#parallelChartLength}
+   *  words are filled, or with null, fills them on the calling thread.
+   */
+  void setChartPool(ForkJoinPool chartPool) {
+    this.chartPool = chartPool;
+  }
+
+  /** With {@link TestOptions#poolCharts}, gives the chart back to this thread's pool, for the next parser on
+   *  the thread.  After this, nothing more can be got from the last parse.
+   */
+  void releaseChart() {
+    if (op.testOptions.poolCharts && chart != null) {
+      PCFGChart released = chart;
+      clearArrays();
+      arraySize = 0;
+      PCFGChart.giveBack(released);
     }
-    //    System.out.println("ExhaustivePCFGParser constructor finished.");
   }
 
   private void clearArrays() {
@@ -2260,6 +2391,8 @@ oScore[split][end][br.rightChild] = totR;
     oFilteredEnd = oFilteredStart = null;
     tags = null;
     narrowRExtent = wideRExtent = narrowLExtent = wideLExtent = null;
+    wordsInSpan = null;
+    chart = null;
   }
 
 } // end class ExhaustivePCFGParser
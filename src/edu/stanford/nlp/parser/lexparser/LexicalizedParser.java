@@ -55,6 +55,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
@@ -298,11 +299,15 @@ public class LexicalizedParser extends ParserGrammar implements Serializable  {
   public Tree parse(List<? extends HasWord> lst) {
     try {
       ParserQuery pq = parserQuery();
-      if (pq.parse(lst)) {
-        Tree bestparse = pq.getBestParse();
-        // -10000 denotes unknown words
-        bestparse.setScore(pq.getPCFGScore() % -10000.0);
-        return bestparse;
+      try {
+        if (pq.parse(lst)) {
+          Tree bestparse = pq.getBestParse();
+          // -10000 denotes unknown words
+          bestparse.setScore(pq.getPCFGScore() % -10000.0);
+          return bestparse;
+        }
+      } finally {
+        releaseChart(pq);
       }
     } catch (Exception e) {
       log.info("Following exception caught during parsing:");
@@ -364,10 +369,28 @@ public class LexicalizedParser extends ParserGrammar implements Serializable  {
    */
   public Tree parseTree(List<? extends HasWord> sentence) {
     ParserQuery pq = parserQuery();
-    if (pq.parse(sentence)) {
-      return pq.getBestParse();
-    } else {
-      return null;
+    try {
+      if (pq.parse(sentence)) {
+        return pq.getBestParse();
+      } else {
+        return null;
+      }
+    } finally {
+      releaseChart(pq);
+    }
+  }
+
+  /** Lets the PCFG chart of a query which is finished with be reused (see {@link LexicalizedParserQuery#releaseChart()}). */
+  public static void releaseChart(ParserQuery pq) {
+    if (pq instanceof LexicalizedParserQuery) {
+      ((LexicalizedParserQuery) pq).releaseChart();
+    }
+  }
+
+  /** Has a query fill the PCFG charts of long sentences in the given pool (see {@link LexicalizedParserQuery#setChartPool}). */
+  public static void setChartPool(ParserQuery pq, ForkJoinPool chartPool) {
+    if (pq instanceof LexicalizedParserQuery) {
+      ((LexicalizedParserQuery) pq).setChartPool(chartPool);
     }
   }
 
@@ -29,6 +29,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.HasTag;
@@ -171,6 +172,28 @@ public class LexicalizedParserQuery implements ParserQuery  {
     subcategoryStripper = op.tlpParams.subcategoryStripper();
   }
 
+  /**
+   * Says that nothing more will be asked of this query, so that with the poolCharts
+   * test option, its PCFG chart can be reused by the next query parsed on this thread.
+   * After this, this query's last parse can't be got, but it can parse another sentence.
+   */
+  public void releaseChart() {
+    if (pparser != null) {
+      pparser.releaseChart();
+    }
+  }
+
+  /**
+   * Gives the fork-join pool in which the PCFG chart of a long sentence is filled in parallel
+   * (see the parallelChartLength test option), such as the pool this query is parsed in.
+   * With no pool (the default), charts are filled on the parsing thread.
+   */
+  public void setChartPool(ForkJoinPool chartPool) {
+    if (pparser != null) {
+      pparser.setChartPool(chartPool);
+    }
+  }
+
   @Override
   public void setConstraints(List<ParserConstraint> constraints) {
     if (pparser != null) {
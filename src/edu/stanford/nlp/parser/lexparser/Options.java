@@ -249,6 +249,15 @@ public class Options implements Serializable  {
     } else if (args[i].equalsIgnoreCase("-iterativeCKY")) {
       testOptions.iterativeCKY = true;
       i++;
+    } else if (args[i].equalsIgnoreCase("-coarseToFineThreshold") && (i + 1 < args.length)) {
+      testOptions.coarseToFineThreshold = Double.parseDouble(args[i + 1]);
+      i += 2;
+    } else if (args[i].equalsIgnoreCase("-poolCharts")) {
+      testOptions.poolCharts = true;
+      i++;
+    } else if (args[i].equalsIgnoreCase("-parallelChartLength") && (i + 1 < args.length)) {
+      testOptions.parallelChartLength = Integer.parseInt(args[i + 1]);
+      i += 2;
     } else if (args[i].equalsIgnoreCase("-vMarkov") && (i + 1 < args.length)) {
       int order = Integer.parseInt(args[i + 1]);
       if (order <= 1) {
@@ -0,0 +1,151 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.lang.ref.SoftReference;
+
+/** The arrays of an {@link ExhaustivePCFGParser}'s chart, for sentences up to a given size.
+ *  <p>
+ *  A chart takes memory quadratic in the sentence length times the number of grammar states, and
+ *  allocating one for each parser (and so for each {@link LexicalizedParserQuery}) is much of the garbage
+ *  made by parsing.  With {@link TestOptions#poolCharts}, each thread keeps a chart which a parser has
+ *  finished with (see {@link LexicalizedParserQuery#releaseChart()}), and gives it to the next parser on the
+ *  thread which needs one.  A parser takes the chart out of the pool while it has it, so that a chart is
+ *  never shared.  Pooled charts are softly referenced, so they are let go if memory runs short.
+ */
+class PCFGChart {
+
+  /** Charts are made for sizes in steps of this many words, so that sentences a little longer than the
+   *  last don't need a new chart. */
+  private static final int SIZE_STEP = 8;
+
+  /** Roughly the bytes of the header of an array. */
+  private static final long ARRAY_BYTES = 16;
+
+  private static final ThreadLocal<SoftReference<PCFGChart>> pool = new ThreadLocal<>();
+
+  final int size;
+  final int numStates;
+  final int numTags;
+  final boolean outside;
+  final boolean lengthNormalization;
+
+  final float[][][] iScore;
+  final float[][][] oScore;
+  final int[][][] wordsInSpan;
+  final int[][] narrowRExtent;
+  final int[][] wideRExtent;
+  final int[][] narrowLExtent;
+  final int[][] wideLExtent;
+  final boolean[][] iPossibleByL;
+  final boolean[][] iPossibleByR;
+  final boolean[][] oPossibleByL;
+  final boolean[][] oPossibleByR;
+  final boolean[][] tags;
+
+  /** Makes the arrays for sentences of up to size - 1 words, including the boundary symbol.
+   *
+   *  @param outside Whether to make outside scores and the arrays used in dependency parsing
+   *  @param lengthNormalization Whether to make the wordsInSpan array
+   */
+  PCFGChart(int size, int numStates, int numTags, boolean outside, boolean lengthNormalization) {
+    this.size = size;
+    this.numStates = numStates;
+    this.numTags = numTags;
+    this.outside = outside;
+    this.lengthNormalization = lengthNormalization;
+    // allocate just the parts of iScore and oScore used (end > start, etc.)
+    // todo: with some modifications to doInsideScores, we wouldn't need to allocate iScore[i,length] for i != 0 and i != length
+    iScore = scoreArrays(size, numStates);
+    oScore = outside ? scoreArrays(size, numStates) : null;
+    narrowRExtent = new int[size][numStates];
+    wideRExtent = new int[size][numStates];
+    narrowLExtent = new int[size + 1][numStates];
+    wideLExtent = new int[size + 1][numStates];
+    if (outside) {
+      iPossibleByL = new boolean[size][numStates];
+      iPossibleByR = new boolean[size + 1][numStates];
+      oPossibleByL = new boolean[size][numStates];
+      oPossibleByR = new boolean[size + 1][numStates];
+    } else {
+      iPossibleByL = iPossibleByR = oPossibleByL = oPossibleByR = null;
+    }
+    tags = new boolean[size][numTags];
+    if (lengthNormalization) {
+      wordsInSpan = new int[size][size + 1][];
+      for (int start = 0; start < size; start++) {
+        for (int end = start + 1; end <= size; end++) {
+          wordsInSpan[start][end] = new int[numStates];
+        }
+      }
+    } else {
+      wordsInSpan = null;
+    }
+  }
+
+  private static float[][][] scoreArrays(int size, int numStates) {
+    float[][][] scores = new float[size][size + 1][];
+    for (int start = 0; start < size; start++) {
+      for (int end = start + 1; end <= size; end++) {
+        scores[start][end] = new float[numStates];
+      }
+    }
+    return scores;
+  }
+
+  /** Roughly the number of bytes taken by a chart with the given dimensions. */
+  static long bytes(int size, int numStates, int numTags, boolean outside, boolean lengthNormalization) {
+    long cells = (long) size * (size + 1) / 2;
+    long cellBytes = cells * (ARRAY_BYTES + 4L * numStates) + (long) size * (ARRAY_BYTES + 4L * (size + 1));
+    long bytes = cellBytes; // iScore
+    if (outside) {
+      bytes += cellBytes; // oScore
+      bytes += 4 * (size + 1) * (ARRAY_BYTES + numStates); // the possible arrays
+    }
+    if (lengthNormalization) {
+      bytes += cellBytes;
+    }
+    bytes += 4 * (size + 1) * (ARRAY_BYTES + 4L * numStates); // the extents
+    bytes += size * (ARRAY_BYTES + numTags);
+    return bytes;
+  }
+
+  long bytes() {
+    return bytes(size, numStates, numTags, outside, lengthNormalization);
+  }
+
+  /** Gets a chart for a parser, either the one pooled for this thread, if it is large enough, or a new one.
+   *
+   *  @param size The least size needed
+   *  @param maxSize The largest useful size
+   *  @param maxBytes The most memory the chart may take
+   *  @return The chart, which is no longer pooled
+   *  @throws OutOfMemoryError If a chart of the size needed would take more than maxBytes
+   */
+  static PCFGChart borrow(int size, int maxSize, long maxBytes,
+                          int numStates, int numTags, boolean outside, boolean lengthNormalization) {
+    SoftReference<PCFGChart> ref = pool.get();
+    PCFGChart chart = (ref == null) ? null : ref.get();
+    pool.remove();
+    if (chart != null && chart.size >= size && chart.numStates == numStates && chart.numTags == numTags &&
+        chart.outside == outside && chart.lengthNormalization == lengthNormalization) {
+      return chart;
+    }
+    if (bytes(size, numStates, numTags, outside, lengthNormalization) > maxBytes) {
+      throw new OutOfMemoryError("Refusal to create a chart of size " + size + ", which would take more than " + maxBytes + " bytes.");
+    }
+    int steppedSize = Math.min(maxSize, (size + SIZE_STEP - 1) / SIZE_STEP * SIZE_STEP);
+    if (steppedSize > size && bytes(steppedSize, numStates, numTags, outside, lengthNormalization) <= maxBytes) {
+      size = steppedSize;
+    }
+    return new PCFGChart(size, numStates, numTags, outside, lengthNormalization);
+  }
+
+  /** Puts a chart which a parser has finished with in this thread's pool, unless a larger one is already there. */
+  static void giveBack(PCFGChart chart) {
+    SoftReference<PCFGChart> ref = pool.get();
+    PCFGChart pooled = (ref == null) ? null : ref.get();
+    if (pooled == null || pooled.size < chart.size) {
+      pool.set(new SoftReference<>(chart));
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Measures the speed of the exhaustive PCFG parser's chart filling, which is most of the time of PCFG parsing.
+ *
+ * Usage: {@code java edu.stanford.nlp.parser.lexparser.PCFGParsingBenchmark -model parser -textFile text
+ * [-iterations 5] [parser flags]}
+ *
+ * The text has one tokenized sentence per line, with tokens separated by spaces.  Each sentence is parsed by an
+ * {@link ExhaustivePCFGParser} directly, iterations times, after one untimed pass to warm up.  This prints the
+ * words per second of each pass and overall, and the sum of the best scores, which should be the same whenever
+ * the grammar and flags are, so that runs before and after a change to the parser can be checked against each other.
+ * Other flags are passed to the parser, as by {@link LexicalizedParser#loadModel(String, String...)}.
+ */
+public class PCFGParsingBenchmark {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(PCFGParsingBenchmark.class);
+
+  private PCFGParsingBenchmark() {} // static main
+
+  /** Parses all the sentences, and returns the sum of their best scores. */
+  private static double parseAll(ExhaustivePCFGParser parser, List<List<HasWord>> sentences) {
+    double total = 0.0;
+    for (List<HasWord> sentence : sentences) {
+      if (parser.parse(sentence)) {
+        total += parser.getBestScore();
+      }
+    }
+    return total;
+  }
+
+  public static void main(String[] args) throws Exception {
+    StringUtils.logInvocationString(log, args);
+    Properties props = StringUtils.argsToProperties(args);
+    String model = props.getProperty("model");
+    String textFile = props.getProperty("textFile");
+    if (model == null || textFile == null) {
+      log.info("Usage: java " + PCFGParsingBenchmark.class.getName() + " -model parser -textFile text [-iterations n] [parser flags]");
+      System.exit(-1);
+    }
+    int iterations = Integer.parseInt(props.getProperty("iterations", "5"));
+    List<String> flags = new ArrayList<>();
+    for (String key : props.stringPropertyNames()) {
+      if ( ! key.equals("model") && ! key.equals("textFile") && ! key.equals("iterations")) {
+        flags.add('-' + key);
+        String value = props.getProperty(key);
+        if ( ! value.isEmpty() && ! value.equals("true")) {
+          flags.add(value);
+        }
+      }
+    }
+
+    LexicalizedParser lp = LexicalizedParser.loadModel(model, flags);
+    Options op = lp.getOp();
+    ExhaustivePCFGParser parser = new ExhaustivePCFGParser(lp.bg, lp.ug, lp.lex, op, lp.stateIndex, lp.wordIndex, lp.tagIndex);
+    List<List<HasWord>> sentences = new ArrayList<>();
+    int numWords = 0;
+    for (String line : IOUtils.readLines(textFile)) {
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      List<HasWord> sentence = new ArrayList<>();
+      for (String token : line.split(" +")) {
+        sentence.add(new Word(token));
+      }
+      numWords += sentence.size();
+      sentence.add(new Word(Lexicon.BOUNDARY));
+      sentences.add(sentence);
+    }
+
+    double expected = parseAll(parser, sentences);
+    NumberFormat nf = new DecimalFormat("0.00");
+    long totalMillis = 0;
+    for (int i = 0; i < iterations; i++) {
+      Timing timing = new Timing();
+      double total = parseAll(parser, sentences);
+      long millis = timing.report();
+      totalMillis += millis;
+      log.info("Pass " + (i + 1) + ": " + nf.format(numWords / (millis / 1000.0)) + " words per second.");
+      if (total != expected) {
+        log.warn("Pass " + (i + 1) + " gave a different sum of scores: " + total + " not " + expected);
+      }
+    }
+    log.info("Parsed " + numWords + " words in " + sentences.size() + " sentences " + iterations + " times: " +
+        nf.format((double) numWords * iterations / (totalMillis / 1000.0)) + " words per second.");
+    log.info("Sum of best scores: " + expected);
+  }
+
+}
@@ -0,0 +1,94 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/** The rules of a grammar grouped by one of their children and laid out in flat arrays for the inner loops
+ *  of {@link ExhaustivePCFGParser}.
+ *  <p>
+ *  The rules of state s are those from {@code start[s]} up to {@code start[s + 1]}, and rule r has parent
+ *  {@code parent[r]} and score {@code score[r]}, and for binary rules, other child {@code child[r]}.  Looping
+ *  over these reads three or four contiguous arrays, where looping over an array of rules follows a pointer to
+ *  each rule object, wherever it happens to be in the heap.  Within each state, binary rules are sorted by their
+ *  other child and then their parent, and unary rules by their parent, so that the chart cells they read and
+ *  write are visited in order.
+ *  <p>
+ *  The table is a copy: it is made when the grammar's rule arrays are, and changing a rule's score afterwards
+ *  doesn't change it.
+ */
+class RuleTable {
+
+  private static final Comparator<BinaryRule> BY_LEFT_CHILD =
+      Comparator.<BinaryRule>comparingInt(rule -> rule.leftChild).thenComparingInt(rule -> rule.parent);
+
+  private static final Comparator<BinaryRule> BY_RIGHT_CHILD =
+      Comparator.<BinaryRule>comparingInt(rule -> rule.rightChild).thenComparingInt(rule -> rule.parent);
+
+  /** Where the rules of each state start; start[numStates] is the number of rules. */
+  final int[] start;
+  /** The other child of each binary rule, or null for unary rules. */
+  final int[] child;
+  final int[] parent;
+  final float[] score;
+
+  private RuleTable(int numStates, int numRules, boolean binary) {
+    start = new int[numStates + 1];
+    child = binary ? new int[numRules] : null;
+    parent = new int[numRules];
+    score = new float[numRules];
+  }
+
+  private static int count(Rule[][] rulesByState) {
+    int numRules = 0;
+    for (Rule[] rules : rulesByState) {
+      numRules += rules.length;
+    }
+    return numRules;
+  }
+
+  /** Makes a table of binary rules.
+   *
+   *  @param rulesByChild For each state, the rules with it as one child
+   *  @param byLeftChild Whether rulesByChild are grouped by their left child (otherwise by their right child)
+   */
+  static RuleTable binary(BinaryRule[][] rulesByChild, boolean byLeftChild) {
+    RuleTable table = new RuleTable(rulesByChild.length, count(rulesByChild), true);
+    Comparator<BinaryRule> order = byLeftChild ? BY_RIGHT_CHILD : BY_LEFT_CHILD;
+    int r = 0;
+    for (int state = 0; state < rulesByChild.length; state++) {
+      table.start[state] = r;
+      BinaryRule[] rules = rulesByChild[state].clone();
+      Arrays.sort(rules, order);
+      for (BinaryRule rule : rules) {
+        table.child[r] = byLeftChild ? rule.rightChild : rule.leftChild;
+        table.parent[r] = rule.parent;
+        table.score[r] = rule.score;
+        r++;
+      }
+    }
+    table.start[rulesByChild.length] = r;
+    return table;
+  }
+
+  /** Makes a table of unary rules.
+   *
+   *  @param rulesByChild For each state, the rules with it as their child
+   */
+  static RuleTable unary(UnaryRule[][] rulesByChild) {
+    RuleTable table = new RuleTable(rulesByChild.length, count(rulesByChild), false);
+    int r = 0;
+    for (int state = 0; state < rulesByChild.length; state++) {
+      table.start[state] = r;
+      UnaryRule[] rules = rulesByChild[state].clone();
+      Arrays.sort(rules, Comparator.comparingInt(rule -> rule.parent));
+      for (UnaryRule rule : rules) {
+        table.parent[r] = rule.parent;
+        table.score[r] = rule.score;
+        r++;
+      }
+    }
+    table.start[rulesByChild.length] = r;
+    return table;
+  }
+
+}
@@ -69,6 +69,42 @@ public class TestOptions implements Serializable  {
   /** If true, use faster iterative deepening CKY algorithm. */
   public boolean iterativeCKY = false;
 
+  /**
+   * If positive, do coarse-to-fine PCFG parsing: first parse with the
+   * grammar projected onto basic categories, and then only build states
+   * over spans where the best coarse parse with a state of the same basic
+   * category there scores within this many log units of the best coarse
+   * parse.  Smaller values prune more, and so are faster but more likely to
+   * lose the best parse; if pruning leaves no parse, the sentence is parsed
+   * again without it.  Not used with iterativeCKY or lengthNormalization.
+   * If zero, do exhaustive PCFG parsing.
+   */
+  public double coarseToFineThreshold = 0.0;
+
+  /**
+   * If true, each thread keeps a PCFG chart which a parser has finished with
+   * (see LexicalizedParserQuery.releaseChart(), which LexicalizedParser's
+   * parse methods and the parse annotator call), and gives it to the next
+   * ExhaustivePCFGParser on the thread, rather than each parser making its
+   * own.  Charts are then also made a few words larger than needed, so that
+   * they are remade less often as sentences get longer, and a chart which
+   * would take more than an equal share per testing thread of the maximum
+   * heap isn't made, and the sentence is not parsed for lack of memory.
+   */
+  public boolean poolCharts = false;
+
+  /**
+   * If positive, the PCFG charts of sentences of at least this many words
+   * have the cells of each span length filled in parallel, since they don't
+   * depend on each other, so that one long sentence can use several cores.
+   * The cells are run as tasks in the fork-join pool given to the query
+   * (see LexicalizedParserQuery.setChartPool(); the parse annotator gives the
+   * pipeline's sentence pool, when sentences are parsed in one), and with no
+   * pool, charts are filled on the calling thread.  Not used with iterativeCKY.
+   * If zero, charts are filled on the calling thread.
+   */
+  public int parallelChartLength = 0;
+
   /**
    * The maximum sentence length (including punctuation, etc.) to parse.
    */
@@ -310,6 +346,9 @@ public class TestOptions implements Serializable  {
             " outputFormatOptions=" + outputFormatOptions + 
             " printAllBestParses=" + printAllBestParses + 
             " testingThreads=" + testingThreads +
+            " coarseToFineThreshold=" + coarseToFineThreshold +
+            " poolCharts=" + poolCharts +
+            " parallelChartLength=" + parallelChartLength +
             " quietEvaluation=" + quietEvaluation);
   }
 
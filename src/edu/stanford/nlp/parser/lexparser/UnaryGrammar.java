@@ -24,6 +24,7 @@ public class UnaryGrammar implements Serializable, Iterable<UnaryRule> {
 
   private transient UnaryRule[][] closedRulesWithP; // = null;
   private transient UnaryRule[][] closedRulesWithC; // = null;
+  private transient RuleTable closedRuleTableWithC; // = null;
 
   /** The basic list of UnaryRules.  Really this is treated as a set */
   private Map<UnaryRule,UnaryRule> coreRules; // = null;
@@ -175,6 +176,7 @@ public class UnaryGrammar implements Serializable, Iterable<UnaryRule> {
       closedRulesWithP[i] = closedRulesWithParent[i].toArray(new UnaryRule[closedRulesWithParent[i].size()]);
       closedRulesWithC[i] = closedRulesWithChild[i].toArray(new UnaryRule[closedRulesWithChild[i].size()]);
     }
+    closedRuleTableWithC = RuleTable.unary(closedRulesWithC);
   }
 
   public UnaryRule[] closedRulesByParent(int state) {
@@ -191,6 +193,11 @@ public class UnaryGrammar implements Serializable, Iterable<UnaryRule> {
     return closedRulesWithC[state];
   }
 
+  /** The rules of {@link #closedRulesByChild(int)} for all states, as a table. */
+  RuleTable closedRuleTableByChild() {
+    return closedRuleTableWithC;
+  }
+
   public Iterator<UnaryRule> closedRuleIteratorByParent(int state) {
     if (state >= closedRulesWithParent.length) {
       List<UnaryRule> lur = Collections.emptyList();
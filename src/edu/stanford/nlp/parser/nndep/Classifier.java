@@ -1,5 +1,6 @@
 package edu.stanford.nlp.parser.nndep;
 
+import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.math.ArrayMath;
 import edu.stanford.nlp.util.CollectionUtils;
 import edu.stanford.nlp.util.Pair;
@@ -7,12 +8,26 @@ import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 import edu.stanford.nlp.util.logging.Redwood;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
 
@@ -71,6 +86,30 @@ public class Classifier  {
    */
   private final Map<Integer, Integer> preMap;
 
+  /**
+   * Hidden layer unit activations pre-computed while parsing, for
+   * feature IDs not in {@link #preMap} which have been seen at least
+   * {@link #ADAPTIVE_PRE_COMPUTE_COUNT} times, up to
+   * {@link Config#numAdaptivePreComputed} of them.  Null if these
+   * aren't pre-computed, as in training.
+   */
+  private final Map<Integer, double[]> adaptiveSaved;
+
+  /**
+   * How many times each feature ID not yet pre-computed has been seen
+   * while parsing.  This is cleared when it holds too many IDs, so
+   * that only features seen often within a while are pre-computed.
+   */
+  private final Map<Integer, Integer> adaptiveCounts;
+
+  private static final int ADAPTIVE_PRE_COMPUTE_COUNT = 16;
+
+  /** The number of feature IDs to count, per feature ID that may be adaptively pre-computed. */
+  private static final int ADAPTIVE_COUNTS_PER_FEATURE = 4;
+
+  /** Marks a file of pre-computed activations (see {@link #savePreComputed(String)}). */
+  private static final int PRE_COMPUTED_MAGIC = 0x6e6e5043;  // "nnPC"
+
   /**
    * Initial training state is dependent on how the classifier is
    * initialized. We use this flag to determine whether calls to
@@ -151,6 +190,14 @@ public class Classifier  {
       jobHandler = new MulticoreWrapper<>(config.trainingThreads, new CostFunction(), false);
     else
       jobHandler = null;
+
+    if ( ! isTraining && config.numAdaptivePreComputed > 0) {
+      adaptiveSaved = new ConcurrentHashMap<>();
+      adaptiveCounts = new ConcurrentHashMap<>();
+    } else {
+      adaptiveSaved = null;
+      adaptiveCounts = null;
+    }
   }
 
   /**
@@ -671,6 +718,141 @@ public class Classifier  {
     }
     log.info("PreComputed " + toPreCompute.size() + ", Elapsed Time: " +
             (System.currentTimeMillis() - startTime) / 1000.0 + " (s)");
+
+    // Activations pre-computed while parsing are for the old weights
+    if (adaptiveSaved != null) {
+      adaptiveSaved.clear();
+      adaptiveCounts.clear();
+    }
+  }
+
+  /**
+   * The hidden layer activations of a feature ID not in {@link #preMap}
+   * if they have been pre-computed while parsing, or else null.  This
+   * counts the feature ID, and pre-computes its activations once it has
+   * been seen often enough, while there is room for them.
+   */
+  private double[] adaptiveSaved(int index) {
+    if (adaptiveSaved == null) {
+      return null;
+    }
+    double[] activations = adaptiveSaved.get(index);
+    if (activations == null && adaptiveSaved.size() < config.numAdaptivePreComputed) {
+      int count = adaptiveCounts.merge(index, 1, Integer::sum);
+      if (count >= ADAPTIVE_PRE_COMPUTE_COUNT) {
+        activations = new double[config.hiddenSize];
+        matrixMultiplySliceSum(activations, W1, E[index / config.numTokens], (index % config.numTokens) * config.embeddingSize);
+        adaptiveSaved.put(index, activations);
+        adaptiveCounts.remove(index);
+      } else if (adaptiveCounts.size() > ADAPTIVE_COUNTS_PER_FEATURE * config.numAdaptivePreComputed) {
+        adaptiveCounts.clear();
+      }
+    }
+    return activations;
+  }
+
+  /**
+   * A fingerprint of the weights and pre-computed feature IDs from which
+   * the pre-computed activations are computed, used to check that
+   * saved activations are for this classifier.
+   */
+  private long preComputedFingerprint() {
+    long fingerprint = 17;
+    for (Map.Entry<Integer, Integer> entry : preMap.entrySet()) {
+      // order-independent, as the map's iteration order may change
+      fingerprint += entry.getKey() * 1000003L + entry.getValue();
+    }
+    for (double[] row : W1) {
+      fingerprint = fingerprint * 31 + Arrays.hashCode(row);
+    }
+    for (double[] row : E) {
+      fingerprint = fingerprint * 31 + Arrays.hashCode(row);
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Write the pre-computed hidden layer activations to a file, from
+   * which they can be loaded with {@link #loadPreComputed(String)}
+   * rather than computed again.  The file is written under a temporary
+   * name in the same directory and then moved into place, so that a
+   * parser loading it (e.g., in another process) never sees a partly
+   * written file.  As the file is only an optimization, failing to
+   * write it is not an error: this logs a warning and carries on.
+   *
+   * @return Whether the file was written
+   */
+  public boolean savePreComputed(String path) {
+    Path target = Paths.get(path).toAbsolutePath();
+    Path temp = null;
+    try {
+      temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        output.writeInt(PRE_COMPUTED_MAGIC);
+        output.writeInt(saved.length);
+        output.writeInt(config.hiddenSize);
+        output.writeLong(preComputedFingerprint());
+        for (double[] activations : saved) {
+          for (double activation : activations) {
+            output.writeDouble(activation);
+          }
+        }
+      }
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (IOException e) {
+      log.warn("Could not save pre-computed activations to " + path + ": " + e);
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+          // nothing more we can do
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Read the pre-computed hidden layer activations from a file written
+   * by {@link #savePreComputed(String)}, which is memory-mapped to read
+   * it quickly.
+   *
+   * @return Whether they were loaded: false if there is no such file,
+   *         or it was written for different weights
+   */
+  public boolean loadPreComputed(String path) {
+    File file = new File(path);
+    if ( ! file.isFile()) {
+      return false;
+    }
+    long startTime = System.currentTimeMillis();
+    try (RandomAccessFile input = new RandomAccessFile(file, "r");
+         FileChannel channel = input.getChannel()) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      int headerSize = 3 * Integer.BYTES + Long.BYTES;
+      if (buffer.remaining() < headerSize || buffer.getInt() != PRE_COMPUTED_MAGIC ||
+          buffer.getInt() != preMap.size() || buffer.getInt() != config.hiddenSize ||
+          buffer.getLong() != preComputedFingerprint() ||
+          buffer.remaining() != (long) preMap.size() * config.hiddenSize * Double.BYTES) {
+        log.info("Pre-computed activations in " + path + " are not for this model");
+        return false;
+      }
+      DoubleBuffer activations = buffer.asDoubleBuffer();
+      saved = new double[preMap.size()][config.hiddenSize];
+      for (double[] row : saved) {
+        activations.get(row);
+      }
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    if (adaptiveSaved != null) {
+      adaptiveSaved.clear();
+      adaptiveCounts.clear();
+    }
+    log.info("Loaded " + saved.length + " pre-computed activations from " + path + ", Elapsed Time: " +
+        (System.currentTimeMillis() - startTime) / 1000.0 + " (s)");
+    return true;
   }
 
 
@@ -692,8 +874,9 @@ public class Classifier  {
       int tok = feature[j];
       int index = tok * numTokens + j;
       Integer idInteger = preMap.get(index);
-      if (idInteger != null) {
-        ArrayMath.pairwiseAddInPlace(hidden, saved[idInteger]);
+      double[] activations = idInteger != null ? saved[idInteger] : adaptiveSaved(index);
+      if (activations != null) {
+        ArrayMath.pairwiseAddInPlace(hidden, activations);
       } else {
         matrixMultiplySliceSum(hidden, W1, E[tok], offset);
       }
@@ -703,6 +886,57 @@ public class Classifier  {
     return matrixMultiply(W2, hidden);
   }
 
+  /**
+   * Feed a batch of feature vectors forward through the network together, writing the values of the output layer
+   * for each into the corresponding row of scores.  The scores are the same as from {@link #computeScores(int[])}
+   * on each feature vector, but the layers are computed as matrix multiplies over the batch: each row of
+   * {@code W1} and {@code W2} is read once for the whole batch rather than once per feature vector.
+   *
+   * @param features The feature vectors; only the first batchSize are used
+   * @param batchSize The number of feature vectors to score
+   * @param hidden Space for the hidden layers: at least batchSize rows of length hiddenSize, which are overwritten
+   * @param scores Where to write the scores, at least batchSize by numLabels
+   */
+  void computeScores(int[][] features, int batchSize, double[][] hidden, double[][] scores) {
+    final int numTokens = config.numTokens;
+    final int embeddingSize = config.embeddingSize;
+    final int hiddenSize = config.hiddenSize;
+    // the embedding of each feature vector's j-th feature, if its activations weren't precomputed
+    final double[][] embeddings = new double[batchSize][];
+
+    for (int b = 0; b < batchSize; b++) {
+      Arrays.fill(hidden[b], 0.0);
+    }
+    for (int j = 0, offset = 0; j < numTokens; j++, offset += embeddingSize) {
+      int numEmbedded = 0;
+      for (int b = 0; b < batchSize; b++) {
+        int tok = features[b][j];
+        int index = tok * numTokens + j;
+        Integer idInteger = preMap.get(index);
+        double[] activations = idInteger != null ? saved[idInteger] : adaptiveSaved(index);
+        if (activations != null) {
+          ArrayMath.pairwiseAddInPlace(hidden[b], activations);
+          embeddings[b] = null;
+        } else {
+          embeddings[b] = E[tok];
+          numEmbedded++;
+        }
+      }
+      if (numEmbedded > 0) {
+        batchMatrixMultiplySliceSum(hidden, W1, embeddings, batchSize, offset, embeddingSize);
+      }
+    }
+    for (int b = 0; b < batchSize; b++) {
+      addCubeInPlace(hidden[b], b1);
+    }
+    for (int i = 0; i < W2.length; i++) {
+      double[] row = W2[i];
+      for (int b = 0; b < batchSize; b++) {
+        scores[b][i] = ArrayMath.dotProduct(row, hidden[b]);
+      }
+    }
+  }
+
   // extracting these small methods makes things faster; hotspot likes them
 
   private static double[] matrixMultiply(double[][] matrix, double[] vector) {
@@ -721,6 +955,24 @@ public class Classifier  {
     }
   }
 
+  /** {@link #matrixMultiplySliceSum} for each vector of a batch that isn't null, reading each row of the matrix once. */
+  private static void batchMatrixMultiplySliceSum(double[][] sums, double[][] matrix, double[][] vectors, int batchSize,
+                                                  int leftColumnOffset, int length) {
+    for (int i = 0; i < matrix.length; i++) {
+      double[] row = matrix[i];
+      for (int b = 0; b < batchSize; b++) {
+        double[] vector = vectors[b];
+        if (vector != null) {
+          double sum = sums[b][i];
+          for (int j = 0; j < length; j++) {
+            sum += row[leftColumnOffset + j] * vector[j];
+          }
+          sums[b][i] = sum;
+        }
+      }
+    }
+  }
+
   private static void addCubeInPlace(double[] vector, double [] bias) {
     for (int i = 0; i < vector.length; i++) {
       vector[i] += bias[i]; // add bias
@@ -133,6 +133,29 @@ public class Config {
    */
   public int numPreComputed = 100000;
 
+  /**
+   * If non-null, a file in which to keep the pre-computed hidden-layer
+   * unit activations, so that they needn't be computed each time the
+   * parser is loaded.
+   *
+   * If the file exists and was made for the loaded model, the
+   * activations are read from it; otherwise they are computed and
+   * written to it.
+   */
+  public String preComputedFile = null;
+
+  /**
+   * At test time, the number of further input tokens (beyond the
+   * {@code numPreComputed} chosen in training) for which the parser may
+   * pre-compute hidden-layer unit activations as it parses.  Tokens
+   * are pre-computed once they have been seen often enough, until
+   * there are this many.  Each takes {@code hiddenSize} doubles of
+   * memory.
+   *
+   * If zero, no more tokens are pre-computed while parsing.
+   */
+  public int numAdaptivePreComputed = 0;
+
   /**
    * During training, run a full UAS evaluation after every
    * {@code evalPerIter} iterations.
@@ -208,6 +231,16 @@ public class Config {
    */
   public String tagger = MaxentTagger.DEFAULT_JAR_PATH;
 
+  /**
+   * How many sentences to parse together when parsing a list of
+   * sentences.  Their parser configurations are advanced in lockstep,
+   * so that the classifier scores a whole batch of configurations at a
+   * time with matrix multiplies, which reads the weights once per
+   * batch rather than once per configuration.  The parses are the same
+   * whatever the batch size; 1 parses one sentence at a time.
+   */
+  public int parseBatchSize = 64;
+
   public Config(Properties properties) {
     setProperties(properties);
   }
@@ -236,6 +269,9 @@ public class Config {
     // Runtime parsing options
     sentenceDelimiter = PropertiesUtils.getString(props, "sentenceDelimiter", sentenceDelimiter);
     tagger = PropertiesUtils.getString(props, "tagger.model", tagger);
+    parseBatchSize = PropertiesUtils.getInt(props, "parseBatchSize", parseBatchSize);
+    preComputedFile = PropertiesUtils.getString(props, "preComputedFile", preComputedFile);
+    numAdaptivePreComputed = PropertiesUtils.getInt(props, "numAdaptivePreComputed", numAdaptivePreComputed);
 
     String escaperClass = props.getProperty("escaper");
     escaper = escaperClass != null ? ReflectionLoading.loadByReflection(escaperClass) : null;
@@ -730,7 +730,7 @@ public class DependencyParser  {
         // prediction, we just do this once in #initialize
         classifier.preCompute();
 
-        List<DependencyTree> predicted = devSents.stream().map(this::predictInner).collect(toList());
+        List<DependencyTree> predicted = predictInner(devSents);
 
         double uas = config.noPunc ? system.getUASnoPunc(devSents, predicted, devTrees) : system.getUAS(devSents, predicted, devTrees);
         log.info("UAS: " + uas);
@@ -755,7 +755,7 @@ public class DependencyParser  {
     if (devFile != null) {
       // Do final UAS evaluation and save if final model beats the
       // best intermediate one
-      List<DependencyTree> predicted = devSents.stream().map(this::predictInner).collect(toList());
+      List<DependencyTree> predicted = predictInner(devSents);
       double uas = config.noPunc ? system.getUASnoPunc(devSents, predicted, devTrees) : system.getUAS(devSents, predicted, devTrees);
 
       if (uas > bestUAS) {
@@ -935,30 +935,99 @@ public class DependencyParser  {
    * for general parsing purposes.
    */
   private DependencyTree predictInner(CoreMap sentence) {
-    int numTrans = system.numTransitions();
-
     Configuration c = system.initialConfiguration(sentence);
     while (!system.isTerminal(c)) {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
       }
       double[] scores = classifier.computeScores(getFeatureArray(c));
+      system.apply(c, bestTransition(c, scores));
+    }
+    return c.tree;
+  }
 
-      double optScore = Double.NEGATIVE_INFINITY;
-      String optTrans = null;
+  /** The transition with the highest score among those that can be applied to the configuration. */
+  private String bestTransition(Configuration c, double[] scores) {
+    int numTrans = system.numTransitions();
+    double optScore = Double.NEGATIVE_INFINITY;
+    String optTrans = null;
+
+    for (int j = 0; j < numTrans; ++j) {
+      if (scores[j] > optScore) {
+        String tr = system.transitions.get(j);
+        if (system.canApply(c, tr)) {
+          optScore = scores[j];
+          optTrans = tr;
+        }
+      }
+    }
+    return optTrans;
+  }
 
-      for (int j = 0; j < numTrans; ++j) {
-        if (scores[j] > optScore) {
-          String tr = system.transitions.get(j);
-          if (system.canApply(c, tr)) {
-            optScore = scores[j];
-            optTrans = tr;
+  /**
+   * Determine the dependency parses of the given sentences, parsing up to {@link Config#parseBatchSize} of them
+   * together: at each step, the configurations of all the sentences being parsed are scored as one batch (see
+   * {@link Classifier#computeScores(int[][], int, double[][], double[][])}), and when a sentence is finished the next
+   * one takes its place.  The parses are the same as from {@link #predictInner(CoreMap)} on each sentence.
+   *
+   * @return The parses, in the order of the sentences
+   */
+  private List<DependencyTree> predictInner(List<? extends CoreMap> sentences) {
+    int batchSize = Math.min(config.parseBatchSize, sentences.size());
+    if (batchSize <= 1) {
+      return sentences.stream().map(this::predictInner).collect(toList());
+    }
+
+    DependencyTree[] trees = new DependencyTree[sentences.size()];
+    Configuration[] configurations = new Configuration[batchSize];
+    int[] sentenceIndices = new int[batchSize];
+    int[][] features = new int[batchSize][];
+    double[][] hidden = new double[batchSize][config.hiddenSize];
+    double[][] scores = new double[batchSize][system.numTransitions()];
+
+    int next = 0;  // the next sentence to start parsing
+    int numActive = 0;
+    while (numActive < batchSize) {
+      configurations[numActive] = system.initialConfiguration(sentences.get(next));
+      sentenceIndices[numActive] = next;
+      numActive++;
+      next++;
+    }
+    while (numActive > 0) {
+      if (Thread.interrupted()) {  // Allow interrupting
+        throw new RuntimeInterruptedException();
+      }
+      // Finish the sentences that are done, putting the next sentences (or the last active ones) in their places
+      for (int b = 0; b < numActive; ) {
+        if (system.isTerminal(configurations[b])) {
+          trees[sentenceIndices[b]] = configurations[b].tree;
+          if (next < sentences.size()) {
+            configurations[b] = system.initialConfiguration(sentences.get(next));
+            sentenceIndices[b] = next;
+            next++;
+          } else {
+            numActive--;
+            configurations[b] = configurations[numActive];
+            sentenceIndices[b] = sentenceIndices[numActive];
+            configurations[numActive] = null;
           }
+        } else {
+          b++;
         }
       }
-      system.apply(c, optTrans);
+      if (numActive == 0) {
+        break;
+      }
+
+      for (int b = 0; b < numActive; b++) {
+        features[b] = getFeatureArray(configurations[b]);
+      }
+      classifier.computeScores(features, numActive, hidden, scores);
+      for (int b = 0; b < numActive; b++) {
+        system.apply(configurations[b], bestTransition(configurations[b], scores[b]));
+      }
     }
-    return c.tree;
+    return Arrays.asList(trees);
   }
 
   /**
@@ -974,8 +1043,38 @@ public class DependencyParser  {
           "loaded and initialized; first load a model.");
 
     DependencyTree result = predictInner(sentence);
+    return toGrammaticalStructure(sentence, result);
+  }
+
+  /**
+   * Determine the dependency parses of the given sentences using the loaded model.
+   * This gives the same parses as {@link #predict(edu.stanford.nlp.util.CoreMap)} on each sentence, but is faster,
+   * as up to {@link Config#parseBatchSize} sentences are parsed together.
+   *
+   * @return The parses, in the order of the sentences
+   * @throws java.lang.IllegalStateException If parser has not yet been loaded and initialized
+   *         (see {@link #initialize(boolean)}
+   */
+  public List<GrammaticalStructure> predictAll(List<? extends CoreMap> sentences) {
+    if (system == null)
+      throw new IllegalStateException("Parser has not been  " +
+          "loaded and initialized; first load a model.");
 
-    // The rest of this method is just busy-work to convert the
+    List<DependencyTree> results = predictInner(sentences);
+    List<GrammaticalStructure> parses = new ArrayList<>(results.size());
+    for (int i = 0; i < results.size(); i++) {
+      parses.add(toGrammaticalStructure(sentences.get(i), results.get(i)));
+    }
+    return parses;
+  }
+
+  /** How many sentences {@link #predictAll(List)} parses together. */
+  public int parseBatchSize() {
+    return config.parseBatchSize;
+  }
+
+  private GrammaticalStructure toGrammaticalStructure(CoreMap sentence, DependencyTree result) {
+    // This is just busy-work to convert the
     // package-local representation into a CoreNLP-standard
     // GrammaticalStructure.
 
@@ -1048,6 +1147,10 @@ public class DependencyParser  {
    * @see #predict(edu.stanford.nlp.util.CoreMap)
    */
   public GrammaticalStructure predict(List<? extends HasWord> sentence) {
+    return predict(toCoreMap(sentence));
+  }
+
+  private static CoreMap toCoreMap(List<? extends HasWord> sentence) {
     CoreLabel sentenceLabel = new CoreLabel();
     List<CoreLabel> tokens = new ArrayList<>();
 
@@ -1079,7 +1182,7 @@ public class DependencyParser  {
 
     sentenceLabel.set(CoreAnnotations.TokensAnnotation.class, tokens);
 
-    return predict(sentenceLabel);
+    return sentenceLabel;
   }
 
   //TODO: support sentence-only files as input
@@ -1113,7 +1216,7 @@ public class DependencyParser  {
     }
     log.info(String.format("OOV Words: %d / %d = %.2f%%\n", numOOVWords, numWords, numOOVWords * 100.0 / numWords));
 
-    List<DependencyTree> predicted = testSents.stream().map(this::predictInner).collect(toList());
+    List<DependencyTree> predicted = predictInner(testSents);
     Map<String, Double> result = system.evaluate(testSents, predicted, testTrees);
 
     double uas = config.noPunc ? result.get("UASnoPunc") : result.get("UAS");
@@ -1153,10 +1256,9 @@ public class DependencyParser  {
 
     timer.start();
 
+    List<CoreMap> sentences = tagged.stream().map(DependencyParser::toCoreMap).collect(toList());
     int numSentences = 0;
-    for (List<TaggedWord> taggedSentence : tagged) {
-      GrammaticalStructure parse = predict(taggedSentence);
-
+    for (GrammaticalStructure parse : predictAll(sentences)) {
       Collection<TypedDependency> deps = parse.typedDependencies();
       for (TypedDependency dep : deps)
         output.println(dep);
@@ -1186,7 +1288,12 @@ public class DependencyParser  {
 
     // Pre-compute matrix multiplications
     if (config.numPreComputed > 0) {
-      classifier.preCompute();
+      if (config.preComputedFile == null || ! classifier.loadPreComputed(config.preComputedFile)) {
+        classifier.preCompute();
+        if (config.preComputedFile != null && classifier.savePreComputed(config.preComputedFile)) {
+          log.info("Saved pre-computed activations to " + config.preComputedFile);
+        }
+      }
     }
   }
 
@@ -1264,6 +1371,9 @@ public class DependencyParser  {
    *   <tr><th>Option</th><th>Default</th><th>Description</th></tr>
    *   <tr><td><tt>-escaper</tt></td><td>N/A</td><td>Only applicable for testing with <tt>-textFile</tt>. If provided, use this word-escaper when parsing raw sentences. Should be a fully-qualified class name like <tt>edu.stanford.nlp.trees.international.arabic.ATBEscaper</tt>.</td></tr>
    *   <tr><td><tt>-numPreComputed</tt></td><td>100000</td><td>The parser pre-computes hidden-layer unit activations for particular inputs words at both training and testing time in order to speed up feedforward computation in the neural network. This parameter determines how many words for which we should compute hidden-layer activations.</td></tr>
+   *   <tr><td><tt>-numAdaptivePreComputed</tt></td><td>0</td><td>The parser can also pre-compute hidden-layer unit activations for inputs it sees often while parsing, beyond those chosen in training. This parameter limits how many more it pre-computes, each of which takes <tt>hiddenSize</tt> doubles of memory. If zero, none are.</td></tr>
+   *   <tr><td><tt>-parseBatchSize</tt></td><td>64</td><td>How many sentences to parse together when testing with <tt>-testFile</tt> or <tt>-textFile</tt>. The classifier scores the configurations of a batch of sentences at once, which is faster than scoring them one at a time but gives the same parses. If 1, sentences are parsed one at a time.</td></tr>
+   *   <tr><td><tt>-preComputedFile</tt></td><td>N/A</td><td>If provided, a file in which to keep the pre-computed hidden-layer unit activations between runs. If it holds the activations for this model, they are loaded from it rather than computed; otherwise they are computed and saved to it.</td></tr>
    *   <tr><td><tt>-sentenceDelimiter</tt></td><td>N/A</td><td>Only applicable for testing with <tt>-textFile</tt>.  If provided, assume that the given <tt>textFile</tt> has already been sentence-split, and that sentences are separated by this delimiter.</td></tr>
    *   <tr><td><tt>-tagger.model</tt></td><td>edu/stanford/nlp/models/pos-tagger/english-left3words/english-left3words-distsim.tagger</td><td>Only applicable for testing with <tt>-textFile</tt>. Path to a part-of-speech tagger to use to pre-tag the raw sentences before parsing.</td></tr>
    * </table>
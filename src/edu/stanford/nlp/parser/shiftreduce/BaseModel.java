@@ -1,6 +1,7 @@
 package edu.stanford.nlp.parser.shiftreduce;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -116,6 +117,23 @@ public abstract class BaseModel implements Serializable {
 
   public abstract Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints);
 
+  /**
+   * Finds the highest scoring transitions from each of several
+   * states, such as all the states on a beam.  By default, this scores
+   * each state on its own; models may override it to score the states
+   * together.
+   *
+   * @return For each state, in order, its highest scoring transitions,
+   *   as by {@link #findHighestScoringTransitions(State, boolean, int, List)}
+   */
+  public List<Collection<ScoredObject<Integer>>> findHighestScoringTransitions(List<State> states, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
+    List<Collection<ScoredObject<Integer>>> transitions = new ArrayList<>(states.size());
+    for (State state : states) {
+      transitions.add(findHighestScoringTransitions(state, requireLegal, numTransitions, constraints));
+    }
+    return transitions;
+  }
+
   /**
    * Train a new model.  This is the method to override for new models
    * such that the ShiftReduceParser will fill in the model.  Given a
@@ -0,0 +1,205 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import edu.stanford.nlp.parser.common.ParserConstraint;
+import edu.stanford.nlp.tagger.common.Tagger;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Treebank;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.ScoredComparator;
+import edu.stanford.nlp.util.ScoredObject;
+
+/**
+ * A {@link PerceptronModel} compiled for parsing.
+ *
+ * Rather than a {@code Map<String, Weight>}, the features are kept as
+ * 64 bit hashes of their Strings in an open addressing hash table,
+ * and the weights of all the features are packed (as in {@link Weight})
+ * into one flat array, in the order of the table's slots.  Looking up
+ * a feature is then one hash of its String and a probe of a primitive
+ * array, with no String comparison and no Weight object to follow, and
+ * the model keeps none of the feature Strings, which are most of the
+ * memory of a PerceptronModel.  A feature which isn't in the model
+ * could have the same hash as one that is, and be given its weights,
+ * but with 64 bit hashes this is vanishingly unlikely.
+ *
+ * The states of a beam are scored together, into one matrix of scores,
+ * reusing one list for their features.
+ *
+ * A compiled model scores transitions exactly as the model it was
+ * compiled from, but can't be trained further.  Existing models can be
+ * converted with {@link PerceptronModelCompiler}.
+ */
+public class CompiledPerceptronModel extends BaseModel {
+
+  final FeatureFactory featureFactory;
+
+  /** The hash of the feature in each slot, or 0 for an empty slot. */
+  private final long[] keys;
+  /** Where the weights of each slot start in weights; slotStart[keys.length] is the number of weights. */
+  private final int[] slotStart;
+  /** The weights of all the features, packed as in {@link Weight}. */
+  private final long[] weights;
+  private final int numFeatures;
+
+  private final Set<String> tagSet;
+
+  public CompiledPerceptronModel(PerceptronModel model) {
+    super(model);
+    this.featureFactory = model.featureFactory;
+    this.tagSet = model.tagSet();
+
+    Map<String, Weight> featureWeights = model.featureWeights;
+    int capacity = 2;
+    while (capacity < featureWeights.size() * 2) {
+      capacity <<= 1;
+    }
+    keys = new long[capacity];
+    Weight[] slotWeights = new Weight[capacity];
+    int numWeights = 0;
+    int count = 0;
+    for (Map.Entry<String, Weight> entry : featureWeights.entrySet()) {
+      Weight weight = entry.getValue();
+      if (weight.size() == 0) {
+        continue;
+      }
+      long key = hash(entry.getKey());
+      int slot = findSlot(keys, key);
+      if (keys[slot] == key) {
+        throw new IllegalStateException("Cannot compile model: features " + entry.getKey() + " and another have the same hash");
+      }
+      keys[slot] = key;
+      slotWeights[slot] = weight;
+      numWeights += weight.size();
+      count++;
+    }
+    numFeatures = count;
+
+    slotStart = new int[capacity + 1];
+    weights = new long[numWeights];
+    int k = 0;
+    for (int slot = 0; slot < capacity; ++slot) {
+      slotStart[slot] = k;
+      if (slotWeights[slot] != null) {
+        k += slotWeights[slot].copyPacked(weights, k);
+      }
+    }
+    slotStart[capacity] = k;
+  }
+
+  /**
+   * A 64 bit hash of a feature: FNV-1a over its chars, then mixed so
+   * that the low bits used for the slot depend on all of them.  Never 0,
+   * which marks an empty slot.
+   */
+  static long hash(String feature) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0, length = feature.length(); i < length; ++i) {
+      h ^= feature.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (h == 0) ? 1 : h;
+  }
+
+  /** The slot holding key, or else the empty slot where it would go. */
+  private static int findSlot(long[] keys, long key) {
+    int mask = keys.length - 1;
+    int slot = (int) key & mask;
+    while (keys[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /** The number of features in the model. */
+  public int numFeatures() {
+    return numFeatures;
+  }
+
+  /** The number of (nonzero) weights in the model. */
+  public int numWeights() {
+    return weights.length;
+  }
+
+  /** Roughly the bytes taken by the hash table and weights. */
+  public long bytes() {
+    return 8L * keys.length + 4L * slotStart.length + 8L * weights.length;
+  }
+
+  /** Adds the weights of the given features to a row of scores which starts at offset. */
+  private void score(List<String> features, float[] scores, int offset) {
+    for (String feature : features) {
+      int slot = findSlot(keys, hash(feature));
+      if (keys[slot] == 0) {
+        // Features not in our index are ignored
+        continue;
+      }
+      Weight.score(weights, slotStart[slot], slotStart[slot + 1], scores, offset);
+    }
+  }
+
+  /** The highest scoring transitions of a state, from its row of scores, which starts at offset. */
+  private Collection<ScoredObject<Integer>> highestScoring(State state, float[] scores, int offset, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
+    PriorityQueue<ScoredObject<Integer>> queue = new PriorityQueue<>(numTransitions + 1, ScoredComparator.ASCENDING_COMPARATOR);
+    int numScores = transitionIndex.size();
+    for (int i = 0; i < numScores; ++i) {
+      if (!requireLegal || transitionIndex.get(i).isLegal(state, constraints)) {
+        queue.add(new ScoredObject<>(i, scores[offset + i]));
+        if (queue.size() > numTransitions) {
+          queue.poll();
+        }
+      }
+    }
+    return queue;
+  }
+
+  @Override
+  public Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
+    float[] scores = new float[transitionIndex.size()];
+    score(featureFactory.featurize(state), scores, 0);
+    return highestScoring(state, scores, 0, requireLegal, numTransitions, constraints);
+  }
+
+  @Override
+  public List<Collection<ScoredObject<Integer>>> findHighestScoringTransitions(List<State> states, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
+    int numScores = transitionIndex.size();
+    float[] scores = new float[states.size() * numScores];
+    List<String> features = Generics.newArrayList(200);
+    for (int i = 0; i < states.size(); ++i) {
+      features.clear();
+      score(featureFactory.featurize(states.get(i), features), scores, i * numScores);
+    }
+    List<Collection<ScoredObject<Integer>>> transitions = new ArrayList<>(states.size());
+    for (int i = 0; i < states.size(); ++i) {
+      transitions.add(highestScoring(states.get(i), scores, i * numScores, requireLegal, numTransitions, constraints));
+    }
+    return transitions;
+  }
+
+  /**
+   * A compiled model can't be trained: train a {@link PerceptronModel}
+   * and compile it.
+   */
+  @Override
+  public void trainModel(String serializedPath, Tagger tagger, Random random, List<Tree> binarizedTrainTrees, List<List<Transition>> transitionLists, Treebank devTreebank, int nThreads) {
+    throw new UnsupportedOperationException("Compiled models cannot be trained; train a PerceptronModel and compile it");
+  }
+
+  @Override
+  Set<String> tagSet() {
+    return tagSet;
+  }
+
+  private static final long serialVersionUID = 1;
+
+}
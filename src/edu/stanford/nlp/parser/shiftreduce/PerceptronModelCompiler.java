@@ -0,0 +1,108 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Treebank;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Converts a shift-reduce parser with a {@link PerceptronModel} to one with
+ * a {@link CompiledPerceptronModel}, and measures the difference.
+ *
+ * Usage: {@code java edu.stanford.nlp.parser.shiftreduce.PerceptronModelCompiler -model parser.ser.gz
+ * [-testTreebank trees] [-serializedPath compiled.ser.gz]}
+ *
+ * This prints the serialized size of each model.  With a testTreebank, it parses the tagged
+ * yields of its trees with both, and prints the time each took and how many parses differ (which
+ * should be none).  With serializedPath, it saves the parser with the compiled model.
+ */
+public class PerceptronModelCompiler {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(PerceptronModelCompiler.class);
+
+  private PerceptronModelCompiler() {} // static main
+
+  private static long serializedBytes(Serializable object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    return bytes.size();
+  }
+
+  private static List<Tree> parseAll(ShiftReduceParser parser, List<List<TaggedWord>> sentences) {
+    List<Tree> parses = new ArrayList<>(sentences.size());
+    for (List<TaggedWord> sentence : sentences) {
+      ShiftReduceParserQuery query = (ShiftReduceParserQuery) parser.parserQuery();
+      parses.add(query.parse(sentence) ? query.getBestParse() : null);
+    }
+    return parses;
+  }
+
+  public static void main(String[] args) throws Exception {
+    StringUtils.logInvocationString(log, args);
+    Properties props = StringUtils.argsToProperties(args);
+    String model = props.getProperty("model");
+    if (model == null) {
+      log.info("Usage: java " + PerceptronModelCompiler.class.getName() +
+          " -model parser [-testTreebank trees] [-serializedPath file]");
+      System.exit(-1);
+    }
+    String testTreebank = props.getProperty("testTreebank");
+    String serializedPath = props.getProperty("serializedPath");
+
+    ShiftReduceParser parser = ShiftReduceParser.loadModel(model);
+    if ( ! (parser.model instanceof PerceptronModel)) {
+      log.info("The parser's model is a " + parser.model.getClass().getSimpleName() + ", not a PerceptronModel: nothing to compile.");
+      return;
+    }
+    PerceptronModel perceptronModel = (PerceptronModel) parser.model;
+    CompiledPerceptronModel compiledModel = new CompiledPerceptronModel(perceptronModel);
+    ShiftReduceParser compiled = new ShiftReduceParser(parser.op, compiledModel);
+    log.info("Compiled " + compiledModel.numFeatures() + " features with " + compiledModel.numWeights() + " weights.");
+    log.info("Serialized size of the model: " + serializedBytes(perceptronModel) + " bytes; compiled: " +
+        serializedBytes(compiledModel) + " bytes.");
+
+    if (testTreebank != null) {
+      Treebank treebank = parser.op.tlpParams.memoryTreebank();
+      treebank.loadPath(testTreebank);
+      List<List<TaggedWord>> sentences = new ArrayList<>();
+      for (Tree tree : treebank) {
+        sentences.add(tree.taggedYield());
+      }
+      // once each way untimed, to warm up
+      parseAll(parser, sentences);
+      parseAll(compiled, sentences);
+      Timing timing = new Timing();
+      List<Tree> expected = parseAll(parser, sentences);
+      long originalMillis = timing.report();
+      timing = new Timing();
+      List<Tree> parses = parseAll(compiled, sentences);
+      long compiledMillis = timing.report();
+      int differences = 0;
+      for (int i = 0; i < expected.size(); ++i) {
+        if (expected.get(i) == null ? parses.get(i) != null : ! expected.get(i).equals(parses.get(i))) {
+          differences++;
+        }
+      }
+      log.info("Parsed " + sentences.size() + " sentences in " + originalMillis + " ms with the model, " +
+          compiledMillis + " ms with the compiled model. " + differences + " parses differ.");
+    }
+
+    if (serializedPath != null) {
+      compiled.saveModel(serializedPath);
+    }
+  }
+
+}
@@ -3,6 +3,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -87,11 +88,12 @@ public class ShiftReduceParserQuery implements ParserQuery  {
       PriorityQueue<State> oldBeam = beam;
       beam = new PriorityQueue<>(maxBeamSize + 1, ScoredComparator.ASCENDING_COMPARATOR);
       State bestState = null;
-      for (State state : oldBeam) {
-        if (Thread.interrupted()) {  // Allow interrupting the parser
-          throw new RuntimeInterruptedException();
-        }
-        Collection<ScoredObject<Integer>> predictedTransitions = parser.model.findHighestScoringTransitions(state, true, maxBeamSize, constraints);
+      // the states of the beam are scored together, which the model may do more quickly than one at a time
+      List<State> oldStates = new ArrayList<>(oldBeam);
+      List<Collection<ScoredObject<Integer>>> beamTransitions = parser.model.findHighestScoringTransitions(oldStates, true, maxBeamSize, constraints);
+      for (int i = 0; i < oldStates.size(); ++i) {
+        State state = oldStates.get(i);
+        Collection<ScoredObject<Integer>> predictedTransitions = beamTransitions.get(i);
         // log.info("Examining state: " + state);
         for (ScoredObject<Integer> predictedTransition : predictedTransitions) {
           Transition transition = parser.model.transitionIndex.get(predictedTransition.object());
@@ -72,6 +72,32 @@ public class Weight implements Serializable {
     }
   }
 
+  /**
+   * Copies the packed weights into a flat array, as used by
+   * {@link CompiledPerceptronModel}, and returns the number copied.
+   */
+  int copyPacked(long[] dest, int offset) {
+    if (packed == null) {
+      return 0;
+    }
+    System.arraycopy(packed, 0, dest, offset, packed.length);
+    return packed.length;
+  }
+
+  /**
+   * Adds the packed weights from {@code from} up to {@code to} of a flat
+   * array made by {@link #copyPacked} to a row of scores which starts
+   * at {@code offset}.
+   */
+  static void score(long[] packed, int from, int to, float[] scores, int offset) {
+    for (int i = from; i < to; ++i) {
+      final long pack = packed[i];
+      final int index = (int) (pack >>> 32);
+      final float score = Float.intBitsToFloat((int) (pack & 0xFFFFFFFF));
+      scores[offset + index] += score;
+    }
+  }
+
   public void addScaled(Weight other, float scale) {
     for (int i = 0; i < other.size(); ++i) {
       int index = other.unpackIndex(i);
@@ -9,6 +9,11 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 
@@ -33,9 +38,16 @@ public class AnnotationPipeline implements Annotator {
 
   private final List<Annotator> annotators;
   private List<MutableLong> accumulatedTime;
+  /** The names under which each annotator's latency is recorded in {@link #metrics} */
+  private final List<String> annotatorNames;
+  private volatile PipelineMetrics metrics = new PipelineMetrics();
 
   public AnnotationPipeline(List<Annotator> annotators) {
     this.annotators = annotators;
+    this.annotatorNames = new ArrayList<>(annotators.size());
+    for (Annotator annotator : annotators) {
+      annotatorNames.add(StringUtils.getShortClassName(annotator));
+    }
     if (TIME) {
       int num = annotators.size();
       accumulatedTime = new ArrayList<>(num);
@@ -50,12 +62,39 @@ public class AnnotationPipeline implements Annotator {
   }
 
   public void addAnnotator(Annotator annotator) {
+    addAnnotator(annotator, StringUtils.getShortClassName(annotator));
+  }
+
+  /**
+   * Add an annotator to the end of the pipeline.
+   *
+   * @param annotator The annotator to add.
+   * @param name The name to record the annotator's latency under in {@link #metrics()}.
+   */
+  protected void addAnnotator(Annotator annotator, String name) {
     annotators.add(annotator);
+    annotatorNames.add(name);
     if (TIME) {
       accumulatedTime.add(new MutableLong());
     }
   }
 
+  /**
+   * The live latency histograms and throughput counters of this pipeline.
+   * Unlike {@link #timingInformation()}, these are kept for every document regardless of {@link #TIME}.
+   */
+  public PipelineMetrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Record the metrics of this pipeline into the given object from now on, e.g., to aggregate the metrics
+   * of several pipelines.
+   */
+  public void setMetrics(PipelineMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   /**
    * Run the pipeline on an input annotation.
    * The annotation is modified in place.
@@ -64,24 +103,58 @@ public class AnnotationPipeline implements Annotator {
    */
   @Override
   public void annotate(Annotation annotation) {
-    Iterator<MutableLong> it = accumulatedTime.iterator();
+    PipelineMetrics metrics = this.metrics;
+    Timing total = new Timing();
+    annotate(annotation, 0, annotators.size());
+    metrics.recordDocument(annotation, total.stop());
+  }
+
+  /**
+   * Run some of the annotators of the pipeline on an input annotation: those from
+   * {@code from} up to (but not including) {@code to}.
+   * Their latencies are recorded in {@link #metrics()}, but the document is not.
+   *
+   * @param annotation The input annotation, which is modified in place
+   * @param from The index of the first annotator to run
+   * @param to The index after the last annotator to run
+   */
+  protected void annotate(Annotation annotation, int from, int to) {
+    PipelineMetrics metrics = this.metrics;
     Timing t = new Timing();
-    for (Annotator annotator : annotators) {
+    for (int i = from; i < to; i++) {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
       }
-      if (TIME) {
-        t.start();
+      t.start();
+      try {
+        annotateWith(annotators.get(i), annotation);
+      } catch (RuntimeInterruptedException e) {
+        throw e;
+      } catch (RuntimeException | Error e) {
+        metrics.recordFailure();
+        throw e;
       }
-      annotator.annotate(annotation);
+      long elapsed = t.stop();
+      metrics.recordAnnotator(annotatorNames.get(i), elapsed);
       if (TIME) {
-        long elapsed = t.stop();
-        MutableLong m = it.next();
-        m.incValue(elapsed);
+        accumulatedTime.get(i).incValue(elapsed);
       }
     }
   }
 
+  /**
+   * Run one of the annotators of this pipeline on an annotation.
+   * Subclasses can override this to change how their annotators are run (e.g., on which threads).
+   */
+  protected void annotateWith(Annotator annotator, Annotation annotation) {
+    annotator.annotate(annotation);
+  }
+
+  /** The names of the annotators of this pipeline, in order, as recorded in {@link #metrics()}. */
+  protected List<String> annotatorNames() {
+    return Collections.unmodifiableList(annotatorNames);
+  }
+
   /**
    * Annotate a collection of input annotations IN PARALLEL, making use of
    * all available cores.
@@ -167,6 +240,153 @@ public class AnnotationPipeline implements Annotator {
     Redwood.Util.threadAndRun(this.getClass().getSimpleName(), threads, numThreads );
   }
 
+  /**
+   * Annotate a collection of input annotations as a staged pipeline: every annotator
+   * gets its own pool of worker threads and a bounded input queue, and documents flow
+   * from one stage to the next.  Unlike {@link #annotate(Iterable, int, Consumer)}, which
+   * hands a whole document to one thread, this keeps the fast stages busy on later documents
+   * while a slow stage (e.g., parse or coref) is still working on an earlier one.
+   * A full queue blocks the stage feeding it, so memory stays bounded by the queue capacity.
+   *
+   * The annotators must be safe to call from multiple threads if their stage has more than one thread.
+   * If an annotator throws an exception, it is stored in the document's
+   * {@link CoreAnnotations.ExceptionAnnotation}, the remaining stages skip it, and it is still passed
+   * to the callback.  If an annotator throws an Error, or the callback throws, the pipeline is stopped
+   * and this rethrows it.  Documents may reach the callback in a different order than they were given.
+   *
+   * @param annotations The input annotations to process
+   * @param stageThreads The number of threads for each annotator, in pipeline order
+   * @param queueCapacity The maximum number of documents waiting in front of each stage
+   * @param callback A function to be called (from a worker thread) when an annotation finishes.
+   */
+  public void annotateStaged(final Iterable<Annotation> annotations, int[] stageThreads, int queueCapacity,
+                             final Consumer<Annotation> callback) {
+    int numStages = annotators.size();
+    if (stageThreads.length != numStages) {
+      throw new IllegalArgumentException("Got " + stageThreads.length + " stage thread counts for " + numStages + " annotators");
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+    }
+    if (numStages == 0) {
+      annotations.forEach(callback);
+      return;
+    }
+    // Queue i feeds stage i; the last stage hands its output to the callback
+    List<BlockingQueue<Annotation>> queues = new ArrayList<>(numStages);
+    for (int i = 0; i < numStages; i++) {
+      queues.add(new ArrayBlockingQueue<>(queueCapacity));
+    }
+    final Annotation endOfInput = new Annotation("");
+    final PipelineMetrics metrics = this.metrics;
+    // when each document entered the pipeline, for the end to end latency
+    final Map<Annotation, Long> startTimes = Collections.synchronizedMap(new IdentityHashMap<>());
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> workers = new ArrayList<>();
+    for (int stage = 0; stage < numStages; stage++) {
+      if (stageThreads[stage] < 1) {
+        throw new IllegalArgumentException("Stage " + stage + " needs at least one thread: " + stageThreads[stage]);
+      }
+      final Annotator annotator = annotators.get(stage);
+      final String annotatorName = annotatorNames.get(stage);
+      final boolean lastStage = stage == numStages - 1;
+      final MutableLong stageTime = TIME ? accumulatedTime.get(stage) : null;
+      final BlockingQueue<Annotation> in = queues.get(stage);
+      final BlockingQueue<Annotation> out = stage + 1 < numStages ? queues.get(stage + 1) : null;
+      final AtomicInteger liveWorkers = new AtomicInteger(stageThreads[stage]);
+      for (int t = 0; t < stageThreads[stage]; t++) {
+        Thread worker = new Thread(() -> {
+          try {
+            Timing timer = new Timing();
+            while (true) {
+              Annotation ann = in.take();
+              if (ann == endOfInput) {
+                // let our siblings see the end marker too; the last one out forwards it downstream
+                in.put(ann);
+                if (liveWorkers.decrementAndGet() == 0 && out != null) {
+                  out.put(ann);
+                }
+                return;
+              }
+              if ( ! ann.containsKey(CoreAnnotations.ExceptionAnnotation.class)) {
+                timer.start();
+                try {
+                  annotateWith(annotator, ann);
+                } catch (RuntimeInterruptedException e) {
+                  throw e;
+                } catch (Exception e) {
+                  ann.set(CoreAnnotations.ExceptionAnnotation.class, e);
+                  metrics.recordFailure();
+                }
+                long elapsed = timer.stop();
+                metrics.recordAnnotator(annotatorName, elapsed);
+                if (stageTime != null) {
+                  synchronized (stageTime) {
+                    stageTime.incValue(elapsed);
+                  }
+                }
+              }
+              if (lastStage) {
+                Long start = startTimes.remove(ann);
+                if (start != null && ! ann.containsKey(CoreAnnotations.ExceptionAnnotation.class)) {
+                  metrics.recordDocument(ann, System.currentTimeMillis() - start);
+                }
+              }
+              if (out != null) {
+                out.put(ann);
+              } else {
+                callback.accept(ann);
+              }
+            }
+          } catch (InterruptedException | RuntimeInterruptedException e) {
+            // shutting down
+          } catch (Throwable e) {
+            // the callback failed, or an annotator threw an Error; stop the whole pipeline
+            failure.compareAndSet(null, e);
+          }
+        }, getClass().getSimpleName() + '-' + StringUtils.getShortClassName(annotator) + '-' + t);
+        worker.setDaemon(true);
+        workers.add(worker);
+      }
+    }
+    workers.forEach(Thread::start);
+
+    try {
+      BlockingQueue<Annotation> first = queues.get(0);
+      Iterator<Annotation> iter = annotations.iterator();
+      Annotation next = iter.hasNext() ? iter.next() : endOfInput;
+      // poll rather than block, so that a dead pipeline can't hang the caller
+      while (failure.get() == null) {
+        if (next != endOfInput) {
+          startTimes.putIfAbsent(next, System.currentTimeMillis());
+        }
+        if (first.offer(next, 100, TimeUnit.MILLISECONDS)) {
+          if (next == endOfInput) {
+            break;
+          }
+          next = iter.hasNext() ? iter.next() : endOfInput;
+        }
+      }
+      for (Thread worker : workers) {
+        while (worker.isAlive()) {
+          if (failure.get() != null) {
+            workers.forEach(Thread::interrupt);
+          }
+          worker.join(100);
+        }
+      }
+    } catch (InterruptedException e) {
+      workers.forEach(Thread::interrupt);
+      throw new RuntimeInterruptedException(e);
+    }
+    Throwable t = failure.get();
+    if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t != null) {
+      throw new RuntimeException("Staged annotation failed", t);
+    }
+  }
+
   /** Return the total pipeline annotation time in milliseconds.
    *
    *  @return The total pipeline annotation time in milliseconds
@@ -0,0 +1,222 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.PropertiesUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded, least-recently-used cache of annotated documents, used by
+ * {@link StanfordCoreNLPServer} to avoid re-annotating text it has already seen.
+ * Documents are stored as serialized protocol buffers, so a cached result can be
+ * rendered in any output format, and the size of the cache is bounded by the total
+ * number of serialized bytes rather than by the number of entries.
+ * Documents with annotations that the protocol buffers can't hold are not cached,
+ * since a cached copy would silently be missing them.  Annotations which belong to the
+ * request rather than the text, such as the document id, are not cached, since the key
+ * doesn't cover them.
+ *
+ * Keys are computed by {@link #key(String, String, Properties)} from the document text,
+ * the document date, and the {@link StanfordCoreNLP.AnnotatorSignature} of every annotator
+ * in the pipeline, so changing any annotator property results in a different key.
+ *
+ * This class is threadsafe.
+ */
+public class AnnotationResultCache {
+
+  /** A rough estimate of the overhead of a cache entry beyond its key and value bytes. */
+  private static final int ENTRY_OVERHEAD = 96;
+
+  private final long maxBytes;
+
+  /** Guarded by this */
+  private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+  /** Guarded by this */
+  private long usedBytes; // = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /** Lossless, so that documents which can't be cached whole are refused rather than cached without some annotations. */
+  private final ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer(true);
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxBytes The maximum total size of the cached documents, in bytes.
+   */
+  public AnnotationResultCache(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Compute the cache key for annotating the given text with the given properties.
+   *
+   * @param text The raw text of the document.
+   * @param date The document date, if any, since this affects time expressions.
+   * @param props The properties the pipeline is created from.
+   *
+   * @return A hex-encoded SHA-256 hash of the text and the signatures of the annotators.
+   */
+  public static String key(String text, String date, Properties props) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);  // every JVM must support SHA-256
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(date).append('\u0000');
+    for (String name : props.getProperty("annotators", "").split("[, \t]+")) {
+      sb.append(new StanfordCoreNLP.AnnotatorSignature(name, PropertiesUtils.getSignature(name, props))).append('\u0000');
+    }
+    digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+    digest.update(text.getBytes(StandardCharsets.UTF_8));
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Look up a document in the cache.
+   *
+   * @param key The key, as computed by {@link #key(String, String, Properties)}.
+   *
+   * @return A fresh copy of the cached document, or null if it is not in the cache.
+   */
+  public Annotation get(String key) {
+    byte[] bytes;
+    synchronized (this) {
+      bytes = entries.get(key);
+    }
+    if (bytes == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    try {
+      Annotation ann = serializer.read(new ByteArrayInputStream(bytes)).first;
+      hits.incrementAndGet();
+      return ann;
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      // treat a corrupt entry as a miss, and make sure we don't return it again
+      synchronized (this) {
+        if (entries.remove(key) != null) {
+          usedBytes -= size(key, bytes);
+        }
+      }
+      misses.incrementAndGet();
+      return null;
+    }
+  }
+
+  /**
+   * Add an annotated document to the cache, evicting the least recently used entries if needed.
+   * Documents which cannot be serialized without losing some of their annotations, or which are larger than
+   * the whole cache, are silently not cached.  Annotations which belong to the request, such as the document id,
+   * are left out of the cached copy (but not removed from the given document).
+   *
+   * @param key The key, as computed by {@link #key(String, String, Properties)}.
+   * @param annotation The fully annotated document.
+   */
+  public void put(String key, Annotation annotation) {
+    if (annotation.containsKey(CoreAnnotations.DocIDAnnotation.class)) {
+      // the id is the request's, not the text's, so a later request for the same text mustn't get it
+      annotation = new Annotation(annotation);
+      annotation.remove(CoreAnnotations.DocIDAnnotation.class);
+    }
+    byte[] bytes;
+    try {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      serializer.write(annotation, os);
+      bytes = os.toByteArray();
+    } catch (IOException | RuntimeException e) {
+      // including a LossySerializationException: a document we can't store whole isn't cached at all
+      return;
+    }
+    long size = size(key, bytes);
+    if (size > maxBytes) {
+      return;
+    }
+    synchronized (this) {
+      byte[] old = entries.put(key, bytes);
+      if (old != null) {
+        usedBytes -= size(key, old);
+      }
+      usedBytes += size;
+      Iterator<Map.Entry<String, byte[]>> iter = entries.entrySet().iterator();
+      while (usedBytes > maxBytes && iter.hasNext()) {
+        Map.Entry<String, byte[]> eldest = iter.next();
+        iter.remove();
+        usedBytes -= size(eldest.getKey(), eldest.getValue());
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  private static long size(String key, byte[] value) {
+    return 2L * key.length() + value.length + ENTRY_OVERHEAD;
+  }
+
+  /** Remove everything from the cache.  The statistics are not reset. */
+  public synchronized void clear() {
+    entries.clear();
+    usedBytes = 0;
+  }
+
+  /** The number of documents currently in the cache. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** The approximate number of bytes currently used by the cache. */
+  public synchronized long usedBytes() {
+    return usedBytes;
+  }
+
+  public long hits() {
+    return hits.get();
+  }
+
+  public long misses() {
+    return misses.get();
+  }
+
+  public long evictions() {
+    return evictions.get();
+  }
+
+  /** The statistics of this cache, as a JSON object. */
+  public String toJSON() {
+    int numEntries;
+    long bytes;
+    synchronized (this) {
+      numEntries = entries.size();
+      bytes = usedBytes;
+    }
+    return JSONOutputter.JSONWriter.objectToJSON(writer -> {
+      writer.set("entries", numEntries);
+      writer.set("bytes", bytes);
+      writer.set("maxBytes", maxBytes);
+      writer.set("hits", hits.get());
+      writer.set("misses", misses.get());
+      writer.set("evictions", evictions.get());
+    });
+  }
+
+}
@@ -139,14 +139,31 @@ public class AnnotatorPool  {
    * been requested, it will be created. Otherwise, the existing instance of
    * the Annotator will be returned.
    *
+   * The annotator is created without holding a lock on the pool, so that different
+   * annotators can be loaded concurrently from several threads.
+   *
    * @param name The annotator to retrieve from the pool
    * @return The annotator
    * @throws IllegalArgumentException If the annotator cannot be created
    */
-  public synchronized Annotator get(String name) {
-    CachedAnnotator factory =  this.cachedAnnotators.get(name);
+  public Annotator get(String name) {
+    return getLazy(name).get();  // Lazy#get() is synchronized, so the annotator is only created once
+  }
+
+  /**
+   * Retrieve the factory for an Annotator from the pool, without creating the Annotator.
+   *
+   * @param name The annotator to retrieve from the pool
+   * @return The factory of the annotator, as currently registered
+   * @throws IllegalArgumentException If there is no such annotator
+   */
+  Lazy<Annotator> getLazy(String name) {
+    CachedAnnotator factory;
+    synchronized (this.cachedAnnotators) {
+      factory = this.cachedAnnotators.get(name);
+    }
     if (factory != null) {
-      return factory.annotator.get();
+      return factory.annotator;
     } else {
       throw new IllegalArgumentException("No annotator named " + name);
     }
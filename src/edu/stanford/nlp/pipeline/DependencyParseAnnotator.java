@@ -12,9 +12,14 @@ import edu.stanford.nlp.trees.GrammaticalStructure;
 import edu.stanford.nlp.util.ArraySet;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.MetaClass;
+import edu.stanford.nlp.util.ModelRegistry;
 import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class adds dependency parse information to an Annotation.
@@ -22,6 +27,11 @@ import java.util.*;
  * Dependency parses are added to each sentence under the annotation
  * {@link edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations.BasicDependenciesAnnotation}.
  *
+ * Unless sentences have a timeout or are parsed on several threads, the sentences of a document
+ * are parsed together (see {@link DependencyParser#predictAll}), which gives the same parses faster.
+ * In a pipeline which shares a pool of threads among its sentence annotators, batches of sentences
+ * are parsed on the pool.
+ *
  * @author Jon Gauthier
  */
 public class DependencyParseAnnotator extends SentenceAnnotator  {
@@ -54,13 +64,20 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
 
   public DependencyParseAnnotator(Properties properties) {
     String modelPath = PropertiesUtils.getString(properties, "model", DependencyParser.DEFAULT_MODEL);
-    parser = DependencyParser.loadFromModelFile(modelPath, properties);
+    parser = ModelRegistry.SINGLETON.acquire(this, ModelRegistry.key("depparse", modelPath, properties),
+        ModelRegistry.estimateSize(modelPath), () -> DependencyParser.loadFromModelFile(modelPath, properties));
 
     nThreads = PropertiesUtils.getInt(properties, "testThreads", DEFAULT_NTHREADS);
     maxTime = PropertiesUtils.getLong(properties, "sentenceTimeout", DEFAULT_MAXTIME);
     extraDependencies = MetaClass.cast(properties.getProperty("extradependencies", "NONE"), GrammaticalStructure.Extras.class);
   }
 
+  /** Let other annotators share the parser model, or let it be evicted. */
+  @Override
+  public void unmount() {
+    ModelRegistry.SINGLETON.release(this);
+  }
+
   @Override
   protected int nThreads() {
     return nThreads;
@@ -71,10 +88,55 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
     return maxTime;
   }
 
+  @Override
+  public void annotate(Annotation annotation) {
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    ForkJoinPool pool = sharedPool();
+    if (sentences != null && maxTime <= 0 && pool != null) {
+      // No timeouts to keep per sentence, so the pipeline's threads parse batches of parseBatchSize sentences
+      int batchSize = Math.max(1, parser.parseBatchSize());
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (int start = 0; start < sentences.size(); start += batchSize) {
+        List<CoreMap> batch = sentences.subList(start, Math.min(start + batchSize, sentences.size()));
+        tasks.add(pool.submit(() -> parseBatch(batch)));
+      }
+      try {
+        for (ForkJoinTask<?> task : tasks) {
+          task.get();
+        }
+      } catch (InterruptedException e) {
+        tasks.forEach(task -> task.cancel(false));
+        throw new RuntimeInterruptedException(e);
+      } catch (ExecutionException e) {
+        tasks.forEach(task -> task.cancel(false));
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        } else if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw new RuntimeException(e.getCause());
+      }
+    } else if (sentences != null && maxTime <= 0 && nThreads == 1) {
+      // No timeouts to keep per sentence, so parse them in batches of the parser's parseBatchSize
+      parseBatch(sentences);
+    } else {
+      super.annotate(annotation);
+    }
+  }
+
+  private void parseBatch(List<CoreMap> sentences) {
+    List<GrammaticalStructure> parses = parser.predictAll(sentences);
+    for (int i = 0; i < sentences.size(); i++) {
+      setDependencies(sentences.get(i), parses.get(i));
+    }
+  }
+
   @Override
   protected void doOneSentence(Annotation annotation, CoreMap sentence) {
-    GrammaticalStructure gs = parser.predict(sentence);
+    setDependencies(sentence, parser.predict(sentence));
+  }
 
+  private void setDependencies(CoreMap sentence, GrammaticalStructure gs) {
     SemanticGraph deps = SemanticGraphFactory.makeFromTree(gs, Mode.COLLAPSED, extraDependencies, null),
                   uncollapsedDeps = SemanticGraphFactory.makeFromTree(gs, Mode.BASIC, extraDependencies, null),
                   ccDeps = SemanticGraphFactory.makeFromTree(gs, Mode.CCPROCESSED, extraDependencies, null),
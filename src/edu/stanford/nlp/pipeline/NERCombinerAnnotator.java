@@ -11,6 +11,7 @@ import edu.stanford.nlp.ling.tokensregex.types.Tags;
 import edu.stanford.nlp.time.TimeAnnotations;
 import edu.stanford.nlp.time.TimeExpression;
 import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.ModelRegistry;
 import edu.stanford.nlp.util.PropertiesUtils;
 import edu.stanford.nlp.util.RuntimeInterruptedException;
 
@@ -222,6 +223,11 @@ public class NERCombinerAnnotator extends SentenceAnnotator  {
     }
   }
 
+  /** Let other annotators share the classifiers, or let them be evicted. */
+  @Override
+  public void unmount() {
+    ModelRegistry.SINGLETON.release(ner);
+  }
 
   @Override
   protected int nThreads() {
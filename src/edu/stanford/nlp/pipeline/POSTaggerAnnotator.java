@@ -6,15 +6,13 @@ import java.util.*;
 import edu.stanford.nlp.ling.*;
 import edu.stanford.nlp.tagger.maxent.MaxentTagger;
 import edu.stanford.nlp.util.*;
-import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
-import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 /**
  * Wrapper for the maxent part of speech tagger.
  *
  * @author Anna Rafferty
  */
-public class POSTaggerAnnotator implements Annotator  {
+public class POSTaggerAnnotator extends SentenceAnnotator  {
 
   /** A logger for this class */
   private static Redwood.RedwoodChannels log = Redwood.channels(POSTaggerAnnotator.class);
@@ -25,6 +23,9 @@ public class POSTaggerAnnotator implements Annotator  {
 
   private final int nThreads;
 
+  /** The maximum time to spend tagging one sentence, in milliseconds, or -1 for no limit */
+  private final long maxTime;
+
   private final boolean reuseTags;
 
   /** Create a tagger annotator using the default English tagger from the models jar
@@ -61,6 +62,7 @@ public class POSTaggerAnnotator implements Annotator  {
     this.pos = model;
     this.maxSentenceLength = maxSentenceLength;
     this.nThreads = numThreads;
+    this.maxTime = -1;
     this.reuseTags = false;
   }
 
@@ -70,9 +72,12 @@ public class POSTaggerAnnotator implements Annotator  {
       posLoc = DefaultPaths.DEFAULT_POS_MODEL;
     }
     boolean verbose = PropertiesUtils.getBool(props, annotatorName + ".verbose", false);
-    this.pos = loadModel(posLoc, verbose);
+    String model = posLoc;
+    this.pos = ModelRegistry.SINGLETON.acquire(this, ModelRegistry.key("pos", model, null),
+        ModelRegistry.estimateSize(model), () -> loadModel(model, verbose));
     this.maxSentenceLength = PropertiesUtils.getInt(props, annotatorName + ".maxlen", Integer.MAX_VALUE);
     this.nThreads = PropertiesUtils.getInt(props, annotatorName + ".nthreads", PropertiesUtils.getInt(props, "nthreads", 1));
+    this.maxTime = PropertiesUtils.getLong(props, annotatorName + ".maxtime", -1);
     this.reuseTags = PropertiesUtils.getBool(props, annotatorName + ".reuseTags", false);
   }
 
@@ -89,45 +94,31 @@ public class POSTaggerAnnotator implements Annotator  {
     return tagger;
   }
 
+  /** Let other annotators share the tagger model, or let it be evicted. */
   @Override
-  public void annotate(Annotation annotation) {
-    // turn the annotation into a sentence
-    if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
-      if (nThreads == 1) {
-        for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-          doOneSentence(sentence);
-        }
-      } else {
-        MulticoreWrapper<CoreMap, CoreMap> wrapper = new MulticoreWrapper<>(nThreads, new POSTaggerProcessor());
-        for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-          wrapper.put(sentence);
-          while (wrapper.peek()) {
-            wrapper.poll();
-          }
-        }
-        wrapper.join();
-        while (wrapper.peek()) {
-          wrapper.poll();
-        }
-      }
-    } else {
-      throw new RuntimeException("unable to find words/tokens in: " + annotation);
-    }
+  public void unmount() {
+    ModelRegistry.SINGLETON.release(this);
   }
 
-  private class POSTaggerProcessor implements ThreadsafeProcessor<CoreMap, CoreMap> {
-    @Override
-    public CoreMap process(CoreMap sentence) {
-      return doOneSentence(sentence);
-    }
+  @Override
+  protected int nThreads() {
+    return nThreads;
+  }
 
-    @Override
-    public ThreadsafeProcessor<CoreMap, CoreMap> newInstance() {
-      return this;
+  @Override
+  protected long maxTime() {
+    return maxTime;
+  }
+
+  @Override
+  protected void doOneFailedSentence(Annotation annotation, CoreMap sentence) {
+    for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+      token.set(CoreAnnotations.PartOfSpeechAnnotation.class, "X");
     }
   }
 
-  private CoreMap doOneSentence(CoreMap sentence) {
+  @Override
+  protected void doOneSentence(Annotation annotation, CoreMap sentence) {
     List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
     List<TaggedWord> tagged = null;
     if (tokens.size() <= maxSentenceLength) {
@@ -146,11 +137,8 @@ public class POSTaggerAnnotator implements Annotator  {
         tokens.get(i).set(CoreAnnotations.PartOfSpeechAnnotation.class, tagged.get(i).tag());
       }
     } else {
-      for (CoreLabel token : tokens) {
-        token.set(CoreAnnotations.PartOfSpeechAnnotation.class, "X");
-      }
+      doOneFailedSentence(annotation, sentence);
     }
-    return sentence;
   }
 
   @Override
@@ -1,6 +1,7 @@
 package edu.stanford.nlp.pipeline;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -118,7 +119,10 @@ public class ParserAnnotator extends SentenceAnnotator  {
     this.VERBOSE = PropertiesUtils.getBool(props, annotatorName + ".debug", false);
 
     String[] flags = convertFlagsToArray(props.getProperty(annotatorName + ".flags"));
-    this.parser = loadModel(model, VERBOSE, flags);
+    // The flags are set on the grammar, so grammars loaded with different flags can't be shared
+    this.parser = ModelRegistry.SINGLETON.acquire(this,
+        ModelRegistry.key("parse", model, PropertiesUtils.asProperties("flags", String.join(" ", flags))),
+        ModelRegistry.estimateSize(model), () -> loadModel(model, VERBOSE, flags));
     this.maxSentenceLength = PropertiesUtils.getInt(props, annotatorName + ".maxlen", -1);
 
     String treeMapClass = props.getProperty(annotatorName + ".treemap");
@@ -223,6 +227,12 @@ public class ParserAnnotator extends SentenceAnnotator  {
     return result;
   }
 
+  /** Let other annotators share the grammar, or let it be evicted. */
+  @Override
+  public void unmount() {
+    ModelRegistry.SINGLETON.release(this);
+  }
+
   @Override
   protected int nThreads() {
     return nThreads;
@@ -320,9 +330,11 @@ public class ParserAnnotator extends SentenceAnnotator  {
                              List<CoreLabel> words) {
     ParserQuery pq = parser.parserQuery();
     pq.setConstraints(constraints);
-    pq.parse(words);
+    // long sentences can have their charts filled in the pool the sentences are parsed in, if any
+    LexicalizedParser.setChartPool(pq, ForkJoinTask.getPool());
     List<Tree> trees = Generics.newLinkedList();
     try {
+      pq.parse(words);
       // Use bestParse if kBest is set to 1.
       if (this.kBest == 1) {
         Tree t = pq.getBestParse();
@@ -358,6 +370,8 @@ public class ParserAnnotator extends SentenceAnnotator  {
       log.warn("Parsing of sentence failed, possibly because of out of memory.  " +
               "Will ignore and continue: " +
               SentenceUtils.listToString(words));
+    } finally {
+      LexicalizedParser.releaseChart(pq);
     }
     return trees;
   }
@@ -0,0 +1,226 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters and latency histograms for an {@link AnnotationPipeline}.
+ * Unlike {@link AnnotationPipeline#timingInformation()}, which only has running totals,
+ * this keeps a histogram of how long each annotator took on each document, so that one can tell
+ * which annotator is responsible for slow requests while the pipeline is running.
+ * Several pipelines can share one instance (see {@link AnnotationPipeline#setMetrics(PipelineMetrics)});
+ * annotators are told apart by their name in the pipeline (e.g., {@code pos}), or by their class name
+ * if they were added to the pipeline without one.
+ *
+ * All the methods of this class are threadsafe, and recording is cheap enough to always leave on.
+ * {@link #toPrometheus()} renders everything in the Prometheus text exposition format.
+ */
+public class PipelineMetrics {
+
+  /** The upper bounds of the latency histogram buckets, in milliseconds. */
+  private static final long[] BUCKET_BOUNDS_MS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+  /**
+   * A histogram of latencies, with fixed buckets.
+   */
+  public static class LatencyHistogram {
+    /** The count of each bucket; the last one is for anything above the largest bound. Not cumulative. */
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMillis = new LongAdder();
+
+    LatencyHistogram() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    public void record(long millis) {
+      int bucket = 0;
+      while (bucket < BUCKET_BOUNDS_MS.length && millis > BUCKET_BOUNDS_MS[bucket]) {
+        bucket += 1;
+      }
+      buckets[bucket].increment();
+      count.increment();
+      sumMillis.add(millis);
+    }
+
+    public long count() {
+      return count.sum();
+    }
+
+    public long totalMillis() {
+      return sumMillis.sum();
+    }
+
+    /**
+     * An estimate of the given quantile of the latency, in milliseconds.
+     * This is the upper bound of the bucket the quantile falls in.
+     *
+     * @param q The quantile, between 0 and 1.
+     * @return The estimated latency, or -1 if nothing was recorded or the quantile is beyond the last bucket.
+     */
+    public long quantile(double q) {
+      long total = count();
+      if (total == 0) {
+        return -1;
+      }
+      long seen = 0;
+      for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+        seen += buckets[i].sum();
+        if (seen >= q * total) {
+          return BUCKET_BOUNDS_MS[i];
+        }
+      }
+      return -1;
+    }
+
+    private void toPrometheus(StringBuilder sb, String name, String labels) {
+      String prefix = labels.isEmpty() ? "" : labels + ',';
+      long cumulative = 0;
+      for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+        cumulative += buckets[i].sum();
+        sb.append(name).append("_bucket{").append(prefix).append("le=\"").append(BUCKET_BOUNDS_MS[i] / 1000.0).append("\"} ")
+            .append(cumulative).append('\n');
+      }
+      cumulative += buckets[BUCKET_BOUNDS_MS.length].sum();
+      sb.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+      String braces = labels.isEmpty() ? "" : '{' + labels + '}';
+      sb.append(name).append("_sum").append(braces).append(' ').append(totalMillis() / 1000.0).append('\n');
+      sb.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+  }
+
+  private final long startTime = System.currentTimeMillis();
+
+  private final Map<String, LatencyHistogram> annotatorLatencies = new ConcurrentHashMap<>();
+  private final LatencyHistogram documentLatency = new LatencyHistogram();
+  private final LongAdder documents = new LongAdder();
+  private final LongAdder tokens = new LongAdder();
+  private final LongAdder sentences = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  /** Record that an annotator took the given time on one document. */
+  public void recordAnnotator(String annotator, long millis) {
+    annotatorLatencies.computeIfAbsent(annotator, k -> new LatencyHistogram()).record(millis);
+  }
+
+  /** Record that the whole pipeline took the given time to annotate a document. */
+  public void recordDocument(Annotation annotation, long millis) {
+    documentLatency.record(millis);
+    documents.increment();
+    List<CoreLabel> docTokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    if (docTokens != null) {
+      tokens.add(docTokens.size());
+    }
+    List<CoreMap> docSentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    if (docSentences != null) {
+      sentences.add(docSentences.size());
+    }
+  }
+
+  /** Record that a document timed out before it was annotated. */
+  public void recordTimeout() {
+    timeouts.increment();
+  }
+
+  /** Record that annotating a document threw an exception. */
+  public void recordFailure() {
+    failures.increment();
+  }
+
+  /** The latency histogram of the given annotator, or null if it has not annotated anything. */
+  public LatencyHistogram annotatorLatency(String annotator) {
+    return annotatorLatencies.get(annotator);
+  }
+
+  public LatencyHistogram documentLatency() {
+    return documentLatency;
+  }
+
+  public long documents() {
+    return documents.sum();
+  }
+
+  public long tokens() {
+    return tokens.sum();
+  }
+
+  public long sentences() {
+    return sentences.sum();
+  }
+
+  public long timeouts() {
+    return timeouts.sum();
+  }
+
+  public long failures() {
+    return failures.sum();
+  }
+
+  /** The average number of tokens annotated per second since these metrics were created. */
+  public double tokensPerSecond() {
+    return tokens() / uptimeSeconds();
+  }
+
+  /** The average number of sentences annotated per second since these metrics were created. */
+  public double sentencesPerSecond() {
+    return sentences() / uptimeSeconds();
+  }
+
+  private double uptimeSeconds() {
+    return Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+  }
+
+  /** Render the metrics in the Prometheus text format. */
+  public String toPrometheus() {
+    return toPrometheus(new TreeMap<>());
+  }
+
+  /**
+   * Render the metrics in the Prometheus text format.
+   *
+   * @param gauges Additional gauges to report, such as queue depths, from metric name to value.
+   *               Names are used as given.
+   */
+  public String toPrometheus(Map<String, Number> gauges) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# HELP corenlp_annotator_latency_seconds Time taken by each annotator on a document.\n");
+    sb.append("# TYPE corenlp_annotator_latency_seconds histogram\n");
+    new TreeMap<>(annotatorLatencies).forEach((annotator, histogram) ->
+        histogram.toPrometheus(sb, "corenlp_annotator_latency_seconds", "annotator=\"" + annotator + '"'));
+    sb.append("# HELP corenlp_document_latency_seconds Time taken by the whole pipeline on a document.\n");
+    sb.append("# TYPE corenlp_document_latency_seconds histogram\n");
+    documentLatency.toPrometheus(sb, "corenlp_document_latency_seconds", "");
+    counter(sb, "corenlp_documents_total", "Documents annotated.", documents());
+    counter(sb, "corenlp_tokens_total", "Tokens annotated.", tokens());
+    counter(sb, "corenlp_sentences_total", "Sentences annotated.", sentences());
+    counter(sb, "corenlp_timeouts_total", "Documents which timed out.", timeouts());
+    counter(sb, "corenlp_failures_total", "Documents whose annotation threw an exception.", failures());
+    Runtime runtime = Runtime.getRuntime();
+    gauge(sb, "corenlp_heap_used_bytes", runtime.totalMemory() - runtime.freeMemory());
+    gauge(sb, "corenlp_heap_max_bytes", runtime.maxMemory());
+    gauges.forEach((name, value) -> gauge(sb, name, value));
+    return sb.toString();
+  }
+
+  private static void counter(StringBuilder sb, String name, String help, long value) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(" counter\n");
+    sb.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void gauge(StringBuilder sb, String name, Number value) {
+    sb.append("# TYPE ").append(name).append(" gauge\n");
+    sb.append(name).append(' ').append(value).append('\n');
+  }
+
+}
@@ -1,6 +1,8 @@
 package edu.stanford.nlp.pipeline;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RejectedExecutionException;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
@@ -13,11 +15,55 @@ import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
  * A parent class for annotators which might want to analyze one
  * sentence at a time, possibly in a multithreaded manner.
  *
- * TODO: also factor out the POS
+ * By default each call to {@link #annotate(Annotation)} builds its own thread pool
+ * of {@link #nThreads()} threads.  A pipeline can instead give its sentence annotators
+ * one long-lived pool to share (see {@link #annotateWithPool}), so that sentences from
+ * many concurrently annotated documents are interleaved and short documents can still
+ * keep all the threads busy.
  *
  * @author John Bauer
  */
 public abstract class SentenceAnnotator implements Annotator {
+
+  /**
+   * The pool of the pipeline annotating on this thread, if it shares one among its sentence annotators,
+   * or else null, in which case each annotate() call uses its own threads.
+   */
+  private static final ThreadLocal<ForkJoinPool> pipelinePool = new ThreadLocal<>();
+
+  /**
+   * Run an annotator, with any sentence annotators it runs on this thread (including itself)
+   * submitting their sentences to the given pool rather than starting threads of their own.
+   * The pool belongs to the caller (e.g., a {@link StanfordCoreNLP} with {@code sentenceThreads}),
+   * so pipelines with different pools can share the same annotators.
+   *
+   * @param annotator The annotator to run
+   * @param annotation The annotation to run it on
+   * @param pool The pool to run sentences on
+   */
+  static void annotateWithPool(Annotator annotator, Annotation annotation, ForkJoinPool pool) {
+    ForkJoinPool old = pipelinePool.get();
+    pipelinePool.set(pool);
+    try {
+      annotator.annotate(annotation);
+    } finally {
+      if (old == null) {
+        pipelinePool.remove();
+      } else {
+        pipelinePool.set(old);
+      }
+    }
+  }
+
+  /**
+   * The pool which the pipeline running this annotator on the current thread shares among its sentence annotators,
+   * or null if it doesn't share one.  Subclasses which override {@link #annotate(Annotation)} should run their
+   * work on this pool when there is one, rather than on the calling thread or threads of their own.
+   */
+  protected static ForkJoinPool sharedPool() {
+    return pipelinePool.get();
+  }
+
   protected class AnnotatorProcessor implements ThreadsafeProcessor<CoreMap, CoreMap> {
 
     final Annotation annotation;
@@ -43,10 +89,124 @@ public abstract class SentenceAnnotator implements Annotator {
     return wrapper;
   }
 
+  /**
+   * One sentence submitted to the shared pool.  The caller waits on the task's monitor;
+   * the timeout for a sentence only starts counting once a worker picks it up.
+   */
+  private class SentenceTask implements Runnable {
+    final Annotation annotation;
+    final CoreMap sentence;
+    // All of the following are guarded by this task's monitor
+    boolean started; // = false;
+    boolean finished; // = false;
+    /** Set if the sentence timed out or was abandoned; the worker then drops its result */
+    boolean abandoned; // = false;
+    Thread worker;
+    long startTime;
+    Throwable error;
+
+    SentenceTask(Annotation annotation, CoreMap sentence) {
+      this.annotation = annotation;
+      this.sentence = sentence;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (abandoned) {
+          return;
+        }
+        started = true;
+        worker = Thread.currentThread();
+        startTime = System.currentTimeMillis();
+        notifyAll();
+      }
+      Throwable t = null;
+      try {
+        doOneSentence(annotation, sentence);
+      } catch (Throwable e) {
+        t = e;
+      }
+      synchronized (this) {
+        finished = true;
+        worker = null;
+        if ( ! abandoned) {
+          error = t;
+        }
+        // an interrupt for a timeout must not leak into the next sentence run by this thread
+        Thread.interrupted();
+        notifyAll();
+      }
+    }
+
+    /**
+     * Wait for this sentence to finish.
+     * If it runs for too long, the worker is interrupted, and this waits for it to stop,
+     * so that it is done with the sentence before the caller marks it as failed.
+     *
+     * @return false if the sentence ran for more than maxTime milliseconds, in which case it was interrupted
+     */
+    synchronized boolean await(long maxTime) throws InterruptedException {
+      while ( ! finished) {
+        if (started && maxTime > 0) {
+          long remaining = startTime + maxTime - System.currentTimeMillis();
+          if (remaining <= 0) {
+            abandoned = true;
+            worker.interrupt();
+            while ( ! finished) {
+              wait();
+            }
+            return false;
+          }
+          wait(remaining);
+        } else {
+          wait();
+        }
+      }
+      return true;
+    }
+
+    synchronized void abandon() {
+      abandoned = true;
+    }
+  }
+
+  private void annotateWithSharedPool(Annotation annotation, ForkJoinPool pool) {
+    List<SentenceTask> tasks = new ArrayList<>();
+    for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      SentenceTask task = new SentenceTask(annotation, sentence);
+      tasks.add(task);
+      pool.execute(task);
+    }
+    long maxTime = maxTime();
+    try {
+      for (SentenceTask task : tasks) {
+        if ( ! task.await(maxTime)) {
+          doOneFailedSentence(annotation, task.sentence);
+        } else if (task.error != null) {
+          tasks.forEach(SentenceTask::abandon);
+          if (task.error instanceof RuntimeException) {
+            throw (RuntimeException) task.error;
+          } else if (task.error instanceof Error) {
+            throw (Error) task.error;
+          } else {
+            throw new RuntimeException(task.error);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      tasks.forEach(SentenceTask::abandon);
+      throw new RuntimeInterruptedException(e);
+    }
+  }
+
   @Override
   public void annotate(Annotation annotation) {
     if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
-      if (nThreads() != 1 || maxTime() > 0) {
+      ForkJoinPool pool = pipelinePool.get();
+      if (pool != null) {
+        annotateWithSharedPool(annotation, pool);
+      } else if (nThreads() != 1 || maxTime() > 0) {
         InterruptibleMulticoreWrapper<CoreMap, CoreMap> wrapper = buildWrapper(annotation);
         for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
           boolean success = false;
@@ -43,11 +43,11 @@ import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.*;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 
@@ -160,6 +160,18 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
 
   private Semaphore availableProcessors;
 
+  /** With {@code lazyLoad}, the not-yet-loaded annotators of this pipeline, in order; otherwise empty. */
+  private final List<DeferredAnnotator> deferredAnnotators = new ArrayList<>();
+
+  /** How long (in milliseconds) it took to load each annotator. */
+  private final Map<String, Long> annotatorLoadTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+
+  /** Whether we should check the requirements of the annotators, once they are loaded. */
+  private boolean enforceRequirements;
+
+  /** With {@code sentenceThreads}, the pool this pipeline's sentence annotators share; otherwise null. */
+  private ForkJoinPool sentencePool; // = null;
+
   /** The annotator pool we should be using to get annotators. */
   public final AnnotatorPool pool;
 
@@ -482,42 +494,218 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     } else {
       this.availableProcessors = new Semaphore(1);
     }
+    if (PropertiesUtils.getInt(this.properties, "sentenceThreads", 0) > 0) {
+      this.sentencePool = new ForkJoinPool(PropertiesUtils.getInt(this.properties, "sentenceThreads"));
+    }
 
     // now construct the annotators from the given properties in the given order
-    List<String> annoNames = Arrays.asList(getRequiredProperty(props, "annotators").split("[, \t]+"));
-    Set<String> alreadyAddedAnnoNames = Generics.newHashSet();
-    Set<Class<? extends CoreAnnotation>> requirementsSatisfied = Generics.newHashSet();
-    for (String name : annoNames) {
+    List<String> annoNames = new ArrayList<>();
+    for (String name : getRequiredProperty(props, "annotators").split("[, \t]+")) {
       name = name.trim();
-      if (name.isEmpty()) { continue; }
-      logger.info("Adding annotator " + name);
+      if ( ! name.isEmpty()) {
+        annoNames.add(name);
+      }
+    }
+    this.enforceRequirements = enforceRequirements;
+    if (PropertiesUtils.getBool(props, "lazyLoad", false)) {
+      // Only look up the annotators now, so that later changes to the pool don't change what we load
+      for (String name : annoNames) {
+        logger.info("Adding annotator " + name + " (loaded on first use)");
+        DeferredAnnotator an = new DeferredAnnotator(name, pool.getLazy(name));
+        deferredAnnotators.add(an);
+        this.addAnnotator(an, name);
+      }
+    } else {
+      for (String name : annoNames) {
+        logger.info("Adding annotator " + name);
+      }
+      List<Supplier<Annotator>> factories = new ArrayList<>();
+      for (String name : annoNames) {
+        factories.add(() -> timedLoad(name, () -> pool.get(name)));
+      }
+      List<Annotator> annotators = loadAnnotators(factories);
+      for (int i = 0; i < annoNames.size(); i++) {
+        this.addAnnotator(annotators.get(i), annoNames.get(i));
+      }
+      if (enforceRequirements) {
+        checkRequirements(annoNames, annotators);
+      }
+    }
 
-      Annotator an = pool.get(name);
-      this.addAnnotator(an);
+    // Sanity check
+    if (! annoNames.contains(STANFORD_SSPLIT)) {
+      System.setProperty(NEWLINE_SPLITTER_PROPERTY, "false");
+    }
+    this.pipelineSetupTime = tim.report();
+  }
 
-      if (enforceRequirements) {
-        Set<Class<? extends CoreAnnotation>> allRequirements = an.requires();
-        for (Class<? extends CoreAnnotation> requirement : allRequirements) {
-          if (!requirementsSatisfied.contains(requirement)) {
-            String fmt = "annotator \"%s\" requires annotation \"%s\". The usual requirements for this annotator are: %s";
-            throw new IllegalArgumentException(
-                String.format(fmt, name, requirement.getSimpleName(),
-                    StringUtils.join(Annotator.DEFAULT_REQUIREMENTS.getOrDefault(name, Collections.singleton("unknown")), ",")
-                ));
+  /**
+   * Load the given annotators, on {@code loadThreads} threads (default 1) if that property is set.
+   * Annotators which don't depend on each other's models can then be loaded concurrently;
+   * two annotators sharing a model through the global cache still only load it once.
+   *
+   * @param factories Creates each annotator.
+   *
+   * @return The loaded annotators, in the same order as the factories.
+   */
+  private List<Annotator> loadAnnotators(List<Supplier<Annotator>> factories) {
+    int loadThreads = Math.min(PropertiesUtils.getInt(properties, "loadThreads", 1), factories.size());
+    List<Annotator> annotators = new ArrayList<>();
+    if (loadThreads <= 1) {
+      for (Supplier<Annotator> factory : factories) {
+        annotators.add(factory.get());
+      }
+      return annotators;
+    }
+    ExecutorService loader = Executors.newFixedThreadPool(loadThreads);
+    try {
+      List<Future<Annotator>> futures = new ArrayList<>();
+      for (Supplier<Annotator> factory : factories) {
+        futures.add(loader.submit(factory::get));
+      }
+      for (Future<Annotator> future : futures) {
+        annotators.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      loader.shutdownNow();
+    }
+    return annotators;
+  }
+
+  /** Load an annotator, and record how long it took in {@link #annotatorLoadTimes()}. */
+  private Annotator timedLoad(String name, Supplier<Annotator> factory) {
+    Timing timing = new Timing();
+    Annotator an = factory.get();
+    long elapsed = timing.stop();
+    annotatorLoadTimes.put(name, elapsed);
+    logger.info("Loaded annotator " + name + " in " + Timing.toSecondsString(elapsed) + " sec.");
+    return an;
+  }
+
+  /**
+   * Check that each annotator's requirements are satisfied by the annotators before it.
+   *
+   * @throws IllegalArgumentException If an annotator is missing a requirement.
+   */
+  private static void checkRequirements(List<String> names, List<Annotator> annotators) {
+    Set<Class<? extends CoreAnnotation>> requirementsSatisfied = Generics.newHashSet();
+    for (int i = 0; i < names.size(); i++) {
+      String name = names.get(i);
+      Annotator an = annotators.get(i);
+      Set<Class<? extends CoreAnnotation>> allRequirements = an.requires();
+      for (Class<? extends CoreAnnotation> requirement : allRequirements) {
+        if (!requirementsSatisfied.contains(requirement)) {
+          String fmt = "annotator \"%s\" requires annotation \"%s\". The usual requirements for this annotator are: %s";
+          throw new IllegalArgumentException(
+              String.format(fmt, name, requirement.getSimpleName(),
+                  StringUtils.join(Annotator.DEFAULT_REQUIREMENTS.getOrDefault(name, Collections.singleton("unknown")), ",")
+              ));
+        }
+      }
+      requirementsSatisfied.addAll(an.requirementsSatisfied());
+    }
+  }
+
+  /**
+   * An annotator which is only loaded the first time it is used, for the {@code lazyLoad} option.
+   * Once loaded, it holds on to the annotator, so that it cannot be garbage collected from the annotator cache.
+   */
+  private class DeferredAnnotator implements Annotator {
+    private final String name;
+    private final Lazy<Annotator> factory;
+    private volatile Annotator annotator; // = null;
+
+    private DeferredAnnotator(String name, Lazy<Annotator> factory) {
+      this.name = name;
+      this.factory = factory;
+    }
+
+    private Annotator get() {
+      Annotator an = annotator;
+      if (an == null) {
+        synchronized (this) {
+          an = annotator;
+          if (an == null) {
+            an = timedLoad(name, factory::get);
+            annotator = an;
           }
         }
-        requirementsSatisfied.addAll(an.requirementsSatisfied());
       }
+      return an;
+    }
 
+    @Override
+    public void annotate(Annotation annotation) {
+      get().annotate(annotation);
+    }
 
-      alreadyAddedAnnoNames.add(name);
+    @Override
+    public void unmount() {
+      Annotator an = annotator;
+      if (an != null) {
+        an.unmount();
+      }
     }
 
-    // Sanity check
-    if (! alreadyAddedAnnoNames.contains(STANFORD_SSPLIT)) {
-      System.setProperty(NEWLINE_SPLITTER_PROPERTY, "false");
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return get().requirementsSatisfied();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return get().requires();
+    }
+  }
+
+  /**
+   * Get the pipeline ready to annotate without delay.
+   * With {@code lazyLoad}, this loads every annotator which has not been loaded yet (on {@code loadThreads}
+   * threads), and checks their requirements, which {@code lazyLoad} otherwise skips.
+   * If the {@code warmupText} property is set, that text is then annotated once, so that
+   * the first real document doesn't pay for class loading and JIT compilation.
+   *
+   * @throws IllegalArgumentException If an annotator is missing a requirement.
+   */
+  public void warmup() {
+    if ( ! deferredAnnotators.isEmpty()) {
+      List<String> names = new ArrayList<>();
+      List<Supplier<Annotator>> factories = new ArrayList<>();
+      for (DeferredAnnotator an : deferredAnnotators) {
+        names.add(an.name);
+        factories.add(an::get);
+      }
+      List<Annotator> annotators = loadAnnotators(factories);
+      if (enforceRequirements) {
+        checkRequirements(names, annotators);
+      }
+    }
+    String warmupText = properties.getProperty("warmupText");
+    if (warmupText != null) {
+      Timing timing = new Timing();
+      annotate(new Annotation(warmupText));
+      logger.info("Warmed up pipeline in " + Timing.toSecondsString(timing.stop()) + " sec.");
+    }
+  }
+
+  /**
+   * How long it took to load each annotator of this pipeline, in milliseconds, in the order they finished loading.
+   * Annotators which were already loaded by another pipeline take (almost) no time.
+   * With {@code lazyLoad}, annotators only appear here once they have been loaded.
+   */
+  public Map<String, Long> annotatorLoadTimes() {
+    synchronized (annotatorLoadTimes) {
+      return Collections.unmodifiableMap(new LinkedHashMap<>(annotatorLoadTimes));
     }
-    this.pipelineSetupTime = tim.report();
   }
 
   /**
@@ -527,6 +715,7 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
   public static synchronized void clearAnnotatorPool() {
     logger.warn("Clearing CoreNLP annotation pool; this should be unnecessary in production");
     GLOBAL_ANNOTATOR_CACHE.clear();
+    ModelRegistry.SINGLETON.clear();
   }
 
 
@@ -664,6 +853,17 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     }
   }
 
+  /** With {@code sentenceThreads}, runs the sentences of sentence annotators on this pipeline's pool. */
+  @Override
+  protected void annotateWith(Annotator annotator, Annotation annotation) {
+    ForkJoinPool pool = sentencePool;
+    if (pool != null) {
+      SentenceAnnotator.annotateWithPool(annotator, annotation, pool);
+    } else {
+      annotator.annotate(annotation);
+    }
+  }
+
 
   public void annotate(final Annotation annotation, final Consumer<Annotation> callback){
     if (PropertiesUtils.getInt(properties, "threads", 1) == 1) {
@@ -689,6 +889,49 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
 
 
 
+  /**
+   * {@inheritDoc}
+   *
+   * If the property {@code stagedExecution} is true, the documents are instead run through
+   * {@link #annotateStaged(Iterable, Consumer)}, and numThreads is ignored.
+   */
+  @Override
+  public void annotate(final Iterable<Annotation> annotations, int numThreads, final Consumer<Annotation> callback) {
+    if (PropertiesUtils.getBool(properties, "stagedExecution", false)) {
+      annotateStaged(annotations, callback);
+    } else {
+      super.annotate(annotations, numThreads, callback);
+    }
+  }
+
+  /**
+   * Annotate a collection of documents with a separate worker pool for each annotator,
+   * as in {@link AnnotationPipeline#annotateStaged(Iterable, int[], int, Consumer)}.
+   * The number of threads for an annotator is read from the property
+   * {@code [annotator].stageThreads} (default 1), and the number of documents that may wait
+   * in front of each annotator from {@code stageQueueSize} (default 16).
+   *
+   * @param annotations The documents to annotate
+   * @param callback A function to be called (from a worker thread) when a document finishes.
+   */
+  public void annotateStaged(final Iterable<Annotation> annotations, final Consumer<Annotation> callback) {
+    List<String> names = annotatorNames();
+    int[] stageThreads = new int[names.size()];
+    for (int i = 0; i < stageThreads.length; i++) {
+      stageThreads[i] = PropertiesUtils.getInt(properties, names.get(i) + ".stageThreads", 1);
+    }
+    int queueSize = PropertiesUtils.getInt(properties, "stageQueueSize", 16);
+    annotateStaged(annotations, stageThreads, queueSize, ann -> {
+      List<CoreLabel> words = ann.get(CoreAnnotations.TokensAnnotation.class);
+      if (words != null) {
+        synchronized (this) {
+          numWords += words.size();
+        }
+      }
+      callback.accept(ann);
+    });
+  }
+
   /**
    * Determines whether the parser annotator should default to
    * producing binary trees.  Currently there is only one condition
@@ -710,6 +953,151 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     return annotation;
   }
 
+  /** How many windows long a window may grow to hold a long sentence in {@link #processStream}, before it is cut. */
+  static final int MAX_STREAM_WINDOWS = 4;
+
+  /**
+   * Runs the pipeline over a stream of text that may be too long to annotate as one document.
+   * The text is read a window of roughly {@code windowChars} characters at a time, and only the
+   * annotators up to the sentence splitter are run on each window.  The last sentence of a window may
+   * have been cut off by the end of the window, so its text is carried over to the start of the next
+   * window; the rest of the annotators are run on just the other, complete sentences, which are then
+   * passed to the callback.  Memory use is therefore proportional to the window rather than to the
+   * whole stream, and no sentence is annotated more than once past the splitter.
+   *
+   * A window is grown to hold a sentence longer than it, but only up to {@link #MAX_STREAM_WINDOWS}
+   * windows; a longer sentence (e.g., in unpunctuated text) is cut before its last token there, and
+   * emitted as a sentence of its own.  Text in which the splitter finds no sentence at all (e.g., a long
+   * stretch of whitespace) is dropped rather than carried over.
+   *
+   * Document-level annotators (e.g., coref and quote) only see the sentences emitted together.
+   * Character offsets, token offsets and sentence indices of the emitted sentences are relative to
+   * the whole stream, but each {@link CoreSentence#document()} is only the sentences it was annotated with.
+   *
+   * @param reader The text to annotate.
+   * @param windowChars The number of characters to read before annotating a window.
+   * @param callback A function called with each sentence, in order, once it has been annotated.
+   * @throws IOException If the reader throws an exception.
+   */
+  public void processStream(Reader reader, int windowChars, Consumer<CoreSentence> callback) throws IOException {
+    if (windowChars <= 0) {
+      throw new IllegalArgumentException("Window size must be positive: " + windowChars);
+    }
+    // The annotators up to the splitter run over each window; the rest only over complete sentences
+    int splitEnd = annotatorNames().indexOf(STANFORD_SSPLIT) + 1;
+    if (splitEnd == 0) {
+      throw new IllegalStateException("Streaming annotation requires a sentence splitter");
+    }
+    int numAnnotators = annotatorNames().size();
+    StringBuilder window = new StringBuilder();
+    char[] buffer = new char[Math.min(windowChars, 8192)];
+    int windowBegin = 0;  // the character offset of the window in the stream
+    int tokensEmitted = 0;
+    int sentencesEmitted = 0;
+    int targetLength = windowChars;
+    boolean eof = false;
+    while ( ! eof || window.length() > 0) {
+      // (fill the window)
+      while ( ! eof && window.length() < targetLength) {
+        int read = reader.read(buffer, 0, Math.min(buffer.length, targetLength - window.length()));
+        if (read < 0) {
+          eof = true;
+        } else {
+          window.append(buffer, 0, read);
+        }
+      }
+      // (split the window into sentences)
+      Annotation split = new Annotation(window.toString());
+      annotate(split, 0, splitEnd);
+      List<CoreMap> sentences = split.get(CoreAnnotations.SentencesAnnotation.class);
+      int numToEmit = eof ? sentences.size() : sentences.size() - 1;
+      if (numToEmit <= 0 && ! eof) {
+        if (sentences.isEmpty()) {
+          // Nothing the splitter keeps (e.g., only whitespace), so there's nothing to carry over
+          windowBegin += window.length();
+          window.setLength(0);
+          continue;
+        }
+        if (targetLength < MAX_STREAM_WINDOWS * windowChars) {
+          // A single sentence longer than the window: read more before splitting
+          targetLength += windowChars;
+          continue;
+        }
+        // A sentence too long to keep reading: cut it before its last token, which may be cut off itself
+        List<CoreLabel> sentenceTokens = sentences.get(0).get(CoreAnnotations.TokensAnnotation.class);
+        int cut = sentenceTokens.size() > 1 ? sentenceTokens.get(sentenceTokens.size() - 1).beginPosition() : window.length();
+        split = new Annotation(window.substring(0, cut));
+        annotate(split, 0, splitEnd);
+        sentences = split.get(CoreAnnotations.SentencesAnnotation.class);
+        numToEmit = sentences.size();
+      }
+      int carryOver = numToEmit < sentences.size() ?
+          sentences.get(numToEmit).get(CoreAnnotations.CharacterOffsetBeginAnnotation.class) :
+          split.get(CoreAnnotations.TextAnnotation.class).length();
+      if (numToEmit > 0) {
+        // (annotate the complete sentences)
+        List<CoreMap> complete = new ArrayList<>(sentences.subList(0, numToEmit));
+        List<CoreLabel> tokens = new ArrayList<>();
+        for (CoreMap sentence : complete) {
+          tokens.addAll(sentence.get(CoreAnnotations.TokensAnnotation.class));
+        }
+        Annotation annotation = new Annotation(split);
+        annotation.set(CoreAnnotations.TextAnnotation.class, window.substring(0, carryOver));
+        annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
+        annotation.set(CoreAnnotations.SentencesAnnotation.class, complete);
+        annotate(annotation, splitEnd, numAnnotators);
+        numWords += tokens.size();
+        for (CoreMap sentence : complete) {
+          shiftOffsets(sentence, windowBegin, tokensEmitted, sentencesEmitted);
+        }
+        tokensEmitted += tokens.size();
+        CoreDocument document = new CoreDocument(annotation);
+        for (CoreSentence sentence : document.sentences()) {
+          callback.accept(sentence);
+        }
+        sentencesEmitted += numToEmit;
+      }
+      // (carry over the text of the cut off sentence, to be split again with the next window)
+      window.delete(0, carryOver);
+      windowBegin += carryOver;
+      targetLength = windowChars;
+      if (eof) {
+        break;
+      }
+    }
+  }
+
+  /** Move a sentence annotated within a window to its position in the whole stream. */
+  private static void shiftOffsets(CoreMap sentence, int charShift, int tokenShift, int sentenceShift) {
+    shiftInteger(sentence, CoreAnnotations.CharacterOffsetBeginAnnotation.class, charShift);
+    shiftInteger(sentence, CoreAnnotations.CharacterOffsetEndAnnotation.class, charShift);
+    shiftInteger(sentence, CoreAnnotations.TokenBeginAnnotation.class, tokenShift);
+    shiftInteger(sentence, CoreAnnotations.TokenEndAnnotation.class, tokenShift);
+    shiftInteger(sentence, CoreAnnotations.SentenceIndexAnnotation.class, sentenceShift);
+    for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+      shiftInteger(token, CoreAnnotations.CharacterOffsetBeginAnnotation.class, charShift);
+      shiftInteger(token, CoreAnnotations.CharacterOffsetEndAnnotation.class, charShift);
+      shiftInteger(token, CoreAnnotations.SentenceIndexAnnotation.class, sentenceShift);
+    }
+    List<CoreMap> mentions = sentence.get(CoreAnnotations.MentionsAnnotation.class);
+    if (mentions != null) {
+      for (CoreMap mention : mentions) {
+        shiftInteger(mention, CoreAnnotations.CharacterOffsetBeginAnnotation.class, charShift);
+        shiftInteger(mention, CoreAnnotations.CharacterOffsetEndAnnotation.class, charShift);
+        shiftInteger(mention, CoreAnnotations.TokenBeginAnnotation.class, tokenShift);
+        shiftInteger(mention, CoreAnnotations.TokenEndAnnotation.class, tokenShift);
+        shiftInteger(mention, CoreAnnotations.SentenceIndexAnnotation.class, sentenceShift);
+      }
+    }
+  }
+
+  private static void shiftInteger(CoreMap map, Class<? extends CoreAnnotation<Integer>> key, int shift) {
+    Integer value = map.get(key);
+    if (value != null && shift != 0) {
+      map.set(key, value + shift);
+    }
+  }
+
   //
   // output and formatting methods (including XML-specific methods)
   //
@@ -904,6 +1292,15 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     os.println("\t\"replaceExtension\" - flag to chop off the last extension before adding outputExtension to file");
     os.println("\t\"noClobber\" - don't automatically override (clobber) output files that already exist");
 		os.println("\t\"threads\" - multithread on this number of threads");
+    os.println("\t\"sentenceThreads\" - run the sentences of all of this pipeline's sentence-level annotators (parse, depparse, pos, ner, ...) on one shared pool of this many threads");
+    os.println("\t\"stagedExecution\" - when annotating many documents, give each annotator its own worker threads instead of one thread per document");
+    os.println("\t\"[annotator].stageThreads\" - with stagedExecution, the number of threads for this annotator (default 1)");
+    os.println("\t\"stageQueueSize\" - with stagedExecution, how many documents may wait in front of each annotator (default 16)");
+    os.println("\t\"loadThreads\" - load the models of the annotators on this number of threads (default 1)");
+    os.println("\t\"lazyLoad\" - if true, only load each annotator the first time it is used");
+    os.println("\t\"warmupText\" - text to annotate once when warming up the pipeline");
+    os.println();
+    os.println("The Java system property -DmodelCacheBytes sets how large (in bytes of model files) the models shared between all the pipelines in the JVM may get before unused ones are evicted (default 0).");
     os.println();
     os.println("If none of the above are present, run the pipeline in an interactive shell (default properties will be loaded from the classpath).");
     os.println("The shell accepts input from stdin and displays the output at stdout.");
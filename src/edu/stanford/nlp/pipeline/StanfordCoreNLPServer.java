@@ -18,6 +18,7 @@ import edu.stanford.nlp.trees.tregex.TregexPattern;
 import edu.stanford.nlp.trees.tregex.TregexMatcher;
 import edu.stanford.nlp.trees.*;
 import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.concurrent.PriorityDeadlineExecutor;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import javax.net.ssl.*;
@@ -32,6 +33,7 @@ import java.security.cert.CertificateException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -83,6 +85,12 @@ public class StanfordCoreNLPServer implements Runnable {
   protected static String blacklist = null;
   @ArgumentParser.Option(name="stanford", gloss="If true, do special options (blacklist, timeout modifications) for public Stanford server")
   protected boolean stanford = false;
+  @ArgumentParser.Option(name="cacheBytes", gloss="If positive, cache the annotations of repeated text requests, using at most this many bytes")
+  protected long cacheBytes = 0;
+  @ArgumentParser.Option(name="maxQueuedRequests", gloss="If positive, respond 503 (unavailable) to new requests once this many are waiting; low priority requests are refused at half this, and high priority requests are always queued")
+  protected int maxQueuedRequests = 0;
+  @ArgumentParser.Option(name="priorities", gloss="A file giving clients a priority. Each line is a key and a priority (high, normal, or low), separated by whitespace. Requests with that key as their priorityKey property get its priority; others are normal. Any request can lower its priority with priority=low")
+  protected String prioritiesPath = null;
 
 
 
@@ -103,8 +111,29 @@ public class StanfordCoreNLPServer implements Runnable {
 
   /**
    * An executor to time out CoreNLP execution with.
+   * Requests are run in order of their priority, and are dropped if their timeout passes before they start.
    */
-  private final ExecutorService corenlpExecutor;
+  private final PriorityDeadlineExecutor corenlpExecutor;
+
+
+  /**
+   * A cache of annotated documents for repeated requests, or null if caching is disabled.
+   * This is created when the server is run, so that it picks up the cacheBytes option.
+   */
+  private AnnotationResultCache resultCache; // = null;
+
+
+  /**
+   * The priority of each client key, from the priorities file.
+   * This is read when the server is run, so that it picks up the priorities option.
+   */
+  private Map<String, Integer> clientPriorities = Collections.emptyMap();
+
+
+  /**
+   * The latency histograms and counters of every pipeline this server creates, reported at /metrics.
+   */
+  private final PipelineMetrics metrics = new PipelineMetrics();
 
 
   /**
@@ -196,7 +225,7 @@ public class StanfordCoreNLPServer implements Runnable {
     }
 
     this.serverExecutor = Executors.newFixedThreadPool(ArgumentParser.threads);
-    this.corenlpExecutor = Executors.newFixedThreadPool(ArgumentParser.threads);
+    this.corenlpExecutor = new PriorityDeadlineExecutor(ArgumentParser.threads, maxQueuedRequests);
 
     // Generate and write a shutdown key, get optional server_id from passed in properties
     // this way if multiple servers running can shut them all down with different ids
@@ -364,6 +393,7 @@ public class StanfordCoreNLPServer implements Runnable {
         }
         // Create a CoreNLP
         impl = new StanfordCoreNLP(props);
+        impl.setMetrics(metrics);
         this.lastPipeline = new SoftReference<>(Pair.makePair(cacheKey, impl));
       }
     }
@@ -483,6 +513,120 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * A helper function to respond to a request when the server is too busy to take it on.
+   *
+   * @param httpExchange The exchange to send the error over.
+   *
+   * @throws IOException Thrown if the HttpExchange cannot communicate the error.
+   */
+  private static void respondUnavailable(HttpExchange httpExchange) throws IOException {
+    String response = "CoreNLP server is overloaded; try again later.";
+    httpExchange.getResponseHeaders().add("Content-type", "text/plain");
+    httpExchange.getResponseHeaders().add("Retry-After", "1");
+    httpExchange.sendResponseHeaders(HTTP_UNAVAILABLE, response.length());
+    httpExchange.getResponseBody().write(response.getBytes());
+    httpExchange.close();
+  }
+
+  /**
+   * Parse a priority name (high, normal, or low).
+   *
+   * @return One of the priorities in {@link PriorityDeadlineExecutor}.
+   * @throws IllegalArgumentException If the name is not a priority.
+   */
+  private static int parsePriority(String name) {
+    switch (name.trim().toLowerCase()) {
+      case "high":
+        return PriorityDeadlineExecutor.HIGH_PRIORITY;
+      case "normal":
+        return PriorityDeadlineExecutor.NORMAL_PRIORITY;
+      case "low":
+        return PriorityDeadlineExecutor.LOW_PRIORITY;
+      default:
+        throw new IllegalArgumentException("Unknown priority: " + name);
+    }
+  }
+
+  /**
+   * Read the priorities file: each line is a client key and its priority.
+   */
+  private static Map<String, Integer> readPriorities(String path) {
+    Map<String, Integer> priorities = new HashMap<>();
+    for (String line : IOUtils.readLines(path)) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\\s+");
+      try {
+        if (fields.length != 2) {
+          throw new IllegalArgumentException("Expected a key and a priority");
+        }
+        priorities.put(fields[0], parsePriority(fields[1]));
+      } catch (IllegalArgumentException e) {
+        warn("Could not parse priority: " + line);
+      }
+    }
+    return priorities;
+  }
+
+  /**
+   * The priority of a request.
+   * This is set by the server: a request whose "priorityKey" property is in the priorities file gets
+   * the priority given there, and any other request gets normal priority.
+   * A request may lower (but never raise) its priority with its "priority" property.
+   *
+   * @param props The properties of the request.
+   * @return One of the priorities in {@link PriorityDeadlineExecutor}.
+   */
+  private int getPriority(Properties props) {
+    int priority = PriorityDeadlineExecutor.NORMAL_PRIORITY;
+    String key = props.getProperty("priorityKey");
+    if (key != null) {
+      priority = clientPriorities.getOrDefault(key, PriorityDeadlineExecutor.NORMAL_PRIORITY);
+    }
+    String requested = props.getProperty("priority");
+    if (requested != null) {
+      try {
+        priority = Math.min(priority, parsePriority(requested));
+      } catch (IllegalArgumentException e) {
+        // ignore it, and keep the server's priority
+      }
+    }
+    return priority;
+  }
+
+  /**
+   * On the public Stanford server, limit the timeout of requests from outside Stanford to 15 seconds.
+   *
+   * @param httpExchange The request.
+   * @param timeoutMilliseconds The timeout the request asked for.
+   * @return The timeout to use.
+   */
+  private int maybeAlterStanfordTimeout(HttpExchange httpExchange, int timeoutMilliseconds) {
+    if ( ! stanford) {
+      return timeoutMilliseconds;
+    }
+    try {
+      // Check for too long a timeout from an unauthorized source
+      if (timeoutMilliseconds > 15000) {
+        // If two conditions:
+        //   (1) The server is running on corenlp.run (i.e., corenlp.stanford.edu)
+        //   (2) The request is not coming from a *.stanford.edu" email address
+        // Then force the timeout to be 15 seconds
+        if ("corenlp.stanford.edu".equals(InetAddress.getLocalHost().getHostName()) &&
+                ! httpExchange.getRemoteAddress().getHostName().toLowerCase().endsWith("stanford.edu")) {
+          timeoutMilliseconds = 15000;
+        }
+      }
+      return timeoutMilliseconds;
+    } catch (UnknownHostException uhe) {
+      return timeoutMilliseconds;
+    }
+  }
+
+
   /**
    * A helper function to respond to a request with an error stating that the user is not authorized
    * to make this request.
@@ -849,22 +993,41 @@ public class StanfordCoreNLPServer implements Runnable {
       try {
         // Annotate
         StanfordCoreNLP pipeline = mkStanfordCoreNLP(props);
-        completedAnnotationFuture = corenlpExecutor.submit(() -> {
-          pipeline.annotate(ann);
-          return ann;
-        });
-        Annotation completedAnnotation;
-        int timeoutMilliseconds;
-        try {
-          timeoutMilliseconds = Integer.parseInt(props.getProperty("timeout",
-                                                 Integer.toString(StanfordCoreNLPServer.this.timeoutMilliseconds)));
-          timeoutMilliseconds = maybeAlterStanfordTimeout(httpExchange, timeoutMilliseconds);
+        // Check the cache (only raw text requests are cached)
+        AnnotationResultCache cache = resultCache;
+        String cacheKey = null;
+        Annotation completedAnnotation = null;
+        if (cache != null && "text".equals(props.getProperty("inputFormat", "text"))) {
+          cacheKey = AnnotationResultCache.key(ann.get(CoreAnnotations.TextAnnotation.class), props.getProperty("date"), props);
+          completedAnnotation = cache.get(cacheKey);
+        }
+        if (completedAnnotation == null) {
+          int timeoutMilliseconds;
+          try {
+            timeoutMilliseconds = Integer.parseInt(props.getProperty("timeout",
+                                                   Integer.toString(StanfordCoreNLPServer.this.timeoutMilliseconds)));
+            timeoutMilliseconds = maybeAlterStanfordTimeout(httpExchange, timeoutMilliseconds);
 
-        } catch (NumberFormatException e) {
-          timeoutMilliseconds = StanfordCoreNLPServer.this.timeoutMilliseconds;
+          } catch (NumberFormatException e) {
+            timeoutMilliseconds = StanfordCoreNLPServer.this.timeoutMilliseconds;
+          }
+          // Don't bother starting the annotators if the request has already timed out by the time it leaves the queue
+          long deadline = System.currentTimeMillis() + timeoutMilliseconds;
+          try {
+            completedAnnotationFuture = corenlpExecutor.submit(() -> {
+              pipeline.annotate(ann);
+              return ann;
+            }, getPriority(props), deadline);
+          } catch (RejectedExecutionException e) {
+            respondUnavailable(httpExchange);
+            return;
+          }
+          completedAnnotation = completedAnnotationFuture.get(timeoutMilliseconds, TimeUnit.MILLISECONDS);
+          completedAnnotationFuture = null;  // No longer any need for the future
+          if (cacheKey != null) {
+            cache.put(cacheKey, completedAnnotation);
+          }
         }
-        completedAnnotation = completedAnnotationFuture.get(timeoutMilliseconds, TimeUnit.MILLISECONDS);
-        completedAnnotationFuture = null;  // No longer any need for the future
 
         // Get output
         ByteArrayOutputStream os = new ByteArrayOutputStream();
@@ -885,7 +1048,8 @@ public class StanfordCoreNLPServer implements Runnable {
         if (completedAnnotation != null && ! StringUtils.isNullOrEmpty(props.getProperty("annotators"))) {
           callback.accept(new FinishedRequest(props, completedAnnotation));
         }
-      } catch (TimeoutException e) {
+      } catch (TimeoutException | CancellationException e) {
+        metrics.recordTimeout();
         // Print the stack trace for debugging
         e.printStackTrace();
         // Return error message.
@@ -908,29 +1072,261 @@ public class StanfordCoreNLPServer implements Runnable {
       }
     }
 
-    private int maybeAlterStanfordTimeout(HttpExchange httpExchange, int timeoutMilliseconds) {
-      if ( ! stanford) {
-        return timeoutMilliseconds;
+  } // end class CoreNLPHandler
+
+
+
+  /**
+   * A handler for annotating many documents in one request.
+   * With the default text input format, every non-empty line of the POST body is a document;
+   * with inputFormat=serialized, the body is a stream of length-delimited protocol buffers.
+   * The documents are annotated concurrently, and each result is written back as soon as it is done,
+   * so results may come back in a different order than the documents were sent.
+   * For this reason, every document is given its position in the batch as its docId, unless it already has one.
+   * With JSON output, each result is one line (i.e., newline-delimited JSON); with serialized output,
+   * each result is a length-delimited protocol buffer.
+   * A document which fails or times out is reported as a JSON line with an "error" field,
+   * or left out of a serialized response.
+   */
+  protected class BatchHandler implements HttpHandler {
+
+    /**
+     * An authenticator to determine if we can perform this API request.
+     */
+    private final Predicate<Properties> authenticator;
+
+    /**
+     * A callback to call when an annotation job has finished.
+     */
+    private final Consumer<FinishedRequest> callback;
+
+    public BatchHandler(Predicate<Properties> authenticator, Consumer<FinishedRequest> callback) {
+      this.authenticator = authenticator;
+      this.callback = callback;
+    }
+
+    /**
+     * Read all the documents of the batch from the request body.
+     */
+    private List<Annotation> getDocuments(Properties props, HttpExchange httpExchange) throws IOException {
+      List<Annotation> documents = new ArrayList<>();
+      String inputFormat = props.getProperty("inputFormat", "text");
+      switch (inputFormat) {
+        case "text":
+          String encoding = this.getEncoding(httpExchange);
+          String date = props.getProperty("date");
+          BufferedReader reader = new BufferedReader(IOUtils.encodedInputStreamReader(httpExchange.getRequestBody(), encoding));
+          for (String line; (line = reader.readLine()) != null; ) {
+            line = line.trim();
+            if ( ! line.isEmpty()) {
+              Annotation annotation = new Annotation(line);
+              if (date != null) {
+                annotation.set(CoreAnnotations.DocDateAnnotation.class, date);
+              }
+              documents.add(annotation);
+            }
+          }
+          break;
+        case "serialized":
+          ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer(false);
+          InputStream is = httpExchange.getRequestBody();
+          for (CoreNLPProtos.Document doc; (doc = CoreNLPProtos.Document.parseDelimitedFrom(is)) != null; ) {
+            documents.add(serializer.fromProto(doc));
+          }
+          break;
+        default:
+          throw new IOException("Could not parse input format: " + inputFormat);
       }
+      return documents;
+    }
+
+    private String getEncoding(HttpExchange httpExchange) {
+      String encoding = strict ? "ISO-8859-1" : "UTF-8";
+      String contentType = httpExchange.getRequestHeaders().getFirst("Content-type");
+      if (contentType != null) {
+        for (String field : contentType.split(";")) {
+          String[] pair = field.trim().split("=");
+          if (pair.length == 2 && "charset".equalsIgnoreCase(pair[0])) {
+            encoding = pair[1];
+          }
+        }
+      }
+      return encoding;
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+      if (onBlacklist(httpExchange)) {
+        respondUnauthorized(httpExchange);
+        return;
+      }
+      setHttpExchangeResponseHeaders(httpExchange);
+
+      Properties props;
+      List<Annotation> documents;
+      StanfordCoreNLP.OutputFormat of;
       try {
-        // Check for too long a timeout from an unauthorized source
-        if (timeoutMilliseconds > 15000) {
-          // If two conditions:
-          //   (1) The server is running on corenlp.run (i.e., corenlp.stanford.edu)
-          //   (2) The request is not coming from a *.stanford.edu" email address
-          // Then force the timeout to be 15 seconds
-          if ("corenlp.stanford.edu".equals(InetAddress.getLocalHost().getHostName()) &&
-                  ! httpExchange.getRemoteAddress().getHostName().toLowerCase().endsWith("stanford.edu")) {
-            timeoutMilliseconds = 15000;
+        props = getProperties(httpExchange);
+        if ( ! "POST".equalsIgnoreCase(httpExchange.getRequestMethod())) {
+          respondBadInput("Batches must be sent with a POST request", httpExchange);
+          return;
+        }
+        if (authenticator != null && ! authenticator.test(props)) {
+          respondUnauthorized(httpExchange);
+          return;
+        }
+        of = StanfordCoreNLP.OutputFormat.valueOf(props.getProperty("outputFormat", "json").toUpperCase());
+        if (of != StanfordCoreNLP.OutputFormat.JSON && of != StanfordCoreNLP.OutputFormat.SERIALIZED) {
+          respondBadInput("Batch output format must be json or serialized, not " + of.name().toLowerCase(), httpExchange);
+          return;
+        }
+        if (of == StanfordCoreNLP.OutputFormat.SERIALIZED) {
+          props.setProperty("outputSerializer", ProtobufAnnotationSerializer.class.getName());
+        }
+        if ( ! corenlpExecutor.admits(getPriority(props))) {
+          respondUnavailable(httpExchange);
+          return;
+        }
+        documents = getDocuments(props, httpExchange);
+        log("[" + httpExchange.getRemoteAddress() + "] Batch API call with " + documents.size() + " documents w/annotators " + props.getProperty("annotators", "<unknown>"));
+        for (Annotation doc : documents) {
+          String text = doc.get(CoreAnnotations.TextAnnotation.class);
+          if (maxCharLength > 0 && text.length() > maxCharLength) {
+            respondBadInput("Request is too long to be handled by server: " + text.length() + " characters. Max length is " + maxCharLength + " characters.", httpExchange);
+            return;
           }
         }
-        return timeoutMilliseconds;
-      } catch (UnknownHostException uhe) {
-        return timeoutMilliseconds;
+        // Every document is a job of its own: turn the batch away if they don't all fit in the queue
+        if ( ! corenlpExecutor.admits(getPriority(props), documents.size())) {
+          respondUnavailable(httpExchange);
+          return;
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        respondError("Could not handle incoming annotation", httpExchange);
+        return;
+      }
+
+      // As for a single document: every document of the batch must be done within the timeout,
+      // and any which are still waiting to start by then are dropped
+      int timeoutMilliseconds;
+      try {
+        timeoutMilliseconds = Integer.parseInt(props.getProperty("timeout", Integer.toString(StanfordCoreNLPServer.this.timeoutMilliseconds)));
+        timeoutMilliseconds = maybeAlterStanfordTimeout(httpExchange, timeoutMilliseconds);
+      } catch (NumberFormatException e) {
+        timeoutMilliseconds = StanfordCoreNLPServer.this.timeoutMilliseconds;
+      }
+      long deadline = System.currentTimeMillis() + timeoutMilliseconds;
+      int priority = getPriority(props);
+
+      StanfordCoreNLP pipeline;
+      try {
+        pipeline = mkStanfordCoreNLP(props);
+      } catch (Exception e) {
+        e.printStackTrace();
+        respondError(e.getClass().getName() + ": " + e.getMessage(), httpExchange);
+        return;
+      }
+      AnnotationOutputter.Options options = AnnotationOutputter.getOptions(pipeline);
+      options.pretty = false;  // each JSON result must be on one line
+      BiConsumer<Annotation, OutputStream> outputter = StanfordCoreNLP.createOutputter(props, options);
+      AnnotationResultCache cache = "text".equals(props.getProperty("inputFormat", "text")) ? resultCache : null;
+
+      // Submit every document
+      CompletionService<Annotation> completionService = new ExecutorCompletionService<>(
+          command -> corenlpExecutor.execute(command, priority, deadline));
+      Map<Future<Annotation>, String> pending = new IdentityHashMap<>();
+      List<String> rejected = new ArrayList<>();
+      for (int i = 0; i < documents.size(); ++i) {
+        Annotation doc = documents.get(i);
+        if ( ! doc.containsKey(CoreAnnotations.DocIDAnnotation.class)) {
+          doc.set(CoreAnnotations.DocIDAnnotation.class, Integer.toString(i));
+        }
+        String docId = doc.get(CoreAnnotations.DocIDAnnotation.class);
+        Future<Annotation> future;
+        try {
+          future = completionService.submit(() -> {
+            String cacheKey = null;
+            if (cache != null) {
+              cacheKey = AnnotationResultCache.key(doc.get(CoreAnnotations.TextAnnotation.class), props.getProperty("date"), props);
+              Annotation cached = cache.get(cacheKey);
+              if (cached != null) {
+                cached.set(CoreAnnotations.DocIDAnnotation.class, docId);
+                return cached;
+              }
+            }
+            pipeline.annotate(doc);
+            if (cacheKey != null) {
+              cache.put(cacheKey, doc);
+            }
+            return doc;
+          });
+        } catch (RejectedExecutionException e) {
+          rejected.add(docId);
+          continue;
+        }
+        pending.put(future, docId);
+      }
+
+      // Stream back the results as they finish
+      String contentType = of == StanfordCoreNLP.OutputFormat.JSON ?
+          "application/x-ndjson;charset=" + options.encoding : "application/x-protobuf";
+      httpExchange.getResponseHeaders().add("Content-type", contentType);
+      httpExchange.sendResponseHeaders(HTTP_OK, 0);  // 0 means chunked
+      try (OutputStream out = httpExchange.getResponseBody()) {
+        for (String docId : rejected) {
+          writeBatchError(out, of, docId, "CoreNLP server is overloaded; try again later.");
+        }
+        while ( ! pending.isEmpty()) {
+          long remaining = deadline - System.currentTimeMillis();
+          Future<Annotation> done = remaining > 0 ? completionService.poll(remaining, TimeUnit.MILLISECONDS) : completionService.poll();
+          if (done == null) {
+            // The timeout has passed: give up on the rest of the documents
+            for (Map.Entry<Future<Annotation>, String> entry : pending.entrySet()) {
+              entry.getKey().cancel(true);
+              metrics.recordTimeout();
+              writeBatchError(out, of, entry.getValue(), "CoreNLP request timed out. Your document may be too long.");
+            }
+            break;
+          }
+          String docId = pending.remove(done);
+          try {
+            Annotation completed = done.get();
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            outputter.accept(completed, os);
+            out.write(os.toByteArray());
+            if (of == StanfordCoreNLP.OutputFormat.JSON) {
+              out.write('\n');
+            }
+            if ( ! StringUtils.isNullOrEmpty(props.getProperty("annotators"))) {
+              callback.accept(new FinishedRequest(props, completed));
+            }
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            writeBatchError(out, of, docId, cause.getClass().getName() + ": " + cause.getMessage());
+          }
+          out.flush();
+        }
+      } catch (InterruptedException e) {
+        pending.keySet().forEach(future -> future.cancel(true));
+        throw new RuntimeInterruptedException(e);
+      } finally {
+        httpExchange.close();
       }
     }
 
-  } // end class CoreNLPHandler
+    private void writeBatchError(OutputStream out, StanfordCoreNLP.OutputFormat of, String docId, String message) throws IOException {
+      if (of == StanfordCoreNLP.OutputFormat.JSON) {
+        String json = JSONOutputter.JSONWriter.objectToJSON(writer -> {
+          writer.set("docId", docId);
+          writer.set("error", message);
+        });
+        out.write(json.replace("\n", " ").getBytes("utf-8"));
+        out.write('\n');
+      }
+    }
+
+  } // end class BatchHandler
 
 
 
@@ -1289,6 +1685,42 @@ public class StanfordCoreNLPServer implements Runnable {
     }
   }
 
+  /**
+   * Reports the hit and miss statistics of the annotation cache, as JSON.
+   */
+  protected class CacheStatsHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+      AnnotationResultCache cache = resultCache;
+      String response = cache == null ? "{\"enabled\": false}" : cache.toJSON();
+      byte[] content = response.getBytes("utf-8");
+      httpExchange.getResponseHeaders().set("Content-type", "application/json");
+      httpExchange.sendResponseHeaders(HTTP_OK, content.length);
+      httpExchange.getResponseBody().write(content);
+      httpExchange.close();
+    }
+  } // end class CacheStatsHandler
+
+
+  /**
+   * Reports the latency histograms and throughput counters of the server's pipelines, along with the
+   * state of the request queue, in the Prometheus text format.
+   */
+  protected class MetricsHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+      Map<String, Number> gauges = new LinkedHashMap<>();
+      gauges.put("corenlp_queued_requests", corenlpExecutor.getQueue().size());
+      gauges.put("corenlp_active_requests", corenlpExecutor.getActiveCount());
+      gauges.put("corenlp_threads", corenlpExecutor.getMaximumPoolSize());
+      byte[] content = metrics.toPrometheus(gauges).getBytes("utf-8");
+      httpExchange.getResponseHeaders().set("Content-type", "text/plain; version=0.0.4; charset=utf-8");
+      httpExchange.sendResponseHeaders(HTTP_OK, content.length);
+      httpExchange.getResponseBody().write(content);
+      httpExchange.close();
+    }
+  } // end class MetricsHandler
+
   private static void sendAndGetResponse(HttpExchange httpExchange, byte[] response) throws IOException {
     if (response.length > 0) {
       httpExchange.getResponseHeaders().add("Content-type", "application/json");
@@ -1406,6 +1838,20 @@ public class StanfordCoreNLPServer implements Runnable {
   }
 
 
+  /**
+   * Serve one of the files of the demo page.
+   * If the file can't be found (e.g., running without the demo resources on the classpath),
+   * the rest of the server still runs, without it.
+   */
+  private void serveFile(String path, String fileOrClasspath, String contentType, Optional<Pair<String,String>> basicAuth) {
+    try {
+      withAuth(server.createContext(path, new FileHandler(fileOrClasspath, contentType)), basicAuth);
+    } catch (IOException e) {
+      warn("Not serving " + path + ": " + e.getMessage());
+    }
+  }
+
+
   /**
    * Run the server.
    * This method registers the handlers, and initializes the HTTP server.
@@ -1422,14 +1868,26 @@ public class StanfordCoreNLPServer implements Runnable {
       } else {
         server = HttpServer.create(new InetSocketAddress(serverPort), 0); // 0 is the default 'backlog'
       }
+      corenlpExecutor.setMaxQueued(maxQueuedRequests);
+      if (prioritiesPath != null) {
+        clientPriorities = readPriorities(prioritiesPath);
+        log("Read the priorities of " + clientPriorities.size() + " clients from " + prioritiesPath);
+      }
+      if (cacheBytes > 0) {
+        resultCache = new AnnotationResultCache(cacheBytes);
+        log("Caching annotations of repeated requests in " + cacheBytes + " bytes");
+      }
       withAuth(server.createContext("/", new CoreNLPHandler(defaultProps, authenticator, callback, homepage)), basicAuth);
+      withAuth(server.createContext("/batch", new BatchHandler(authenticator, callback)), basicAuth);
       withAuth(server.createContext("/tokensregex", new TokensRegexHandler(authenticator, callback)), basicAuth);
       withAuth(server.createContext("/semgrex", new SemgrexHandler(authenticator, callback)), basicAuth);
       withAuth(server.createContext("/tregex", new TregexHandler(authenticator, callback)), basicAuth);
-      withAuth(server.createContext("/corenlp-brat.js", new FileHandler("edu/stanford/nlp/pipeline/demo/corenlp-brat.js", "application/javascript")), basicAuth);
-      withAuth(server.createContext("/corenlp-brat.cs", new FileHandler("edu/stanford/nlp/pipeline/demo/corenlp-brat.css", "text/css")), basicAuth);
-      withAuth(server.createContext("/corenlp-parseviewer.js", new FileHandler("edu/stanford/nlp/pipeline/demo/corenlp-parseviewer.js", "application/javascript")), basicAuth);
+      serveFile("/corenlp-brat.js", "edu/stanford/nlp/pipeline/demo/corenlp-brat.js", "application/javascript", basicAuth);
+      serveFile("/corenlp-brat.cs", "edu/stanford/nlp/pipeline/demo/corenlp-brat.css", "text/css", basicAuth);
+      serveFile("/corenlp-parseviewer.js", "edu/stanford/nlp/pipeline/demo/corenlp-parseviewer.js", "application/javascript", basicAuth);
       withAuth(server.createContext("/ping", new PingHandler()), Optional.empty());
+      withAuth(server.createContext("/cache", new CacheStatsHandler()), basicAuth);
+      withAuth(server.createContext("/metrics", new MetricsHandler()), basicAuth);
       withAuth(server.createContext("/shutdown", new ShutdownHandler()), basicAuth);
       if (this.serverPort == this.statusPort) {
         withAuth(server.createContext("/live", new LiveHandler()), Optional.empty());
@@ -1445,6 +1903,17 @@ public class StanfordCoreNLPServer implements Runnable {
     }
   }
 
+  /**
+   * Stop the server started by {@link #run()}, and the thread pools it handles and annotates requests on.
+   */
+  public void stop() {
+    if (server != null) {
+      server.stop(0);
+    }
+    serverExecutor.shutdownNow();
+    corenlpExecutor.shutdownNow();
+  }
+
   /**
    * The main method.
    * Read the command line arguments and run the server.
@@ -1494,7 +1963,7 @@ public class StanfordCoreNLPServer implements Runnable {
       server.defaultProps.forEach((key1, value) -> props.setProperty(key1.toString(), value.toString()));
       props.setProperty("annotators", StanfordCoreNLPServer.preloadedAnnotators);
       try {
-        new StanfordCoreNLP(props);
+        new StanfordCoreNLP(props).warmup();
       } catch (Throwable ignored) {
         err("Could not pre-load annotators in server; encountered exception:");
         ignored.printStackTrace();
@@ -122,6 +122,12 @@ public class BeamBestSequenceFinder implements BestSequenceFinder  {
       tags[pos] = ts.getPossibleValues(pos);
       tagNum[pos] = tags[pos].length;
     }
+    // the scores of the values at one position, reused for every position
+    int maxTagNum = 0;
+    for (int n : tagNum) {
+      maxTagNum = Math.max(maxTagNum, n);
+    }
+    double[] scores = new double[maxTagNum];
 
     Beam newBeam = new Beam(beamSize, ScoredComparator.ASCENDING_COMPARATOR);
     TagSeq initSeq = new TagSeq();
@@ -146,10 +152,20 @@ public class BeamBestSequenceFinder implements BestSequenceFinder  {
         }
         // System.out.print("#"); System.out.flush();
         TagSeq tagSeq = (TagSeq) anOldBeam;
+        // With no right window, the new tag is the one scored, so all its values can be scored at once
+        boolean scoreAll = rightWindow == 0 && pos >= leftWindow;
+        if (scoreAll) {
+          int[] seqTags = tagSeq.tmpTags(leftWindow, size);
+          seqTags[pos] = tags[pos][0];
+          ts.scoresOf(seqTags, pos, scores);
+        }
         for (int nextTagNum = 0; nextTagNum < tagNum[pos]; nextTagNum++) {
           TagSeq nextSeq = tagSeq.tclone();
 
-          if (pos >= leftWindow + rightWindow) {
+          if (scoreAll) {
+            nextSeq.extendWith(tags[pos][nextTagNum]);
+            nextSeq.score += scores[nextTagNum];
+          } else if (pos >= leftWindow + rightWindow) {
             nextSeq.extendWith(tags[pos][nextTagNum], ts, size);
           } else {
             nextSeq.extendWith(tags[pos][nextTagNum]);
@@ -21,8 +21,36 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
 
   private static final boolean DEBUG = false;
 
+  /**
+   * The arrays of the Viterbi lattice, kept so that they can be reused to decode the next sequence rather than
+   * allocated for each one; see {@link #bestSequence(SequenceModel, Lattice)}.  The arrays only grow, so a lattice
+   * holds on to the memory of the largest sequence it has decoded.  A lattice can only be used by one thread at a time.
+   */
+  public static class Lattice {
+    private double[][] windowScore = new double[0][];
+    private double[][] score = new double[0][];
+    private int[][] trace = new int[0][];
+
+    /** Makes sure there are arrays of at least the given sizes for the given number of positions. */
+    private void ensureCapacity(int[] productSizes) {
+      int padLength = productSizes.length;
+      if (windowScore.length < padLength) {
+        windowScore = Arrays.copyOf(windowScore, padLength);
+        score = Arrays.copyOf(score, padLength);
+        trace = Arrays.copyOf(trace, padLength);
+      }
+      for (int pos = 0; pos < padLength; pos++) {
+        if (windowScore[pos] == null || windowScore[pos].length < productSizes[pos]) {
+          windowScore[pos] = new double[productSizes[pos]];
+          score[pos] = new double[productSizes[pos]];
+          trace[pos] = new int[productSizes[pos]];
+        }
+      }
+    }
+  }
+
   public static Pair<int[], Double> bestSequenceWithLinearConstraints(SequenceModel ts, double[][] linearConstraints) {
-    return bestSequence(ts, linearConstraints);
+    return bestSequence(ts, linearConstraints, null);
   }
 
   /**
@@ -34,10 +62,21 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
    */
   @Override
   public int[] bestSequence(SequenceModel ts) {
-    return bestSequence(ts, null).first();
+    return bestSequence(ts, null, null).first();
   }
 
-  private static Pair<int[], Double> bestSequence(SequenceModel ts, double[][] linearConstraints) {
+  /**
+   * Runs the Viterbi algorithm in the arrays of the given lattice, rather than in newly allocated ones.
+   *
+   * @param ts The SequenceModel to be used for scoring
+   * @param lattice The lattice to reuse, or null to allocate one
+   * @return An array containing the int tags of the best sequence
+   */
+  public int[] bestSequence(SequenceModel ts, Lattice lattice) {
+    return bestSequence(ts, null, lattice).first();
+  }
+
+  private static Pair<int[], Double> bestSequence(SequenceModel ts, double[][] linearConstraints, Lattice lattice) {
     // Set up tag options
     int length = ts.length();
     int leftWindow = ts.leftWindow();
@@ -58,6 +97,12 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
     }
 
     int[] tempTags = new int[padLength];
+    // the scores of the values at one position, reused for every position
+    int maxTagNum = 0;
+    for (int n : tagNum) {
+      maxTagNum = Math.max(maxTagNum, n);
+    }
+    double[] scores = new double[maxTagNum];
 
     // Set up product space sizes
     int[] productSizes = new int[padLength];
@@ -77,14 +122,18 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
       productSizes[pos - rightWindow] = curProduct;
     }
 
+    if (lattice == null) {
+      lattice = new Lattice();
+    }
+    lattice.ensureCapacity(productSizes);
+
     // Score all of each window's options
-    double[][] windowScore = new double[padLength][];
+    double[][] windowScore = lattice.windowScore;
     for (int pos = leftWindow; pos < leftWindow + length; pos++) {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
       }
       if (DEBUG) { log.info("scoring word " + pos + " / " + (leftWindow + length) + ", productSizes =  " + productSizes[pos] + ", tagNum = " + tagNum[pos] + "..."); }
-      windowScore[pos] = new double[productSizes[pos]];
       Arrays.fill(tempTags, tags[0][0]);
       if (DEBUG) { log.info("windowScore[" + pos + "] has size (productSizes[pos]) " + windowScore[pos].length); }
 
@@ -106,7 +155,7 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
         // CDM May 2007: The way this is done gives incorrect results if there are repeated values in the values of ts.getPossibleValues(pos) -- in particular if the first value of the array is repeated later.  I tried replacing it with the modulo version, but that only worked for left-to-right, not bidirectional inference, but I still think that if you sorted things out, you should be able to do it with modulos and the result would be conceptually simpler and robust to repeated values.  But in the meantime, I fixed the POS tagger to not give repeated values (which was a bug in the tagger).
         if (tempTags[pos] == tags[pos][0]) {
           // get all tags at once
-          double[] scores = ts.scoresOf(tempTags, pos);
+          ts.scoresOf(tempTags, pos, scores);
           if (DEBUG) { log.info("Matched at array index [product] " + product + "; tempTags[pos] == tags[pos][0] == " + tempTags[pos]); }
           if (DEBUG) { log.info("For pos " + pos + " scores.length is " + scores.length + "; tagNum[pos] = " + tagNum[pos] + "; windowScore[pos].length = " + windowScore[pos].length); }
           if (DEBUG) { log.info("scores: " + Arrays.toString(scores)); }
@@ -119,16 +168,9 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
       }
     }
 
-    // Set up score and backtrace arrays
-    double[][] score = new double[padLength][];
-    int[][] trace = new int[padLength][];
-    for (int pos = 0; pos < padLength; pos++) {
-      if (Thread.interrupted()) {  // Allow interrupting
-        throw new RuntimeInterruptedException();
-      }
-      score[pos] = new double[productSizes[pos]];
-      trace[pos] = new int[productSizes[pos]];
-    }
+    // Score and backtrace arrays
+    double[][] score = lattice.score;
+    int[][] trace = lattice.trace;
 
     // Do forward Viterbi algorithm
 
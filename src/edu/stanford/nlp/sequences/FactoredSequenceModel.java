@@ -19,6 +19,8 @@ public class FactoredSequenceModel implements SequenceModel {
 
   private SequenceModel[] models = null;
   private double[] wts = null;
+  /** Scratch space for the scores of all but the first model, reused between calls. */
+  private double[] scratch = new double[0];
 
   /** {@inheritDoc} */
   @Override
@@ -42,6 +44,34 @@ public class FactoredSequenceModel implements SequenceModel {
     return dist;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void scoresOf(int[] sequence, int pos, double[] scores) {
+    int numValues = getPossibleValues(pos).length;
+    if (scratch.length < numValues) {
+      scratch = new double[numValues];
+    }
+    if (models != null) {
+      models[0].scoresOf(sequence, pos, scores);
+      for (int j = 0; j < numValues; j++) {
+        scores[j] *= wts[0];
+      }
+      for (int i = 1; i < models.length; i++) {
+        models[i].scoresOf(sequence, pos, scratch);
+        for (int j = 0; j < numValues; j++) {
+          scores[j] += scratch[j] * wts[i];
+        }
+      }
+      return;
+    }
+
+    model1.scoresOf(sequence, pos, scores);
+    model2.scoresOf(sequence, pos, scratch);
+    for (int j = 0; j < numValues; j++) {
+      scores[j] = model1Wt * scores[j] + model2Wt * scratch[j];
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public double scoreOf(int[] sequence, int pos) {
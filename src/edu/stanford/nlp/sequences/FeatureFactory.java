@@ -81,6 +81,26 @@ public abstract class FeatureFactory<IN> implements Serializable {
   public abstract Collection<String> getCliqueFeatures(PaddedList<IN> info, int position, Clique clique);
 
 
+  /**
+   * Adds the {@link FeatureHashTable#hash(String) hashes} of the features for the specified {@link Clique}
+   * to {@code hashes}, so that a classifier can look them up in a {@link FeatureHashTable}.
+   * These must be the hashes of exactly the features returned by
+   * {@link #getCliqueFeatures(PaddedList, int, Clique)}, though they may be in a different order
+   * and a feature may be hashed more than once.
+   * This implementation just hashes those features; subclasses can override it to avoid building
+   * the full feature Strings (see {@link #addAllSuffixedHashes(FeatureHashTable.Hashes, Collection, String)}).
+   *
+   * @param info A PaddedList of the feature-value pairs
+   * @param position The current position to extract features at
+   * @param clique The particular clique for which to extract features
+   * @param hashes The hashes of the features are added here
+   */
+  public void addCliqueFeatureHashes(PaddedList<IN> info, int position, Clique clique, FeatureHashTable.Hashes hashes) {
+    for (String feature : getCliqueFeatures(info, position, clique)) {
+      hashes.add(FeatureHashTable.hash(feature));
+    }
+  }
+
   /** Makes more complete feature names out of partial feature names, by
    *  adding a suffix to the String feature name, adding results to an
    *  accumulator
@@ -107,6 +127,19 @@ public abstract class FeatureFactory<IN> implements Serializable {
     }
   }
 
+  /** The same as {@link #addAllInterningAndSuffixing(Collection, Collection, String)}, but adds the
+   *  hashes of the suffixed features, without building them.
+   *
+   * @param hashes The hashes of the output features are added here
+   * @param addend The base set of features
+   * @param suffix The suffix added to each feature in the addend set
+   */
+  protected static void addAllSuffixedHashes(FeatureHashTable.Hashes hashes, Collection<String> addend, String suffix) {
+    for (String feat : addend) {
+      hashes.add(FeatureHashTable.hash(feat, suffix));
+    }
+  }
+
   /**
    * Convenience methods for subclasses which use CoreLabel.  Gets the
    * word after applying any wordFunction present in the
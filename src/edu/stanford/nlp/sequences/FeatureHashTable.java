@@ -0,0 +1,183 @@
+package edu.stanford.nlp.sequences;
+
+import edu.stanford.nlp.util.Index;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Maps 64-bit hashes of feature Strings to their positions in a feature {@link Index}.
+ * This lets a classifier look up a feature which is made of a base feature and a clique suffix
+ * (e.g., {@code WORD-Smith|C}) from the hash of its parts, without ever building the full String;
+ * see {@link FeatureFactory#addCliqueFeatureHashes(edu.stanford.nlp.util.PaddedList, int, Clique, Hashes)}.
+ *
+ * The table is built once from the feature index (or directly from feature hashes), and is stored in two
+ * primitive arrays using open addressing.
+ * Only hashes are stored, not the features, so a feature which is not in the index may in principle be
+ * mistaken for one which is, if their hashes are equal.  With 64-bit hashes, this is vanishingly unlikely
+ * (around {@code n / 2^64} per lookup for an index of {@code n} features).  Features of the index whose
+ * hashes collide with each other are detected when the table is built; see {@link #of(Index)}.
+ *
+ * The table is immutable and so threadsafe.
+ */
+public class FeatureHashTable {
+
+  /** A growable list of feature hashes, reused between calls to avoid allocation. */
+  public static class Hashes {
+    private long[] values = new long[64];
+    private int size; // = 0;
+
+    public void add(long hash) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, 2 * size);
+      }
+      values[size++] = hash;
+    }
+
+    public long get(int i) {
+      return values[i];
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public void clear() {
+      size = 0;
+    }
+  }
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /** The index this table was built from, or null if it was built from hashes. */
+  private final Index<String> index;
+  private final int size;
+  private final int mask;
+  /** The hash of the feature in each slot. */
+  private final long[] keys;
+  /** One more than the index of the feature in each slot, or 0 if the slot is empty. */
+  private final int[] values;
+
+  private FeatureHashTable(Index<String> index, int size, int mask, long[] keys, int[] values) {
+    this.index = index;
+    this.size = size;
+    this.mask = mask;
+    this.keys = keys;
+    this.values = values;
+  }
+
+  /**
+   * Build the table for a feature index.
+   *
+   * @return The table, or null if two features of the index have the same hash, in which case
+   *     features have to be looked up by their Strings.
+   */
+  public static FeatureHashTable of(Index<String> index) {
+    long[] hashes = new long[index.size()];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = hash(index.get(i));
+    }
+    return of(index, hashes);
+  }
+
+  /**
+   * Build a table which maps each of the given hashes to its position in the array.
+   *
+   * @return The table, or null if the same hash is there twice.
+   */
+  public static FeatureHashTable of(long[] hashes) {
+    return of(null, hashes);
+  }
+
+  private static FeatureHashTable of(Index<String> index, long[] hashes) {
+    int n = hashes.length;
+    int tableSize = Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;  // at most half full
+    int mask = tableSize - 1;
+    long[] keys = new long[tableSize];
+    int[] values = new int[tableSize];
+    for (int i = 0; i < n; i++) {
+      long hash = hashes[i];
+      int slot = (int) hash & mask;
+      while (values[slot] != 0) {
+        if (keys[slot] == hash) {
+          return null;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = hash;
+      values[slot] = i + 1;
+    }
+    return new FeatureHashTable(index, n, mask, keys, values);
+  }
+
+  /** Whether this table was built from the given index, as it is now. */
+  public boolean isFor(Index<String> index) {
+    return this.index == index && size == index.size();
+  }
+
+  /** The number of features in the table. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The position in the index of the feature with the given hash.
+   *
+   * @return The position, or -1 if no feature has this hash.
+   */
+  public int indexOf(long hash) {
+    int slot = (int) hash & mask;
+    while (true) {
+      int value = values[slot];
+      if (value == 0) {
+        return -1;
+      }
+      if (keys[slot] == hash) {
+        return value - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /** The hash of a feature. */
+  public static long hash(String feature) {
+    return finish(update(FNV_OFFSET, feature));
+  }
+
+  /**
+   * The hash of a suffixed feature, as made by {@link FeatureFactory#addAllInterningAndSuffixing(Collection, Collection, String)}:
+   * that is, the hash of {@code feature + '|' + suffix}, or of {@code feature} if the suffix is null or empty.
+   */
+  public static long hash(String feature, String suffix) {
+    long h = update(FNV_OFFSET, feature);
+    if (suffix != null && ! suffix.isEmpty()) {
+      h = update(h, '|');
+      h = update(h, suffix);
+    }
+    return finish(h);
+  }
+
+  /** FNV-1a over the chars of the String. */
+  private static long update(long h, String s) {
+    for (int i = 0, len = s.length(); i < len; i++) {
+      h = update(h, s.charAt(i));
+    }
+    return h;
+  }
+
+  private static long update(long h, char c) {
+    return (h ^ c) * FNV_PRIME;
+  }
+
+  /** The finalizer of MurmurHash3, so that the low bits used for the slot depend on all the chars. */
+  private static long finish(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
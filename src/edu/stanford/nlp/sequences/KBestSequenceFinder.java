@@ -56,6 +56,12 @@ public class KBestSequenceFinder implements BestSequenceFinder {
     }
 
     int[] tempTags = new int[padLength];
+    // the scores of the values at one position, reused for every position
+    int maxNumTags = 0;
+    for (int n : tagNum) {
+      maxNumTags = Math.max(maxNumTags, n);
+    }
+    double[] scores = new double[maxNumTags];
 
     // Set up product space sizes
     int[] productSizes = new int[padLength];
@@ -91,7 +97,7 @@ public class KBestSequenceFinder implements BestSequenceFinder {
         }
         if (tempTags[pos] == tags[pos][0]) {
           // get all tags at once
-          double[] scores = ts.scoresOf(tempTags, pos);
+          ts.scoresOf(tempTags, pos, scores);
           // fill in the relevant windowScores
           for (int t = 0; t < tagNum[pos]; t++) {
             windowScore[pos][product + t * shift] = scores[t];
@@ -444,10 +444,20 @@ public class SeqClassifierFlags implements Serializable  {
   public transient String loadAuxClassifier = null;
   public transient String serializeTo = null;
   public transient String serializeToText = null;
+  /** Write the classifier in the memory-mappable format of {@link edu.stanford.nlp.ie.crf.CRFClassifier#serializeMappedClassifier(String)} */
+  public transient String serializeToMapped = null;
   public transient int interimOutputFreq = 0;
   public transient String initialWeights = null;
   public transient List<String> gazettes = new ArrayList<>();
   public transient String selfTrainFile = null;
+  /** At test time, look features up by their hashes rather than building their Strings; see {@link FeatureHashTable} */
+  public transient boolean hashedFeatures = false;
+  /**
+   * At test time, store the weights as doubles, floats, or 16 or 8 bit integers ("double", "float", "short" or "byte");
+   * see {@link edu.stanford.nlp.math.CompactWeights}.  This is saved with a model, so that a model serialized
+   * with it set loads compactly.  (It is null in models saved before it was added.)
+   */
+  public String weightPrecision = "double";
 
   public String inputEncoding = "UTF-8"; // used for CTBSegDocumentReader as well
 
@@ -1584,6 +1594,8 @@ public class SeqClassifierFlags implements Serializable  {
         serializeTo = val;
       } else if (key.equalsIgnoreCase("serializeToText")) {
         serializeToText = val;
+      } else if (key.equalsIgnoreCase("serializeToMapped")) {
+        serializeToMapped = val;
       } else if (key.equalsIgnoreCase("serializeDatasetsDir")) {
         serializeDatasetsDir = val;
       } else if (key.equalsIgnoreCase("loadDatasetsDir")) {
@@ -1618,6 +1630,10 @@ public class SeqClassifierFlags implements Serializable  {
         textFile = val;
       } else if (key.equalsIgnoreCase("readStdin")) {
         readStdin = Boolean.parseBoolean(val);
+      } else if (key.equalsIgnoreCase("hashedFeatures")) {
+        hashedFeatures = Boolean.parseBoolean(val);
+      } else if (key.equalsIgnoreCase("weightPrecision")) {
+        weightPrecision = val;
       } else if (key.equalsIgnoreCase("initialWeights")) {
         initialWeights = val;
       } else if (key.equalsIgnoreCase("interimOutputFreq")) {
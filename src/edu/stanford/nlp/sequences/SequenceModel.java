@@ -89,4 +89,23 @@ public interface SequenceModel {
    */
   double[] scoresOf(int[] sequence, int position);
 
+  /**
+   * Computes the same scores as {@link #scoresOf(int[], int)}, but writes them into the given array
+   * rather than allocating a new one, so that decoders can score positions in a tight loop without
+   * allocating.  The array must have room for {@code getPossibleValues(position).length} scores;
+   * elements beyond those are left alone.
+   * <br>
+   * The default implementation copies the result of {@link #scoresOf(int[], int)}, and so saves nothing.
+   * Models which are decoded often should override it to compute the scores in place, and may then
+   * implement {@link #scoresOf(int[], int)} by calling it with a new array.
+   *
+   * @param sequence The sequence containing the rest of the values to condition on
+   * @param position The position of the element to give a distribution for
+   * @param scores The array to write the scores of the possible tokens at the position into
+   */
+  default void scoresOf(int[] sequence, int position, double[] scores) {
+    double[] s = scoresOf(sequence, position);
+    System.arraycopy(s, 0, scores, 0, s.length);
+  }
+
 }
@@ -57,6 +57,12 @@ public class ViterbiSearchGraphBuilder  {
     }
 
     int[] tempTags = new int[padLength];
+    // the scores of the values at one position, reused for every position
+    int maxTagNum = 0;
+    for (int n : tagNum) {
+      maxTagNum = Math.max(maxTagNum, n);
+    }
+    double[] scores = new double[maxTagNum];
 
     // Set up product space sizes
     int[] productSizes = new int[padLength];
@@ -92,7 +98,7 @@ public class ViterbiSearchGraphBuilder  {
         }
         if (tempTags[pos] == tags[pos][0]) {
           // get all tags at once
-          double[] scores = ts.scoresOf(tempTags, pos);
+          ts.scoresOf(tempTags, pos, scores);
           // fill in the relevant windowScores
           for (int t = 0; t < tagNum[pos]; t++) {
             windowScore[pos][product + t * shift] = scores[t];
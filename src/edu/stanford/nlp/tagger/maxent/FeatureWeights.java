@@ -0,0 +1,109 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import edu.stanford.nlp.math.CompactWeights;
+import edu.stanford.nlp.util.Generics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The weights of a tagger's features laid out for tagging.
+ * Each value of each extractor (a row) has the tags it has features for and their weights, and the rows are stored
+ * one after another in flat arrays.  Scoring a feature value is then one map lookup to its row and a pass over
+ * a contiguous stretch of memory holding just its nonzero weights, rather than a pass over a {@code ySize} array of
+ * feature numbers (mostly -1) in {@code fAssociations}, each of them a random access into the lambda array.
+ *
+ * This is used for exact scoring (see {@link MaxentTagger#hasApproximateScoring()}), which scores all the tags.
+ * Built from a tagger's {@code fAssociations} and lambdas when it is loaded with the {@code flatWeights} option
+ * (see {@link TaggerConfig#getFlatWeights()}), since the tagger keeps those too.  If the tagger's
+ * weights are stored compactly (see {@link TaggerConfig#getWeightPrecision()}), so are these.
+ * The weights are immutable and so threadsafe.
+ */
+class FeatureWeights {
+
+  /** For each extractor (the rare extractors after the others), the row of each of its values. */
+  private final List<Map<String, Integer>> rows;
+  /** Where each row starts in tags and weights; rowStart[numRows] is the number of weights. */
+  private final int[] rowStart;
+  private final int[] tags;
+  private final double[] weights;
+  /** The weights, if they are stored compactly, in which case weights is null. */
+  private final CompactWeights compactWeights;
+
+  FeatureWeights(List<Map<String, int[]>> fAssociations, int ySize, double[] lambda, CompactWeights.Precision precision) {
+    int numRows = 0;
+    int numWeights = 0;
+    for (Map<String, int[]> fValueAssociations : fAssociations) {
+      for (int[] fTagAssociations : fValueAssociations.values()) {
+        numRows++;
+        for (int fNum : fTagAssociations) {
+          if (fNum >= 0) {
+            numWeights++;
+          }
+        }
+      }
+    }
+    rows = Generics.newArrayList(fAssociations.size());
+    rowStart = new int[numRows + 1];
+    tags = new int[numWeights];
+    double[] flatWeights = new double[numWeights];
+    int row = 0;
+    int k = 0;
+    for (Map<String, int[]> fValueAssociations : fAssociations) {
+      Map<String, Integer> valueRows = Generics.newHashMap(fValueAssociations.size());
+      for (Map.Entry<String, int[]> entry : fValueAssociations.entrySet()) {
+        int[] fTagAssociations = entry.getValue();
+        for (int tag = 0; tag < ySize; tag++) {
+          int fNum = fTagAssociations[tag];
+          if (fNum >= 0) {
+            tags[k] = tag;
+            flatWeights[k] = lambda[fNum];
+            k++;
+          }
+        }
+        valueRows.put(entry.getKey(), row);
+        row++;
+        rowStart[row] = k;
+      }
+      rows.add(valueRows);
+    }
+    if (precision == CompactWeights.Precision.DOUBLE) {
+      weights = flatWeights;
+      compactWeights = null;
+    } else {
+      weights = null;
+      compactWeights = CompactWeights.of(flatWeights, precision);
+    }
+  }
+
+  /**
+   * The row of a value of an extractor.
+   *
+   * @param extractor The number of the extractor, as in {@code fAssociations}
+   * @return The row, or -1 if the value has no features
+   */
+  int row(int extractor, String value) {
+    Integer row = rows.get(extractor).get(value);
+    return row == null ? -1 : row;
+  }
+
+  /** Adds the weights of a row to the scores of all the tags, which are indexed by tag number. */
+  void addTo(int row, double[] scores) {
+    int end = rowStart[row + 1];
+    if (weights != null) {
+      for (int k = rowStart[row]; k < end; k++) {
+        scores[tags[k]] += weights[k];
+      }
+    } else {
+      for (int k = rowStart[row]; k < end; k++) {
+        scores[tags[k]] += compactWeights.get(k);
+      }
+    }
+  }
+
+  /** The number of weights stored. */
+  int size() {
+    return tags.length;
+  }
+
+}
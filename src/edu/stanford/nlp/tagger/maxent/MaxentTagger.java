@@ -33,6 +33,7 @@ import edu.stanford.nlp.ling.*;
 import edu.stanford.nlp.maxent.CGRunner;
 import edu.stanford.nlp.maxent.Problem;
 import edu.stanford.nlp.maxent.iis.LambdaSolve;
+import edu.stanford.nlp.math.CompactWeights;
 import edu.stanford.nlp.objectbank.ObjectBank;
 import edu.stanford.nlp.objectbank.ReaderIteratorFactory;
 import edu.stanford.nlp.process.DocumentPreprocessor;
@@ -42,6 +43,7 @@ import edu.stanford.nlp.process.TokenizerFactory;
 import edu.stanford.nlp.process.PTBTokenizer.PTBTokenizerFactory;
 import edu.stanford.nlp.process.TransformXML;
 import edu.stanford.nlp.process.WhitespaceTokenizer;
+import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
 import edu.stanford.nlp.sequences.PlainTextDocumentReaderAndWriter;
 import edu.stanford.nlp.sequences.PlainTextDocumentReaderAndWriter.OutputStyle;
 import edu.stanford.nlp.tagger.common.Tagger;
@@ -215,6 +217,10 @@ import java.text.DecimalFormat;
  * <tr><td>debug</td><td>boolean</td><td>boolean</td><td>All</td><td>Whether to write debugging information (words, top words, unknown words, confusion matrix).  Useful for error analysis.</td></tr>
  * <tr><td>debugPrefix</td><td>String</td><td>N/A</td><td>All</td><td>File (path) prefix for where to write out the debugging information (relevant only if debug=true).</td></tr>
  * <tr><td>nthreads</td><td>int</td><td>1</td><td>Test,Text</td><td>Number of threads to use when processing text.</td></tr>
+ * <tr><td>weightPrecision</td><td>String</td><td>double</td><td>Test,Text,Tag</td><td>How to store the weights when tagging: double, float, short or byte (16 or 8 bit integers, scaled per block of weights).  Less precision saves memory, but may change a few tags.</td></tr>
+ * <tr><td>candidateTagThreshold</td><td>double</td><td>0.0</td><td>Test,Text,Tag</td><td>A word's possible tags which are less than this fraction as probable as its most probable tag, judging from the features of the words alone, are not considered when decoding.  A small value such as 0.001 makes tagging faster, particularly of unknown words, at a small cost in accuracy.  0 considers all tags.</td></tr>
+ * <tr><td>reuseLattice</td><td>boolean</td><td>false</td><td>Test,Text,Tag</td><td>Whether each thread keeps the arrays of its Viterbi lattice to decode its next sentence with, rather than allocating them for every sentence.  This saves allocation at the cost of keeping the largest lattice of each thread in memory.</td></tr>
+ * <tr><td>flatWeights</td><td>boolean</td><td>false</td><td>Test,Text,Tag</td><td>Whether to also lay the weights out in flat rows, one per feature value, for exact (not approximate) scoring.  This tags faster, at the cost of a second copy of the weights in memory.</td></tr>
  * </table>
  *
  *
@@ -361,9 +367,16 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
   }
 
   private LambdaSolveTagger prob;
+  /** The lambdas of prob, when they are stored compactly for tagging in its place; see {@link TaggerConfig#getWeightPrecision()} */
+  private CompactWeights compactLambda; // = null;
   // For each extractor index, we have a map from possible extracted
   // features to an array which maps from tag number to feature weight index in the lambdas array.
   List<Map<String, int[]>> fAssociations = Generics.newArrayList();
+  /**
+   * The weights of fAssociations laid out for exact scoring, or null to tag from fAssociations and the lambdas.
+   * Only built with the flatWeights option, as it is a second copy of the weights.
+   */
+  FeatureWeights featureWeights; // = null;
   //PairsHolder pairs = new PairsHolder();
   Extractors extractors;
   Extractors extractorsRare;
@@ -418,6 +431,12 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
    */
   int rareWordMinFeatureThresh = RARE_WORD_MIN_FEATURE_THRESH;
 
+  /** See {@link TaggerConfig#getCandidateTagThreshold()}. */
+  double candidateTagThreshold; // = 0.0;
+
+  /** The lattice each thread last decoded with, if lattices are reused; see {@link TaggerConfig#getReuseLattice()}. */
+  private transient ThreadLocal<ExactBestSequenceFinder.Lattice> lattices; // = null;
+
   /**
    * If using tag equivalence classes on following words, words that occur
    * strictly more than this number of times (in total with any tag)
@@ -464,6 +483,21 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
     return prob;
   }
 
+  /** The weight of a feature, however the weights are stored. */
+  double lambda(int fNum) {
+    return compactLambda != null ? compactLambda.get(fNum) : prob.lambda[fNum];
+  }
+
+  /** The lattice for this thread to decode a sentence with, or null to make a new one for each sentence. */
+  ExactBestSequenceFinder.Lattice lattice() {
+    return lattices == null ? null : lattices.get();
+  }
+
+  /** The number of weights. */
+  int numLambdas() {
+    return compactLambda != null ? compactLambda.size() : prob.lambda.length;
+  }
+
   // TODO: make these constructors instead of init methods?
   void init(TaggerConfig config) {
     if (initted) return;  // TODO: why not reinit?
@@ -519,6 +553,8 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
       veryCommonWordThresh = config.getVeryCommonWordThresh();
       occurringTagsOnly = config.occurringTagsOnly();
       possibleTagsOnly = config.possibleTagsOnly();
+      candidateTagThreshold = config.getCandidateTagThreshold();
+      lattices = config.getReuseLattice() ? ThreadLocal.withInitial(ExactBestSequenceFinder.Lattice::new) : null;
       // log.info("occurringTagsOnly: "+occurringTagsOnly);
       // log.info("possibleTagsOnly: "+possibleTagsOnly);
 
@@ -774,7 +810,7 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
         }
       }
 
-      LambdaSolve.save_lambdas(file, prob.lambda);
+      LambdaSolve.save_lambdas(file, compactLambda != null ? compactLambda.toArray() : prob.lambda);
   }
 
   /** This reads the complete tagger from a single model stored in a file, at a URL,
@@ -915,6 +951,14 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
         }
       }
       prob = new LambdaSolveTagger(rf);
+      compactLambda = null;
+      CompactWeights.Precision precision = taggerConfig.getWeightPrecision();
+      featureWeights = taggerConfig.getFlatWeights() && ! hasApproximateScoring() ?
+          new FeatureWeights(fAssociations, ySize, prob.lambda, precision) : null;
+      if (precision != CompactWeights.Precision.DOUBLE) {
+        compactLambda = CompactWeights.of(prob.lambda, precision);
+        prob.lambda = null;
+      }
       if (VERBOSE) {
         log.info("prob read ");
       }
@@ -941,7 +985,7 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
           if (association >= 0) {
             FeatureKey fk = new FeatureKey(i, featureValue, tags.getTag(j));
             out.println((fk.num < extractors.size() ? extractors.get(fk.num) : extractorsRare.get(fk.num - extractors.size()))
-                    + " " + fk.val + " " + fk.tag + ": " + nf.format(getLambdaSolve().lambda[association]));
+                    + " " + fk.val + " " + fk.tag + ": " + nf.format(lambda(association)));
           }
         }
       }
@@ -6,6 +6,7 @@ import java.util.Properties;
 
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.math.CompactWeights;
 import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.logging.Redwood;
@@ -67,7 +68,11 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
   OUTPUT_FILE = "",
   OUTPUT_FORMAT = "slashTags",
   OUTPUT_FORMAT_OPTIONS = "",
-  NTHREADS = "1";
+  NTHREADS = "1",
+  WEIGHT_PRECISION = "double",
+  CANDIDATE_TAG_THRESHOLD = "0.0",
+  REUSE_LATTICE = "false",
+  FLAT_WEIGHTS = "false";
 
   public static final String ENCODING_PROPERTY = "encoding",
   TAG_SEPARATOR_PROPERTY = "tagSeparator";
@@ -109,6 +114,10 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
     defaultValues.put("outputFormat", OUTPUT_FORMAT);
     defaultValues.put("outputFormatOptions", OUTPUT_FORMAT_OPTIONS);
     defaultValues.put("nthreads", NTHREADS);
+    defaultValues.put("weightPrecision", WEIGHT_PRECISION);
+    defaultValues.put("candidateTagThreshold", CANDIDATE_TAG_THRESHOLD);
+    defaultValues.put("reuseLattice", REUSE_LATTICE);
+    defaultValues.put("flatWeights", FLAT_WEIGHTS);
   }
 
   /**
@@ -258,6 +267,10 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
     this.setProperty("outputFormat", props.getProperty("outputFormat", this.getProperty("outputFormat")).trim()); //this isn't something we save from time to time
     this.setProperty("outputFormatOptions", props.getProperty("outputFormatOptions", this.getProperty("outputFormatOptions")).trim()); //this isn't something we save from time to time
     this.setProperty("nthreads", props.getProperty("nthreads", this.getProperty("nthreads", NTHREADS)).trim());
+    this.setProperty("weightPrecision", props.getProperty("weightPrecision", this.getProperty("weightPrecision", WEIGHT_PRECISION)).trim());
+    this.setProperty("candidateTagThreshold", props.getProperty("candidateTagThreshold", this.getProperty("candidateTagThreshold", CANDIDATE_TAG_THRESHOLD)).trim());
+    this.setProperty("reuseLattice", props.getProperty("reuseLattice", this.getProperty("reuseLattice", REUSE_LATTICE)).trim());
+    this.setProperty("flatWeights", props.getProperty("flatWeights", this.getProperty("flatWeights", FLAT_WEIGHTS)).trim());
     String sentenceDelimiter = props.getProperty("sentenceDelimiter", this.getProperty("sentenceDelimiter"));
     if (sentenceDelimiter != null) {
       // this isn't something we save from time to time.
@@ -375,6 +388,32 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
 
   public int getNThreads() { return Integer.parseInt(getProperty("nthreads")); }
 
+  /** How to store the weights when tagging; see {@link CompactWeights}. */
+  public CompactWeights.Precision getWeightPrecision() {
+    return CompactWeights.Precision.fromString(getProperty("weightPrecision", WEIGHT_PRECISION));
+  }
+
+  /**
+   * When tagging, a word's possible tags whose probability, from the features of the words alone (not the tags), is
+   * less than this fraction of the probability of its most likely tag are not considered.  0 means consider them all.
+   */
+  public double getCandidateTagThreshold() {
+    return Double.parseDouble(getProperty("candidateTagThreshold", CANDIDATE_TAG_THRESHOLD));
+  }
+
+  /** Whether each thread keeps the arrays of the Viterbi lattice it decoded a sentence with, for the next sentence. */
+  public boolean getReuseLattice() {
+    return Boolean.parseBoolean(getProperty("reuseLattice", REUSE_LATTICE));
+  }
+
+  /**
+   * Whether to lay the weights out in flat rows for exact scoring (see {@link FeatureWeights}).
+   * This tags faster, but keeps a second copy of the weights in memory.
+   */
+  public boolean getFlatWeights() {
+    return Boolean.parseBoolean(getProperty("flatWeights", FLAT_WEIGHTS));
+  }
+
 
   /** Return a regex of XML elements to tag inside of.  This may return an
    *  empty String, but never null.
@@ -473,6 +512,10 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
     pw.println("            outputFormat = " + getProperty("outputFormat"));
     pw.println("     outputFormatOptions = " + getProperty("outputFormatOptions"));
     pw.println("                nthreads = " + getProperty("nthreads"));
+    pw.println("         weightPrecision = " + getProperty("weightPrecision"));
+    pw.println("   candidateTagThreshold = " + getProperty("candidateTagThreshold"));
+    pw.println("            reuseLattice = " + getProperty("reuseLattice"));
+    pw.println("             flatWeights = " + getProperty("flatWeights"));
     pw.flush();
   }
 
@@ -716,6 +759,21 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
 
     out.println("# testFile and textFile can use multiple threads to process text.");
     out.println("# nthreads = " + NTHREADS);
+    out.println();
+
+    out.println("# When tagging, the weights can be stored as floats, or 16 or 8 bit integers (short or byte), to save memory.");
+    out.println("# weightPrecision = " + WEIGHT_PRECISION);
+    out.println();
+
+    out.println("# When tagging, tags much less likely than a word's most likely tag, given only the words, can be");
+    out.println("# dropped to speed up decoding (e.g., 0.001), and each thread can reuse its decoding arrays.");
+    out.println("# candidateTagThreshold = " + CANDIDATE_TAG_THRESHOLD);
+    out.println("# reuseLattice = " + REUSE_LATTICE);
+    out.println();
+
+    out.println("# When tagging without approximate scoring, the weights can also be laid out in flat rows,");
+    out.println("# which is faster but keeps a second copy of them in memory.");
+    out.println("# flatWeights = " + FLAT_WEIGHTS);
   }
 
   public Mode getMode() {
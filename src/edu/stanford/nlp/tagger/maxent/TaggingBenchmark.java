@@ -0,0 +1,99 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.BufferedReader;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Compares the speed of tagging with the tagger's {@link FeatureWeights} against tagging straight from its
+ * {@code fAssociations} and lambdas, which is how a tagger tags when it has just been trained.
+ *
+ * Usage: {@code java edu.stanford.nlp.tagger.maxent.TaggingBenchmark -model tagger -textFile text [-iterations 5]}
+ *
+ * The text is tokenized as by the tagger, and tagged iterations times each way, alternating, after one
+ * untimed pass each way to warm up.  This prints the tokens per second of each, and checks they give
+ * the same tags.  Other tagger options, such as {@code approximate} and {@code weightPrecision}, may also be given.
+ */
+public class TaggingBenchmark {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(TaggingBenchmark.class);
+
+  private TaggingBenchmark() {} // static main
+
+  private static List<List<TaggedWord>> tagAll(MaxentTagger tagger, List<List<HasWord>> sentences) {
+    List<List<TaggedWord>> tagged = new ArrayList<>(sentences.size());
+    for (List<HasWord> sentence : sentences) {
+      tagged.add(tagger.tagSentence(sentence));
+    }
+    return tagged;
+  }
+
+  public static void main(String[] args) throws Exception {
+    StringUtils.logInvocationString(log, args);
+    Properties props = StringUtils.argsToProperties(args);
+    String model = props.getProperty("model");
+    String textFile = props.getProperty("textFile");
+    if (model == null || textFile == null) {
+      log.info("Usage: java " + TaggingBenchmark.class.getName() + " -model tagger -textFile text [-iterations n]");
+      System.exit(-1);
+    }
+    int iterations = Integer.parseInt(props.getProperty("iterations", "5"));
+    props.remove("iterations");
+    props.remove("textFile");
+    props.setProperty("flatWeights", "true");
+
+    MaxentTagger tagger = new MaxentTagger(model, props);
+    FeatureWeights featureWeights = tagger.featureWeights;
+    if (featureWeights == null) {
+      log.info("This tagger does approximate scoring, which doesn't use feature weights: nothing to compare.");
+      return;
+    }
+    List<List<HasWord>> sentences;
+    try (BufferedReader reader = IOUtils.readerFromString(textFile, tagger.config.getEncoding())) {
+      sentences = MaxentTagger.tokenizeText(reader, tagger.chooseTokenizerFactory());
+    }
+    int numTokens = 0;
+    for (List<HasWord> sentence : sentences) {
+      numTokens += sentence.size();
+    }
+
+    tagger.featureWeights = null;
+    List<List<TaggedWord>> expected = tagAll(tagger, sentences);
+    tagger.featureWeights = featureWeights;
+    if ( ! expected.equals(tagAll(tagger, sentences))) {
+      log.warn("Tagging with the feature weights gives different tags (which is expected only if the weights are compact)");
+    }
+
+    long originalMillis = 0;
+    long flatMillis = 0;
+    for (int i = 0; i < iterations; i++) {
+      tagger.featureWeights = null;
+      Timing timing = new Timing();
+      tagAll(tagger, sentences);
+      originalMillis += timing.report();
+      tagger.featureWeights = featureWeights;
+      timing = new Timing();
+      tagAll(tagger, sentences);
+      flatMillis += timing.report();
+    }
+    NumberFormat nf = new DecimalFormat("0.00");
+    double originalSpeed = (double) numTokens * iterations / (originalMillis / 1000.0);
+    double flatSpeed = (double) numTokens * iterations / (flatMillis / 1000.0);
+    log.info("Tagged " + numTokens + " tokens " + iterations + " times each way.");
+    log.info("From fAssociations: " + nf.format(originalSpeed) + " tokens per second.");
+    log.info("From feature weights (" + featureWeights.size() + " weights): " + nf.format(flatSpeed) + " tokens per second (" +
+        nf.format(flatSpeed / originalSpeed) + "x).");
+  }
+
+}
@@ -8,6 +8,7 @@ import edu.stanford.nlp.io.PrintFile;
 import edu.stanford.nlp.ling.TaggedWord;
 import edu.stanford.nlp.tagger.io.TaggedFileRecord;
 import edu.stanford.nlp.util.ConfusionMatrix;
+import edu.stanford.nlp.util.Timing;
 import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
@@ -33,6 +34,8 @@ public class TestClassifier  {
   private int numWrongUnknown;
   private int numCorrectSentences;
   private int numSentences;
+  private long numCandidateTags;
+  private long testMillis;
 
   private ConfusionMatrix<String> confusionMatrix;
 
@@ -87,6 +90,7 @@ public class TestClassifier  {
     numRight = numRight + testS.numRight;
     unknownWords = unknownWords + testS.numUnknown;
     numWrongUnknown = numWrongUnknown + testS.numWrongUnknown;
+    numCandidateTags += testS.numCandidateTags;
     if (testS.numWrong == 0) {
       numCorrectSentences++;
     }
@@ -109,6 +113,7 @@ public class TestClassifier  {
   {
     numSentences = 0;
     confusionMatrix = new ConfusionMatrix<>();
+    Timing timing = new Timing();
 
     PrintFile pf = null;
     PrintFile pf1 = null;
@@ -141,6 +146,8 @@ public class TestClassifier  {
       }
     }
 
+    testMillis = timing.report();
+
     if(pf != null) pf.close();
     if(pf1 != null) pf1.close();
     if(pf3 != null) pf3.close();
@@ -153,7 +160,7 @@ public class TestClassifier  {
             maxentTagger.config.getModel(),
             maxentTagger.xSize,
             maxentTagger.ySize,
-            maxentTagger.getLambdaSolve().lambda.length));
+            maxentTagger.numLambdas()));
     output.append(String.format("Results on %d sentences and %d words, of which %d were unknown.%n",
             numSentences, numRight + numWrong, unknownWords));
     output.append(String.format("Total sentences right: %d (%f%%); wrong: %d (%f%%).%n",
@@ -170,6 +177,10 @@ public class TestClassifier  {
                                   100.0 - (numWrongUnknown * 100.0 / unknownWords),
                                   numWrongUnknown, numWrongUnknown * 100.0 / unknownWords));
     }
+    // so that the speed and accuracy of settings such as candidateTagThreshold can be compared
+    output.append(String.format("Considered %.2f candidate tags per word; tagged %.2f words per second.%n",
+                                numCandidateTags / (double) (numRight + numWrong),
+                                (numRight + numWrong) / (testMillis / 1000.0)));
 
     return output.toString();
   }
@@ -32,7 +32,6 @@ import edu.stanford.nlp.ling.*;
 import edu.stanford.nlp.ling.SentenceUtils;
 import edu.stanford.nlp.math.ArrayMath;
 import edu.stanford.nlp.math.SloppyMath;
-import edu.stanford.nlp.sequences.BestSequenceFinder;
 import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
 import edu.stanford.nlp.sequences.SequenceModel;
 import edu.stanford.nlp.tagger.common.Tagger;
@@ -80,11 +79,17 @@ public class TestSentence implements SequenceModel  {
   int numWrong;
   int numUnknown;
   int numWrongUnknown;
+  /** The number of tags considered for the words tagged, after any pruning; see candidateTagThreshold. */
+  int numCandidateTags;
   private int endSizePairs; // = 0;
 
   private volatile History history;
   private volatile Map<String,double[]> localScores = Generics.newHashMap();
   private volatile double[][] localContextScores;
+  /** The possible tags at each position of the sentence (with the left and right windows), as found. */
+  private int[][] possibleValues;
+  /** Arrays for the scores of the dynamic features, by their length, reused at every position. */
+  private double[][] dynamicScores = new double[0][];
 
   protected final MaxentTagger maxentTagger;
 
@@ -165,6 +170,7 @@ public class TestSentence implements SequenceModel  {
   protected void init() {
     //the eos are assumed already there
     localContextScores = new double[size][];
+    possibleValues = new int[size + leftWindow() + rightWindow()][];
     for (int i = 0; i < size - 1; i++) {
       if (maxentTagger.dict.isUnknown(sent.get(i))) {
         numUnknown++;
@@ -235,7 +241,7 @@ public class TestSentence implements SequenceModel  {
       // iterate over the sentence
       for (int current = 0; current < size; current++) {
         History h = new History(start, end, current + start, pairs, maxentTagger.extractors);
-        String[] tags = stringTagsAt(h.current - h.start + leftWindow());
+        int[] tags = getPossibleValues(h.current - h.start + leftWindow());
         double[] probs = getHistories(tags, h);
         ArrayMath.logNormalize(probs);
 
@@ -245,9 +251,8 @@ public class TestSentence implements SequenceModel  {
 
         for (int j = 0; j < tags.length; j++) {
           // score the j-th tag
-          String tag = tags[j];
           boolean approximate = maxentTagger.hasApproximateScoring();
-          int tagindex = approximate ? maxentTagger.tags.getIndex(tag) : j;
+          int tagindex = approximate ? tags[j] : j;
           // log.info("Mapped from j="+ j + " " + tag + " to " + tagindex);
           probabilities[current][hyp][tagindex] = probs[j];
         }
@@ -335,10 +340,13 @@ public class TestSentence implements SequenceModel  {
       throw new RuntimeInterruptedException();
     }
 
-    BestSequenceFinder ti = new ExactBestSequenceFinder();
+    ExactBestSequenceFinder ti = new ExactBestSequenceFinder();
       //new BeamBestSequenceFinder(50);
       //new KBestSequenceFinder()
-    int[] bestTags = ti.bestSequence(this);
+    int[] bestTags = ti.bestSequence(this, maxentTagger.lattice());
+    for (int pos = leftWindow(); pos < leftWindow() + size - 1; pos++) {
+      numCandidateTags += getPossibleValues(pos).length;
+    }
     finalTags = new String[bestTags.length];
     for (int j = 0; j < size; j++) {
       finalTags[j] = maxentTagger.tags.getTag(bestTags[j + leftWindow()]);
@@ -387,85 +395,123 @@ public class TestSentence implements SequenceModel  {
   }
 
   // This scores the current assignment in PairsHolder at
-  // current position h.current (returns normalized scores)
-  private double[] getScores(History h) {
+  // current position h.current (writes normalized scores)
+  private void getScores(History h, double[] scores) {
     if (maxentTagger.hasApproximateScoring()) {
-      return getApproximateScores(h);
+      getApproximateScores(h, scores);
+    } else {
+      getExactScores(h, scores);
     }
-    return getExactScores(h);
   }
 
-  private double[] getExactScores(History h) {
-    String[] tags = stringTagsAt(h.current - h.start + leftWindow());
+  private void getExactScores(History h, double[] scores) {
+    int[] tags = getPossibleValues(h.current - h.start + leftWindow());
     double[] histories = getHistories(tags, h); // log score for each tag
     ArrayMath.logNormalize(histories);
-    double[] scores = new double[tags.length];
     for (int j = 0; j < tags.length; j++) {
       // score the j-th tag
-      String tag = tags[j];
-      int tagindex = maxentTagger.tags.getIndex(tag);
-      scores[j] = histories[tagindex];
+      scores[j] = histories[tags[j]];
     }
-    return scores;
   }
 
   // In this method, each tag that is incompatible with the current word
   // (e.g., apple_CC) gets a default (constant) score instead of its exact score.
   // The scores of all other tags are computed exactly.
-  private double[] getApproximateScores(History h) {
-    String[] tags = stringTagsAt(h.current - h.start + leftWindow());
-    double[] scores = getHistories(tags, h); // log score for each active tag, unnormalized
+  private void getApproximateScores(History h, double[] scores) {
+    int[] tags = getPossibleValues(h.current - h.start + leftWindow());
+    double[] histories = getHistories(tags, h); // log score for each active tag, unnormalized
 
     // Number of tags that get assigned a default score:
     int nDefault = maxentTagger.ySize - tags.length;
-    double logScore = ArrayMath.logSum(scores);
+    double logScore = ArrayMath.logSum(histories);
     double logScoreInactiveTags = maxentTagger.getInactiveTagDefaultScore(nDefault);
     double logTotal = SloppyMath.logAdd(logScore, logScoreInactiveTags);
-    ArrayMath.addInPlace(scores, -logTotal);
-
-    return scores;
+    for (int j = 0; j < tags.length; j++) {
+      scores[j] = histories[j] - logTotal;
+    }
   }
 
-  // This precomputes scores of local features (localScores).
-  protected double[] getHistories(String[] tags, History h) {
+  /**
+   * This precomputes scores of local features (localScores).
+   * The returned array is reused by the next call, so it must be used before then.
+   *
+   * @param tags The indices of the possible tags of the current word
+   */
+  protected double[] getHistories(int[] tags, History h) {
     boolean rare = maxentTagger.isRare(ExtractorFrames.cWord.extract(h));
     Extractors ex = maxentTagger.extractors, exR = maxentTagger.extractorsRare;
-    String w = pairs.getWord(h.current);
-    double[] lS, lcS;
-    lS = localScores.get(w);
-    if (lS == null) {
-      lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
-      localScores.put(w,lS);
-    } else if (lS.length != tags.length) {
-      // This case can occur when a word was given a specific forced
-      // tag, and then later it shows up without the forced tag.
-      // TODO: if a word is given a forced tag, we should always get
-      // its features rather than use the cache, just in case the tag
-      // given is not the same tag as before
-      lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
-      if (tags.length > 1) {
+    double[] lcS;
+    if((lcS = localContextScores[h.current]) == null) {
+      String w = pairs.getWord(h.current);
+      double[] lS = localScores.get(w);
+      if (maxentTagger.candidateTagThreshold > 0.0 && maxentTagger.hasApproximateScoring()) {
+        // The scores are of the word's possible tags, which after pruning depend on its neighbors, so can't be
+        // shared with other occurrences of the word.
+        lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
+      } else if (lS == null) {
+        lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
         localScores.put(w,lS);
+      } else if (lS.length != tags.length) {
+        // This case can occur when a word was given a specific forced
+        // tag, and then later it shows up without the forced tag.
+        // TODO: if a word is given a forced tag, we should always get
+        // its features rather than use the cache, just in case the tag
+        // given is not the same tag as before
+        lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
+        if (tags.length > 1) {
+          localScores.put(w,lS);
+        }
       }
-    }
-    if((lcS = localContextScores[h.current]) == null) {
       lcS = getHistories(tags, h, ex.localContext, rare ? exR.localContext : null);
       localContextScores[h.current] = lcS;
       ArrayMath.pairwiseAddInPlace(lcS,lS);
     }
-    double[] totalS = getHistories(tags, h, ex.dynamic, rare ? exR.dynamic : null);
+    double[] totalS = dynamicScores(maxentTagger.hasApproximateScoring() ? tags.length : maxentTagger.ySize);
+    addHistories(tags, h, ex.dynamic, rare ? exR.dynamic : null, totalS);
     ArrayMath.pairwiseAddInPlace(totalS,lcS);
     return totalS;
   }
 
-  private double[] getHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
-    if(maxentTagger.hasApproximateScoring())
-      return getApproximateHistories(tags, h, extractors, extractorsRare);
-    return getExactHistories(h, extractors, extractorsRare);
+  /** A zeroed array of the given length for the scores of the dynamic features. */
+  private double[] dynamicScores(int length) {
+    if (length >= dynamicScores.length) {
+      dynamicScores = Arrays.copyOf(dynamicScores, Math.max(length, maxentTagger.ySize) + 1);
+    }
+    double[] scores = dynamicScores[length];
+    if (scores == null) {
+      scores = new double[length];
+      dynamicScores[length] = scores;
+    } else {
+      Arrays.fill(scores, 0.0);
+    }
+    return scores;
+  }
+
+  private double[] getHistories(int[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
+    double[] scores = new double[maxentTagger.hasApproximateScoring() ? tags.length : maxentTagger.ySize];
+    addHistories(tags, h, extractors, extractorsRare, scores);
+    return scores;
   }
 
-  private double[] getExactHistories(History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
-    double[] scores = new double[maxentTagger.ySize];
+  private void addHistories(int[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare, double[] scores) {
+    if(maxentTagger.hasApproximateScoring()) {
+      addApproximateHistories(tags, h, extractors, extractorsRare, scores);
+    } else {
+      addExactHistories(h, extractors, extractorsRare, scores);
+    }
+  }
+
+  /** Adds the score of the features to each tag. */
+  private void addExactHistories(History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare, double[] scores) {
     int szCommon = maxentTagger.extractors.size();
+    FeatureWeights weights = maxentTagger.featureWeights;
+    if (weights != null) {
+      addFeatureWeights(h, extractors, 0, weights, scores);
+      if (extractorsRare != null) {
+        addFeatureWeights(h, extractorsRare, szCommon, weights, scores);
+      }
+      return;
+    }
 
     for (Pair<Integer,Extractor> e : extractors) {
       int kf = e.first();
@@ -476,7 +522,7 @@ public class TestSentence implements SequenceModel  {
         for (int i = 0; i < maxentTagger.ySize; i++) {
           int fNum = fAssociations[i];
           if (fNum > -1) {
-            scores[i] += maxentTagger.getLambdaSolve().lambda[fNum];
+            scores[i] += maxentTagger.lambda(fNum);
           }
         }
       }
@@ -491,21 +537,17 @@ public class TestSentence implements SequenceModel  {
           for (int i = 0; i < maxentTagger.ySize; i++) {
             int fNum = fAssociations[i];
             if (fNum > -1) {
-              scores[i] += maxentTagger.getLambdaSolve().lambda[fNum];
+              scores[i] += maxentTagger.lambda(fNum);
             }
           }
         }
       }
     }
-    return scores;
   }
 
-  // todo [cdm 2016]: Could this be sped up a bit by caching lambda array, extracting method for shared code?
   // todo [cdm 2016]: Also it's allocating java.util.ArrayList$Itr for for loop - why can't it just random access array?
-  /** Returns an unnormalized score (in log space) for each tag. */
-  private double[] getApproximateHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
-
-    double[] scores = new double[tags.length];
+  /** Adds an unnormalized score (in log space) to each of the given tags. */
+  private void addApproximateHistories(int[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare, double[] scores) {
     int szCommon = maxentTagger.extractors.size();
 
     for (Pair<Integer,Extractor> e : extractors) {
@@ -515,11 +557,9 @@ public class TestSentence implements SequenceModel  {
       int[] fAssociations = maxentTagger.fAssociations.get(kf).get(val);
       if (fAssociations != null) {
         for (int j = 0; j < tags.length; j++) {
-          String tag = tags[j];
-          int tagIndex = maxentTagger.tags.getIndex(tag);
-          int fNum = fAssociations[tagIndex];
+          int fNum = fAssociations[tags[j]];
           if (fNum > -1) {
-            scores[j] += maxentTagger.getLambdaSolve().lambda[fNum];
+            scores[j] += maxentTagger.lambda(fNum);
           }
         }
       }
@@ -532,17 +572,33 @@ public class TestSentence implements SequenceModel  {
         int[] fAssociations = maxentTagger.fAssociations.get(szCommon+kf).get(val);
         if (fAssociations != null) {
           for (int j = 0; j < tags.length; j++) {
-            String tag = tags[j];
-            int tagIndex = maxentTagger.tags.getIndex(tag);
-            int fNum = fAssociations[tagIndex];
+            int fNum = fAssociations[tags[j]];
             if (fNum > -1) {
-              scores[j] += maxentTagger.getLambdaSolve().lambda[fNum];
+              scores[j] += maxentTagger.lambda(fNum);
             }
           }
         }
       }
     }
-    return scores;
+  }
+
+
+  /**
+   * Adds the weights of the features of some extractors to the scores of each tag, from the tagger's
+   * {@link FeatureWeights}.  This is only used for exact scoring: approximate scoring only scores
+   * the few possible tags of the word, which is quicker done from fAssociations.
+   *
+   * @param offset Added to the extractor numbers to get their numbers in the weights
+   */
+  private void addFeatureWeights(History h, List<Pair<Integer,Extractor>> extractors, int offset,
+                                 FeatureWeights weights, double[] scores) {
+    for (int i = 0, n = extractors.size(); i < n; i++) {
+      Pair<Integer,Extractor> e = extractors.get(i);
+      int row = weights.row(e.first() + offset, e.second().extract(h));
+      if (row >= 0) {
+        weights.addTo(row, scores);
+      }
+    }
   }
 
 
@@ -698,17 +754,65 @@ public class TestSentence implements SequenceModel  {
   }
 
 
+  /** {@inheritDoc}  The values are found once per position of a sentence, and the same array returned after. */
   @Override
   public int[] getPossibleValues(int pos) {
+    if (possibleValues == null || pos < 0 || pos >= possibleValues.length) {
+      return findPossibleValues(pos);
+    }
+    int[] values = possibleValues[pos];
+    if (values == null) {
+      values = findPossibleValues(pos);
+      possibleValues[pos] = values;
+    }
+    return values;
+  }
+
+  private int[] findPossibleValues(int pos) {
     String[] arr1 = stringTagsAt(pos);
     int[] arr = new int[arr1.length];
     for (int i = 0; i < arr.length; i++) {
       arr[i] = maxentTagger.tags.getIndex(arr1[i]);
     }
 
+    if (maxentTagger.candidateTagThreshold > 0.0 && arr.length > 1 && endSizePairs >= size &&
+        pos >= leftWindow() && pos < size + leftWindow()) {
+      arr = pruneTags(pos, arr);
+    }
     return arr;
   }
 
+  /**
+   * Drops the possible tags of a word which are less than candidateTagThreshold times as probable as its most
+   * probable tag, according to the features which only look at words (the local and local context features).
+   * The word's words must be in pairs, as they are while it is being tagged.
+   */
+  private int[] pruneTags(int pos, int[] tags) {
+    History h = new History(endSizePairs - size, endSizePairs - 1, endSizePairs - size + pos - leftWindow(), pairs, maxentTagger.extractors);
+    boolean rare = maxentTagger.isRare(ExtractorFrames.cWord.extract(h));
+    Extractors ex = maxentTagger.extractors, exR = maxentTagger.extractorsRare;
+    double[] scores = new double[tags.length];
+    addApproximateHistories(tags, h, ex.local, rare ? exR.local : null, scores);
+    addApproximateHistories(tags, h, ex.localContext, rare ? exR.localContext : null, scores);
+    double threshold = ArrayMath.max(scores) + Math.log(maxentTagger.candidateTagThreshold);
+    int numKept = 0;
+    for (double score : scores) {
+      if (score >= threshold) {
+        numKept++;
+      }
+    }
+    if (numKept == tags.length) {
+      return tags;
+    }
+    int[] kept = new int[numKept];
+    for (int j = 0, k = 0; j < tags.length; j++) {
+      if (scores[j] >= threshold) {
+        kept[k++] = tags[j];
+      }
+    }
+    return kept;
+  }
+
   @Override
   public double scoreOf(int[] tags, int pos) {
     double[] scores = scoresOf(tags, pos);
@@ -729,13 +833,20 @@ public class TestSentence implements SequenceModel  {
 
   @Override
   public double[] scoresOf(int[] tags, int pos) {
+    double[] scores = new double[getPossibleValues(pos).length];
+    scoresOf(tags, pos, scores);
+    return scores;
+  }
+
+  @Override
+  public void scoresOf(int[] tags, int pos, double[] scores) {
     if (DBG) {
       log.info("scoresOf(): length of tags is " + tags.length + "; position is " + pos + "; endSizePairs = " + endSizePairs + "; size is " + size + "; leftWindow is " + leftWindow());
       log.info("  History h = new History(" + (endSizePairs - size) + ", " + (endSizePairs - 1) + ", " + (endSizePairs - size + pos - leftWindow()) + ")");
     }
     history.init(endSizePairs - size, endSizePairs - 1, endSizePairs - size + pos - leftWindow());
     setHistory(pos, history, tags);
-    return getScores(history);
+    getScores(history, scores);
   }
 
   // todo [cdm 2013]: Tagging could be sped up quite a bit here if we cached int arrays of tags by index, not Strings
@@ -0,0 +1,241 @@
+package edu.stanford.nlp.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A read-only {@link Index} of Strings which lives in a {@link ByteBuffer}, typically a
+ * memory-mapped file, rather than on the Java heap.
+ * Nothing is deserialized when the index is opened: lookups hash the query string and probe an
+ * open addressing table stored in the buffer, and {@link #get(int)} decodes the one string asked for.
+ * When the buffer is a read-only mapping of a file, every process mapping that file shares the same
+ * pages of the OS page cache, so large feature indices aren't duplicated in each JVM.
+ *
+ * The layout, written by {@link #write(Index, DataOutputStream)}, is (all ints big-endian):
+ * the number of strings {@code n}; the hash table size minus one (a power of two minus one);
+ * {@code n + 1} offsets into the string bytes; the {@link String#hashCode()} of each string;
+ * the hash table, where each slot holds one more than the index of a string or 0 if empty;
+ * and finally the UTF-8 bytes of all the strings.
+ *
+ * This index is threadsafe.  When serialized, it is written as a {@link HashIndex}.
+ */
+public class MappedStringIndex extends AbstractCollection<String> implements Index<String>, RandomAccess {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient ByteBuffer buffer;
+  private final int size;
+  private final int mask;
+  private final int offsetsStart;
+  private final int hashesStart;
+  private final int slotsStart;
+  private final int bytesStart;
+
+  /**
+   * Open an index written by {@link #write(Index, DataOutputStream)}.
+   *
+   * @param buffer The buffer holding the index, from its current position to its limit.
+   */
+  public MappedStringIndex(ByteBuffer buffer) {
+    this.buffer = buffer.slice();
+    this.size = this.buffer.getInt(0);
+    this.mask = this.buffer.getInt(4);
+    this.offsetsStart = 8;
+    this.hashesStart = offsetsStart + 4 * (size + 1);
+    this.slotsStart = hashesStart + 4 * size;
+    this.bytesStart = slotsStart + 4 * (mask + 1);
+  }
+
+  /**
+   * Write an index in the format read by {@link #MappedStringIndex(ByteBuffer)}.
+   *
+   * @param index The index to write.
+   * @param out Where to write it.  This is not closed.
+   */
+  public static void write(Index<String> index, DataOutputStream out) throws IOException {
+    int n = index.size();
+    int tableSize = Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;  // at most half full
+    int[] slots = new int[tableSize];
+    int[] hashes = new int[n];
+    List<byte[]> encoded = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      String s = index.get(i);
+      hashes[i] = s.hashCode();
+      encoded.add(s.getBytes(StandardCharsets.UTF_8));
+      int slot = hashes[i] & (tableSize - 1);
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & (tableSize - 1);
+      }
+      slots[slot] = i + 1;
+    }
+    out.writeInt(n);
+    out.writeInt(tableSize - 1);
+    int offset = 0;
+    out.writeInt(offset);
+    for (byte[] bytes : encoded) {
+      offset += bytes.length;
+      out.writeInt(offset);
+    }
+    for (int hash : hashes) {
+      out.writeInt(hash);
+    }
+    for (int slot : slots) {
+      out.writeInt(slot);
+    }
+    for (byte[] bytes : encoded) {
+      out.write(bytes);
+    }
+  }
+
+  private byte[] bytes(int i) {
+    int begin = buffer.getInt(offsetsStart + 4 * i);
+    int end = buffer.getInt(offsetsStart + 4 * (i + 1));
+    byte[] bytes = new byte[end - begin];
+    ByteBuffer view = buffer.duplicate();  // so that concurrent readers don't share a position
+    view.position(bytesStart + begin);
+    view.get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String get(int i) {
+    if (i < 0 || i >= size) {
+      throw new ArrayIndexOutOfBoundsException("Index " + i + " outside the bounds [0," + size + ')');
+    }
+    return new String(bytes(i), StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public int indexOf(String o) {
+    int hash = o.hashCode();
+    byte[] query = null;
+    int slot = hash & mask;
+    while (true) {
+      int entry = buffer.getInt(slotsStart + 4 * slot);
+      if (entry == 0) {
+        return -1;
+      }
+      int i = entry - 1;
+      if (buffer.getInt(hashesStart + 4 * i) == hash) {
+        if (query == null) {
+          query = o.getBytes(StandardCharsets.UTF_8);
+        }
+        if (Arrays.equals(query, bytes(i))) {
+          return i;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /** This index cannot be added to, so this is the same as {@link #indexOf(String)}. */
+  @Override
+  @Deprecated
+  public int indexOf(String o, boolean add) {
+    return indexOf(o);
+  }
+
+  /** @throws UnsupportedOperationException Always, since this index is read-only. */
+  @Override
+  public int addToIndex(String o) {
+    throw new UnsupportedOperationException("MappedStringIndex is read-only");
+  }
+
+  @Override
+  public List<String> objectsList() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return MappedStringIndex.this.get(index);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  @Override
+  public Collection<String> objects(int[] indices) {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return MappedStringIndex.this.get(indices[index]);
+      }
+
+      @Override
+      public int size() {
+        return indices.length;
+      }
+    };
+  }
+
+  /** Always true. */
+  @Override
+  public boolean isLocked() {
+    return true;
+  }
+
+  /** Does nothing, since this index is always locked. */
+  @Override
+  public void lock() {
+  }
+
+  /** @throws UnsupportedOperationException Always, since this index is read-only. */
+  @Override
+  public void unlock() {
+    throw new UnsupportedOperationException("MappedStringIndex is read-only");
+  }
+
+  @Override
+  public void saveToWriter(Writer out) throws IOException {
+    new HashIndex<>(objectsList()).saveToWriter(out);
+  }
+
+  @Override
+  public void saveToFilename(String s) {
+    new HashIndex<>(objectsList()).saveToFilename(s);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof String && indexOf((String) o) >= 0;
+  }
+
+  /** @throws UnsupportedOperationException Always, since this index is read-only. */
+  @Override
+  public boolean add(String s) {
+    throw new UnsupportedOperationException("MappedStringIndex is read-only");
+  }
+
+  /** @throws UnsupportedOperationException Always, since this index is read-only. */
+  @Override
+  public boolean addAll(Collection<? extends String> c) {
+    throw new UnsupportedOperationException("MappedStringIndex is read-only");
+  }
+
+  /** @throws UnsupportedOperationException Always, since this index is read-only. */
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("MappedStringIndex is read-only");
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return objectsList().iterator();
+  }
+
+  /** A buffer can't be serialized, so we serialize the strings as an ordinary index. */
+  private Object writeReplace() throws ObjectStreamException {
+    return new HashIndex<>(objectsList());
+  }
+
+}
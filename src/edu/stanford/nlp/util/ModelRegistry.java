@@ -0,0 +1,214 @@
+package edu.stanford.nlp.util;
+
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * A registry of loaded models (taggers, parser grammars, CRF classifiers, ...), so that annotators
+ * which need the same model share a single copy of it, even if the annotators themselves differ
+ * (e.g., two POS annotators with different {@code maxlen} but the same model).
+ *
+ * Models are keyed by their path and whatever properties affect how they are loaded; see
+ * {@link #key(String, String, Properties)}.  Each model keeps track of who holds it:
+ * a holder {@link #acquire(Object, String, long, Supplier) acquires} a model, and
+ * {@link #release(Object) releases} it when it is done (typically in {@code Annotator#unmount()}).
+ * Holders are only weakly referenced, so a holder which is garbage collected without releasing
+ * its models also stops holding them.
+ *
+ * A model which nobody holds is kept around, in case it is wanted again, until the total size
+ * of the models in the registry exceeds the budget set with {@link #setMaxBytes(long)};
+ * then unused models are evicted, least recently used first.  Models in use are never evicted.
+ * Sizes are estimates provided by the caller, usually the size of the model file
+ * (see {@link #estimateSize(String)}).
+ *
+ * This class is threadsafe, and different models can be loaded concurrently.
+ */
+public class ModelRegistry {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(ModelRegistry.class);
+
+  /**
+   * The registry shared by all of CoreNLP, and so by every pipeline in the JVM.
+   * By default it keeps no unused models.  Its budget is set for the whole JVM, either with the
+   * {@code modelCacheBytes} system property (e.g., {@code -DmodelCacheBytes=2000000000}) or with
+   * {@link #setMaxBytes(long)}, rather than by the properties of any one pipeline.
+   */
+  public static final ModelRegistry SINGLETON = new ModelRegistry(Long.getLong("modelCacheBytes", 0));
+
+  private static class Entry {
+    final Lazy<Object> model;
+    final long bytes;
+    /** Who currently holds this model.  Guarded by the registry. */
+    final Map<Object, Boolean> holders = new WeakHashMap<>();
+
+    Entry(Lazy<Object> model, long bytes) {
+      this.model = model;
+      this.bytes = bytes;
+    }
+
+    boolean inUse() {
+      return ! holders.isEmpty();  // WeakHashMap forgets collected holders when asked for its size
+    }
+  }
+
+  /** All the models, least recently used first.  Guarded by this. */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  /** Guarded by this. */
+  private long totalBytes; // = 0;
+  private long maxBytes;
+
+  /**
+   * Create a new registry.
+   *
+   * @param maxBytes The total size of models above which unused models are evicted.
+   */
+  public ModelRegistry(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /** Change the total size of models above which unused models are evicted, evicting any that need to be. */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  /**
+   * Get a model from the registry, loading it if it isn't already there.
+   * The model counts as used by the holder until the holder releases it or is garbage collected.
+   * If the model is being loaded by another thread, this waits for it.
+   *
+   * @param holder The object (usually an annotator) which will use the model.
+   * @param key The key of the model, as computed by {@link #key(String, String, Properties)}.
+   * @param bytes The estimated size of the model, in bytes.
+   * @param loader Loads the model.  Any exception it throws is thrown from here, and the model is not registered.
+   *
+   * @return The (possibly shared) model.
+   */
+  public <T> T acquire(Object holder, String key, long bytes, Supplier<T> loader) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry == null) {
+        entry = new Entry(Lazy.of(loader::get), Math.max(0, bytes));
+        entries.put(key, entry);
+        totalBytes += entry.bytes;
+      }
+      entry.holders.put(holder, Boolean.TRUE);
+    }
+    Object model;
+    try {
+      model = entry.model.get();
+    } catch (RuntimeException | Error e) {
+      synchronized (this) {
+        if (entries.get(key) == entry) {
+          entries.remove(key);
+          totalBytes -= entry.bytes;
+        }
+      }
+      throw e;
+    }
+    synchronized (this) {
+      evict();
+    }
+    return ErasureUtils.uncheckedCast(model);
+  }
+
+  /**
+   * Stop holding every model the holder acquired.  Models nobody holds any more may then be evicted.
+   */
+  public synchronized void release(Object holder) {
+    for (Entry entry : entries.values()) {
+      entry.holders.remove(holder);
+    }
+    evict();
+  }
+
+  /** Evict unused models, least recently used first, until the registry is within its budget.  Guarded by this. */
+  private void evict() {
+    Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && iter.hasNext()) {
+      Map.Entry<String, Entry> next = iter.next();
+      Entry entry = next.getValue();
+      if ( ! entry.inUse()) {
+        iter.remove();
+        totalBytes -= entry.bytes;
+        log.debug("Evicted unused model " + next.getKey());
+      }
+    }
+  }
+
+  /** Forget every model, whether or not it is in use.  Holders keep their copies, but they are no longer shared. */
+  public synchronized void clear() {
+    entries.clear();
+    totalBytes = 0;
+  }
+
+  /** Whether the registry has the given model. */
+  public synchronized boolean contains(String key) {
+    return entries.containsKey(key);
+  }
+
+  /** The number of live holders of the given model, or 0 if the registry doesn't have it. */
+  public synchronized int holders(String key) {
+    Entry entry = entries.get(key);
+    return entry == null ? 0 : entry.holders.size();
+  }
+
+  /** The number of models in the registry, used or not. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** The estimated total size of the models in the registry, used or not. */
+  public synchronized long totalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Make the key of a model.
+   *
+   * @param type What kind of model this is, e.g., "pos", to avoid clashes between models loaded differently from one file.
+   * @param path Where the model is loaded from.
+   * @param props Everything else which affects how the model is loaded, or null if nothing does.
+   */
+  public static String key(String type, String path, Properties props) {
+    StringBuilder sb = new StringBuilder(type).append(':').append(path);
+    if (props != null) {
+      for (String name : new TreeSet<>(props.stringPropertyNames())) {
+        sb.append(';').append(name).append('=').append(props.getProperty(name));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A rough estimate of the size of a model: the size of its file or classpath resource.
+   * Note that this is the compressed size for compressed models.
+   *
+   * @return The estimate, or 0 if the model can't be found.
+   */
+  public static long estimateSize(String path) {
+    File file = new File(path);
+    if (file.isFile()) {
+      return file.length();
+    }
+    try {
+      URL url = ModelRegistry.class.getClassLoader().getResource(path);
+      if (url == null) {
+        return 0;  // don't go fetching remote models just to size them
+      }
+      URLConnection connection = url.openConnection();
+      long length = connection.getContentLengthLong();
+      return Math.max(0, length);
+    } catch (Exception e) {
+      return 0;
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+package edu.stanford.nlp.util.concurrent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size thread pool whose queued jobs are run in order of priority, which can refuse new
+ * jobs when too many are waiting, and which drops jobs whose deadline passed while they were waiting.
+ * This is useful for servers, where under load it is better to turn a request away quickly
+ * than to queue it behind work it will time out waiting for.
+ *
+ * Jobs with a larger priority run first; jobs of equal priority run in the order they were submitted.
+ * Jobs submitted through the usual {@link ExecutorService} methods get {@link #NORMAL_PRIORITY} and no deadline.
+ */
+public class PriorityDeadlineExecutor extends ThreadPoolExecutor {
+
+  public static final int LOW_PRIORITY = -1;
+  public static final int NORMAL_PRIORITY = 0;
+  public static final int HIGH_PRIORITY = 1;
+
+  /** The number of queued jobs at which we start refusing jobs, or a non-positive number for no limit. */
+  private volatile int maxQueued;
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * A job with a priority and an optional deadline.
+   * If the deadline has passed by the time the job is started, it is cancelled instead of run.
+   */
+  private class PrioritizedTask<V> extends FutureTask<V> implements Comparable<PrioritizedTask<?>> {
+    final int priority;
+    final long deadline;
+    final long seq = sequence.getAndIncrement();
+
+    PrioritizedTask(Callable<V> callable, int priority, long deadline) {
+      super(callable);
+      this.priority = priority;
+      this.deadline = deadline;
+    }
+
+    PrioritizedTask(Runnable runnable, V result, int priority, long deadline) {
+      super(runnable, result);
+      this.priority = priority;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      if (deadline > 0 && System.currentTimeMillis() > deadline) {
+        cancel(false);
+      } else {
+        super.run();
+      }
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask<?> o) {
+      if (priority != o.priority) {
+        return priority > o.priority ? -1 : 1;
+      }
+      return Long.compare(seq, o.seq);
+    }
+  }
+
+  /**
+   * Create a new executor.
+   *
+   * @param nThreads The number of threads to run jobs on.
+   * @param maxQueued The number of waiting jobs at which to start refusing new jobs.
+   *                  Non-positive means there is no limit.
+   */
+  public PriorityDeadlineExecutor(int nThreads, int maxQueued) {
+    super(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+    this.maxQueued = maxQueued;
+  }
+
+  /** Change the number of waiting jobs at which to start refusing new jobs. */
+  public void setMaxQueued(int maxQueued) {
+    this.maxQueued = maxQueued;
+  }
+
+  /**
+   * Whether a job of the given priority would currently be accepted.
+   * High priority jobs are always accepted, normal priority jobs are refused once {@code maxQueued}
+   * jobs are waiting, and low priority jobs are refused once half that many are waiting.
+   */
+  public boolean admits(int priority) {
+    return admits(priority, 1);
+  }
+
+  /**
+   * Whether the given number of jobs of the given priority would all currently be accepted,
+   * by the same limits as {@link #admits(int)}.
+   * This lets a caller turn away a batch of jobs as a whole, rather than start some of them.
+   */
+  public boolean admits(int priority, int jobs) {
+    int max = maxQueued;
+    if (max <= 0 || priority >= HIGH_PRIORITY) {
+      return true;
+    }
+    int waiting = getQueue().size() + jobs;
+    return priority >= NORMAL_PRIORITY ? waiting <= max : waiting <= (max + 1) / 2;
+  }
+
+  /**
+   * Submit a job with a priority and deadline.
+   *
+   * @param callable The job to run.
+   * @param priority The priority of the job; higher priorities run first.
+   * @param deadline The time (in {@link System#currentTimeMillis()} terms) after which the job should no longer
+   *                 be started, or a non-positive number for no deadline.  A job which misses its deadline is cancelled.
+   *
+   * @return A future for the result of the job.
+   *
+   * @throws RejectedExecutionException If too many jobs are already waiting; see {@link #admits(int)}.
+   */
+  public <V> Future<V> submit(Callable<V> callable, int priority, long deadline) {
+    if ( ! admits(priority)) {
+      throw new RejectedExecutionException("Too many jobs waiting: " + getQueue().size());
+    }
+    PrioritizedTask<V> task = new PrioritizedTask<>(callable, priority, deadline);
+    execute(task);
+    return task;
+  }
+
+  /**
+   * Run a job with a priority and deadline, as {@link #submit(Callable, int, long)} does.
+   * This lets this executor back an {@link ExecutorCompletionService} (e.g., {@code command -> execute(command, priority, deadline)}).
+   * A job which misses its deadline is dropped without being run.
+   *
+   * @throws RejectedExecutionException If too many jobs are already waiting; see {@link #admits(int)}.
+   */
+  public void execute(Runnable command, int priority, long deadline) {
+    if ( ! admits(priority)) {
+      throw new RejectedExecutionException("Too many jobs waiting: " + getQueue().size());
+    }
+    execute(new PrioritizedTask<Void>(command, null, priority, deadline));
+  }
+
+  @Override
+  protected <V> RunnableFuture<V> newTaskFor(Callable<V> callable) {
+    return new PrioritizedTask<>(callable, NORMAL_PRIORITY, -1);
+  }
+
+  @Override
+  protected <V> RunnableFuture<V> newTaskFor(Runnable runnable, V value) {
+    return new PrioritizedTask<>(runnable, value, NORMAL_PRIORITY, -1);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    // Everything on the queue must be comparable (e.g., jobs wrapped by an ExecutorCompletionService are not)
+    if ( ! (command instanceof PrioritizedTask)) {
+      command = new PrioritizedTask<Void>(command, null, NORMAL_PRIORITY, -1);
+    }
+    super.execute(command);
+  }
+
+}
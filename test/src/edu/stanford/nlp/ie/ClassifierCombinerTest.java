@@ -1,12 +1,29 @@
 package edu.stanford.nlp.ie;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ie.util.IETestUtils;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.CoreUtilities;
+import edu.stanford.nlp.util.ModelRegistry;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
 import junit.framework.TestCase;
 
 /** @author Christopher Manning */
@@ -129,4 +146,188 @@ public class ClassifierCombinerTest extends TestCase {
     assertEquals(result, input1);
   }
 
+  private static final String[] testSentences = {
+      "Joe Smith drank 44 cans in Paris .",
+      "Mary Jones went to London with 3 friends .",
+      "In Berlin , Bob Brown ate 12 apples .",
+      "Smith lives in Paris .",
+  };
+
+  private static List<CRFClassifier<CoreLabel>> crfs; // = null;
+
+  /** Three small CRFs, which each find a different kind of entity. */
+  private static synchronized List<CRFClassifier<CoreLabel>> crfs() {
+    if (crfs == null) {
+      crfs = new ArrayList<>();
+      crfs.add(IETestUtils.trainCRF(new Properties(),
+          "Joe/PERSON Smith/PERSON drank/O beer/O ./O",
+          "Mary/PERSON Jones/PERSON went/O home/O ./O",
+          "Yesterday/O Bob/PERSON Brown/PERSON ate/O lunch/O ./O",
+          "The/O man/O saw/O Joe/PERSON ./O"));
+      crfs.add(IETestUtils.trainCRF(new Properties(),
+          "He/O went/O to/O Paris/LOCATION ./O",
+          "She/O lives/O in/O London/LOCATION ./O",
+          "In/O Berlin/LOCATION ,/O it/O rained/O ./O",
+          "They/O flew/O to/O Paris/LOCATION today/O ./O"));
+      crfs.add(IETestUtils.trainCRF(new Properties(),
+          "He/O drank/O 44/NUMBER beers/O ./O",
+          "She/O ate/O 12/NUMBER apples/O ./O",
+          "They/O had/O 3/NUMBER dogs/O ./O",
+          "It/O cost/O 100/NUMBER dollars/O ./O"));
+    }
+    return crfs;
+  }
+
+  private static ClassifierCombiner<CoreLabel> combiner(boolean parallel) {
+    Properties props = new Properties();
+    props.setProperty(ClassifierCombiner.PARALLEL_CLASSIFIERS_PROPERTY, String.valueOf(parallel));
+    List<CRFClassifier<CoreLabel>> crfs = crfs();
+    return new ClassifierCombiner<>(props, crfs.get(0), crfs.get(1), crfs.get(2));
+  }
+
+  /** The combined labels of each test sentence, checking that classify also puts them on the given tokens. */
+  private static List<List<String>> labels(ClassifierCombiner<CoreLabel> combiner) {
+    List<List<String>> labels = new ArrayList<>();
+    for (String sentence : testSentences) {
+      List<CoreLabel> tokens = IETestUtils.parseSentence(sentence);
+      List<CoreLabel> output = combiner.classify(tokens);
+      List<String> sentenceLabels = new ArrayList<>();
+      for (int i = 0; i < tokens.size(); i++) {
+        String label = output.get(i).get(CoreAnnotations.AnswerAnnotation.class);
+        assertEquals(label, tokens.get(i).get(CoreAnnotations.AnswerAnnotation.class));
+        sentenceLabels.add(label);
+      }
+      labels.add(sentenceLabels);
+    }
+    return labels;
+  }
+
+  public void testParallelClassifiersGiveSameLabels() {
+    List<List<String>> sequential = labels(combiner(false));
+    // all three classifiers contribute, so a mix-up of their outputs would show
+    Set<String> found = new HashSet<>();
+    sequential.forEach(found::addAll);
+    assertTrue(found.toString(), found.contains("PERSON") && found.contains("LOCATION") && found.contains("NUMBER"));
+    assertEquals(sequential, labels(combiner(true)));
+  }
+
+  public void testSerializedParallelClassifiers() throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      combiner(true).serializeClassifier(oos);
+    }
+    ClassifierCombiner<CoreLabel> loaded;
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      loaded = ClassifierCombiner.getClassifier(ois, new Properties());
+    }
+    assertTrue(loaded.classifiesInParallel());
+    assertEquals(labels(combiner(false)), labels(loaded));
+  }
+
+  /** Classifiers with the same flags share their features, and one with other flags is run on its own. */
+  public void testShareFeatures() {
+    Properties reversed = new Properties();
+    reversed.setProperty("useReverse", "true");
+    CRFClassifier<CoreLabel> other = IETestUtils.trainCRF(reversed,
+        "Joe/O ate/O 44/O Budweiser/PRODUCT cans/O ./O",
+        "She/O drank/O a/O Pepsi/PRODUCT ./O");
+    List<CRFClassifier<CoreLabel>> crfs = crfs();
+    Properties props = new Properties();
+    ClassifierCombiner<CoreLabel> separate = new ClassifierCombiner<>(props, crfs.get(0), other, crfs.get(1), crfs.get(2));
+    props = new Properties();
+    props.setProperty(ClassifierCombiner.SHARE_FEATURES_PROPERTY, "true");
+    ClassifierCombiner<CoreLabel> shared = new ClassifierCombiner<>(props, crfs.get(0), other, crfs.get(1), crfs.get(2));
+
+    List<int[]> groups = shared.classifierGroups();
+    assertEquals(2, groups.size());
+    assertTrue(Arrays.equals(new int[] { 0, 2, 3 }, groups.get(0)));
+    assertTrue(Arrays.equals(new int[] { 1 }, groups.get(1)));
+    assertEquals(labels(separate), labels(shared));
+  }
+
+  /** Combiners which only differ in how they run their classifiers share the loaded classifiers. */
+  public void testCombinersShareLoadedClassifiers() throws IOException {
+    File file = File.createTempFile("ClassifierCombinerTest", ".ser.gz");
+    file.deleteOnExit();
+    crfs().get(0).serializeClassifier(file.getPath());
+    String key = ModelRegistry.key("ner", file.getPath(), new Properties());
+
+    Properties props = new Properties();
+    props.setProperty(ClassifierCombiner.PARALLEL_CLASSIFIERS_PROPERTY, "true");
+    ClassifierCombiner<CoreLabel> first = new ClassifierCombiner<>(props, ClassifierCombiner.CombinationMode.NORMAL, file.getPath());
+    props = new Properties();
+    props.setProperty(ClassifierCombiner.SHARE_FEATURES_PROPERTY, "true");
+    props.setProperty("ner.combinationMode", "HIGH_RECALL");
+    ClassifierCombiner<CoreLabel> second = new ClassifierCombiner<>(props, ClassifierCombiner.CombinationMode.HIGH_RECALL, file.getPath());
+    try {
+      assertEquals(2, ModelRegistry.SINGLETON.holders(key));
+    } finally {
+      ModelRegistry.SINGLETON.release(first);
+      ModelRegistry.SINGLETON.release(second);
+    }
+  }
+
+  /** If every thread of the pool is busy, the calling thread runs all the base classifiers itself. */
+  public void testParallelClassifiersWithBusyPool() throws InterruptedException {
+    ExecutorService executor = ClassifierCombiner.parallelExecutor();
+    int poolSize = Runtime.getRuntime().availableProcessors();
+    CountDownLatch busy = new CountDownLatch(poolSize);
+    CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < poolSize; i++) {
+      executor.execute(() -> {
+        busy.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    try {
+      assertTrue(busy.await(10, TimeUnit.SECONDS));
+      assertEquals(labels(combiner(false)), labels(combiner(true)));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  /** Interrupting a thread which waits for the base classifiers gives up on them, and interrupts them too. */
+  public void testInterruptParallelClassifiers() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CRFClassifier<CoreLabel> blocking = new CRFClassifier<CoreLabel>(new Properties()) {
+      @Override
+      public List<CoreLabel> classify(List<CoreLabel> document) {
+        started.countDown();
+        try {
+          new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          throw new RuntimeInterruptedException(e);
+        }
+        return document;
+      }
+    };
+    Properties props = new Properties();
+    props.setProperty(ClassifierCombiner.PARALLEL_CLASSIFIERS_PROPERTY, "true");
+    ClassifierCombiner<CoreLabel> combiner = new ClassifierCombiner<>(props, crfs().get(0), blocking);
+
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        combiner.classify(IETestUtils.parseSentence(testSentences[0]));
+      } catch (Throwable t) {
+        thrown.set(t);
+      }
+    });
+    thread.start();
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    thread.interrupt();
+    thread.join(10000);
+    assertFalse(thread.isAlive());
+    assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof RuntimeInterruptedException);
+    // whichever thread was running the blocking classifier has been interrupted
+    assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+  }
+
 }
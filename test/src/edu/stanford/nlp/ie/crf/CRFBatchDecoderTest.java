@@ -0,0 +1,152 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.ie.util.IETestUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.math.CompactWeights;
+import edu.stanford.nlp.sequences.ExactBestSequenceFinder;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CRFBatchDecoder} finds the same sequences as Viterbi over a calibrated {@link CRFCliqueTree}.
+ */
+public class CRFBatchDecoderTest {
+
+  private static final int NUM_CLASSES = 4;
+  private static final int NUM_FEATURES = 30;
+  private static final int BACKGROUND = 0;
+
+  private static final Index<String> classIndex = new HashIndex<>(Arrays.asList("O", "A", "B", "C"));
+
+  /** All the labelings of cliques up to the window size, except a few, which are then impossible. */
+  private static List<Index<CRFLabel>> labelIndices(int window) {
+    List<Index<CRFLabel>> labelIndices = new ArrayList<>();
+    for (int size = 1; size <= window; size++) {
+      Index<CRFLabel> labelIndex = new HashIndex<>();
+      int[] label = new int[size];
+      do {
+        // B never directly follows A
+        boolean allowed = size < 2 || label[size - 2] != 1 || label[size - 1] != 2;
+        if (allowed) {
+          labelIndex.add(new CRFLabel(label.clone()));
+        }
+      } while (next(label));
+      labelIndices.add(labelIndex);
+    }
+    return labelIndices;
+  }
+
+  private static boolean next(int[] label) {
+    for (int i = label.length - 1; i >= 0; i--) {
+      if (++label[i] < NUM_CLASSES) {
+        return true;
+      }
+      label[i] = 0;
+    }
+    return false;
+  }
+
+  private static int[][][] randomData(Random random, int length, int window) {
+    int[][][] data = new int[length][window][];
+    for (int i = 0; i < length; i++) {
+      for (int k = 0; k < window; k++) {
+        data[i][k] = new int[1 + random.nextInt(4)];
+        for (int m = 0; m < data[i][k].length; m++) {
+          data[i][k][m] = random.nextInt(NUM_FEATURES);
+        }
+      }
+    }
+    return data;
+  }
+
+  private static void checkAgainstCliqueTree(int window) {
+    Random random = new Random(window);
+    List<Index<CRFLabel>> labelIndices = labelIndices(window);
+    int maxLabelings = labelIndices.get(window - 1).size();
+    double[][] weights = new double[NUM_FEATURES][maxLabelings];
+    for (double[] row : weights) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] = random.nextGaussian();
+      }
+    }
+    CliquePotentialFunction potentials = new LinearCliquePotentialFunction(weights);
+    CRFBatchDecoder decoder = new CRFBatchDecoder(labelIndices, NUM_CLASSES, BACKGROUND, potentials);
+    List<int[][][]> batch = new ArrayList<>();
+    for (int s = 0; s < 20; s++) {
+      batch.add(randomData(random, 1 + random.nextInt(12), window));
+    }
+    int[][] best = decoder.bestSequences(batch, null, null);
+    for (int s = 0; s < batch.size(); s++) {
+      int[][][] data = batch.get(s);
+      CRFCliqueTree<String> cliqueTree = CRFCliqueTree.getCalibratedCliqueTree(data, labelIndices, NUM_CLASSES,
+          classIndex, "O", potentials, null);
+      int[] expected = new ExactBestSequenceFinder().bestSequence(new TestSequenceModel(cliqueTree));
+      assertArrayEquals(Arrays.copyOfRange(expected, window - 1, expected.length), best[s]);
+    }
+  }
+
+  @Test
+  public void testFirstOrder() {
+    checkAgainstCliqueTree(2);
+  }
+
+  @Test
+  public void testSecondOrder() {
+    checkAgainstCliqueTree(3);
+  }
+
+  @Test
+  public void testAllowedLabels() {
+    List<Index<CRFLabel>> labelIndices = labelIndices(2);
+    double[][] weights = new double[NUM_FEATURES][labelIndices.get(1).size()];
+    CRFBatchDecoder decoder = new CRFBatchDecoder(labelIndices, NUM_CLASSES, BACKGROUND,
+        new LinearCliquePotentialFunction(weights));
+    int[][][] data = randomData(new Random(1), 3, 2);
+    int[] best = decoder.bestSequence(data, null, new int[][] { {3}, null, {2, 3} });
+    assertEquals(3, best[0]);
+    assertTrue(best[2] == 2 || best[2] == 3);
+    // B can't follow A, so there is no labeling at all
+    assertNull(decoder.bestSequence(data, null, new int[][] { {1}, {2}, {2} }));
+  }
+
+  /** A classifier keeps one decoder per thread, and makes a new one when its weights change. */
+  @Test
+  public void testDecoderPerThread() throws InterruptedException {
+    CRFClassifier<CoreLabel> crf = IETestUtils.trainCRF(new Properties(),
+        "Joe/PERSON Smith/PERSON drank/O beer/O ./O",
+        "He/O saw/O Mary/PERSON ./O");
+    List<CoreLabel> sentence = IETestUtils.parseSentence("Mary Smith drank beer .");
+    crf.classify(sentence);
+    CRFBatchDecoder decoder = crf.batchDecoder();
+    crf.classifyBatch(Arrays.asList(IETestUtils.parseSentence("He saw Joe ."), IETestUtils.parseSentence("Joe drank .")));
+    assertSame(decoder, crf.batchDecoder());
+
+    AtomicReference<CRFBatchDecoder> otherDecoder = new AtomicReference<>();
+    Thread thread = new Thread(() -> otherDecoder.set(crf.batchDecoder()));
+    thread.start();
+    thread.join();
+    assertNotNull(otherDecoder.get());
+    assertNotSame(decoder, otherDecoder.get());
+
+    crf.compactWeights(CompactWeights.Precision.FLOAT);
+    assertNotSame(decoder, crf.batchDecoder());
+    List<CoreLabel> compacted = IETestUtils.parseSentence("Mary Smith drank beer .");
+    crf.classify(compacted);
+    for (int i = 0; i < sentence.size(); i++) {
+      assertEquals(sentence.get(i).get(CoreAnnotations.AnswerAnnotation.class),
+          compacted.get(i).get(CoreAnnotations.AnswerAnnotation.class));
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.ie.util.IETestUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.MappedStringIndex;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CRFClassifier} finds the same features whether it looks them up by their hashes
+ * or by their Strings, and that it labels the same when loaded from a mapped model.
+ */
+public class CRFClassifierTest {
+
+  private static final String[] trainSentences = {
+      "Joe/PERSON Smith/PERSON drank/O 44/O beers/O in/O Paris/LOCATION ./O",
+      "Mary/PERSON Jones/PERSON went/O to/O London/LOCATION on/O May/O 3/O ./O",
+      "In/O Berlin/LOCATION ,/O Bob/PERSON Brown/PERSON ate/O 12/O apples/O ./O",
+      "The/O man/O saw/O Joe/PERSON ./O",
+  };
+
+  private static final String[] testSentences = {
+      "Joe Smith drank 44 cans in Paris .",
+      "Mary Jones went to New York with 3 friends .",
+      "Xyzzy",
+      "In Berlin , Bob Brown ate 12 apples on May 3 .",
+  };
+
+  /** The features at each position, with hashing either on or off, as sorted sets of feature indices. */
+  private static int[][][] features(CRFClassifier<CoreLabel> crf, List<CoreLabel> sentence, boolean hashed) {
+    crf.flags.hashedFeatures = hashed;
+    int[][][] data = crf.documentToDataAndLabels(sentence).first();
+    for (int[][] position : data) {
+      for (int k = 0; k < position.length; k++) {
+        position[k] = Arrays.stream(position[k]).sorted().distinct().toArray();
+      }
+    }
+    return data;
+  }
+
+  private static void checkHashedFeatures(Properties props) {
+    CRFClassifier<CoreLabel> crf = IETestUtils.trainCRF(props, trainSentences);
+    for (String sentence : testSentences) {
+      List<CoreLabel> tokens = crf.preprocess(IETestUtils.parseSentence(sentence));
+      int[][][] byString = features(crf, tokens, false);
+      int[][][] byHash = features(crf, tokens, true);
+      assertEquals(byString.length, byHash.length);
+      for (int i = 0; i < byString.length; i++) {
+        assertEquals(byString[i].length, byHash[i].length);
+        assertTrue(byString[i][0].length > 0);
+        for (int k = 0; k < byString[i].length; k++) {
+          assertArrayEquals(sentence + " at " + i + ", clique " + k, byString[i][k], byHash[i][k]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testHashedFeatures() {
+    checkHashedFeatures(new Properties());
+  }
+
+  @Test
+  public void testHashedFeaturesSecondOrder() {
+    Properties props = new Properties();
+    props.setProperty("maxLeft", "2");
+    props.setProperty("useTypeSeqs", "true");
+    props.setProperty("useTypeSeqs2", "true");
+    props.setProperty("useTypeySequences", "true");
+    props.setProperty("useDisjunctive", "true");
+    props.setProperty("useReverse", "true");
+    checkHashedFeatures(props);
+  }
+
+  private static List<String> answers(CRFClassifier<CoreLabel> crf, String sentence) {
+    List<String> answers = new ArrayList<>();
+    for (CoreLabel token : crf.classifySentence(IETestUtils.parseSentence(sentence))) {
+      answers.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+    }
+    return answers;
+  }
+
+  @Test
+  public void testMappedClassifierRoundTrip() throws IOException, ClassNotFoundException {
+    CRFClassifier<CoreLabel> crf = IETestUtils.trainCRF(new Properties(), trainSentences);
+    File file = File.createTempFile("CRFClassifierTest", ".crf");
+    file.deleteOnExit();
+    crf.serializeMappedClassifier(file.getPath());
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      assertEquals("CRFMMAP1", new String(new byte[] {
+          in.readByte(), in.readByte(), in.readByte(), in.readByte(),
+          in.readByte(), in.readByte(), in.readByte(), in.readByte() }, "US-ASCII"));
+    }
+    assertTrue(CRFClassifier.isMappedClassifier(file));
+
+    CRFClassifier<CoreLabel> loaded = new CRFClassifier<>(new Properties());
+    loaded.loadClassifier(file.getPath());
+    assertTrue(loaded.featureIndex instanceof MappedStringIndex);
+    assertEquals(crf.featureIndex.size(), loaded.featureIndex.size());
+    boolean found = false;
+    for (String sentence : testSentences) {
+      List<String> answers = answers(crf, sentence);
+      assertEquals(sentence, answers, answers(loaded, sentence));
+      found |= answers.contains("PERSON");
+    }
+    assertTrue(found);
+  }
+
+}
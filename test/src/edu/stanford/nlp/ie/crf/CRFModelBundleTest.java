@@ -0,0 +1,106 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.ie.util.IETestUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link CRFModelBundle} labels sentences as its classifiers do separately.
+ */
+public class CRFModelBundleTest {
+
+  private static final String[] personSentences = {
+      "Joe/PERSON Smith/PERSON drank/O beer/O in/O Paris/O ./O",
+      "Mary/PERSON Jones/PERSON went/O home/O ./O",
+      "Yesterday/O Bob/PERSON Brown/PERSON ate/O lunch/O ./O",
+      "The/O man/O saw/O Joe/PERSON ./O",
+  };
+
+  private static final String[] locationSentences = {
+      "He/O went/O to/O Paris/LOCATION ./O",
+      "Mary/O lives/O in/O London/LOCATION ./O",
+      "In/O Berlin/LOCATION ,/O Joe/O ate/O ./O",
+      "They/O flew/O to/O Paris/LOCATION today/O ./O",
+  };
+
+  private static final String[] testSentences = {
+      "Joe Smith drank 44 cans in Paris .",
+      "Mary Jones went to London with friends .",
+      "In Berlin , Bob Brown ate apples .",
+      "Paris",
+  };
+
+  private static List<String> answers(List<CoreLabel> tokens) {
+    List<String> answers = new ArrayList<>();
+    for (CoreLabel token : tokens) {
+      answers.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+    }
+    return answers;
+  }
+
+  /** Two classifiers with the same flags but different training data, and so different features and labels. */
+  private static void checkAgainstSeparateClassifiers(Properties props) {
+    List<CRFClassifier<CoreLabel>> crfs = Arrays.asList(
+        IETestUtils.trainCRF(props, personSentences),
+        IETestUtils.trainCRF(props, locationSentences));
+    assertTrue(CRFModelBundle.canShareFeatures(crfs.get(0), crfs.get(1)));
+    assertNotEquals(crfs.get(0).featureIndex.size(), crfs.get(1).featureIndex.size());
+    CRFModelBundle<CoreLabel> bundle = new CRFModelBundle<>(crfs);
+
+    boolean disagree = false;
+    for (String sentence : testSentences) {
+      List<CoreLabel> tokens = IETestUtils.parseSentence(sentence);
+      List<List<CoreLabel>> outputs = bundle.classifySentence(tokens);
+      assertEquals(crfs.size(), outputs.size());
+      for (int c = 0; c < crfs.size(); c++) {
+        assertEquals(sentence, answers(crfs.get(c).classifySentence(tokens)), answers(outputs.get(c)));
+      }
+      // the input is untouched, and each classifier has its own copy of it
+      for (CoreLabel token : tokens) {
+        assertNull(token.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+      for (int i = 0; i < tokens.size(); i++) {
+        assertNotSame(outputs.get(0).get(i), outputs.get(1).get(i));
+      }
+      disagree |= ! answers(outputs.get(0)).equals(answers(outputs.get(1)));
+    }
+    assertTrue(disagree);
+  }
+
+  @Test
+  public void testSameAsSeparateClassifiers() {
+    checkAgainstSeparateClassifiers(new Properties());
+  }
+
+  @Test
+  public void testReversedSameAsSeparateClassifiers() {
+    Properties props = new Properties();
+    props.setProperty("useReverse", "true");
+    checkAgainstSeparateClassifiers(props);
+  }
+
+  @Test
+  public void testDifferentFlagsCantShareFeatures() {
+    Properties reversed = new Properties();
+    reversed.setProperty("useReverse", "true");
+    List<CRFClassifier<CoreLabel>> crfs = Arrays.asList(
+        IETestUtils.trainCRF(new Properties(), personSentences),
+        IETestUtils.trainCRF(reversed, locationSentences));
+    assertFalse(CRFModelBundle.canShareFeatures(crfs.get(0), crfs.get(1)));
+    try {
+      new CRFModelBundle<>(crfs);
+      fail("Classifiers with different flags were bundled");
+    } catch (IllegalArgumentException e) {
+      // as expected
+    }
+  }
+
+}
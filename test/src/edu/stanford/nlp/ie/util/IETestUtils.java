@@ -1,6 +1,8 @@
 package edu.stanford.nlp.ie.util;
 
+import edu.stanford.nlp.ie.crf.CRFClassifier;
 import edu.stanford.nlp.international.Language;
+import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.semgraph.SemanticGraph;
@@ -10,6 +12,7 @@ import edu.stanford.nlp.util.Pair;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 import java.util.stream.Collectors;
 
 /**
@@ -126,4 +129,40 @@ public class IETestUtils {
       return token;
     }).collect(Collectors.toList());
   }
+
+  /**
+   * Train a small CRF, so that tests don't need to load a model.
+   * Each sentence is a sequence of word/ANSWER pairs, e.g. "Joe/PERSON drank/O".
+   *
+   * @param props The flags of the classifier (features, etc.); a few features of the word are added if none are given
+   * @param sentences The training sentences
+   * @return The trained classifier
+   */
+  public static CRFClassifier<CoreLabel> trainCRF(Properties props, String... sentences) {
+    Properties crfProps = new Properties();
+    crfProps.setProperty("useClassFeature", "true");
+    crfProps.setProperty("useNGrams", "true");
+    crfProps.setProperty("maxNGramLeng", "3");
+    crfProps.setProperty("usePrev", "true");
+    crfProps.setProperty("useNext", "true");
+    crfProps.setProperty("useSequences", "true");
+    crfProps.setProperty("usePrevSequences", "true");
+    crfProps.setProperty("wordShape", "chris2useLC");
+    crfProps.putAll(props);
+    CRFClassifier<CoreLabel> crf = new CRFClassifier<>(crfProps);
+    List<List<CoreLabel>> docs = new ArrayList<>();
+    for (String sentence : sentences) {
+      List<CoreLabel> doc = new ArrayList<>();
+      for (String w : sentence.split("\\s+")) {
+        int slash = w.lastIndexOf('/');
+        CoreLabel token = mkWord(w.substring(0, slash), -1);
+        token.set(CoreAnnotations.AnswerAnnotation.class, w.substring(slash + 1));
+        token.set(CoreAnnotations.GoldAnswerAnnotation.class, w.substring(slash + 1));
+        doc.add(token);
+      }
+      docs.add(doc);
+    }
+    crf.train(docs);
+    return crf;
+  }
 }
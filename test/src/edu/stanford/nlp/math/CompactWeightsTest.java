@@ -0,0 +1,92 @@
+package edu.stanford.nlp.math;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CompactWeights}.
+ */
+public class CompactWeightsTest {
+
+  private static double[][] randomRows(Random random) {
+    double[][] weights = new double[50][];
+    for (int row = 0; row < weights.length; row++) {
+      weights[row] = new double[1 + random.nextInt(25)];
+      double magnitude = Math.pow(10, random.nextInt(5) - 2);
+      for (int column = 0; column < weights[row].length; column++) {
+        weights[row][column] = magnitude * random.nextGaussian();
+      }
+    }
+    weights[7] = new double[5];  // all zero
+    return weights;
+  }
+
+  private static double maxAbs(double[] row) {
+    double max = 0.0;
+    for (double w : row) {
+      max = Math.max(max, Math.abs(w));
+    }
+    return max;
+  }
+
+  @Test
+  public void testRowsWithinPrecision() {
+    double[][] weights = randomRows(new Random(1));
+    for (CompactWeights.Precision precision : new CompactWeights.Precision[] {
+        CompactWeights.Precision.FLOAT, CompactWeights.Precision.SHORT, CompactWeights.Precision.BYTE }) {
+      CompactWeights compact = CompactWeights.of(weights, precision);
+      assertEquals(precision, compact.precision());
+      assertEquals(weights.length, compact.numRows());
+      double[][] expanded = compact.toArrays();
+      for (int row = 0; row < weights.length; row++) {
+        assertEquals(weights[row].length, compact.rowLength(row));
+        double tolerance;
+        switch (precision) {
+          case FLOAT:
+            tolerance = 1e-6 * maxAbs(weights[row]);
+            break;
+          case SHORT:
+            tolerance = 0.5001 * maxAbs(weights[row]) / Short.MAX_VALUE;
+            break;
+          default:
+            tolerance = 0.5001 * maxAbs(weights[row]) / Byte.MAX_VALUE;
+        }
+        for (int column = 0; column < weights[row].length; column++) {
+          assertEquals(weights[row][column], compact.get(row, column), tolerance);
+          assertEquals(compact.get(row, column), expanded[row][column], 0.0);
+        }
+      }
+      // compacting weights which are already compact changes nothing
+      assertArrayEquals(expanded, CompactWeights.of(expanded, precision).toArrays());
+    }
+  }
+
+  @Test
+  public void testFlat() {
+    Random random = new Random(2);
+    double[] weights = new double[3 * CompactWeights.BLOCK_SIZE + 17];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = random.nextGaussian();
+    }
+    CompactWeights compact = CompactWeights.of(weights, CompactWeights.Precision.SHORT);
+    assertEquals(weights.length, compact.size());
+    assertEquals(4, compact.numRows());
+    double[] expanded = compact.toArray();
+    for (int i = 0; i < weights.length; i++) {
+      assertEquals(weights[i], compact.get(i), 1e-3);
+      assertEquals(compact.get(i), expanded[i], 0.0);
+    }
+  }
+
+  @Test
+  public void testPrecisionNames() {
+    assertEquals(CompactWeights.Precision.DOUBLE, CompactWeights.Precision.fromString(null));
+    assertEquals(CompactWeights.Precision.FLOAT, CompactWeights.Precision.fromString("float"));
+    assertEquals(CompactWeights.Precision.SHORT, CompactWeights.Precision.fromString("16"));
+    assertEquals(CompactWeights.Precision.BYTE, CompactWeights.Precision.fromString("Byte"));
+  }
+
+}
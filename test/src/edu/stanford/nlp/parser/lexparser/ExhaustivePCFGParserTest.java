@@ -0,0 +1,226 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.SentenceUtils;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.ParserAnnotator;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.trees.Treebank;
+import edu.stanford.nlp.util.PropertiesUtils;
+
+public class ExhaustivePCFGParserTest extends TestCase {
+
+  private static final String[] TREES = {
+    "(ROOT (S (NP (DT some) (NN dog)) (VP (VBD liked) (NP (NNP John))) (. .)))",
+    "(ROOT (S (ADVP (RB very)) (NP (NNP John)) (VP (VBD took) (NP (DT every) (NN cat))) (. .)))",
+    "(ROOT (S (ADVP (RB very)) (NP (DT some) (NNS houses)) (VP (VBD bought) (NP (PRP it))) (. .)))",
+    "(ROOT (S (ADVP (RB often)) (NP (DT the) (NN woman)) (VP (VBD made)) (. .)))",
+    "(ROOT (S (NP (NP (DT some) (JJ good) (NN car)) (PP (IN in) (NP (DT a) (NN car)))) (VP (VBD saw) (NP (NNP Smith) (NNP Paris))) (. .)))",
+    "(ROOT (S (NP (DT that) (NN car)) (VP (VBD said) (NP (NNP Mary))) (. .)))",
+    "(ROOT (S (NP (DT a) (NNS reports)) (VP (MD can) (VP (VB like) (NP (CD two) (NNS cats)))) (PP (IN from) (NP (DT some) (NN woman))) (. .)))",
+    "(ROOT (S (NP (NNP IBM)) (VP (VBD took) (NP (DT this) (NN cat)) (PP (IN in) (NP (DT that) (JJ happy) (NN report)))) (. .)))",
+    "(ROOT (S (NP (DT every) (JJ new) (NN market)) (VP (VBZ likes) (S (TO to) (VP (VB see)))) (. .)))",
+    "(ROOT (S (NP (DT this) (NN cat)) (VP (VBD found) (NP (CD three) (NNS cars)) (PP (IN in) (NP (PRP she)))) (PP (IN on) (NP (DT a) (JJ old) (NN house))) (. .)))",
+    "(ROOT (S (NP (PRP she)) (VP (VBZ makes) (NP (DT the) (JJ new) (NN dog))) (PP (IN because) (NP (PRP she))) (. .)))",
+    "(ROOT (S (NP (DT that) (NN cat)) (VP (MD should) (VP (VB find) (PP (IN from) (NP (CD three) (NNS houses))))) (. .)))",
+    "(ROOT (S (NP (DT this) (NN car)) (VP (VBZ finds) (S (TO to) (VP (VB like) (NP (DT that) (NN cat))))) (. .)))",
+    "(ROOT (S (NP (PRP she)) (VP (VBD saw) (NP (DT the) (NN man))) (. .)))",
+    "(ROOT (S (NP (DT the) (NN house)) (VP (VBZ says) (NP (DT every) (NN man))) (. .)))",
+    "(ROOT (S (NP (DT every) (NNS plans)) (VP (VBD gave)) (PP (IN because) (NP (NP (DT some) (NN market)) (PP (IN because) (NP (DT every) (NNS people))))) (. .)))",
+    "(ROOT (S (ADVP (RB often)) (NP (PRP he)) (VP (VBZ says) (ADJP (JJ happy))) (. .)))",
+    "(ROOT (S (NP (DT that) (NN year)) (VP (VBD bought) (NP (DT that) (NNS ideas)) (PP (IN in) (NP (NNS dogs)))) (. .)))",
+    "(ROOT (S (NP (DT that) (JJ small) (NN woman)) (VP (VBZ buys) (ADJP (JJ small))) (. .)))",
+    "(ROOT (S (NP (CD ten) (NNS cats)) (VP (VBZ takes) (NP (DT the) (NNS cars))) (. .)))",
+  };
+
+  private static final String[] SENTENCES = {
+    "the dog saw a cat .",
+    "John took every car in the house .",
+    "she likes to see the small cat .",
+    "very often a man can find three dogs from Paris .",
+  };
+
+  private LexicalizedParser lp;
+
+  @Override
+  public void setUp() {
+    Options op = new Options();
+    op.setOptions("-goodPCFG", "-compactGrammar", "0");
+    Treebank treebank = op.tlpParams.memoryTreebank();
+    for (String tree : TREES) {
+      treebank.add(Tree.valueOf(tree));
+    }
+    lp = LexicalizedParser.trainFromTreebank(treebank, op);
+  }
+
+  /**
+   * A parser for the trained grammar.  The parsers share the options, and whether a parser prunes
+   * is set when it is made, but the threshold it prunes with is read when parsing, so a test
+   * makes at most one pruning parser.
+   */
+  private ExhaustivePCFGParser parser(double coarseToFineThreshold) {
+    Options op = lp.getOp();
+    op.testOptions.coarseToFineThreshold = coarseToFineThreshold;
+    return new ExhaustivePCFGParser(lp.bg, lp.ug, lp.lex, op, lp.stateIndex, lp.wordIndex, lp.tagIndex);
+  }
+
+  private static List<Word> words(String sentence) {
+    List<Word> words = new ArrayList<>();
+    for (String word : sentence.split(" ")) {
+      words.add(new Word(word));
+    }
+    words.add(new Word(Lexicon.BOUNDARY));
+    return words;
+  }
+
+  /** A threshold which prunes nothing useful gives exactly the parses of exhaustive parsing. */
+  public void testPermissiveThresholdGivesSameParses() {
+    ExhaustivePCFGParser exhaustive = parser(0.0);
+    ExhaustivePCFGParser pruned = parser(1000.0);
+    for (String sentence : SENTENCES) {
+      assertTrue(exhaustive.parse(words(sentence)));
+      assertTrue(pruned.parse(words(sentence)));
+      assertFalse(pruned.coarseFailed);
+      assertEquals(exhaustive.getBestScore(), pruned.getBestScore());
+      assertEquals(exhaustive.getBestParse(), pruned.getBestParse());
+    }
+  }
+
+  /**
+   * With a small threshold, pruning loses all the parses of the last sentence, which is then
+   * parsed again without pruning, and so still gets the exhaustive parse.
+   */
+  public void testOverPrunedSentenceIsReparsed() {
+    ExhaustivePCFGParser exhaustive = parser(0.0);
+    ExhaustivePCFGParser pruned = parser(0.1);
+    String sentence = SENTENCES[SENTENCES.length - 1];
+    assertTrue(exhaustive.parse(words(sentence)));
+    assertTrue(pruned.parse(words(sentence)));
+    assertTrue(pruned.coarseFailed);
+    assertEquals(exhaustive.getBestScore(), pruned.getBestScore());
+    assertEquals(exhaustive.getBestParse(), pruned.getBestParse());
+
+    // the next sentence is pruned again
+    assertTrue(pruned.parse(words(SENTENCES[0])));
+    assertFalse(pruned.coarseFailed);
+  }
+
+  private LexicalizedParserQuery parse(String sentence) {
+    LexicalizedParserQuery pq = (LexicalizedParserQuery) lp.parserQuery();
+    assertTrue(pq.parse(SentenceUtils.toWordList(sentence.split(" "))));
+    return pq;
+  }
+
+  private static float[][][] chart(LexicalizedParserQuery pq) {
+    return ((ExhaustivePCFGParser) pq.getPCFGParser()).iScore;
+  }
+
+  /**
+   * With poolCharts, a query's chart is given to the next query on the thread once it is
+   * released, but not while the query still has it, and parses are the same either way.
+   */
+  public void testPooledChartIsReusedAndReleased() {
+    List<Tree> expected = new ArrayList<>();
+    for (String sentence : SENTENCES) {
+      expected.add(parse(sentence).getBestParse());
+    }
+    lp.getOp().testOptions.poolCharts = true;
+
+    LexicalizedParserQuery first = parse(SENTENCES[1]);
+    float[][][] chart = chart(first);
+    assertEquals(expected.get(1), first.getBestParse());
+    first.releaseChart();
+    assertNull(chart(first));
+
+    // a shorter sentence reuses the released chart
+    LexicalizedParserQuery second = parse(SENTENCES[0]);
+    assertSame(chart, chart(second));
+    assertEquals(expected.get(0), second.getBestParse());
+
+    // but not while the second query still has it
+    LexicalizedParserQuery third = parse(SENTENCES[1]);
+    assertNotSame(chart, chart(third));
+    assertEquals(expected.get(1), third.getBestParse());
+    second.releaseChart();
+
+    // parseTree releases the chart it borrows
+    List<HasWord> words = SentenceUtils.toWordList(SENTENCES[2].split(" "));
+    assertEquals(expected.get(2), lp.parseTree(words));
+    LexicalizedParserQuery fourth = parse(SENTENCES[0]);
+    assertSame(chart, chart(fourth));
+    fourth.releaseChart();
+
+    // and so does the parse annotator
+    Annotation doc = new StanfordCoreNLP(PropertiesUtils.asProperties("annotators", "tokenize,ssplit")).process(SENTENCES[2]);
+    new ParserAnnotator(lp, false, -1).annotate(doc);
+    Tree tree = doc.get(CoreAnnotations.SentencesAnnotation.class).get(0).get(TreeCoreAnnotations.TreeAnnotation.class);
+    assertNotNull(tree);
+    assertSame(chart, chart(parse(SENTENCES[0])));
+  }
+
+  /** A pooled chart which would take more than the memory budget is refused. */
+  public void testPooledChartMemoryBudget() {
+    int numStates = lp.stateIndex.size();
+    int numTags = lp.tagIndex.size();
+    long bytes = PCFGChart.bytes(10, numStates, numTags, false, false);
+    try {
+      PCFGChart.borrow(10, 10, bytes - 1, numStates, numTags, false, false);
+      fail("A chart over the budget was made");
+    } catch (OutOfMemoryError e) {
+      // expected
+    }
+    assertEquals(10, PCFGChart.borrow(10, 10, bytes, numStates, numTags, false, false).size);
+  }
+
+  /**
+   * Filling the chart diagonals of sentences over parallelChartLength in a pool gives exactly
+   * the chart, score, and parse of filling them serially, whether the query is parsed in the
+   * pool or not.
+   */
+  public void testParallelChartMatchesSerial() throws Exception {
+    lp.getOp().testOptions.parallelChartLength = 5;
+    AtomicInteger workers = new AtomicInteger();
+    ForkJoinPool pool = new ForkJoinPool(4, p -> {
+      workers.incrementAndGet();
+      return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+    }, null, false);
+    try {
+      for (String sentence : SENTENCES) {
+        List<HasWord> words = SentenceUtils.toWordList(sentence.split(" "));
+        assertTrue(words.size() >= 5);
+        LexicalizedParserQuery serial = (LexicalizedParserQuery) lp.parserQuery();
+        assertTrue(serial.parse(words));
+
+        LexicalizedParserQuery parallel = (LexicalizedParserQuery) lp.parserQuery();
+        parallel.setChartPool(pool);
+        assertTrue(parallel.parse(words));
+        assertTrue(Arrays.deepEquals(chart(serial), chart(parallel)));
+        assertEquals(serial.getPCFGScore(), parallel.getPCFGScore());
+        assertEquals(serial.getBestParse(), parallel.getBestParse());
+
+        LexicalizedParserQuery inPool = (LexicalizedParserQuery) lp.parserQuery();
+        inPool.setChartPool(pool);
+        assertTrue(pool.submit(() -> inPool.parse(words)).get());
+        assertTrue(Arrays.deepEquals(chart(serial), chart(inPool)));
+        assertEquals(serial.getBestParse(), inPool.getBestParse());
+      }
+      // the cells were filled by the pool's threads
+      assertTrue(workers.get() > 1);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+package edu.stanford.nlp.parser.nndep;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import edu.stanford.nlp.util.PropertiesUtils;
+
+public class ClassifierTest extends TestCase {
+
+  private static final int VOCABULARY = 20;
+
+  private static double[][] randomMatrix(Random random, int rows, int columns) {
+    double[][] matrix = new double[rows][columns];
+    for (double[] row : matrix) {
+      for (int i = 0; i < columns; ++i) {
+        row[i] = random.nextGaussian();
+      }
+    }
+    return matrix;
+  }
+
+  /** A small classifier with random weights, which pre-computes the given feature IDs. */
+  private static Classifier classifier(List<Integer> preComputed) {
+    Config config = new Config(PropertiesUtils.asProperties("hiddenSize", "8", "embeddingSize", "4"));
+    Random random = new Random(1234);
+    double[][] E = randomMatrix(random, VOCABULARY, config.embeddingSize);
+    double[][] W1 = randomMatrix(random, config.hiddenSize, config.embeddingSize * Config.numTokens);
+    double[] b1 = randomMatrix(random, 1, config.hiddenSize)[0];
+    double[][] W2 = randomMatrix(random, 3, config.hiddenSize);
+    return new Classifier(config, E, W1, b1, W2, preComputed);
+  }
+
+  /**
+   * Pre-computed activations saved by one classifier and loaded by
+   * another give exactly the scores of computing them.
+   */
+  public void testSaveAndLoadPreComputed() throws Exception {
+    List<Integer> preComputed = new ArrayList<>();
+    for (int tok = 0; tok < VOCABULARY; tok += 2) {
+      for (int pos = 0; pos < Config.numTokens; ++pos) {
+        preComputed.add(tok * Config.numTokens + pos);
+      }
+    }
+    Classifier computed = classifier(preComputed);
+    computed.preCompute();
+
+    File file = File.createTempFile("ClassifierTest", ".preComputed");
+    file.deleteOnExit();
+    assertTrue(computed.savePreComputed(file.getPath()));
+
+    Classifier loaded = classifier(preComputed);
+    assertTrue(loaded.loadPreComputed(file.getPath()));
+
+    Random random = new Random(5678);
+    for (int i = 0; i < 10; ++i) {
+      int[] feature = new int[Config.numTokens];
+      for (int j = 0; j < feature.length; ++j) {
+        feature[j] = random.nextInt(VOCABULARY);
+      }
+      assertTrue(Arrays.equals(computed.computeScores(feature), loaded.computeScores(feature)));
+    }
+
+    // a classifier with different pre-computed features won't load them
+    Classifier other = classifier(preComputed.subList(0, preComputed.size() / 2));
+    assertFalse(other.loadPreComputed(file.getPath()));
+  }
+
+  /** Failing to save the pre-computed activations is only a warning. */
+  public void testSaveFailureIsNotFatal() {
+    Classifier classifier = classifier(Arrays.asList(0, 1, 2));
+    classifier.preCompute();
+    assertFalse(classifier.savePreComputed(new File("/nonexistent/directory/preComputed").getPath()));
+  }
+
+}
@@ -0,0 +1,77 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import edu.stanford.nlp.parser.lexparser.BinaryHeadFinder;
+import edu.stanford.nlp.trees.HeadFinder;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Trees;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.ScoredObject;
+
+public class CompiledPerceptronModelTest extends TestCase {
+  String treeString = "(ROOT (S (NP (DT Some) (@NP (NN circuit) (NNS breakers))) (@S (VP (VBD failed) (NP (PRP$ their) (@NP (JJ first) (NN test)))) (. .))))";
+
+  Tree convertTree(String treeText) {
+    ShiftReduceOptions op = new ShiftReduceOptions();
+    HeadFinder binaryHeadFinder = new BinaryHeadFinder(op.tlpParams.headFinder());
+    Tree tree = Tree.valueOf(treeText);
+    Trees.convertToCoreLabels(tree);
+    tree.percolateHeadAnnotations(binaryHeadFinder);
+    return tree;
+  }
+
+  private static List<String> toStrings(Collection<ScoredObject<Integer>> transitions) {
+    List<String> strings = new ArrayList<>();
+    for (ScoredObject<Integer> transition : transitions) {
+      strings.add(transition.object() + "=" + transition.score());
+    }
+    Collections.sort(strings);
+    return strings;
+  }
+
+  /**
+   * Give random weights to the features of the states along a gold
+   * transition sequence, and check that the compiled model scores
+   * each state exactly as the original, alone and as a batch.
+   */
+  public void testSameTransitions() {
+    Tree tree = convertTree(treeString);
+    List<Transition> transitions = CreateTransitionSequence.createTransitionSequence(tree, true, Collections.singleton("ROOT"), Collections.singleton("ROOT"));
+    Index<Transition> transitionIndex = new HashIndex<>(transitions);
+    PerceptronModel model = new PerceptronModel(new ShiftReduceOptions(), transitionIndex, Collections.singleton("S"), Collections.singleton("ROOT"), Collections.singleton("ROOT"));
+
+    Random random = new Random(1234);
+    List<State> states = new ArrayList<>();
+    State state = ShiftReduceParser.initialStateFromGoldTagTree(tree);
+    for (Transition transition : transitions) {
+      states.add(state);
+      for (String feature : model.featureFactory.featurize(state)) {
+        // leave some features out of the model
+        if (random.nextInt(4) == 0) {
+          continue;
+        }
+        Weight weight = model.featureWeights.computeIfAbsent(feature, f -> new Weight());
+        weight.updateWeight(random.nextInt(transitionIndex.size()), (float) random.nextGaussian());
+      }
+      state = transition.apply(state);
+    }
+
+    CompiledPerceptronModel compiled = new CompiledPerceptronModel(model);
+    assertEquals(model.featureWeights.size(), compiled.numFeatures());
+    List<Collection<ScoredObject<Integer>>> batch = compiled.findHighestScoringTransitions(states, true, 3, null);
+    assertEquals(states.size(), batch.size());
+    for (int i = 0; i < states.size(); ++i) {
+      List<String> expected = toStrings(model.findHighestScoringTransitions(states.get(i), true, 3, null));
+      assertEquals(expected, toStrings(compiled.findHighestScoringTransitions(states.get(i), true, 3, null)));
+      assertEquals(expected, toStrings(batch.get(i)));
+    }
+  }
+}
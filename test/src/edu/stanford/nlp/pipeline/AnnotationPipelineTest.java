@@ -0,0 +1,120 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the staged execution mode and the metrics of {@link AnnotationPipeline}.
+ */
+public class AnnotationPipelineTest {
+
+  /** Appends a fixed suffix to the document's text. */
+  private static class AppendingAnnotator implements Annotator {
+    private final String suffix;
+
+    private AppendingAnnotator(String suffix) {
+      this.suffix = suffix;
+    }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      String text = annotation.get(CoreAnnotations.TextAnnotation.class);
+      if (text.startsWith("fail") && suffix.equals("b")) {
+        throw new IllegalStateException("failing on purpose");
+      }
+      if (text.startsWith("error") && suffix.equals("b")) {
+        throw new InternalError("erroring on purpose");
+      }
+      annotation.set(CoreAnnotations.TextAnnotation.class, text + suffix);
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.emptySet();
+    }
+  }
+
+  private static AnnotationPipeline makePipeline() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new AppendingAnnotator("a"));
+    pipeline.addAnnotator(new AppendingAnnotator("b"));
+    pipeline.addAnnotator(new AppendingAnnotator("c"));
+    return pipeline;
+  }
+
+  @Test
+  public void testStagedRunsEveryStageInOrder() {
+    AnnotationPipeline pipeline = makePipeline();
+    List<Annotation> docs = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      docs.add(new Annotation("doc" + i + ':'));
+    }
+    List<Annotation> finished = Collections.synchronizedList(new ArrayList<>());
+    pipeline.annotateStaged(docs, new int[]{1, 3, 2}, 4, finished::add);
+    assertEquals(docs.size(), finished.size());
+    for (Annotation doc : docs) {
+      assertTrue(doc.get(CoreAnnotations.TextAnnotation.class).endsWith(":abc"));
+      assertTrue(finished.contains(doc));
+    }
+  }
+
+  @Test
+  public void testStagedRecordsExceptions() {
+    AnnotationPipeline pipeline = makePipeline();
+    Annotation good = new Annotation("good");
+    Annotation bad = new Annotation("fail");
+    List<Annotation> finished = Collections.synchronizedList(new ArrayList<>());
+    pipeline.annotateStaged(Arrays.asList(good, bad), new int[]{2, 2, 2}, 1, finished::add);
+    assertEquals(2, finished.size());
+    assertEquals("goodabc", good.get(CoreAnnotations.TextAnnotation.class));
+    assertNull(good.get(CoreAnnotations.ExceptionAnnotation.class));
+    // the failed stage and everything after it are skipped
+    assertEquals("faila", bad.get(CoreAnnotations.TextAnnotation.class));
+    assertTrue(bad.get(CoreAnnotations.ExceptionAnnotation.class) instanceof IllegalStateException);
+  }
+
+  @Test
+  public void testStagedRethrowsErrors() {
+    AnnotationPipeline pipeline = makePipeline();
+    try {
+      pipeline.annotateStaged(Arrays.asList(new Annotation("good"), new Annotation("error")), new int[]{1, 1, 1}, 1, ann -> {});
+      fail("The Error wasn't rethrown");
+    } catch (InternalError e) {
+      assertEquals("erroring on purpose", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testStagedEmptyInput() {
+    List<Annotation> finished = new ArrayList<>();
+    makePipeline().annotateStaged(Collections.emptyList(), new int[]{1, 1, 1}, 1, finished::add);
+    assertTrue(finished.isEmpty());
+  }
+
+  @Test
+  public void testMetricsAreRecorded() {
+    AnnotationPipeline pipeline = makePipeline();
+    pipeline.annotate(new Annotation("one"));
+    pipeline.annotateStaged(Arrays.asList(new Annotation("two"), new Annotation("fail")), new int[]{1, 1, 1}, 2, ann -> {});
+    PipelineMetrics metrics = pipeline.metrics();
+    assertEquals(2, metrics.documents());
+    assertEquals(1, metrics.failures());
+    assertEquals(2, metrics.documentLatency().count());
+    // all three annotators share a class name, and the failing document is not run past the second stage
+    assertEquals(8, metrics.annotatorLatency("AnnotationPipelineTest$AppendingAnnotator").count());
+    String exposition = metrics.toPrometheus();
+    assertTrue(exposition, exposition.contains("corenlp_annotator_latency_seconds_count{annotator=\"AnnotationPipelineTest$AppendingAnnotator\"} 8\n"));
+    assertTrue(exposition, exposition.contains("corenlp_documents_total 2\n"));
+  }
+
+}
@@ -0,0 +1,91 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AnnotationResultCache}.
+ */
+public class AnnotationResultCacheTest {
+
+  private static final Properties props = PropertiesUtils.asProperties("annotators", "tokenize,ssplit");
+
+  /** An annotation which the protocol buffers don't know about. */
+  private static class UnserializableAnnotation implements CoreAnnotation<String> {
+    @Override
+    public Class<String> getType() {
+      return String.class;
+    }
+  }
+
+  private static Annotation annotate(String text) {
+    Annotation ann = new Annotation(text);
+    new StanfordCoreNLP(props).annotate(ann);
+    return ann;
+  }
+
+  @Test
+  public void testKeyDependsOnTextDateAndProperties() {
+    String key = AnnotationResultCache.key("Hello world.", null, props);
+    assertEquals(key, AnnotationResultCache.key("Hello world.", null, props));
+    assertNotEquals(key, AnnotationResultCache.key("Hello world!", null, props));
+    assertNotEquals(key, AnnotationResultCache.key("Hello world.", "2017-01-01", props));
+    Properties other = PropertiesUtils.asProperties("annotators", "tokenize,ssplit", "tokenize.whitespace", "true");
+    assertNotEquals(key, AnnotationResultCache.key("Hello world.", null, other));
+    // properties that don't affect the annotators don't change the key
+    Properties output = PropertiesUtils.asProperties("annotators", "tokenize,ssplit", "outputFormat", "xml");
+    assertEquals(key, AnnotationResultCache.key("Hello world.", null, output));
+  }
+
+  @Test
+  public void testHitAndMiss() {
+    AnnotationResultCache cache = new AnnotationResultCache(1 << 20);
+    String key = AnnotationResultCache.key("Hello world. Bye.", null, props);
+    assertNull(cache.get(key));
+    cache.put(key, annotate("Hello world. Bye."));
+    Annotation cached = cache.get(key);
+    assertNotNull(cached);
+    assertEquals(2, cached.get(CoreAnnotations.SentencesAnnotation.class).size());
+    assertEquals(5, cached.get(CoreAnnotations.TokensAnnotation.class).size());
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void testDoesNotCacheLossyDocuments() {
+    AnnotationResultCache cache = new AnnotationResultCache(1 << 20);
+    Annotation ann = annotate("Hello world.");
+    ann.set(UnserializableAnnotation.class, "not in the proto");
+    cache.put("a", ann);
+    // a cached copy would be missing the annotation, so there mustn't be one
+    Annotation cached = cache.get("a");
+    assertTrue(cached == null || cached.containsKey(UnserializableAnnotation.class));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    AnnotationResultCache probe = new AnnotationResultCache(1 << 20);
+    probe.put("a", annotate("Hello world."));
+    long entrySize = probe.usedBytes();
+
+    AnnotationResultCache cache = new AnnotationResultCache(2 * entrySize + entrySize / 2);
+    cache.put("a", annotate("Hello world."));
+    cache.put("b", annotate("Hello world."));
+    assertNotNull(cache.get("a"));  // b is now the least recently used
+    cache.put("c", annotate("Hello world."));
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+    assertEquals(1, cache.evictions());
+    assertTrue(cache.usedBytes() <= 2 * entrySize + entrySize / 2);
+  }
+
+}
@@ -0,0 +1,150 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.PropertiesUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that {@link DependencyParseAnnotator} parses the same whether it parses a document's
+ * sentences together or one at a time.
+ */
+public class DependencyParseAnnotatorTest {
+
+  private static final List<String> WORDS = Arrays.asList("-UNKNOWN-", "-NULL-", "-ROOT-", "the", "a", "dog", "cat", "saw", "ran", ".");
+  private static final List<String> TAGS = Arrays.asList("-UNKNOWN-", "-NULL-", "-ROOT-", "DT", "NN", "VBD", ".");
+  private static final List<String> LABELS = Arrays.asList("-NULL-", "det", "nsubj", "dobj", "punct", "root");
+
+  /** Writes a parser model with random weights, in the text format the parser loads. */
+  private static File randomModel() throws IOException {
+    int embeddingSize = 4;
+    int hiddenSize = 8;
+    int numTokens = 48;
+    Random random = new Random(1234);
+    File file = File.createTempFile("DependencyParseAnnotatorTest", ".txt");
+    file.deleteOnExit();
+    try (PrintWriter out = new PrintWriter(file, "utf-8")) {
+      out.println("dict=" + WORDS.size());
+      out.println("pos=" + TAGS.size());
+      out.println("label=" + LABELS.size());
+      out.println("embeddingSize=" + embeddingSize);
+      out.println("hiddenSize=" + hiddenSize);
+      out.println("numTokens=" + numTokens);
+      out.println("preComputed=0");
+      for (List<String> names : Arrays.asList(WORDS, TAGS, LABELS)) {
+        for (String name : names) {
+          out.println(name + ' ' + randomRow(random, embeddingSize));
+        }
+      }
+      for (int i = 0; i < embeddingSize * numTokens; i++) {
+        out.println(randomRow(random, hiddenSize));  // a column of W1
+      }
+      out.println(randomRow(random, hiddenSize));  // b1
+      for (int i = 0; i < hiddenSize; i++) {
+        out.println(randomRow(random, 2 * LABELS.size() - 1));  // a column of W2
+      }
+    }
+    return file;
+  }
+
+  private static String randomRow(Random random, int size) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(random.nextGaussian());
+    }
+    return sb.toString();
+  }
+
+  /** A document of tokenized, tagged sentences, of different lengths. */
+  private static Annotation document() {
+    Annotation doc = new StanfordCoreNLP(PropertiesUtils.asProperties("annotators", "tokenize,ssplit")).process(
+        "The dog saw a cat. A cat ran. The dog saw the cat saw a dog. Cat ran. The cat saw a dog ran a cat. Dog.");
+    for (CoreLabel token : doc.get(CoreAnnotations.TokensAnnotation.class)) {
+      String word = token.word().toLowerCase();
+      String tag = word.equals("the") || word.equals("a") ? "DT" :
+          word.equals("saw") || word.equals("ran") ? "VBD" :
+          word.equals(".") ? "." : "NN";
+      token.setTag(tag);
+    }
+    return doc;
+  }
+
+  private static List<String> graphs(Annotation doc) {
+    List<String> graphs = new ArrayList<>();
+    for (CoreMap sentence : doc.get(CoreAnnotations.SentencesAnnotation.class)) {
+      for (Class<? extends CoreAnnotation<SemanticGraph>> key : Arrays.asList(
+          SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class,
+          SemanticGraphCoreAnnotations.CollapsedDependenciesAnnotation.class,
+          SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class,
+          SemanticGraphCoreAnnotations.EnhancedDependenciesAnnotation.class,
+          SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class)) {
+        graphs.add(sentence.get(key).toList());
+      }
+    }
+    return graphs;
+  }
+
+  @Test
+  public void testBatchedParsesMatchSentenceParses() throws IOException {
+    String model = randomModel().getPath();
+    // batches of two, so that finished sentences are replaced in the middle of a batch
+    DependencyParseAnnotator batched = new DependencyParseAnnotator(PropertiesUtils.asProperties(
+        "model", model, "parseBatchSize", "2"));
+    // a timeout makes the annotator parse one sentence at a time
+    DependencyParseAnnotator single = new DependencyParseAnnotator(PropertiesUtils.asProperties(
+        "model", model, "sentenceTimeout", "600000"));
+
+    Annotation batchedDoc = document();
+    batched.annotate(batchedDoc);
+    Annotation singleDoc = document();
+    single.annotate(singleDoc);
+    assertEquals(6, batchedDoc.get(CoreAnnotations.SentencesAnnotation.class).size());
+    assertEquals(graphs(singleDoc), graphs(batchedDoc));
+  }
+
+  /** In a pipeline with a shared pool, batches of sentences are parsed on the pool's threads. */
+  @Test
+  public void testBatchedParsesOnSharedPool() throws IOException {
+    String model = randomModel().getPath();
+    DependencyParseAnnotator batched = new DependencyParseAnnotator(PropertiesUtils.asProperties(
+        "model", model, "parseBatchSize", "2"));
+    DependencyParseAnnotator single = new DependencyParseAnnotator(PropertiesUtils.asProperties(
+        "model", model, "sentenceTimeout", "600000"));
+
+    AtomicInteger poolThreads = new AtomicInteger();
+    ForkJoinPool pool = new ForkJoinPool(2, p -> {
+      poolThreads.incrementAndGet();
+      return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+    }, null, false);
+    try {
+      Annotation pooledDoc = document();
+      SentenceAnnotator.annotateWithPool(batched, pooledDoc, pool);
+      assertTrue(poolThreads.get() > 0);
+      Annotation singleDoc = document();
+      single.annotate(singleDoc);
+      assertEquals(graphs(singleDoc), graphs(pooledDoc));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.After;
+import org.junit.Test;
+
+import edu.stanford.nlp.util.PropertiesUtils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the shared sentence pool of {@link SentenceAnnotator}.
+ */
+public class SentenceAnnotatorTest {
+
+  /**
+   * Marks each sentence with its text, sleeping forever on sentences called "slow".
+   * Interrupted, it takes a moment to stop, and then marks the sentence as interrupted.
+   */
+  private static class MarkingAnnotator extends SentenceAnnotator {
+    private final long maxTime;
+
+    private MarkingAnnotator(long maxTime) {
+      this.maxTime = maxTime;
+    }
+
+    @Override
+    protected int nThreads() {
+      return 1;
+    }
+
+    @Override
+    protected long maxTime() {
+      return maxTime;
+    }
+
+    @Override
+    protected void doOneSentence(Annotation annotation, CoreMap sentence) {
+      String text = sentence.get(CoreAnnotations.TextAnnotation.class);
+      if (text.equals("slow")) {
+        try {
+          Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+          long stop = System.currentTimeMillis() + 200;
+          while (System.currentTimeMillis() < stop) {
+            Thread.yield();
+          }
+          sentence.set(CoreAnnotations.CategoryAnnotation.class, "interrupted");
+          return;
+        }
+      }
+      sentence.set(CoreAnnotations.CategoryAnnotation.class, "done:" + text);
+    }
+
+    @Override
+    protected void doOneFailedSentence(Annotation annotation, CoreMap sentence) {
+      sentence.set(CoreAnnotations.CategoryAnnotation.class, "failed");
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.emptySet();
+    }
+  }
+
+  private static Annotation makeDocument(String... sentenceTexts) {
+    Annotation annotation = new Annotation(String.join(" ", sentenceTexts));
+    List<CoreMap> sentences = new ArrayList<>();
+    for (String text : sentenceTexts) {
+      CoreMap sentence = new ArrayCoreMap();
+      sentence.set(CoreAnnotations.TextAnnotation.class, text);
+      sentences.add(sentence);
+    }
+    annotation.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    return annotation;
+  }
+
+  private static List<String> categories(Annotation annotation) {
+    List<String> result = new ArrayList<>();
+    for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      result.add(sentence.get(CoreAnnotations.CategoryAnnotation.class));
+    }
+    return result;
+  }
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testSharedPool() throws InterruptedException {
+    MarkingAnnotator annotator = new MarkingAnnotator(-1);
+    List<Annotation> docs = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Annotation doc = makeDocument("a" + i, "b" + i);
+      docs.add(doc);
+      threads.add(new Thread(() -> SentenceAnnotator.annotateWithPool(annotator, doc, pool)));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < docs.size(); i++) {
+      assertEquals(Arrays.asList("done:a" + i, "done:b" + i), categories(docs.get(i)));
+    }
+  }
+
+  @Test
+  public void testSharedPoolTimeout() throws InterruptedException {
+    Annotation doc = makeDocument("a", "slow", "b");
+    SentenceAnnotator.annotateWithPool(new MarkingAnnotator(100), doc, pool);
+    // the worker had stopped before the sentence was marked as failed, so it can't have overwritten that
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("done:a", "failed", "done:b"), categories(doc));
+  }
+
+  @Test
+  public void testPoolIsOnlyUsedWithinTheCall() {
+    SentenceAnnotator.annotateWithPool(new MarkingAnnotator(-1), makeDocument("a"), pool);
+    pool.shutdown();
+    // the shut down pool would refuse the sentences, so these must run on the annotator's own threads
+    Annotation doc = makeDocument("b", "c");
+    new MarkingAnnotator(-1).annotate(doc);
+    assertEquals(Arrays.asList("done:b", "done:c"), categories(doc));
+  }
+
+  @Test
+  public void testPipelineSentenceThreads() {
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties(
+        "annotators", "tokenize,ssplit,mark",
+        "customAnnotatorClass.mark", PipelineMarkingAnnotator.class.getName(),
+        "sentenceThreads", "2"));
+    Annotation doc = pipeline.process("First sentence. Second sentence.");
+    assertEquals(Arrays.asList("done:First sentence.", "done:Second sentence."), categories(doc));
+  }
+
+  /** A {@link MarkingAnnotator} which can be loaded by a pipeline. */
+  public static class PipelineMarkingAnnotator extends MarkingAnnotator {
+    public PipelineMarkingAnnotator(String name, Properties props) {
+      super(-1);
+    }
+  }
+
+}
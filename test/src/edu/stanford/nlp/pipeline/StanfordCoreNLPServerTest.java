@@ -0,0 +1,180 @@
+package edu.stanford.nlp.pipeline;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import edu.stanford.nlp.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the /batch endpoint of a server running just a tokenizer and sentence splitter.
+ */
+public class StanfordCoreNLPServerTest {
+
+  private StanfordCoreNLPServer server;
+  private int port;
+
+  @Before
+  public void setUp() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    server = new StanfordCoreNLPServer(port, 60000, false);
+  }
+
+  /** Starts the server, after a test has set any options it needs. */
+  private void start() {
+    server.run(Optional.empty(), props -> true, request -> {}, null, false, new AtomicBoolean());
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  private HttpURLConnection post(String query, String body) throws IOException {
+    return post("/batch", query, body);
+  }
+
+  private HttpURLConnection post(String path, String query, String body) throws IOException {
+    URL url = new URL("http://localhost:" + port + path + "?annotators=tokenize,ssplit&" + query);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(10000);
+    connection.setReadTimeout(60000);
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-type", "text/plain;charset=utf-8");
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return connection;
+  }
+
+  /** Reads the response, checking that every line is one JSON object. */
+  private static List<JsonObject> readLines(HttpURLConnection connection) throws IOException {
+    List<JsonObject> objects = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+      for (String line; (line = reader.readLine()) != null; ) {
+        try (JsonReader json = Json.createReader(new StringReader(line))) {
+          objects.add(json.readObject());
+        }
+      }
+    }
+    return objects;
+  }
+
+  @Test
+  public void testOneJsonObjectPerLine() throws IOException {
+    start();
+    HttpURLConnection connection = post("outputFormat=json", "The cat sat.\nThe dog ran. It barked.\n\nA third document.\n");
+    assertEquals(200, connection.getResponseCode());
+    assertTrue(connection.getContentType().startsWith("application/x-ndjson"));
+    List<JsonObject> results = readLines(connection);
+    assertEquals(3, results.size());
+    Set<String> docIds = new HashSet<>();
+    for (JsonObject result : results) {
+      docIds.add(result.getString("docId"));
+      assertTrue(result.containsKey("sentences"));
+    }
+    assertEquals(new HashSet<>(java.util.Arrays.asList("0", "1", "2")), docIds);
+    // Results may come back in any order, but each is for its own document
+    for (JsonObject result : results) {
+      int expectedSentences = result.getString("docId").equals("1") ? 2 : 1;
+      assertEquals(expectedSentences, result.getJsonArray("sentences").size());
+    }
+  }
+
+  @Test
+  public void testTimedOutDocumentsAreReported() throws IOException {
+    start();
+    // With no time at all, documents not yet done are reported as errors, still one JSON object per line
+    HttpURLConnection connection = post("timeout=0", "One.\nTwo.\nThree.\nFour.\n");
+    assertEquals(200, connection.getResponseCode());
+    List<JsonObject> results = readLines(connection);
+    assertEquals(4, results.size());
+    for (JsonObject result : results) {
+      assertTrue(result.containsKey("docId"));
+      assertTrue(result.containsKey("sentences") || result.containsKey("error"));
+    }
+  }
+
+  @Test
+  public void testBatchRequiresPost() throws IOException {
+    start();
+    URL url = new URL("http://localhost:" + port + "/batch?annotators=tokenize,ssplit");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(10000);
+    connection.setReadTimeout(60000);
+    assertEquals(400, connection.getResponseCode());
+  }
+
+  @Test
+  public void testCachedBatchDocumentsDontShareTheirIds() throws IOException {
+    server.cacheBytes = 1 << 20;
+    start();
+    HttpURLConnection batch = post("outputFormat=json", "The cat sat.\n");
+    assertEquals(200, batch.getResponseCode());
+    assertEquals("0", readLines(batch).get(0).getString("docId"));
+    // the same text in a single request comes from the cache, but not with the batch's document id
+    HttpURLConnection single = post("/", "outputFormat=json", "The cat sat.");
+    assertEquals(200, single.getResponseCode());
+    JsonObject result;
+    try (JsonReader json = Json.createReader(new InputStreamReader(single.getInputStream(), StandardCharsets.UTF_8))) {
+      result = json.readObject();
+    }
+    assertEquals(1, result.getJsonArray("sentences").size());
+    assertFalse(result.containsKey("docId"));
+  }
+
+  @Test
+  public void testBatchLargerThanQueueIsRefused() throws IOException {
+    server.maxQueuedRequests = 2;
+    start();
+    // three documents can never all fit in a queue of two
+    assertEquals(503, post("", "One.\nTwo.\nThree.\n").getResponseCode());
+    assertEquals(200, post("", "One.\nTwo.\n").getResponseCode());
+  }
+
+  @Test
+  public void testPriorityIsSetByServer() throws IOException {
+    File priorities = File.createTempFile("priorities", ".txt");
+    priorities.deleteOnExit();
+    IOUtils.writeStringToFile("trusted\thigh\n", priorities.getPath(), "utf-8");
+    server.maxQueuedRequests = 2;
+    server.prioritiesPath = priorities.getPath();
+    start();
+    // a client can't raise its own priority...
+    assertEquals(503, post("priority=high", "One.\nTwo.\nThree.\n").getResponseCode());
+    assertEquals(503, post("priorityKey=unknown", "One.\nTwo.\nThree.\n").getResponseCode());
+    // ... but the server can, and high priority batches are always queued
+    assertEquals(200, post("priorityKey=trusted", "One.\nTwo.\nThree.\n").getResponseCode());
+    // and a client can lower it
+    assertEquals(200, post("priority=low", "One.\n").getResponseCode());
+    assertEquals(503, post("priority=low", "One.\nTwo.\n").getResponseCode());
+  }
+
+}
@@ -1,8 +1,21 @@
 package edu.stanford.nlp.pipeline;
 
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.PropertiesUtils;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -73,4 +86,157 @@ public class StanfordCoreNLPTest {
     assertEquals("__empty__", props.getProperty("coref.md.type", "__empty__"));
   }
 
+  @Test
+  public void testProcessStreamMatchesWholeDocument() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      sb.append("This is sentence number ").append(i).append(" of the stream. ");
+    }
+    String text = sb.toString();
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties("annotators", "tokenize,ssplit"));
+    Annotation whole = pipeline.process(text);
+    List<CoreMap> expected = whole.get(CoreAnnotations.SentencesAnnotation.class);
+
+    List<CoreSentence> streamed = new ArrayList<>();
+    pipeline.processStream(new StringReader(text), 100, streamed::add);
+    assertEquals(expected.size(), streamed.size());
+    for (int i = 0; i < expected.size(); i++) {
+      CoreMap sentence = streamed.get(i).coreMap();
+      assertEquals(expected.get(i).get(CoreAnnotations.TextAnnotation.class), streamed.get(i).text());
+      assertEquals(expected.get(i).get(CoreAnnotations.CharacterOffsetBeginAnnotation.class), sentence.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+      assertEquals(expected.get(i).get(CoreAnnotations.TokenBeginAnnotation.class), sentence.get(CoreAnnotations.TokenBeginAnnotation.class));
+      assertEquals(Integer.valueOf(i), sentence.get(CoreAnnotations.SentenceIndexAnnotation.class));
+      CoreLabel lastToken = streamed.get(i).tokens().get(streamed.get(i).tokens().size() - 1);
+      assertEquals(".", text.substring(lastToken.beginPosition(), lastToken.endPosition()));
+    }
+  }
+
+  /** Counts the sentences it annotates, to check that streaming annotates each sentence once. */
+  public static class SentenceCountingAnnotator implements Annotator {
+    static final List<String> annotated = Collections.synchronizedList(new ArrayList<>());
+
+    public SentenceCountingAnnotator(String name, Properties props) { }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+        annotated.add(sentence.get(CoreAnnotations.TextAnnotation.class));
+      }
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.singleton(CoreAnnotations.SentencesAnnotation.class);
+    }
+  }
+
+  @Test
+  public void testProcessStreamAnnotatesOnlyCompleteSentences() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      sb.append("This is sentence number ").append(i).append(" of the stream. ");
+    }
+    String text = sb.toString();
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties(
+        "annotators", "tokenize,ssplit,countSentences",
+        "customAnnotatorClass.countSentences", SentenceCountingAnnotator.class.getName()));
+    List<String> expected = new ArrayList<>();
+    for (CoreMap sentence : pipeline.process(text).get(CoreAnnotations.SentencesAnnotation.class)) {
+      expected.add(sentence.get(CoreAnnotations.TextAnnotation.class));
+    }
+    SentenceCountingAnnotator.annotated.clear();
+
+    List<CoreSentence> streamed = new ArrayList<>();
+    pipeline.processStream(new StringReader(text), 100, streamed::add);
+    // the annotators past the splitter see every sentence exactly once, never a cut off one
+    assertEquals(expected, SentenceCountingAnnotator.annotated);
+    assertEquals(expected.size(), streamed.size());
+  }
+
+  @Test
+  public void testProcessStreamWithoutSentenceEnds() throws IOException {
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties("annotators", "tokenize,ssplit"));
+    int windowChars = 1000;
+    // about a megabyte of text with no sentence ends, then a megabyte of whitespace
+    StringBuilder sb = new StringBuilder();
+    int numWords = 200000;
+    for (int i = 0; i < numWords; i++) {
+      sb.append("word").append(i % 10).append(' ');
+    }
+    for (int i = 0; i < 1 << 20; i++) {
+      sb.append(i % 100 == 0 ? '\n' : ' ');
+    }
+    sb.append("The end.");
+    String text = sb.toString();
+
+    List<CoreSentence> streamed = new ArrayList<>();
+    pipeline.processStream(new StringReader(text), windowChars, streamed::add);
+    // long sentences are cut between tokens, so that no sentence is much longer than a few windows
+    int tokens = 0;
+    for (CoreSentence sentence : streamed) {
+      assertTrue(sentence.text().length() <= StanfordCoreNLP.MAX_STREAM_WINDOWS * windowChars);
+      for (CoreLabel token : sentence.tokens()) {
+        assertEquals(text.substring(token.beginPosition(), token.endPosition()), token.word());
+        assertEquals(tokens, token.index() - 1 + sentence.coreMap().get(CoreAnnotations.TokenBeginAnnotation.class));
+        tokens++;
+      }
+    }
+    assertEquals(numWords + 3, tokens);
+    CoreSentence last = streamed.get(streamed.size() - 1);
+    assertEquals("The end.", last.text());
+    assertEquals(text.length() - "The end.".length(), last.charOffsets().first.intValue());
+  }
+
+  @Test
+  public void testStagedExecutionWithAddedAnnotator() {
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties(
+        "annotators", "tokenize,ssplit", "stagedExecution", "true", "ssplit.stageThreads", "2"));
+    // an annotator added after the pipeline is made gets a stage too
+    pipeline.addAnnotator(new SentenceCountingAnnotator("countSentences", new Properties()));
+    SentenceCountingAnnotator.annotated.clear();
+    List<Annotation> docs = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      docs.add(new Annotation("Document " + i + ". It has two sentences."));
+    }
+    List<Annotation> finished = Collections.synchronizedList(new ArrayList<>());
+    pipeline.annotate(docs, 1, finished::add);
+    assertEquals(docs.size(), finished.size());
+    for (Annotation doc : finished) {
+      assertNull(doc.get(CoreAnnotations.ExceptionAnnotation.class));
+    }
+    assertEquals(2 * docs.size(), SentenceCountingAnnotator.annotated.size());
+  }
+
+  @Test
+  public void testParallelLoad() {
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties(
+        "annotators", "tokenize,ssplit", "loadThreads", "2"));
+    assertEquals(new HashSet<>(Arrays.asList("tokenize", "ssplit")), pipeline.annotatorLoadTimes().keySet());
+    assertEquals(2, pipeline.process("Hello world. Bye.").get(CoreAnnotations.SentencesAnnotation.class).size());
+  }
+
+  @Test
+  public void testLazyLoad() {
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(PropertiesUtils.asProperties(
+        "annotators", "tokenize,ssplit", "lazyLoad", "true"));
+    assertTrue(pipeline.annotatorLoadTimes().isEmpty());
+    assertEquals(2, pipeline.process("Hello world. Bye.").get(CoreAnnotations.SentencesAnnotation.class).size());
+    assertEquals(Arrays.asList("tokenize", "ssplit"), new ArrayList<>(pipeline.annotatorLoadTimes().keySet()));
+
+    // requirements are only checked once the annotators are loaded
+    StanfordCoreNLP missingTokenize = new StanfordCoreNLP(PropertiesUtils.asProperties(
+        "annotators", "ssplit", "lazyLoad", "true"));
+    try {
+      missingTokenize.warmup();
+      fail("ssplit should require tokenize");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
 }
@@ -448,6 +448,17 @@ public class BestSequenceFinderTest extends TestCase {
     runPossibleValuesChecker(tsm3, bsf);
   }
 
+  /** Decoding with one lattice for models of different lengths and numbers of tags should give the same answers. */
+  public void testExactBestSequenceFinderReusingLattice() {
+    ExactBestSequenceFinder bsf = new ExactBestSequenceFinder();
+    ExactBestSequenceFinder.Lattice lattice = new ExactBestSequenceFinder.Lattice();
+    TestSequenceModel[] models = { new TestSequenceModel1(), new TestSequenceModel2(), new TestSequenceModel3(),
+        new TestSequenceModel2nr(), new TestSequenceModel1() };
+    for (TestSequenceModel tsm : models) {
+      assertTrue(Arrays.equals(tsm.correctAnswers(), bsf.bestSequence(tsm, lattice)));
+    }
+  }
+
   // This doesn't seem to work either.  Dodgy stuff in our BestSequenceFinder's
   /*
   public void testKBestSequenceFinder() {
@@ -472,6 +483,24 @@ public class BestSequenceFinderTest extends TestCase {
     // runSequenceFinder(tsm2, bsf);
   }
 
+  /** The scores a model writes into a buffer should be those it returns. */
+  public void testScoresIntoBuffer() {
+    TestSequenceModel tsm = new TestSequenceModel1();
+    SequenceModel[] models = {
+        new FactoredSequenceModel(tsm, new TestSequenceModel1(), 0.3, 0.7),
+        new FactoredSequenceModel(new SequenceModel[] { tsm, tsm, tsm }, new double[] { 1.0, 2.0, -0.5 }),
+    };
+    for (SequenceModel model : models) {
+      int[] tags = tsm.correctAnswers().clone();
+      double[] scores = new double[20];
+      for (int pos = model.leftWindow(); pos < model.leftWindow() + model.length(); pos++) {
+        double[] expected = model.scoresOf(tags, pos);
+        model.scoresOf(tags, pos, scores);
+        assertTrue(Arrays.equals(expected, Arrays.copyOf(scores, expected.length)));
+      }
+    }
+  }
+
   /** For a sequence sampler, we just check that the returned values are
    *  valid values. We don't test the sampling distribution.
    */
@@ -0,0 +1,62 @@
+package edu.stanford.nlp.sequences;
+
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link FeatureHashTable}.
+ */
+public class FeatureHashTableTest {
+
+  @Test
+  public void testSuffixedHashMatchesConcatenation() {
+    assertEquals(FeatureHashTable.hash("WORD-Smith|C"), FeatureHashTable.hash("WORD-Smith", "C"));
+    assertEquals(FeatureHashTable.hash("PSEQ|CpC"), FeatureHashTable.hash("PSEQ", "CpC"));
+    assertEquals(FeatureHashTable.hash("WORD-Smith"), FeatureHashTable.hash("WORD-Smith", ""));
+    assertEquals(FeatureHashTable.hash("WORD-Smith"), FeatureHashTable.hash("WORD-Smith", null));
+    assertNotEquals(FeatureHashTable.hash("WORD-Smith|C"), FeatureHashTable.hash("WORD-Smith", "CpC"));
+  }
+
+  @Test
+  public void testLookupsMatchIndex() {
+    Index<String> index = new HashIndex<>();
+    for (int i = 0; i < 1000; i++) {
+      index.add("WORD-" + i + "|C");
+    }
+    index.add("Aa");
+    index.add("BB");  // same String hash code as "Aa"
+    FeatureHashTable table = FeatureHashTable.of(index);
+    assertNotNull(table);
+    assertTrue(table.isFor(index));
+    for (int i = 0; i < index.size(); i++) {
+      assertEquals(i, table.indexOf(FeatureHashTable.hash(index.get(i))));
+    }
+    assertEquals(17, table.indexOf(FeatureHashTable.hash("WORD-17", "C")));
+    assertEquals(-1, table.indexOf(FeatureHashTable.hash("WORD-17", "CpC")));
+    assertEquals(-1, table.indexOf(FeatureHashTable.hash("C#")));
+    index.add("WORD-1000|C");
+    assertFalse(table.isFor(index));
+  }
+
+  @Test
+  public void testEmptyIndex() {
+    FeatureHashTable table = FeatureHashTable.of(new HashIndex<>());
+    assertNotNull(table);
+    assertEquals(-1, table.indexOf(FeatureHashTable.hash("anything")));
+  }
+
+  @Test
+  public void testFromHashes() {
+    long[] hashes = { FeatureHashTable.hash("a"), FeatureHashTable.hash("b"), FeatureHashTable.hash("c") };
+    FeatureHashTable table = FeatureHashTable.of(hashes);
+    assertNotNull(table);
+    assertEquals(3, table.size());
+    assertEquals(1, table.indexOf(FeatureHashTable.hash("b")));
+    assertFalse(table.isFor(new HashIndex<>()));
+    assertNull(FeatureHashTable.of(new long[] { 7, 8, 7 }));
+  }
+
+}
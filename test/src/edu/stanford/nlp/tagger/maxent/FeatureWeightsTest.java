@@ -0,0 +1,82 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import edu.stanford.nlp.math.CompactWeights;
+import edu.stanford.nlp.util.Generics;
+
+public class FeatureWeightsTest extends TestCase {
+
+  private static final int Y_SIZE = 7;
+
+  /**
+   * Build random fAssociations, as a tagger has them: for each extractor, for each value, the
+   * feature number (index into the lambdas) of each tag, or -1 for no feature.
+   */
+  private static List<Map<String, int[]>> randomAssociations(Random random, int numExtractors, int numValues, int[] numFeatures) {
+    List<Map<String, int[]>> fAssociations = new ArrayList<>();
+    int numF = 0;
+    for (int extractor = 0; extractor < numExtractors; extractor++) {
+      Map<String, int[]> fValueAssociations = Generics.newHashMap();
+      for (int value = 0; value < numValues; value++) {
+        int[] fTagAssociations = new int[Y_SIZE];
+        Arrays.fill(fTagAssociations, -1);
+        for (int tag = 0; tag < Y_SIZE; tag++) {
+          if (random.nextInt(3) == 0) {
+            fTagAssociations[tag] = numF++;
+          }
+        }
+        fValueAssociations.put("v" + value, fTagAssociations);
+      }
+      fAssociations.add(fValueAssociations);
+    }
+    numFeatures[0] = numF;
+    return fAssociations;
+  }
+
+  /**
+   * Scoring the values of some extractors from the feature weights gives exactly the scores of
+   * adding up their lambdas through fAssociations, as the tagger does without them.
+   */
+  public void testSameScoresAsAssociations() {
+    Random random = new Random(1234);
+    int[] numFeatures = new int[1];
+    List<Map<String, int[]>> fAssociations = randomAssociations(random, 5, 10, numFeatures);
+    double[] lambda = new double[numFeatures[0]];
+    for (int i = 0; i < lambda.length; i++) {
+      lambda[i] = random.nextGaussian();
+    }
+    FeatureWeights weights = new FeatureWeights(fAssociations, Y_SIZE, lambda, CompactWeights.Precision.DOUBLE);
+    assertEquals(lambda.length, weights.size());
+
+    for (int trial = 0; trial < 20; trial++) {
+      double[] expected = new double[Y_SIZE];
+      double[] scores = new double[Y_SIZE];
+      for (int extractor = 0; extractor < fAssociations.size(); extractor++) {
+        // some values the extractors see have no features
+        String value = "v" + random.nextInt(12);
+        int[] fTagAssociations = fAssociations.get(extractor).get(value);
+        if (fTagAssociations != null) {
+          for (int tag = 0; tag < Y_SIZE; tag++) {
+            if (fTagAssociations[tag] > -1) {
+              expected[tag] += lambda[fTagAssociations[tag]];
+            }
+          }
+        }
+        int row = weights.row(extractor, value);
+        assertEquals(fTagAssociations == null, row < 0);
+        if (row >= 0) {
+          weights.addTo(row, scores);
+        }
+      }
+      assertTrue(Arrays.equals(expected, scores));
+    }
+  }
+
+}
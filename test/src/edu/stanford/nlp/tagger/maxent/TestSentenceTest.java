@@ -0,0 +1,137 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.SentenceUtils;
+
+/**
+ * Checks how a small trained tagger prunes the candidate tags of words with {@code candidateTagThreshold}.
+ */
+public class TestSentenceTest extends TestCase {
+
+  private static final String[] TRAIN = {
+      "The/DT dog/NN barked/VBD ./.",
+      "A/DT cat/NN saw/VBD the/DT dog/NN ./.",
+      "The/DT big/JJ dog/NN ran/VBD to/TO the/DT park/NN ./.",
+      "Dogs/NNS like/VBP big/JJ parks/NNS ./.",
+      "The/DT cats/NNS saw/VBD a/DT small/JJ bird/NN ./.",
+      "Birds/NNS sing/VBP in/IN the/DT park/NN ./.",
+      "I/PRP like/VBP the/DT small/JJ cat/NN ./.",
+      "They/PRP run/VBP to/TO the/DT old/JJ house/NN ./.",
+      "The/DT house/NN is/VBZ big/JJ ./.",
+      "A/DT bird/NN is/VBZ in/IN the/DT house/NN ./.",
+  };
+
+  private static final String[] TEST = {
+      "The dog zorbed .",
+      "A cat saw the small flimflams in the park .",
+      "Glorps like zorbed birds .",
+      // the same unknown word in different places, where different tags may be pruned
+      "Flimflams zorbed the flimflams in the big flimflams .",
+  };
+
+  private static String model; // = null;
+
+  private static synchronized String model() throws Exception {
+    if (model == null) {
+      File train = File.createTempFile("TestSentenceTest", ".txt");
+      train.deleteOnExit();
+      try (PrintWriter out = new PrintWriter(train, "utf-8")) {
+        for (String sentence : TRAIN) {
+          out.println(sentence);
+        }
+      }
+      File modelFile = File.createTempFile("TestSentenceTest", ".tagger");
+      modelFile.deleteOnExit();
+      new File(modelFile.getPath() + ".props").deleteOnExit();
+      MaxentTagger.main(new String[] {
+          "-model", modelFile.getPath(), "-trainFile", "format=TEXT," + train.getPath(),
+          "-arch", "left3words,suffix(3)", "-openClassTags", "NN NNS JJ VBD VBP VBZ", "-rareWordThresh", "5",
+          "-minFeatureThresh", "1", "-curWordMinFeatureThresh", "1", "-rareWordMinFeatureThresh", "1" });
+      model = modelFile.getPath();
+    }
+    return model;
+  }
+
+  private static MaxentTagger tagger(double threshold, boolean approximate) throws Exception {
+    Properties props = new Properties();
+    props.setProperty("candidateTagThreshold", String.valueOf(threshold));
+    props.setProperty("approximate", approximate ? "1.0" : "0.0");
+    MaxentTagger tagger = new MaxentTagger(model(), props, false);
+    assertEquals(approximate, tagger.hasApproximateScoring());
+    return tagger;
+  }
+
+  private static TestSentence tagged(MaxentTagger tagger, String sentence) {
+    TestSentence ts = new TestSentence(tagger);
+    ts.tagSentence(SentenceUtils.toWordList(sentence.split(" ")), false);
+    return ts;
+  }
+
+  /** The indices of the tags a word may have before any pruning. */
+  private static int[] allTags(MaxentTagger tagger, TestSentence ts, int pos) {
+    return Arrays.stream(ts.stringTagsAt(pos)).mapToInt(tagger.tags::getIndex).toArray();
+  }
+
+  private static void checkNoPruning(boolean approximate) throws Exception {
+    MaxentTagger tagger = tagger(0.0, approximate);
+    for (String sentence : TEST) {
+      TestSentence ts = tagged(tagger, sentence);
+      for (int pos = ts.leftWindow(); pos < ts.leftWindow() + ts.length() - 1; pos++) {
+        assertTrue(Arrays.equals(allTags(tagger, ts, pos), ts.getPossibleValues(pos)));
+      }
+    }
+  }
+
+  private static void checkPruning(boolean approximate) throws Exception {
+    MaxentTagger tagger = tagger(0.5, approximate);
+    boolean pruned = false;
+    for (String sentence : TEST) {
+      TestSentence ts = tagged(tagger, sentence);
+      for (int pos = ts.leftWindow(); pos < ts.leftWindow() + ts.length() - 1; pos++) {
+        int[] all = allTags(tagger, ts, pos);
+        int[] kept = ts.getPossibleValues(pos);
+        assertTrue(kept.length > 0);
+        // the kept tags are some of the word's tags, in the same order
+        int i = 0;
+        for (int tag : kept) {
+          while (i < all.length && all[i] != tag) {
+            i++;
+          }
+          assertTrue(sentence + " at " + pos + ": " + Arrays.toString(kept) + " not in " + Arrays.toString(all),
+              i < all.length);
+          i++;
+        }
+        // and the word is given one of them
+        int tag = tagger.tags.getIndex(ts.finalTags[pos - ts.leftWindow()]);
+        assertTrue(Arrays.stream(kept).anyMatch(t -> t == tag));
+        pruned |= kept.length < all.length;
+      }
+    }
+    assertTrue(pruned);
+  }
+
+  public void testNoPruningExact() throws Exception {
+    checkNoPruning(false);
+  }
+
+  public void testNoPruningApproximate() throws Exception {
+    checkNoPruning(true);
+  }
+
+  public void testPruningExact() throws Exception {
+    checkPruning(false);
+  }
+
+  /** With approximate scoring, the scores of the pruned tags of a word aren't shared with other occurrences. */
+  public void testPruningApproximate() throws Exception {
+    checkPruning(true);
+  }
+
+}
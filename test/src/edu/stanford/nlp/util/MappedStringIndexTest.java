@@ -0,0 +1,73 @@
+package edu.stanford.nlp.util;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link MappedStringIndex}.
+ */
+public class MappedStringIndexTest {
+
+  private static MappedStringIndex roundTrip(Index<String> index) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    MappedStringIndex.write(index, out);
+    out.flush();
+    return new MappedStringIndex(ByteBuffer.wrap(bytes.toByteArray()));
+  }
+
+  @Test
+  public void testLookupsMatchHashIndex() throws IOException {
+    Index<String> index = new HashIndex<>();
+    for (int i = 0; i < 1000; i++) {
+      index.add("feature-" + i + "|W");
+    }
+    index.add("");
+    index.add("ünicøde-中文");
+    // Strings with equal hash codes
+    index.add("Aa");
+    index.add("BB");
+    MappedStringIndex mapped = roundTrip(index);
+    assertEquals(index.size(), mapped.size());
+    for (int i = 0; i < index.size(); i++) {
+      assertEquals(index.get(i), mapped.get(i));
+      assertEquals(i, mapped.indexOf(index.get(i)));
+    }
+    assertEquals(-1, mapped.indexOf("feature-1000|W"));
+    assertEquals(-1, mapped.indexOf("C#"));  // same hash code as "Aa" and "BB"
+    assertTrue(mapped.contains("Aa"));
+    assertEquals(index.objectsList(), mapped.objectsList());
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    MappedStringIndex mapped = roundTrip(new HashIndex<>());
+    assertEquals(0, mapped.size());
+    assertEquals(-1, mapped.indexOf("anything"));
+    assertFalse(mapped.iterator().hasNext());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testReadOnly() throws IOException {
+    roundTrip(new HashIndex<>()).add("new");
+  }
+
+  @Test
+  public void testSerializesAsHashIndex() throws IOException, ClassNotFoundException {
+    Index<String> index = new HashIndex<>();
+    index.add("a");
+    index.add("b");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      oos.writeObject(roundTrip(index));
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertEquals(index, ois.readObject());
+    }
+  }
+
+}
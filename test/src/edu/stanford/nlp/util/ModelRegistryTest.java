@@ -0,0 +1,74 @@
+package edu.stanford.nlp.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ModelRegistry}.
+ */
+public class ModelRegistryTest {
+
+  @Test
+  public void testModelsAreShared() {
+    ModelRegistry registry = new ModelRegistry(0);
+    AtomicInteger loads = new AtomicInteger();
+    Object holder1 = new Object();
+    Object holder2 = new Object();
+    String key = ModelRegistry.key("pos", "model.tagger", null);
+    Object model1 = registry.acquire(holder1, key, 10, () -> { loads.incrementAndGet(); return new Object(); });
+    Object model2 = registry.acquire(holder2, key, 10, () -> { loads.incrementAndGet(); return new Object(); });
+    assertSame(model1, model2);
+    assertEquals(1, loads.get());
+    assertEquals(2, registry.holders(key));
+    assertEquals(10, registry.totalBytes());
+  }
+
+  @Test
+  public void testKeyIncludesProperties() {
+    assertNotEquals(ModelRegistry.key("parse", "model", PropertiesUtils.asProperties("flags", "-a")),
+        ModelRegistry.key("parse", "model", PropertiesUtils.asProperties("flags", "-b")));
+    assertNotEquals(ModelRegistry.key("pos", "model", null), ModelRegistry.key("parse", "model", null));
+  }
+
+  @Test
+  public void testUnusedModelsAreEvictedOverBudget() {
+    ModelRegistry registry = new ModelRegistry(25);
+    Object holder = new Object();
+    registry.acquire(holder, "a", 10, Object::new);
+    registry.acquire(holder, "b", 10, Object::new);
+    registry.release(holder);
+    // within budget: unused models are kept
+    assertTrue(registry.contains("a"));
+    assertTrue(registry.contains("b"));
+    registry.acquire(holder, "b", 10, Object::new);
+    registry.acquire(holder, "c", 10, Object::new);
+    // over budget: the least recently used unused model goes
+    assertFalse(registry.contains("a"));
+    assertTrue(registry.contains("b"));
+    assertTrue(registry.contains("c"));
+    // models in use are never evicted
+    registry.setMaxBytes(0);
+    assertEquals(2, registry.size());
+    registry.release(holder);
+    assertEquals(0, registry.size());
+    assertEquals(0, registry.totalBytes());
+  }
+
+  @Test
+  public void testFailedLoadIsNotRegistered() {
+    ModelRegistry registry = new ModelRegistry(100);
+    try {
+      registry.acquire(new Object(), "broken", 10, () -> { throw new IllegalStateException("no model"); });
+      fail("The load should have failed");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertFalse(registry.contains("broken"));
+    assertEquals(0, registry.totalBytes());
+    assertNotNull(registry.acquire(new Object(), "broken", 10, Object::new));
+  }
+
+}
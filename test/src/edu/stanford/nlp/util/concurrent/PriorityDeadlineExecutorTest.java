@@ -0,0 +1,99 @@
+package edu.stanford.nlp.util.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PriorityDeadlineExecutor}.
+ */
+public class PriorityDeadlineExecutorTest {
+
+  private PriorityDeadlineExecutor executor;
+  private CountDownLatch blocker;
+
+  @Before
+  public void setUp() throws InterruptedException {
+    executor = new PriorityDeadlineExecutor(1, 4);
+    blocker = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    // occupy the only thread, so that everything else queues up
+    executor.submit(() -> {
+      started.countDown();
+      blocker.await();
+      return null;
+    });
+    started.await();
+  }
+
+  @After
+  public void tearDown() {
+    blocker.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testRunsInPriorityOrder() throws Exception {
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    List<Future<?>> futures = new ArrayList<>();
+    futures.add(executor.submit(() -> order.add("low"), PriorityDeadlineExecutor.LOW_PRIORITY, -1));
+    futures.add(executor.submit(() -> order.add("normal1"), PriorityDeadlineExecutor.NORMAL_PRIORITY, -1));
+    futures.add(executor.submit(() -> order.add("high"), PriorityDeadlineExecutor.HIGH_PRIORITY, -1));
+    futures.add(executor.submit(() -> order.add("normal2")));
+    blocker.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    assertEquals(Arrays.asList("high", "normal1", "normal2", "low"), order);
+  }
+
+  @Test
+  public void testAdmission() {
+    executor.submit(() -> null, PriorityDeadlineExecutor.NORMAL_PRIORITY, -1);
+    executor.submit(() -> null, PriorityDeadlineExecutor.NORMAL_PRIORITY, -1);
+    // two of four slots are used: low priority requests are refused
+    assertFalse(executor.admits(PriorityDeadlineExecutor.LOW_PRIORITY));
+    assertTrue(executor.admits(PriorityDeadlineExecutor.NORMAL_PRIORITY));
+    executor.submit(() -> null, PriorityDeadlineExecutor.NORMAL_PRIORITY, -1);
+    executor.submit(() -> null, PriorityDeadlineExecutor.NORMAL_PRIORITY, -1);
+    try {
+      executor.submit(() -> null, PriorityDeadlineExecutor.NORMAL_PRIORITY, -1);
+      fail("Should have refused a request with a full queue");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    // high priority requests always get in
+    executor.submit(() -> null, PriorityDeadlineExecutor.HIGH_PRIORITY, -1);
+    assertEquals(5, executor.getQueue().size());
+  }
+
+  @Test
+  public void testBatchAdmission() {
+    executor.submit(() -> null, PriorityDeadlineExecutor.NORMAL_PRIORITY, -1);
+    // one of four slots is used: three more normal jobs fit, four don't
+    assertTrue(executor.admits(PriorityDeadlineExecutor.NORMAL_PRIORITY, 3));
+    assertFalse(executor.admits(PriorityDeadlineExecutor.NORMAL_PRIORITY, 4));
+    // low priority jobs only get half the queue
+    assertTrue(executor.admits(PriorityDeadlineExecutor.LOW_PRIORITY, 1));
+    assertFalse(executor.admits(PriorityDeadlineExecutor.LOW_PRIORITY, 2));
+    assertTrue(executor.admits(PriorityDeadlineExecutor.HIGH_PRIORITY, 100));
+  }
+
+  @Test
+  public void testExpiredJobsAreNotRun() throws Exception {
+    List<String> ran = Collections.synchronizedList(new ArrayList<>());
+    Future<Boolean> expired = executor.submit(() -> ran.add("expired"), PriorityDeadlineExecutor.NORMAL_PRIORITY, System.currentTimeMillis() + 10);
+    Future<Boolean> fine = executor.submit(() -> ran.add("fine"), PriorityDeadlineExecutor.NORMAL_PRIORITY, System.currentTimeMillis() + 60000);
+    Thread.sleep(50);
+    blocker.countDown();
+    assertTrue(fine.get());
+    assertTrue(expired.isCancelled());
+    assertEquals(Collections.singletonList("fine"), ran);
+  }
+
+}